@@ -0,0 +1,78 @@
+package nl.ordina.jobcrawler.model.mapper;
+
+import nl.ordina.jobcrawler.model.Location;
+import nl.ordina.jobcrawler.model.Skill;
+import nl.ordina.jobcrawler.model.Vacancy;
+import nl.ordina.jobcrawler.payload.SkillDTO;
+import nl.ordina.jobcrawler.payload.VacancyDTO;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link VacancyMapper} and {@link SkillMapper} with the ModelMapper mappings they replaced, for a scraped
+ * vacancy with a location and for a skill. One operation maps one object.
+ * <p>
+ * mvn -P benchmark -DskipTests test-compile exec:exec -Djmh.args="-prof gc MapperBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MapperBenchmark {
+
+    private final ModelMapper modelMapper = new ModelMapper();
+    private final VacancyMapper vacancyMapper = new VacancyMapper();
+    private final SkillMapper skillMapper = new SkillMapper();
+    private VacancyDTO vacancyDTO;
+    private SkillDTO skillDTO;
+
+    @Setup
+    public void createPayloads() {
+        Location location = new Location("Utrecht", 52.09, 5.12);
+        location.setId(UUID.randomUUID());
+        vacancyDTO = VacancyDTO.builder()
+                .vacancyURL("https://example.com/vacancy")
+                .title("Java Developer")
+                .broker("Yacht")
+                .vacancyNumber("V-1")
+                .locationString("Utrecht")
+                .hours(40)
+                .salary("4000")
+                .postingDate(LocalDateTime.of(2021, 1, 10, 12, 30))
+                .about("Spring Boot en Angular ".repeat(100))
+                .company("Ordina")
+                .location(location)
+                .build();
+        skillDTO = new SkillDTO();
+        skillDTO.setName("Java");
+        // The first map of a type pair builds ModelMapper's TypeMap, which is cached afterwards
+        modelMapper.map(vacancyDTO, Vacancy.class);
+        modelMapper.map(skillDTO, Skill.class);
+    }
+
+    @Benchmark
+    public Vacancy modelMapperVacancy() {
+        return modelMapper.map(vacancyDTO, Vacancy.class);
+    }
+
+    @Benchmark
+    public Vacancy vacancyMapper() {
+        return vacancyMapper.toVacancy(vacancyDTO);
+    }
+
+    @Benchmark
+    public Skill modelMapperSkill() {
+        return modelMapper.map(skillDTO, Skill.class);
+    }
+
+    @Benchmark
+    public Skill skillMapper() {
+        return skillMapper.toSkill(skillDTO);
+    }
+}
@@ -0,0 +1,149 @@
+package nl.ordina.jobcrawler.repo;
+
+import nl.ordina.jobcrawler.model.Location;
+import nl.ordina.jobcrawler.util.BoundingBox;
+import nl.ordina.jobcrawler.util.GeoUtils;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts the vacancies within 10 km of Utrecht on a generated H2 database in three ways: with the distance function
+ * only, with a bounding box prefilter on the indexed lat/lon in front of it, and with the location ids that
+ * {@link LocationIndex} finds in memory (as {@link VacancyCriteriaQuery} does) The
+ * locations are spread over the Netherlands, the number of vacancies is a parameter.
+ * <p>
+ * mvn -P benchmark -DskipTests test-compile exec:exec -Djmh.args="RadiusSearchBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RadiusSearchBenchmark {
+
+    private static final int LOCATIONS = 2_000;
+    private static final double LAT = 52.0809;
+    private static final double LON = 5.1277;
+    private static final double DISTANCE = 10;
+
+    private static final String DISTANCE_QUERY = "SELECT COUNT(*) FROM vacancy v LEFT JOIN location l ON v.location_id = l.id" +
+            " WHERE getDistance(?, ?, l.lat, l.lon) <= ?";
+    private static final String BOUNDING_BOX_QUERY = "SELECT COUNT(*) FROM vacancy v JOIN location l ON v.location_id = l.id" +
+            " WHERE l.lat BETWEEN ? AND ? AND l.lon BETWEEN ? AND ? AND getDistance(?, ?, l.lat, l.lon) <= ?";
+
+    @Param({"10000", "100000"})
+    private int vacancies;
+
+    private Connection connection;
+    private PreparedStatement distanceQuery;
+    private PreparedStatement boundingBoxQuery;
+    private LocationIndex locationIndex;
+
+    @Setup
+    public void createDatabase() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:radius" + vacancies);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE ALIAS getDistance FOR \"nl.ordina.jobcrawler.util.GeoUtils.distance\"");
+            statement.execute("CREATE TABLE location (id VARCHAR(36) PRIMARY KEY, lat DOUBLE, lon DOUBLE, name VARCHAR(255))");
+            statement.execute("CREATE TABLE vacancy (id VARCHAR(36) PRIMARY KEY, location_id VARCHAR(36), title VARCHAR(255))");
+            statement.execute("CREATE INDEX location_lat_lon_idx ON location (lat, lon)");
+            statement.execute("CREATE INDEX vacancy_location_idx ON vacancy (location_id)");
+        }
+
+        Random random = new Random(20210131L);
+        String[] locationIds = new String[LOCATIONS];
+        List<Location> locations = new ArrayList<>();
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO location VALUES (?, ?, ?, ?)")) {
+            for (int i = 0; i < LOCATIONS; i++) {
+                locationIds[i] = UUID.randomUUID().toString();
+                insert.setString(1, locationIds[i]);
+                double lat = 50.8 + random.nextDouble() * 2.6;
+                double lon = 3.4 + random.nextDouble() * 3.8;
+                insert.setDouble(2, lat);
+                insert.setDouble(3, lon);
+                insert.setString(4, "Location " + i);
+                insert.addBatch();
+                Location location = new Location("Location " + i, lat, lon);
+                location.setId(UUID.fromString(locationIds[i]));
+                locations.add(location);
+            }
+            insert.executeBatch();
+        }
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO vacancy VALUES (?, ?, ?)")) {
+            for (int i = 0; i < vacancies; i++) {
+                insert.setString(1, UUID.randomUUID().toString());
+                insert.setString(2, locationIds[random.nextInt(LOCATIONS)]);
+                insert.setString(3, "Vacancy " + i);
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("ANALYZE");
+        }
+
+        BoundingBox box = BoundingBox.around(LAT, LON, DISTANCE);
+        distanceQuery = connection.prepareStatement(DISTANCE_QUERY);
+        distanceQuery.setDouble(1, LAT);
+        distanceQuery.setDouble(2, LON);
+        distanceQuery.setDouble(3, DISTANCE);
+        boundingBoxQuery = connection.prepareStatement(BOUNDING_BOX_QUERY);
+        boundingBoxQuery.setDouble(1, box.getMinLat());
+        boundingBoxQuery.setDouble(2, box.getMaxLat());
+        boundingBoxQuery.setDouble(3, box.getMinLon());
+        boundingBoxQuery.setDouble(4, box.getMaxLon());
+        boundingBoxQuery.setDouble(5, LAT);
+        boundingBoxQuery.setDouble(6, LON);
+        boundingBoxQuery.setDouble(7, DISTANCE);
+        LocationRepository locationRepository = Mockito.mock(LocationRepository.class);
+        Mockito.when(locationRepository.findAll()).thenReturn(locations);
+        locationIndex = new LocationIndex(locationRepository);
+        if (count(distanceQuery) != count(boundingBoxQuery) || count(distanceQuery) != locationIndex()) {
+            throw new IllegalStateException("The bounding box changes the result");
+        }
+    }
+
+    @TearDown
+    public void closeDatabase() throws SQLException {
+        connection.close();
+    }
+
+    @Benchmark
+    public long distanceOnly() throws SQLException {
+        return count(distanceQuery);
+    }
+
+    @Benchmark
+    public long boundingBox() throws SQLException {
+        return count(boundingBoxQuery);
+    }
+
+    @Benchmark
+    public long locationIndex() throws SQLException {
+        Set<UUID> ids = locationIndex.findWithinRadius(LAT, LON, DISTANCE).keySet();
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        String in = String.join(",", Collections.nCopies(ids.size(), "?"));
+        try (PreparedStatement query = connection.prepareStatement("SELECT COUNT(*) FROM vacancy v JOIN location l" +
+                " ON v.location_id = l.id WHERE l.id IN (" + in + ")")) {
+            int i = 1;
+            for (UUID id : ids) {
+                query.setString(i++, id.toString());
+            }
+            return count(query);
+        }
+    }
+
+    private static long count(PreparedStatement query) throws SQLException {
+        try (ResultSet resultSet = query.executeQuery()) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+}
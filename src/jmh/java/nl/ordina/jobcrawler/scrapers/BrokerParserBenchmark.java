@@ -0,0 +1,154 @@
+package nl.ordina.jobcrawler.scrapers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import nl.ordina.jobcrawler.payload.VacancyDTO;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the parsing logic of every broker against the saved pages in src/test/resources, without any network access.
+ * One operation is one saved page: the raw HTML or JSON is parsed and all vacancies on it are extracted, including the
+ * parsing of the vacancy detail pages for the brokers that need them. Run with the gc profiler (the default of the
+ * benchmark profile) to get the allocation per page in gc.alloc.rate.norm.
+ * <p>
+ * mvn -P benchmark -DskipTests test-compile exec:exec
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BrokerParserBenchmark {
+
+    private static final String JOBBIRD_URL = "https://www.jobbird.com/nl/vacature?s=&rad=30&page=1&ot=date&c[]=ict";
+    private static final String JOBBIRD_VACANCY_URL = "https://www.jobbird.com/nl/vacature/1";
+    private static final String STAFFINGGROUP_URL = "https://www.destaffinggroep.nl/opdrachten/";
+    private static final String STAFFINGGROUP_VACANCY_URL = "https://www.destaffinggroep.nl/opdracht/123456";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final JobBirdScraper jobBirdScraper = new JobBirdScraper();
+    private final StaffingGroupScraper staffingGroupScraper = new StaffingGroupScraper();
+    private final JobCatcherScraper jobCatcherScraper = new JobCatcherScraper();
+    private final YachtVacancyScraper yachtVacancyScraper = new YachtVacancyScraper();
+    private final HuxleyITVacancyScraper huxleyITVacancyScraper = new HuxleyITVacancyScraper();
+    private final HeadfirstScraper headfirstScraper = new HeadfirstScraper();
+
+    private String jobBirdListing;
+    private String jobBirdVacancy;
+    private String staffingGroupListing;
+    private String staffingGroupVacancy;
+    private byte[] jobCatcherResponse;
+    private String jobCatcherVacancy;
+    private byte[] yachtResponse;
+    private String yachtVacancy;
+    private byte[] huxleyITResponse;
+    private byte[] headfirstResponse;
+
+    @Setup
+    public void loadFixtures() throws IOException {
+        jobBirdListing = readString("JobBird/jobbirdvacatures.htm");
+        jobBirdVacancy = readString("JobBird/jobbird03_vacancy.htm");
+        staffingGroupListing = readString("StaffingGroup/vacanciesPage.htm");
+        staffingGroupVacancy = readString("StaffingGroup/vacancyPage.htm");
+        jobCatcherResponse = read("JobCatcher/vacanciesResponse.json");
+        jobCatcherVacancy = readString("JobCatcher/vacancyDoc.htm");
+        yachtResponse = read("yacht/getRequestResponse.json");
+        yachtVacancy = readString("yacht/yachtvacancy.html");
+        huxleyITResponse = read("HuxleyIT/postRequestResponse.json");
+        headfirstResponse = read("Headfirst/vacanciesResponse.json");
+
+        // A fixture that no longer matches its parser would otherwise benchmark an early exit
+        for (List<?> result : List.of(jobBirdListing(), staffingGroupListing(), jobCatcherPage(), yachtPage(),
+                huxleyITPage(), headfirstPage())) {
+            if (result.isEmpty()) {
+                throw new IllegalStateException("A fixture did not yield any vacancies");
+            }
+        }
+    }
+
+    @Benchmark
+    public List<String> jobBirdListing() {
+        return jobBirdScraper.retrieveVacancyURLsFromDoc(Jsoup.parse(jobBirdListing, JOBBIRD_URL));
+    }
+
+    @Benchmark
+    public VacancyDTO jobBirdVacancy() {
+        return jobBirdScraper.parseVacancy(JOBBIRD_VACANCY_URL, Jsoup.parse(jobBirdVacancy, JOBBIRD_VACANCY_URL));
+    }
+
+    @Benchmark
+    public List<LocalDate> staffingGroupListing() {
+        return new ArrayList<>(staffingGroupScraper.parseListing(Jsoup.parse(staffingGroupListing, STAFFINGGROUP_URL)).values());
+    }
+
+    @Benchmark
+    public VacancyDTO staffingGroupVacancy() {
+        Document doc = Jsoup.parse(staffingGroupVacancy, STAFFINGGROUP_VACANCY_URL);
+        return staffingGroupScraper.parseVacancy(STAFFINGGROUP_VACANCY_URL, LocalDate.now(), doc);
+    }
+
+    @Benchmark
+    public List<VacancyDTO> jobCatcherPage() throws IOException {
+        JobCatcherResponse response = objectMapper.readValue(jobCatcherResponse, JobCatcherResponse.class);
+        List<VacancyDTO> vacancyDTOs = new ArrayList<>();
+        for (Map<String, Object> vacancyData : response.getData().get(0).getList()) {
+            String vacancyURL = jobCatcherScraper.createVacancyURL(vacancyData);
+            vacancyDTOs.add(jobCatcherScraper.parseVacancy(vacancyData, vacancyURL, Jsoup.parse(jobCatcherVacancy, vacancyURL)));
+        }
+        return vacancyDTOs;
+    }
+
+    @Benchmark
+    public List<VacancyDTO> yachtPage() throws IOException {
+        YachtVacancyResponse response = objectMapper.readValue(yachtResponse, YachtVacancyResponse.class);
+        List<VacancyDTO> vacancyDTOs = new ArrayList<>();
+        for (Map<String, Object> vacancyData : response.getVacancies()) {
+            String vacancyURL = yachtVacancyScraper.createVacancyURL(vacancyData);
+            vacancyDTOs.add(yachtVacancyScraper.parseVacancy(vacancyData, vacancyURL, Jsoup.parse(yachtVacancy, vacancyURL)));
+        }
+        return vacancyDTOs;
+    }
+
+    @Benchmark
+    public List<VacancyDTO> huxleyITPage() throws IOException {
+        HuxleyITResponse response = objectMapper.readValue(huxleyITResponse, HuxleyITResponse.class);
+        List<VacancyDTO> vacancyDTOs = new ArrayList<>();
+        for (Map<String, Object> vacancyData : response.getVacanciesData()) {
+            vacancyDTOs.add(huxleyITVacancyScraper.getVacancyDTO(vacancyData));
+        }
+        return vacancyDTOs;
+    }
+
+    @Benchmark
+    public List<VacancyDTO> headfirstPage() throws IOException {
+        HeadfirstResponse response = objectMapper.readValue(headfirstResponse, HeadfirstResponse.class);
+        List<VacancyDTO> vacancyDTOs = new ArrayList<>();
+        for (Map<String, Object> vacancyData : response.getResults()) {
+            vacancyDTOs.add(headfirstScraper.parseVacancy(vacancyData));
+        }
+        return vacancyDTOs;
+    }
+
+    private static byte[] read(String fixture) throws IOException {
+        try (InputStream inputStream = new ClassPathResource(fixture).getInputStream()) {
+            return inputStream.readAllBytes();
+        }
+    }
+
+    private static String readString(String fixture) throws IOException {
+        return new String(read(fixture), StandardCharsets.UTF_8);
+    }
+}
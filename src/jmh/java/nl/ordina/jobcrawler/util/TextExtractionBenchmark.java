@@ -0,0 +1,70 @@
+package nl.ordina.jobcrawler.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.jsoup.Jsoup;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link TextExtraction} with the extraction code it replaced ({@link LegacyTextExtraction}) on the vacancy
+ * bodies and dates of the saved broker pages. One operation extracts from all of them.
+ * <p>
+ * mvn -P benchmark -DskipTests test-compile exec:exec -Djmh.args="-prof gc TextExtractionBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TextExtractionBenchmark {
+
+    private final List<String> descriptions = new ArrayList<>();
+    private final List<String> dateTimes = new ArrayList<>();
+
+    @Setup
+    public void loadFixtures() throws IOException {
+        for (String page : List.of("JobBird/jobbird03_vacancy.htm", "JobBird/jobbird04_vacancyspecifics.htm")) {
+            descriptions.add(Jsoup.parse(new ClassPathResource(page).getInputStream(), "UTF-8", "")
+                    .select("div.card-body").text());
+        }
+        JsonNode huxleyIT = new ObjectMapper().readTree(new ClassPathResource("HuxleyIT/postRequestResponse.json").getInputStream());
+        descriptions.addAll(huxleyIT.findValuesAsText("description"));
+        dateTimes.addAll(huxleyIT.findValuesAsText("postDate"));
+    }
+
+    @Benchmark
+    public void legacyWorkHours(Blackhole blackhole) {
+        for (String description : descriptions) {
+            blackhole.consume(LegacyTextExtraction.workHours(description));
+        }
+    }
+
+    @Benchmark
+    public void workHours(Blackhole blackhole) {
+        for (String description : descriptions) {
+            blackhole.consume(TextExtraction.workHours(description));
+        }
+    }
+
+    @Benchmark
+    public void legacyDateTime(Blackhole blackhole) {
+        for (String dateTime : dateTimes) {
+            blackhole.consume(LegacyTextExtraction.huxleyDateTime(dateTime));
+        }
+    }
+
+    @Benchmark
+    public void dateTime(Blackhole blackhole) {
+        for (String dateTime : dateTimes) {
+            blackhole.consume(TextExtraction.isoDateTime(dateTime));
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package nl.ordina.jobcrawler.configuration;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import nl.ordina.jobcrawler.service.DataGeneration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Caches the responses of the public read endpoints, which only change when the data changes by a scrape or an admin.
+ * The ETag of a response is the {@link DataGeneration}, so a client revalidating with If-None-Match gets a 304 Not
+ * Modified until the data changes. The bytes of the responses are kept per generation as well, gzipped for clients
+ * accepting it, so a repeated request neither queries the database nor serializes the result again.
+ * <p>
+ * The filter runs after the security filter chain, which has added the CORS headers by then.
+ */
+@Component
+public class ResponseCacheFilter extends OncePerRequestFilter {
+
+    private static final List<String> CACHED_PATHS = List.of("/vacancies", "/skills", "/locations");
+    // Streamed while it runs, the export is neither public nor small enough to keep
+    private static final String EXPORT_PATH = "/vacancies/export";
+    // Clients have to revalidate every time, which costs a 304 as long as the data did not change
+    private static final String CACHE_CONTROL = "no-cache";
+    private static final long MAX_CACHED_BYTES = 32L * 1024 * 1024;
+    private static final int MAX_RESPONSE_BYTES = 1024 * 1024;
+    // Smaller responses are not worth the gzip header and the work of the client
+    private static final int MIN_GZIP_BYTES = 1024;
+    private static final String GZIP = "gzip";
+
+    private final DataGeneration dataGeneration;
+    // Generation, Accept header and URL of a request to its response
+    private final Cache<String, CachedResponse> responses = Caffeine.newBuilder()
+            .maximumWeight(MAX_CACHED_BYTES)
+            .weigher((String key, CachedResponse response) -> response.size())
+            .recordStats()
+            .build();
+    private volatile long cachedGeneration;
+
+    public ResponseCacheFilter(DataGeneration dataGeneration) {
+        this.dataGeneration = dataGeneration;
+        CaffeineCacheMetrics.monitor(Metrics.globalRegistry, responses, "http.responses");
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getServletPath();
+        return !HttpMethod.GET.matches(request.getMethod()) || path.equals(EXPORT_PATH)
+                || CACHED_PATHS.stream().noneMatch(cached -> path.equals(cached) || path.startsWith(cached + "/"));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        long generation = dataGeneration.current();
+        if (generation != cachedGeneration) {
+            responses.invalidateAll();
+            cachedGeneration = generation;
+        }
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL);
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (new ServletWebRequest(request, response).checkNotModified("\"" + Long.toString(generation, 36) + "\"")) {
+            return;
+        }
+
+        String key = generation + " " + request.getHeader(HttpHeaders.ACCEPT) + " " + getUrl(request);
+        CachedResponse cached = responses.getIfPresent(key);
+        if (cached != null) {
+            cached.writeTo(response, acceptsGzip(request));
+            return;
+        }
+
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        filterChain.doFilter(request, wrapper);
+        if (wrapper.getStatus() == HttpStatus.OK.value() && wrapper.getContentSize() <= MAX_RESPONSE_BYTES) {
+            responses.put(key, new CachedResponse(wrapper.getContentType(), wrapper.getContentAsByteArray()));
+        }
+        wrapper.copyBodyToResponse();
+    }
+
+    private static String getUrl(HttpServletRequest request) {
+        String query = request.getQueryString();
+        return query == null ? request.getRequestURL().toString() : request.getRequestURL() + "?" + query;
+    }
+
+    private static boolean acceptsGzip(HttpServletRequest request) {
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        return acceptEncoding != null && acceptEncoding.toLowerCase(Locale.ROOT).contains(GZIP);
+    }
+
+    private static final class CachedResponse {
+        private final String contentType;
+        private final byte[] body;
+        // Null for a response too small to gzip
+        private final byte[] gzippedBody;
+
+        private CachedResponse(String contentType, byte[] body) {
+            this.contentType = contentType;
+            this.body = body;
+            this.gzippedBody = body.length < MIN_GZIP_BYTES ? null : gzip(body);
+        }
+
+        private int size() {
+            return body.length + (gzippedBody == null ? 0 : gzippedBody.length);
+        }
+
+        private void writeTo(HttpServletResponse response, boolean gzip) throws IOException {
+            byte[] content = body;
+            if (gzip && gzippedBody != null) {
+                content = gzippedBody;
+                response.setHeader(HttpHeaders.CONTENT_ENCODING, GZIP);
+            }
+            response.setContentType(contentType);
+            response.setContentLength(content.length);
+            response.getOutputStream().write(content);
+        }
+
+        private static byte[] gzip(byte[] body) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(body.length / 4);
+            try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+                out.write(body);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return bytes.toByteArray();
+        }
+    }
+}
@@ -2,11 +2,15 @@ package nl.ordina.jobcrawler.configuration;
 
 import org.hibernate.boot.MetadataBuilder;
 import org.hibernate.boot.spi.MetadataBuilderContributor;
+import org.hibernate.dialect.function.SQLFunctionTemplate;
 import org.hibernate.dialect.function.StandardSQLFunction;
+import org.hibernate.type.LocalDateTimeType;
 import org.hibernate.type.StandardBasicTypes;
 
 /**
- * This class enables the use of the custom getDistance sql function (located in resources/data.sql) while using a CriteriaQuery
+ * This class enables the use of the custom getDistance, fts_match and fts_rank sql functions (located in resources/data.sql)
+ * while using a CriteriaQuery, of count_over for the window function count(*) over () that counts all rows of a
+ * query next to its page, and of posting_week for the start of the week (Monday) of a timestamp
  */
 public class SqlFunctionsMetadataBuilderContributor implements MetadataBuilderContributor {
 
@@ -19,6 +23,34 @@ public class SqlFunctionsMetadataBuilderContributor implements MetadataBuilderCo
                         StandardBasicTypes.DOUBLE
                 )
         );
+        metadataBuilder.applySqlFunction(
+                "fts_match",
+                new StandardSQLFunction(
+                        "fts_match",
+                        StandardBasicTypes.BOOLEAN
+                )
+        );
+        metadataBuilder.applySqlFunction(
+                "fts_rank",
+                new StandardSQLFunction(
+                        "fts_rank",
+                        StandardBasicTypes.DOUBLE
+                )
+        );
+        metadataBuilder.applySqlFunction(
+                "count_over",
+                new SQLFunctionTemplate(
+                        StandardBasicTypes.LONG,
+                        "count(*) over ()"
+                )
+        );
+        metadataBuilder.applySqlFunction(
+                "posting_week",
+                new SQLFunctionTemplate(
+                        LocalDateTimeType.INSTANCE,
+                        "date_trunc('week', ?1)"
+                )
+        );
     }
 
 }
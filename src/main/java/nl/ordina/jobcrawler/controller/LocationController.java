@@ -78,7 +78,7 @@ public class LocationController {
         double[] coord;
         coord = locationService.getCoordinates(location);
         Optional<Location> existCheckLocation = locationService.findByLocationName(location);
-        if (existCheckLocation.isEmpty()) {
+        if (coord != null && existCheckLocation.isEmpty()) {
             Location locationObj = new Location(location, coord);
             locationService.save(locationObj);
         }
@@ -1,5 +1,7 @@
 package nl.ordina.jobcrawler.controller;
 
+import nl.ordina.jobcrawler.model.ScrapeRun;
+import nl.ordina.jobcrawler.service.ScrapeRunService;
 import nl.ordina.jobcrawler.service.ScraperService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
@@ -7,10 +9,13 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.List;
 import java.util.Map;
 
 @CrossOrigin
@@ -19,10 +24,12 @@ import java.util.Map;
 public class ScraperController {
 
     private final ScraperService scraperService;
+    private final ScrapeRunService scrapeRunService;
 
     @Autowired
-    public ScraperController(ScraperService scraperService) {
+    public ScraperController(ScraperService scraperService, ScrapeRunService scrapeRunService) {
         this.scraperService = scraperService;
+        this.scrapeRunService = scrapeRunService;
     }
 
     /**
@@ -36,4 +43,16 @@ public class ScraperController {
 
         return ResponseEntity.status(HttpStatus.OK).body(Map.of("success", true));
     }
+
+    /**
+     * Returns the history of scrape runs, newest first
+     *
+     * @param limit maximum number of runs to return
+     * @return runs with their duration, pages, bytes and vacancy counts per broker
+     */
+    @GetMapping("/runs")
+    @PreAuthorize("hasRole('ADMIN')")
+    public List<ScrapeRun> getRuns(@RequestParam(defaultValue = "20") int limit) {
+        return scrapeRunService.findRecent(limit);
+    }
 }
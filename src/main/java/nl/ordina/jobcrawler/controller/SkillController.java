@@ -4,9 +4,9 @@ package nl.ordina.jobcrawler.controller;
 import nl.ordina.jobcrawler.exception.SkillNotFoundException;
 import nl.ordina.jobcrawler.model.Skill;
 import nl.ordina.jobcrawler.model.assembler.SkillModelAssembler;
+import nl.ordina.jobcrawler.model.mapper.SkillMapper;
 import nl.ordina.jobcrawler.payload.SkillDTO;
 import nl.ordina.jobcrawler.service.SkillService;
-import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.hateoas.CollectionModel;
 import org.springframework.hateoas.EntityModel;
@@ -25,13 +25,13 @@ public class SkillController {
 
     private final SkillService skillService;
     private final SkillModelAssembler skillModelAssembler;
-    private final ModelMapper modelMapper;
+    private final SkillMapper skillMapper;
 
     @Autowired
-    public SkillController(SkillService skillService, SkillModelAssembler skillModelAssembler, ModelMapper modelMapper) {
+    public SkillController(SkillService skillService, SkillModelAssembler skillModelAssembler, SkillMapper skillMapper) {
         this.skillService = skillService;
         this.skillModelAssembler = skillModelAssembler;
-        this.modelMapper = modelMapper;
+        this.skillMapper = skillMapper;
     }
 
     /**
@@ -55,7 +55,7 @@ public class SkillController {
     @PostMapping
     @PreAuthorize("hasRole('ADMIN')")
         public ResponseEntity<EntityModel<Skill>> createSkill(@Valid @RequestBody SkillDTO skillDTO) {
-        Skill skill = modelMapper.map(skillDTO, Skill.class);
+        Skill skill = skillMapper.toSkill(skillDTO);
 
         EntityModel<Skill> returnedSkill = skillModelAssembler.toModel(skillService.save(skill));
         return ResponseEntity
@@ -83,7 +83,7 @@ public class SkillController {
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<EntityModel<Skill>> updateSkill(@PathVariable UUID id, @Valid @RequestBody SkillDTO skillDTO) {
         skillService.findById(id).orElseThrow(() -> new SkillNotFoundException(id));
-        Skill skill = modelMapper.map(skillDTO, Skill.class);
+        Skill skill = skillMapper.toSkill(skillDTO);
         EntityModel<Skill> updatedSkillEntityModel = skillModelAssembler.toModel(skillService.update(id, skill));
 
         return ResponseEntity
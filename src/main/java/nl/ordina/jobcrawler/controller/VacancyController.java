@@ -5,25 +5,36 @@ import nl.ordina.jobcrawler.model.Skill;
 import nl.ordina.jobcrawler.model.Vacancy;
 import nl.ordina.jobcrawler.model.assembler.SkillModelAssembler;
 import nl.ordina.jobcrawler.model.assembler.VacancyModelAssembler;
+import nl.ordina.jobcrawler.model.mapper.VacancyMapper;
+import nl.ordina.jobcrawler.payload.SearchCursor;
 import nl.ordina.jobcrawler.payload.SearchRequest;
 import nl.ordina.jobcrawler.payload.SearchResult;
 import nl.ordina.jobcrawler.payload.VacancyDTO;
+import nl.ordina.jobcrawler.payload.VacancyListItemDTO;
 import nl.ordina.jobcrawler.service.VacancyService;
-import org.modelmapper.ModelMapper;
+import nl.ordina.jobcrawler.util.ExportFormat;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.hateoas.CollectionModel;
 import org.springframework.hateoas.EntityModel;
 import org.springframework.hateoas.IanaLinkRelations;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
@@ -37,18 +48,22 @@ public class VacancyController {
 
     private final VacancyService vacancyService;
     private final VacancyModelAssembler vacancyModelAssembler;
-    private final ModelMapper modelMapper;
+    private final VacancyMapper vacancyMapper;
 
-    public VacancyController(VacancyService vacancyService, VacancyModelAssembler vacancyModelAssembler, ModelMapper modelMapper) {
+    public VacancyController(VacancyService vacancyService, VacancyModelAssembler vacancyModelAssembler, VacancyMapper vacancyMapper) {
         this.vacancyService = vacancyService;
         this.vacancyModelAssembler = vacancyModelAssembler;
-        this.modelMapper = modelMapper;
+        this.vacancyMapper = vacancyMapper;
     }
 
     /**
      *
      * @param value when entered vacancy results are filtered by this value and the skills are ignored
      * @param skills when entered vacancy results are filtered by the skills
+     * @param brokers when entered vacancy results are filtered to these brokers
+     * @param facets when true the result also holds the number of matching vacancies per skill, broker, location and week
+     * @param cursor when entered (empty for the first page) pages by the nextCursor of the previous page instead of by
+     *               page number, for sorting by postingDate, title or location.name
      * @param page the current page number
      * @param size the size of te page
      *
@@ -57,32 +72,32 @@ public class VacancyController {
     @GetMapping
     public ResponseEntity<SearchResult> getVacancies(@RequestParam(required = false) Optional<String> value,
                                                      @RequestParam(required = false) Optional<Set<String>> skills,
+                                                     @RequestParam(required = false) Optional<Set<String>> brokers,
                                                      @RequestParam(required = false) Optional<String> location,
                                                      @RequestParam(required = false) Optional<Double> distance,
                                                      @RequestParam(required = false) Optional<String> fromDate,
                                                      @RequestParam(required = false) Optional<String> toDate,
                                                      @RequestParam(defaultValue = "desc") String dir,
                                                      @RequestParam(defaultValue = "postingDate") String sort,
+                                                     @RequestParam(defaultValue = "false") boolean facets,
+                                                     @RequestParam(required = false) String cursor,
                                                      @RequestParam(defaultValue = "1") int page,
                                                      @RequestParam(defaultValue = "10") int size) {
         try {
 
             Pageable paging = PageRequest.of(page, size);
 
-            SearchRequest searchRequest = new SearchRequest();
-            value.ifPresent(searchRequest::setKeywords);
-            fromDate.ifPresent(fd -> searchRequest.setFromDate(LocalDateTime.parse(fd, formatter)));
-            toDate.ifPresent(td -> searchRequest.setToDate(LocalDateTime.parse(td, formatter)));
-            skills.ifPresent(searchRequest::setSkills);
-
-            location.ifPresent(searchRequest::setLocation);
-            distance.ifPresent(searchRequest::setDistance);
+            SearchRequest searchRequest = toSearchRequest(value, skills, brokers, location, distance, fromDate, toDate);
 
             String[] sortingArray = new String[2];
             sortingArray[0] = sort;
             sortingArray[1] = dir;
 
-            Page<VacancyDTO> vacancyDTOList = vacancyService.findByAnyValue(searchRequest, paging, sortingArray);
+            if (cursor != null) {
+                return getVacanciesAfter(searchRequest, sortingArray, cursor, size, facets);
+            }
+
+            Page<VacancyListItemDTO> vacancyDTOList = vacancyService.findByAnyValue(searchRequest, paging, sortingArray);
 
             if (vacancyDTOList.getContent().isEmpty()) {
                 return new ResponseEntity<>(HttpStatus.NO_CONTENT);
@@ -93,12 +108,106 @@ public class VacancyController {
             searchResult.setCurrentPage(vacancyDTOList.getNumber());
             searchResult.setTotalItems(vacancyDTOList.getTotalElements());
             searchResult.setTotalPages(vacancyDTOList.getTotalPages());
+            if (facets) {
+                searchResult.setFacets(vacancyService.findFacets(searchRequest));
+            }
             return new ResponseEntity<>(searchResult, HttpStatus.OK);
         } catch (Exception e) {
             return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
 
+    /**
+     * Returns the page of vacancies after a cursor
+     *
+     * @return vacancies from the database with the cursor of the next page, or code 400 Bad Request if the search can
+     * not be paged by cursor.
+     */
+    private ResponseEntity<SearchResult> getVacanciesAfter(SearchRequest searchRequest, String[] sort, String cursor,
+                                                           int size, boolean facets) {
+        SearchCursor after;
+        try {
+            if (!SearchCursor.supports(sort[0]) || size <= 0) {
+                return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+            }
+            after = cursor.isEmpty() ? null : SearchCursor.decode(cursor, sort);
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+
+        Slice<VacancyListItemDTO> vacancyDTOList = vacancyService.findByAnyValueAfter(searchRequest, sort, after, size);
+
+        if (vacancyDTOList.getContent().isEmpty()) {
+            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+        }
+
+        SearchResult searchResult = new SearchResult();
+        searchResult.setVacancies(vacancyDTOList.getContent());
+        searchResult.setTotalItems(vacancyService.countByAnyValue(searchRequest));
+        searchResult.setTotalPages((int) Math.ceil((double) searchResult.getTotalItems() / size));
+        if (vacancyDTOList.hasNext()) {
+            List<VacancyListItemDTO> vacancies = vacancyDTOList.getContent();
+            searchResult.setNextCursor(SearchCursor.after(vacancies.get(vacancies.size() - 1), sort).encode());
+        }
+        if (facets) {
+            searchResult.setFacets(vacancyService.findFacets(searchRequest));
+        }
+        return new ResponseEntity<>(searchResult, HttpStatus.OK);
+    }
+
+    /**
+     * Exports all vacancies, or the ones matching the same filters as GET /vacancies, as they are read from the
+     * database. The response is written while the export runs instead of being built in memory first.
+     *
+     * @param format ndjson for a JSON object per vacancy per line, or csv
+     * @param response the response the export is written to, code 400 Bad Request for an unknown format or invalid date
+     */
+    @GetMapping("/export")
+    @PreAuthorize("hasRole('ADMIN')")
+    public void exportVacancies(@RequestParam(required = false) Optional<String> value,
+                                @RequestParam(required = false) Optional<Set<String>> skills,
+                                @RequestParam(required = false) Optional<Set<String>> brokers,
+                                @RequestParam(required = false) Optional<String> location,
+                                @RequestParam(required = false) Optional<Double> distance,
+                                @RequestParam(required = false) Optional<String> fromDate,
+                                @RequestParam(required = false) Optional<String> toDate,
+                                @RequestParam(defaultValue = "ndjson") String format,
+                                HttpServletResponse response) throws IOException {
+        Optional<ExportFormat> exportFormat = ExportFormat.of(format);
+        SearchRequest searchRequest;
+        try {
+            searchRequest = toSearchRequest(value, skills, brokers, location, distance, fromDate, toDate);
+        } catch (DateTimeParseException e) {
+            response.sendError(HttpStatus.BAD_REQUEST.value());
+            return;
+        }
+        if (exportFormat.isEmpty()) {
+            response.sendError(HttpStatus.BAD_REQUEST.value());
+            return;
+        }
+
+        response.setContentType(exportFormat.get().getContentType());
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.builder("attachment")
+                .filename("vacancies." + exportFormat.get().getExtension()).build().toString());
+        vacancyService.exportVacancies(searchRequest, exportFormat.get(), response.getOutputStream());
+    }
+
+    private SearchRequest toSearchRequest(Optional<String> value, Optional<Set<String>> skills,
+                                          Optional<Set<String>> brokers, Optional<String> location,
+                                          Optional<Double> distance, Optional<String> fromDate, Optional<String> toDate) {
+        SearchRequest searchRequest = new SearchRequest();
+        value.ifPresent(searchRequest::setKeywords);
+        fromDate.ifPresent(fd -> searchRequest.setFromDate(LocalDateTime.parse(fd, formatter)));
+        toDate.ifPresent(td -> searchRequest.setToDate(LocalDateTime.parse(td, formatter)));
+        skills.ifPresent(searchRequest::setSkills);
+        brokers.ifPresent(searchRequest::setBrokers);
+
+        location.ifPresent(searchRequest::setLocation);
+        distance.ifPresent(searchRequest::setDistance);
+        return searchRequest;
+    }
+
     public CollectionModel<EntityModel<Vacancy>> getVacancies() {
 
         return vacancyModelAssembler.toCollectionModel(vacancyService.findAll());
@@ -115,7 +224,7 @@ public class VacancyController {
     @PostMapping
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<EntityModel<Vacancy>> createVacancy(@Valid @RequestBody VacancyDTO vacancyDTO) {
-        Vacancy vacancy = modelMapper.map(vacancyDTO, Vacancy.class);
+        Vacancy vacancy = vacancyMapper.toVacancy(vacancyDTO);
         EntityModel<Vacancy> returnedVacancy = vacancyModelAssembler.toModel(vacancyService.save(vacancy));
         return ResponseEntity
                 .created(returnedVacancy.getRequiredLink(IanaLinkRelations.SELF).toUri())
@@ -0,0 +1,31 @@
+package nl.ordina.jobcrawler.model;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import java.time.LocalDateTime;
+
+/**
+ * Typical lifetime of a vacancy of a broker, from its posting date until it was found dead, as learned by the
+ * LivenessChecker. Stored so a restart does not start learning again from the configured lifetime.
+ */
+@Getter
+@Setter
+@Entity
+@NoArgsConstructor
+public class BrokerLifetime {
+
+    @Id
+    private String broker;
+    private Double hours;
+    private LocalDateTime updatedAt;
+
+    public BrokerLifetime(String broker, double hours, LocalDateTime updatedAt) {
+        this.broker = broker;
+        this.hours = hours;
+        this.updatedAt = updatedAt;
+    }
+}
@@ -0,0 +1,62 @@
+package nl.ordina.jobcrawler.model;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Type;
+
+import javax.persistence.*;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Answer of the remote geocoder for a location string, so the geocoder is asked only once per string. A string the
+ * geocoder could not find is stored without coordinates.
+ */
+@Getter
+@Setter
+@Entity
+@NoArgsConstructor
+@Table(name = "geocode_cache")
+public class GeocodeResult {
+
+    @Id
+    @GeneratedValue(generator = "UUID")
+    @GenericGenerator(name = "UUID", strategy = "org.hibernate.id.UUIDGenerator")
+    @Type(type = "uuid-char")
+    private UUID id;
+
+    @Column(name = "location_query", unique = true, nullable = false)
+    private String query;
+    private Double lat;
+    private Double lon;
+    private LocalDateTime fetchedAt;
+
+    public GeocodeResult(String query, double[] coord, LocalDateTime fetchedAt) {
+        this.query = query;
+        update(coord, fetchedAt);
+    }
+
+    public void update(double[] coord, LocalDateTime fetchedAt) {
+        this.lat = coord == null ? null : coord[0];
+        this.lon = coord == null ? null : coord[1];
+        this.fetchedAt = fetchedAt;
+    }
+
+    public boolean isFound() {
+        return lat != null && lon != null;
+    }
+
+    /**
+     * @return The coordinates, or null if the geocoder could not find the location.
+     */
+    public double[] getCoord() {
+        return isFound() ? new double[]{lat, lon} : null;
+    }
+
+    public boolean isExpired(LocalDateTime now, Duration foundTtl, Duration notFoundTtl) {
+        return fetchedAt.plus(isFound() ? foundTtl : notFoundTtl).isBefore(now);
+    }
+}
@@ -0,0 +1,8 @@
+package nl.ordina.jobcrawler.model;
+
+/**
+ * Outcome of requesting the URL of a vacancy: it still exists, it no longer does, or it could not be checked.
+ */
+public enum Liveness {
+    ALIVE, DEAD, FAILED
+}
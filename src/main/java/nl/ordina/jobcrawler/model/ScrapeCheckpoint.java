@@ -0,0 +1,53 @@
+package nl.ordina.jobcrawler.model;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Type;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Progress of one broker within a scrape run. Every committed page (chunk of vacancies) increments the page counter.
+ */
+@Getter
+@Setter
+@Entity
+@NoArgsConstructor
+@Table(uniqueConstraints = { @UniqueConstraint(columnNames = { "run_id", "broker" }) })
+public class ScrapeCheckpoint {
+
+    @Id
+    @GeneratedValue(generator = "UUID")
+    @GenericGenerator(name = "UUID", strategy = "org.hibernate.id.UUIDGenerator")
+    @Type(type = "uuid-char")
+    @JsonIgnore
+    private UUID id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "run_id")
+    @JsonIgnore
+    private ScrapeRun run;
+
+    private String broker;
+    private int page;
+    private boolean completed;
+    private long bytes;
+    private int newVacancies;
+    private int existingVacancies;
+    private int failedVacancies;
+    @JsonFormat(timezone = "Europe/Amsterdam", pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime updatedAt;
+
+    public ScrapeCheckpoint(ScrapeRun run, String broker) {
+        this.run = run;
+        this.broker = broker;
+        this.updatedAt = LocalDateTime.now();
+    }
+
+}
@@ -0,0 +1,78 @@
+package nl.ordina.jobcrawler.model;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import nl.ordina.jobcrawler.util.ScrapeRunStatus;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Type;
+
+import javax.persistence.*;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Journal entry of a single scrape run. The progress per broker is kept in the checkpoints, so a run that was
+ * interrupted (status RUNNING after a restart) can be resumed where it left off.
+ */
+@Getter
+@Setter
+@Entity
+@NoArgsConstructor
+public class ScrapeRun {
+
+    @Id
+    @GeneratedValue(generator = "UUID")
+    @GenericGenerator(name = "UUID", strategy = "org.hibernate.id.UUIDGenerator")
+    @Type(type = "uuid-char")
+    private UUID id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 20)
+    private ScrapeRunStatus status;
+
+    @JsonFormat(timezone = "Europe/Amsterdam", pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime startedAt;
+    @JsonFormat(timezone = "Europe/Amsterdam", pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime finishedAt;
+    private int resumeCount;
+
+    @OneToMany(mappedBy = "run", fetch = FetchType.EAGER)
+    @OrderBy("broker")
+    private List<ScrapeCheckpoint> checkpoints = new ArrayList<>();
+
+    public ScrapeRun(LocalDateTime startedAt) {
+        this.startedAt = startedAt;
+        this.status = ScrapeRunStatus.RUNNING;
+    }
+
+    public long getDurationSeconds() {
+        LocalDateTime end = finishedAt != null ? finishedAt : LocalDateTime.now();
+        return Duration.between(startedAt, end).getSeconds();
+    }
+
+    public int getPages() {
+        return checkpoints.stream().mapToInt(ScrapeCheckpoint::getPage).sum();
+    }
+
+    public long getBytes() {
+        return checkpoints.stream().mapToLong(ScrapeCheckpoint::getBytes).sum();
+    }
+
+    public int getNewVacancies() {
+        return checkpoints.stream().mapToInt(ScrapeCheckpoint::getNewVacancies).sum();
+    }
+
+    public int getExistingVacancies() {
+        return checkpoints.stream().mapToInt(ScrapeCheckpoint::getExistingVacancies).sum();
+    }
+
+    public int getFailedVacancies() {
+        return checkpoints.stream().mapToInt(ScrapeCheckpoint::getFailedVacancies).sum();
+    }
+
+}
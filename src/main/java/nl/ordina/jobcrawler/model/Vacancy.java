@@ -1,6 +1,7 @@
 package nl.ordina.jobcrawler.model;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.*;
 import org.hibernate.annotations.GenericGenerator;
 import org.hibernate.annotations.Type;
@@ -8,6 +9,8 @@ import org.hibernate.annotations.Type;
 import javax.persistence.*;
 import javax.validation.constraints.NotNull;
 import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.UUID;
 
 @Getter
@@ -17,6 +20,7 @@ import java.util.UUID;
 @AllArgsConstructor
 @NoArgsConstructor
 @Entity
+@Table(indexes = { @Index(name = "vacancy_location_idx", columnList = "location_id") })
 public class Vacancy {
 
     @Id
@@ -41,6 +45,31 @@ public class Vacancy {
     @JoinColumn(name = "location_id")
     Location location;
 
+    // Start of the last crawl that found the vacancy in the listing of its broker
+    @JsonIgnore
+    private LocalDateTime lastSeen;
+    // Complete crawls of the broker in a row that did not list the vacancy, null for none
+    @JsonIgnore
+    private Integer missedCrawls;
+    // When the LivenessChecker last requested the URL of the vacancy, null for never
+    @JsonIgnore
+    private LocalDateTime lastCheckedAt;
+    @JsonIgnore
+    @Enumerated(EnumType.STRING)
+    @Column(length = 10)
+    private Liveness lastCheckOutcome;
+
+    // Skills occurring in the about, tagged by SkillTagger when the vacancy is saved
+    @JsonIgnore
+    @ToString.Exclude
+    @Builder.Default
+    @ManyToMany(fetch = FetchType.LAZY)
+    @JoinTable(name = "vacancy_skill",
+            joinColumns = @JoinColumn(name = "vacancy_id"),
+            inverseJoinColumns = @JoinColumn(name = "skill_id"),
+            indexes = { @Index(name = "vacancy_skill_skill_idx", columnList = "skill_id") })
+    private Set<Skill> skills = new HashSet<>();
+
     public boolean hasLocation() {
         return this.location != null;
     }
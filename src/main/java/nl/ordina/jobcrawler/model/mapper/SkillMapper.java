@@ -0,0 +1,31 @@
+package nl.ordina.jobcrawler.model.mapper;
+
+import nl.ordina.jobcrawler.model.Skill;
+import nl.ordina.jobcrawler.payload.SkillDTO;
+import org.springframework.stereotype.Component;
+
+/**
+ * Maps between Skill and SkillDTO for the skill endpoints.
+ */
+@Component
+public class SkillMapper {
+
+    /**
+     * @param skillDTO The DTO to map.
+     * @return A new skill with the id and name of the DTO.
+     */
+    public Skill toSkill(SkillDTO skillDTO) {
+        return new Skill(skillDTO.getId(), skillDTO.getName());
+    }
+
+    /**
+     * @param skill The skill to map.
+     * @return A new DTO with the id and name of the skill.
+     */
+    public SkillDTO toSkillDTO(Skill skill) {
+        SkillDTO skillDTO = new SkillDTO();
+        skillDTO.setId(skill.getId());
+        skillDTO.setName(skill.getName());
+        return skillDTO;
+    }
+}
@@ -0,0 +1,67 @@
+package nl.ordina.jobcrawler.model.mapper;
+
+import nl.ordina.jobcrawler.model.Location;
+import nl.ordina.jobcrawler.model.Vacancy;
+import nl.ordina.jobcrawler.payload.VacancyDTO;
+import org.springframework.stereotype.Component;
+
+/**
+ * Maps between Vacancy and VacancyDTO field by field, for every scraped vacancy and the create endpoint. The fields are
+ * the ones the two classes have in common, as ModelMapper matched them; the location is copied, not shared.
+ */
+@Component
+public class VacancyMapper {
+
+    /**
+     * Creates a vacancy from a DTO, without skills. The locationString and distance of the DTO are not stored.
+     *
+     * @param vacancyDTO The DTO to map.
+     * @return The new vacancy.
+     */
+    public Vacancy toVacancy(VacancyDTO vacancyDTO) {
+        Vacancy vacancy = new Vacancy();
+        vacancy.setId(vacancyDTO.getId());
+        vacancy.setVacancyURL(vacancyDTO.getVacancyURL());
+        vacancy.setTitle(vacancyDTO.getTitle());
+        vacancy.setBroker(vacancyDTO.getBroker());
+        vacancy.setVacancyNumber(vacancyDTO.getVacancyNumber());
+        vacancy.setHours(vacancyDTO.getHours());
+        vacancy.setSalary(vacancyDTO.getSalary());
+        vacancy.setPostingDate(vacancyDTO.getPostingDate());
+        vacancy.setAbout(vacancyDTO.getAbout());
+        vacancy.setCompany(vacancyDTO.getCompany());
+        vacancy.setLocation(copy(vacancyDTO.getLocation()));
+        return vacancy;
+    }
+
+    /**
+     * Creates a DTO from a vacancy, without locationString and distance.
+     *
+     * @param vacancy The vacancy to map.
+     * @return The new DTO.
+     */
+    public VacancyDTO toVacancyDTO(Vacancy vacancy) {
+        VacancyDTO vacancyDTO = new VacancyDTO();
+        vacancyDTO.setId(vacancy.getId());
+        vacancyDTO.setVacancyURL(vacancy.getVacancyURL());
+        vacancyDTO.setTitle(vacancy.getTitle());
+        vacancyDTO.setBroker(vacancy.getBroker());
+        vacancyDTO.setVacancyNumber(vacancy.getVacancyNumber());
+        vacancyDTO.setHours(vacancy.getHours());
+        vacancyDTO.setSalary(vacancy.getSalary());
+        vacancyDTO.setPostingDate(vacancy.getPostingDate());
+        vacancyDTO.setAbout(vacancy.getAbout());
+        vacancyDTO.setCompany(vacancy.getCompany());
+        vacancyDTO.setLocation(copy(vacancy.getLocation()));
+        return vacancyDTO;
+    }
+
+    private static Location copy(Location location) {
+        if (location == null) {
+            return null;
+        }
+        Location copy = new Location(location.getName(), location.getLat(), location.getLon());
+        copy.setId(location.getId());
+        return copy;
+    }
+}
@@ -0,0 +1,93 @@
+package nl.ordina.jobcrawler.payload;
+
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Position in the results of a search, after the last vacancy of a page. The next page continues from its sort value
+ * and id instead of skipping an offset, so it costs the same as the first page and vacancies saved in the meantime do
+ * not shift the pages. Clients get the cursor as an opaque token.
+ */
+@Getter
+public class SearchCursor {
+
+    public static final List<String> SORTS = List.of("postingDate", "title", "location.name");
+
+    private static final String SEPARATOR = ",";
+    private static final String NULL_VALUE = "-";
+    private static final String VALUE_PREFIX = "=";
+
+    private final String sort;
+    private final String dir;
+    private final UUID id;
+    // Sort value of the vacancy, postingDate as ISO date-time
+    private final String value;
+
+    public SearchCursor(String sort, String dir, UUID id, String value) {
+        this.sort = sort;
+        this.dir = dir;
+        this.id = id;
+        this.value = value;
+    }
+
+    /**
+     * Returns the cursor after a vacancy.
+     *
+     * @param vacancy The last vacancy of a page.
+     * @param sort    Sorting field and direction of the search.
+     * @return The cursor of the next page.
+     */
+    public static SearchCursor after(VacancyListItemDTO vacancy, String[] sort) {
+        String value;
+        switch (sort[0]) {
+            case "postingDate":
+                value = vacancy.getPostingDate() == null ? null : vacancy.getPostingDate().toString();
+                break;
+            case "title":
+                value = vacancy.getTitle();
+                break;
+            default:
+                value = vacancy.getLocation() == null ? null : vacancy.getLocation().getName();
+                break;
+        }
+        return new SearchCursor(sort[0], sort[1], vacancy.getId(), value);
+    }
+
+    /**
+     * Decodes the token of a cursor.
+     *
+     * @param token The token as returned by {@link #encode}.
+     * @param sort  Sorting field and direction of the search, which have to be those of the cursor.
+     * @return The cursor.
+     * @throws IllegalArgumentException if the token is not a cursor of the sort.
+     */
+    public static SearchCursor decode(String token, String[] sort) {
+        String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split(SEPARATOR, 4);
+        if (parts.length != 4 || !parts[0].equals(sort[0]) || !parts[1].equals(sort[1])
+                || !(parts[3].equals(NULL_VALUE) || parts[3].startsWith(VALUE_PREFIX))) {
+            throw new IllegalArgumentException("Not a cursor of this search: " + token);
+        }
+        String value = parts[3].equals(NULL_VALUE) ? null : parts[3].substring(VALUE_PREFIX.length());
+        if (value != null && parts[0].equals("postingDate")) {
+            LocalDateTime.parse(value);
+        }
+        return new SearchCursor(parts[0], parts[1], UUID.fromString(parts[2]), value);
+    }
+
+    /**
+     * @return The cursor as an opaque token for an URL.
+     */
+    public String encode() {
+        String cursor = String.join(SEPARATOR, sort, dir, id.toString(), value == null ? NULL_VALUE : VALUE_PREFIX + value);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static boolean supports(String sort) {
+        return SORTS.contains(sort);
+    }
+}
@@ -0,0 +1,41 @@
+package nl.ordina.jobcrawler.payload;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Number of vacancies matching a search per skill, broker, location and posting week. Skills, brokers and locations
+ * hold the most frequent values, most frequent first; posting weeks are keyed by the date of their Monday, in order.
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class SearchFacets {
+
+    public static final int MAX_VALUES = 25;
+
+    private Map<String, Long> skills;
+    private Map<String, Long> brokers;
+    private Map<String, Long> locations;
+    private Map<String, Long> postingWeeks;
+
+    /**
+     * Returns the most frequent values, most frequent first and by name when the counts are equal.
+     *
+     * @param counts The number of vacancies per value.
+     * @return At most MAX_VALUES of the counts, in order.
+     */
+    public static Map<String, Long> mostFrequent(Map<String, Long> counts) {
+        Map<String, Long> mostFrequent = new LinkedHashMap<>();
+        counts.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .limit(MAX_VALUES)
+                .forEach(count -> mostFrequent.put(count.getKey(), count.getValue()));
+        return mostFrequent;
+    }
+
+}
@@ -14,6 +14,7 @@ public class SearchRequest {
 
     private String keywords;
     private Set<String> skills;
+    private Set<String> brokers;
 
     private LocalDateTime fromDate;
     private LocalDateTime toDate;
@@ -7,9 +7,12 @@ import java.util.List;
 @Data
 public class SearchResult {
 
-    private List<VacancyDTO> vacancies;
+    private List<VacancyListItemDTO> vacancies;
     private int currentPage;
     private long totalItems;
     private int totalPages;
+    private SearchFacets facets;
+    // Token of the next page when paging with a cursor, null on the last page
+    private String nextCursor;
 
 }
@@ -0,0 +1,56 @@
+package nl.ordina.jobcrawler.payload;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+import nl.ordina.jobcrawler.model.Location;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * A vacancy in the search results, with the columns the list shows and without the about, which only the vacancy
+ * itself (/vacancies/{id}) returns. Searches select these columns instead of the Vacancy entity.
+ */
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+public class VacancyListItemDTO {
+
+    private UUID id;
+    private String vacancyURL;
+    private String title;
+    private String broker;
+    private String company;
+    private Integer hours;
+    private String salary;
+    @JsonFormat(timezone = "Europe/Amsterdam", pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime postingDate;
+    private Location location;
+    private double distance;
+
+    /**
+     * Creates the list item from the selected columns, in the order of VacancyCriteriaQuery and the JPQL constructor
+     * expression of VacancyRepository. The location columns are null for a vacancy without a location.
+     */
+    public VacancyListItemDTO(UUID id, String vacancyURL, String title, String broker, String company, Integer hours,
+                              String salary, LocalDateTime postingDate, UUID locationId, String locationName,
+                              Double lat, Double lon) {
+        this.id = id;
+        this.vacancyURL = vacancyURL;
+        this.title = title;
+        this.broker = broker;
+        this.company = company;
+        this.hours = hours;
+        this.salary = salary;
+        this.postingDate = postingDate;
+        if (locationId != null) {
+            this.location = new Location(locationName, lat, lon);
+            this.location.setId(locationId);
+        }
+    }
+
+}
@@ -0,0 +1,10 @@
+package nl.ordina.jobcrawler.repo;
+
+import nl.ordina.jobcrawler.model.BrokerLifetime;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface BrokerLifetimeRepository extends JpaRepository<BrokerLifetime, String> {
+
+}
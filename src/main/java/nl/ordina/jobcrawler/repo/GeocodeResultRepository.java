@@ -0,0 +1,28 @@
+package nl.ordina.jobcrawler.repo;
+
+import nl.ordina.jobcrawler.model.GeocodeResult;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface GeocodeResultRepository extends JpaRepository<GeocodeResult, UUID> {
+
+    Optional<GeocodeResult> findByQuery(String query);
+
+    /**
+     * Deletes the location strings the geocoder could not find that were asked before the specified time.
+     */
+    @Modifying
+    @Transactional
+    @Query("delete from GeocodeResult g where (g.lat is null or g.lon is null) and g.fetchedAt < :before")
+    int deleteNotFoundFetchedBefore(@Param("before") LocalDateTime before);
+
+}
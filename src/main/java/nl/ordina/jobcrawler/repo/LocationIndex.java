@@ -0,0 +1,133 @@
+package nl.ordina.jobcrawler.repo;
+
+import nl.ordina.jobcrawler.model.Location;
+import nl.ordina.jobcrawler.util.GeoUtils;
+import nl.ordina.jobcrawler.util.KdTree;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * In-memory spatial index of all Location rows, for radius searches without a distance calculation per row in the
+ * database. The index is read from the database on first use and kept up to date by LocationService, which calls
+ * {@link #put} and {@link #remove} for every saved and deleted location. Every change builds a new snapshot, lookups
+ * read the current snapshot without locking.
+ */
+@Component
+public class LocationIndex {
+
+    // Rounding margin between the chord distance of the k-d tree and the haversine distance of getDistance
+    private static final double RADIUS_MARGIN_KM = 1e-6;
+
+    private final LocationRepository locationRepository;
+    private volatile Snapshot snapshot;
+
+    public LocationIndex(LocationRepository locationRepository) {
+        this.locationRepository = locationRepository;
+    }
+
+    /**
+     * Returns the locations within the radius of the specified coordinates, with the same distance as the getDistance
+     * database function.
+     *
+     * @param lat      Latitude of the center.
+     * @param lon      Longitude of the center.
+     * @param radiusKm Radius in kilometers.
+     * @return The distance in kilometers by location id.
+     */
+    public Map<UUID, Double> findWithinRadius(double lat, double lon, double radiusKm) {
+        Snapshot current = getSnapshot();
+        Map<UUID, Double> distances = new HashMap<>();
+        current.tree.withinRadius(lat, lon, radiusKm + RADIUS_MARGIN_KM, i -> {
+            double distance = GeoUtils.distance(lat, lon, current.lats[i], current.lons[i]);
+            if (distance <= radiusKm) {
+                distances.put(current.ids[i], distance);
+            }
+        });
+        return distances;
+    }
+
+    /**
+     * Returns the locations within the radius of the specified coordinates, nearest first. Locations at the same
+     * distance are ordered by id, so the order is the same on every call.
+     *
+     * @param lat      Latitude of the center.
+     * @param lon      Longitude of the center.
+     * @param radiusKm Radius in kilometers, infinite for all locations.
+     * @return The ids of the locations, nearest first.
+     */
+    public List<UUID> findNearestFirst(double lat, double lon, double radiusKm) {
+        Map<UUID, Double> distances = findWithinRadius(lat, lon, radiusKm);
+        List<UUID> ids = new ArrayList<>(distances.keySet());
+        ids.sort(Comparator.comparing((UUID id) -> distances.get(id)).thenComparing(Comparator.naturalOrder()));
+        return ids;
+    }
+
+    /**
+     * Adds a location to the index, or moves it if its coordinates changed.
+     *
+     * @param location The saved location.
+     */
+    public synchronized void put(Location location) {
+        if (location.getId() != null) {
+            Map<UUID, double[]> locations = getSnapshot().toMap();
+            locations.put(location.getId(), location.getCoord());
+            snapshot = new Snapshot(locations);
+        }
+    }
+
+    /**
+     * Removes a location from the index.
+     *
+     * @param id ID of the deleted location.
+     */
+    public synchronized void remove(UUID id) {
+        Map<UUID, double[]> locations = getSnapshot().toMap();
+        locations.remove(id);
+        snapshot = new Snapshot(locations);
+    }
+
+    private Snapshot getSnapshot() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                if (snapshot == null) {
+                    Map<UUID, double[]> locations = new HashMap<>();
+                    locationRepository.findAll().forEach(location -> locations.put(location.getId(), location.getCoord()));
+                    snapshot = new Snapshot(locations);
+                }
+                current = snapshot;
+            }
+        }
+        return current;
+    }
+
+    private static final class Snapshot {
+        private final UUID[] ids;
+        private final double[] lats;
+        private final double[] lons;
+        private final KdTree tree;
+
+        private Snapshot(Map<UUID, double[]> locations) {
+            ids = new UUID[locations.size()];
+            lats = new double[ids.length];
+            lons = new double[ids.length];
+            int i = 0;
+            for (Map.Entry<UUID, double[]> location : locations.entrySet()) {
+                ids[i] = location.getKey();
+                lats[i] = location.getValue()[0];
+                lons[i] = location.getValue()[1];
+                i++;
+            }
+            tree = new KdTree(lats, lons);
+        }
+
+        private Map<UUID, double[]> toMap() {
+            Map<UUID, double[]> locations = new HashMap<>();
+            for (int i = 0; i < ids.length; i++) {
+                locations.put(ids[i], new double[]{lats[i], lons[i]});
+            }
+            return locations;
+        }
+    }
+}
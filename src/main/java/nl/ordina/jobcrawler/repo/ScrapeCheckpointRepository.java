@@ -0,0 +1,16 @@
+package nl.ordina.jobcrawler.repo;
+
+import nl.ordina.jobcrawler.model.ScrapeCheckpoint;
+import nl.ordina.jobcrawler.model.ScrapeRun;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface ScrapeCheckpointRepository extends JpaRepository<ScrapeCheckpoint, UUID> {
+
+    Optional<ScrapeCheckpoint> findByRunAndBroker(ScrapeRun run, String broker);
+
+}
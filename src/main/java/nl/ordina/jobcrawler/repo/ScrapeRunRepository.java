@@ -0,0 +1,20 @@
+package nl.ordina.jobcrawler.repo;
+
+import nl.ordina.jobcrawler.model.ScrapeRun;
+import nl.ordina.jobcrawler.util.ScrapeRunStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface ScrapeRunRepository extends JpaRepository<ScrapeRun, UUID> {
+
+    Optional<ScrapeRun> findFirstByStatusOrderByStartedAtDesc(ScrapeRunStatus status);
+
+    List<ScrapeRun> findByOrderByStartedAtDesc(Pageable pageable);
+
+}
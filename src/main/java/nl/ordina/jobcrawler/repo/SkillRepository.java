@@ -2,9 +2,15 @@ package nl.ordina.jobcrawler.repo;
 
 import nl.ordina.jobcrawler.model.Skill;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
 @Repository
@@ -12,4 +18,29 @@ public interface SkillRepository extends JpaRepository<Skill, UUID> {
 
     List<Skill> findByOrderByNameAsc();
 
+    @Query("select s from Vacancy v join v.skills s where v.id = :vacancyId")
+    Set<Skill> findByVacancyId(@Param("vacancyId") UUID vacancyId);
+
+    @Query("select lower(s.name) from Skill s where lower(s.name) in :names")
+    Set<String> findLowerCaseNamesIn(@Param("names") Collection<String> names);
+
+    @Query(value = "select count(*) from vacancy_skill", nativeQuery = true)
+    long countVacancySkills();
+
+    /**
+     * Tags the specified vacancies with the skill, skipping those already tagged. Ids are passed as strings like they
+     * are stored.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "insert into vacancy_skill (vacancy_id, skill_id) select v.id, :skillId from vacancy v " +
+            "where v.id in :vacancyIds and not exists " +
+            "(select 1 from vacancy_skill vs where vs.vacancy_id = v.id and vs.skill_id = :skillId)", nativeQuery = true)
+    int tagVacancies(@Param("skillId") String skillId, @Param("vacancyIds") Collection<String> vacancyIds);
+
+    @Modifying
+    @Transactional
+    @Query(value = "delete from vacancy_skill where skill_id = :skillId", nativeQuery = true)
+    int untagVacancies(@Param("skillId") String skillId);
+
 }
@@ -2,11 +2,17 @@ package nl.ordina.jobcrawler.repo;
 
 import nl.ordina.jobcrawler.model.Location;
 import nl.ordina.jobcrawler.model.Location_;
+import nl.ordina.jobcrawler.model.Skill_;
 import nl.ordina.jobcrawler.model.Vacancy;
 import nl.ordina.jobcrawler.model.Vacancy_;
+import nl.ordina.jobcrawler.payload.SearchCursor;
+import nl.ordina.jobcrawler.payload.SearchFacets;
 import nl.ordina.jobcrawler.payload.SearchRequest;
-import nl.ordina.jobcrawler.payload.VacancyDTO;
-import org.modelmapper.ModelMapper;
+import nl.ordina.jobcrawler.payload.VacancyListItemDTO;
+import nl.ordina.jobcrawler.util.GeoUtils;
+import org.hibernate.jpa.QueryHints;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Component;
 
@@ -20,9 +26,21 @@ import javax.persistence.criteria.JoinType;
 import javax.persistence.criteria.Order;
 import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Selection;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Querying the database using a CriteriaQuery
@@ -31,13 +49,20 @@ import java.util.Optional;
 public class VacancyCriteriaQuery {
 
     private static final String LIKE_QUERY_FORMAT = "%%%s%%";
+    private static final String TOTAL_ALIAS = "total";
+    private static final int STREAM_FETCH_SIZE = 500;
+    // Locations counted per query of the nearest-first walk, doubling up to the maximum while the page is not full
+    private static final int NEAREST_BATCH_SIZE = 64;
+    private static final int MAX_NEAREST_BATCH_SIZE = 1024;
 
     private final EntityManager entityManager;
-    private final ModelMapper modelMapper;
+    private final LocationIndex locationIndex;
+    private final SkillRepository skillRepository;
 
-    public VacancyCriteriaQuery(EntityManager entityManager, ModelMapper modelMapper) {
+    public VacancyCriteriaQuery(EntityManager entityManager, LocationIndex locationIndex, SkillRepository skillRepository) {
         this.entityManager = entityManager;
-        this.modelMapper = modelMapper;
+        this.locationIndex = locationIndex;
+        this.skillRepository = skillRepository;
     }
 
     /**
@@ -50,7 +75,7 @@ public class VacancyCriteriaQuery {
         CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
         CriteriaQuery<Long> countQuery = criteriaBuilder.createQuery(Long.class);
         Root<Vacancy> rootCount = countQuery.from(Vacancy.class);
-        Join<Vacancy, Location> locationJoinRoot = rootCount.join(Vacancy_.location, JoinType.LEFT);
+        Join<Vacancy, Location> locationJoinRoot = rootCount.join(Vacancy_.location, getLocationJoinType(searchRequest));
 
         List<Predicate> allPredicates = getPredicates(searchRequest, rootCount, locationJoinRoot, criteriaBuilder);
 
@@ -65,60 +90,430 @@ public class VacancyCriteriaQuery {
      * @param searchRequest - request as entered by a user
      * @param paging        - condition of which page that needs to be returned
      * @param sort          - sorting by field and direction
-     * @return Small list (based on paging) of VacancyDTO with matching vacancies
+     * @return Small list (based on paging) of VacancyListItemDTO with matching vacancies
      */
-    public List<VacancyDTO> getMatchingVacancies(final SearchRequest searchRequest, Pageable paging, String[] sort) {
+    public List<VacancyListItemDTO> getMatchingVacancies(final SearchRequest searchRequest, Pageable paging, String[] sort) {
+        List<Tuple> tuples = isDistanceSort(searchRequest, sort)
+                ? getNearestTuples(searchRequest, paging, sort[1].equals("asc"))
+                : getMatchingTuples(searchRequest, paging, sort, false);
+        return tuples.stream()
+                .map(t -> toListItem(t, searchRequest))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Queries the requested vacancies and the amount of vacancies that match the searchRequest at once. The total is
+     * counted by the database with a window function over the rows of the page query, so the predicates are evaluated
+     * once. Only a page past the last one, which has no rows to carry the total, needs a count query, as does a page
+     * sorted by distance, which only reads the vacancies at the locations of the page.
+     *
+     * @param searchRequest - request as entered by a user
+     * @param paging        - condition of which page that needs to be returned
+     * @param sort          - sorting by field and direction
+     * @return Page of VacancyListItemDTO with matching vacancies and their total
+     */
+    public Page<VacancyListItemDTO> getMatchingPage(final SearchRequest searchRequest, Pageable paging, String[] sort) {
+        if (isDistanceSort(searchRequest, sort)) {
+            return new PageImpl<>(getMatchingVacancies(searchRequest, paging, sort), paging, totalMatchingVacancies(searchRequest));
+        }
+        List<Tuple> tuples = getMatchingTuples(searchRequest, paging, sort, true);
+        List<VacancyListItemDTO> vacancyDTOList = tuples.stream()
+                .map(t -> toListItem(t, searchRequest))
+                .collect(Collectors.toList());
+        long total;
+        if (!tuples.isEmpty()) {
+            total = tuples.get(0).get(TOTAL_ALIAS, Number.class).longValue();
+        } else {
+            total = paging.getPageNumber() == 0 ? 0 : totalMatchingVacancies(searchRequest);
+        }
+        return new PageImpl<>(vacancyDTOList, paging, total);
+    }
+
+    /**
+     * Queries the vacancies of the page, with the total amount of matching vacancies in every row if withTotal is set
+     */
+    private List<Tuple> getMatchingTuples(SearchRequest searchRequest, Pageable paging, String[] sort, boolean withTotal) {
         CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
         CriteriaQuery<Tuple> query = criteriaBuilder.createTupleQuery();
         Root<Vacancy> root = query.from(Vacancy.class);
-        Join<Vacancy, Location> locationJoin = root.join(Vacancy_.location, JoinType.LEFT);
+        Join<Vacancy, Location> locationJoin = root.join(Vacancy_.location, getLocationJoinType(searchRequest));
 
-        if (searchRequest.getDistance() != null) {
-            query.multiselect(criteriaBuilder.function(
-                    "getDistance", Double.class, criteriaBuilder.literal(searchRequest.getCoord()[0]), criteriaBuilder.literal(searchRequest.getCoord()[1]),
-                    locationJoin.get(Location_.lat), locationJoin.get(Location_.lon)
-            ).alias("dist"), root);
-        } else {
-            query.multiselect(root);
+        List<Selection<?>> selections = getListItemSelections(root, locationJoin);
+        if (withTotal) {
+            // count_over renders as count(*) over (), see SqlFunctionsMetadataBuilderContributor
+            selections.add(criteriaBuilder.function("count_over", Long.class).alias(TOTAL_ALIAS));
         }
+        query.multiselect(selections);
 
-        List<VacancyDTO> vacancyDTOList = new ArrayList<>();
         List<Predicate> predicateList = getPredicates(searchRequest, root, locationJoin, criteriaBuilder);
 
         query.where(criteriaBuilder.and(predicateList.toArray(new Predicate[0])));
 
-        Expression<String> expression;
+        boolean ascending = sort[1].equals("asc");
+        List<Order> orders = new ArrayList<>();
         switch (sort[0]) {
             case "distance":
-                expression = criteriaBuilder.literal("1");
+                // Only without coordinates, a search with coordinates is sorted by getNearestTuples
+                orders.add(criteriaBuilder.desc(root.get(Vacancy_.postingDate)));
+                break;
+            case "relevance":
+                Optional.ofNullable(searchRequest.getKeywords()).filter(keywords -> !keywords.isBlank()).ifPresent(keywords ->
+                        orders.add(criteriaBuilder.desc(getFullTextFunction("fts_rank", Double.class, keywords, root, criteriaBuilder))));
+                orders.add(criteriaBuilder.desc(root.get(Vacancy_.postingDate)));
                 break;
             case "location.name":
-                expression = locationJoin.get("name");
+                orders.add(ascending ? criteriaBuilder.asc(locationJoin.get("name")) : criteriaBuilder.desc(locationJoin.get("name")));
                 break;
             default:
-                expression = root.get(sort[0]);
+                orders.add(ascending ? criteriaBuilder.asc(root.get(sort[0])) : criteriaBuilder.desc(root.get(sort[0])));
                 break;
         }
-
-        Order order = sort[1].equals("asc") ? criteriaBuilder.asc(expression) : criteriaBuilder.desc(expression);
-        query.orderBy(order);
+        // Unique last ordering, so rows with equal values keep their place from page to page
+        orders.add(criteriaBuilder.asc(root.get(Vacancy_.id)));
+        query.orderBy(orders);
 
         try {
-            List<Tuple> list = entityManager.createQuery(query)
+            return entityManager.createQuery(query)
                     .setFirstResult(paging.getPageNumber() * paging.getPageSize())
                     .setMaxResults(paging.getPageSize())
                     .getResultList();
-            for (Tuple t : list) {
-                VacancyDTO vacancy = modelMapper.map(t.get(root), VacancyDTO.class);
-                if (searchRequest.getDistance() != null) {
-                    vacancy.setDistance((Double) t.get("dist"));
-                }
-                vacancyDTOList.add(vacancy);
-            }
         } catch (Exception e) {
             e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Queries the vacancies that come after the cursor, without an offset: the cursor's sort value and id are part of
+     * the WHERE clause, so the database only sorts the vacancies after it. Vacancies without a sort value come last
+     * when ascending and first when descending, as in PostgreSQL, but explicitly so every database pages the same way.
+     *
+     * @param searchRequest - request as entered by a user
+     * @param sort          - sorting by one of the {@link SearchCursor#SORTS} and direction
+     * @param after         - cursor after the last vacancy of the previous page, or null for the first page
+     * @param limit         - maximum amount of vacancies to return
+     * @return List of VacancyListItemDTO with matching vacancies after the cursor
+     */
+    public List<VacancyListItemDTO> getMatchingVacanciesAfter(final SearchRequest searchRequest, String[] sort, SearchCursor after, int limit) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = criteriaBuilder.createTupleQuery();
+        Root<Vacancy> root = query.from(Vacancy.class);
+        Join<Vacancy, Location> locationJoin = root.join(Vacancy_.location, getLocationJoinType(searchRequest));
+        boolean ascending = sort[1].equals("asc");
+        Expression<? extends Comparable<?>> field;
+        switch (sort[0]) {
+            case "postingDate":
+                field = root.get(Vacancy_.postingDate);
+                break;
+            case "title":
+                field = root.get(Vacancy_.title);
+                break;
+            default:
+                field = locationJoin.get(Location_.name);
+                break;
+        }
+
+        List<Predicate> predicateList = getPredicates(searchRequest, root, locationJoin, criteriaBuilder);
+        Optional.ofNullable(after).ifPresent(cursor -> predicateList.add(getAfterPredicate(cursor, ascending, field,
+                root.get(Vacancy_.id), criteriaBuilder)));
+
+        Expression<Integer> isNull = criteriaBuilder.<Integer>selectCase().when(field.isNull(), 1).otherwise(0);
+        query.multiselect(getListItemSelections(root, locationJoin));
+        query.where(criteriaBuilder.and(predicateList.toArray(new Predicate[0])));
+        query.orderBy(ascending ? criteriaBuilder.asc(isNull) : criteriaBuilder.desc(isNull),
+                ascending ? criteriaBuilder.asc(field) : criteriaBuilder.desc(field),
+                criteriaBuilder.asc(root.get(Vacancy_.id)));
+
+        return entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .getResultList().stream()
+                .map(t -> toListItem(t, searchRequest))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Streams the vacancies that match the searchRequest with their location, in no particular order so the database
+     * returns the first rows without sorting them all. The rows are read through a forward-only cursor in batches of
+     * {@link #STREAM_FETCH_SIZE}, and every vacancy is detached once read, so the persistence context does not grow
+     * with the result. Has to be called and closed within a transaction, without which PostgreSQL reads the whole
+     * result at once.
+     *
+     * @param searchRequest - request as entered by a user
+     * @return Stream of the matching vacancies
+     */
+    @SuppressWarnings("unchecked")
+    public Stream<Vacancy> streamMatchingVacancies(final SearchRequest searchRequest) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Vacancy> query = criteriaBuilder.createQuery(Vacancy.class);
+        Root<Vacancy> root = query.from(Vacancy.class);
+        // A fetch is a join Hibernate can filter on as well, the location is read in the same row as the vacancy
+        Join<Vacancy, Location> locationJoin = (Join<Vacancy, Location>) root.fetch(Vacancy_.location, getLocationJoinType(searchRequest));
+
+        query.select(root);
+        query.where(criteriaBuilder.and(getPredicates(searchRequest, root, locationJoin, criteriaBuilder).toArray(new Predicate[0])));
+
+        return entityManager.createQuery(query)
+                .setHint(QueryHints.HINT_FETCH_SIZE, STREAM_FETCH_SIZE)
+                .setHint(QueryHints.HINT_READONLY, true)
+                .getResultStream()
+                .map(vacancy -> {
+                    entityManager.detach(vacancy);
+                    return vacancy;
+                });
+    }
+
+    /**
+     * Creates the predicate that keeps the vacancies after the cursor in the order of getMatchingVacanciesAfter, where
+     * a missing sort value is larger than any other and the id breaks ties ascending
+     */
+    @SuppressWarnings("unchecked")
+    private Predicate getAfterPredicate(SearchCursor cursor, boolean ascending, Expression<? extends Comparable<?>> field,
+                                        Expression<UUID> id, CriteriaBuilder cb) {
+        Predicate sameValueAfterId;
+        if (cursor.getValue() == null) {
+            sameValueAfterId = cb.and(field.isNull(), cb.greaterThan(id, cursor.getId()));
+            return ascending ? sameValueAfterId : cb.or(sameValueAfterId, field.isNotNull());
+        }
+        Expression<Comparable<Object>> comparable = (Expression<Comparable<Object>>) field;
+        Comparable<Object> value = (Comparable<Object>) (Comparable<?>) (cursor.getSort().equals("postingDate")
+                ? LocalDateTime.parse(cursor.getValue()) : cursor.getValue());
+        sameValueAfterId = cb.and(cb.equal(field, value), cb.greaterThan(id, cursor.getId()));
+        return ascending
+                ? cb.or(cb.greaterThan(comparable, value), sameValueAfterId, field.isNull())
+                : cb.or(cb.lessThan(comparable, value), sameValueAfterId);
+    }
+
+    /**
+     * Creates the selection of the columns of a VacancyListItemDTO, in the order of its constructor. The about and the
+     * rest of the vacancy are not read for the search results.
+     */
+    private List<Selection<?>> getListItemSelections(Root<Vacancy> root, Join<Vacancy, Location> locationJoin) {
+        return new ArrayList<>(List.of(root.get(Vacancy_.id), root.get(Vacancy_.vacancyURL), root.get(Vacancy_.title),
+                root.get(Vacancy_.broker), root.get(Vacancy_.company), root.get(Vacancy_.hours), root.get(Vacancy_.salary),
+                root.get(Vacancy_.postingDate), locationJoin.get(Location_.id), locationJoin.get(Location_.name),
+                locationJoin.get(Location_.lat), locationJoin.get(Location_.lon)));
+    }
+
+    private VacancyListItemDTO toListItem(Tuple t, SearchRequest searchRequest) {
+        VacancyListItemDTO vacancy = new VacancyListItemDTO(t.get(0, UUID.class), t.get(1, String.class),
+                t.get(2, String.class), t.get(3, String.class), t.get(4, String.class), t.get(5, Integer.class),
+                t.get(6, String.class), t.get(7, LocalDateTime.class), t.get(8, UUID.class), t.get(9, String.class),
+                t.get(10, Double.class), t.get(11, Double.class));
+        if (searchRequest.getCoord() != null && vacancy.getLocation() != null) {
+            vacancy.setDistance(GeoUtils.distance(searchRequest.getCoord()[0], searchRequest.getCoord()[1],
+                    vacancy.getLocation().getLat(), vacancy.getLocation().getLon()));
+        }
+        return vacancy;
+    }
+
+    /**
+     * Counts the vacancies that match the searchRequest per skill, broker, location and posting week, with two GROUP BY
+     * queries: one per combination of broker, location and posting week, which are added up per facet, and one per
+     * skill, as a vacancy has several. The posting week is grouped by the database, so a row is a combination and not
+     * a vacancy. Used while the VacancySearchIndex is not available.
+     *
+     * @param searchRequest - request as entered by a user
+     * @return The facet counts of the matching vacancies
+     */
+    public SearchFacets getFacets(final SearchRequest searchRequest) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = criteriaBuilder.createTupleQuery();
+        Root<Vacancy> root = query.from(Vacancy.class);
+        Join<Vacancy, Location> locationJoin = root.join(Vacancy_.location, getLocationJoinType(searchRequest));
+        Expression<String> broker = root.get(Vacancy_.broker);
+        Expression<String> location = locationJoin.get(Location_.name);
+        // posting_week renders as date_trunc('week', ...), see SqlFunctionsMetadataBuilderContributor
+        Expression<LocalDateTime> postingWeek = criteriaBuilder.function("posting_week", LocalDateTime.class,
+                root.get(Vacancy_.postingDate));
+
+        query.multiselect(broker, location, postingWeek, criteriaBuilder.count(root));
+        query.where(criteriaBuilder.and(getPredicates(searchRequest, root, locationJoin, criteriaBuilder).toArray(new Predicate[0])));
+        query.groupBy(broker, location, postingWeek);
+
+        Map<String, Long> brokers = new HashMap<>();
+        Map<String, Long> locations = new HashMap<>();
+        Map<String, Long> postingWeeks = new TreeMap<>();
+        entityManager.createQuery(query).getResultList().forEach(t -> {
+            long count = t.get(3, Long.class);
+            Optional.ofNullable(t.get(0, String.class)).ifPresent(value -> brokers.merge(value, count, Long::sum));
+            Optional.ofNullable(t.get(1, String.class)).ifPresent(value -> locations.merge(value, count, Long::sum));
+            Optional.ofNullable(t.get(2, LocalDateTime.class)).ifPresent(week ->
+                    postingWeeks.merge(week.toLocalDate().toString(), count, Long::sum));
+        });
+        return new SearchFacets(
+                SearchFacets.mostFrequent(countBy(searchRequest, (vacancies, unused) -> vacancies.join(Vacancy_.skills).get(Skill_.name))),
+                SearchFacets.mostFrequent(brokers),
+                SearchFacets.mostFrequent(locations),
+                new LinkedHashMap<>(postingWeeks));
+    }
+
+    /**
+     * Counts the vacancies that match the searchRequest per value of an expression, leaving out null values
+     *
+     * @param searchRequest - request as entered by a user
+     * @param groupBy       - expression to group by, of the vacancy or its location
+     * @return The number of matching vacancies per value
+     */
+    private <T> Map<T, Long> countBy(SearchRequest searchRequest,
+                                     BiFunction<Root<Vacancy>, Join<Vacancy, Location>, Expression<T>> groupBy) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = criteriaBuilder.createTupleQuery();
+        Root<Vacancy> root = query.from(Vacancy.class);
+        Join<Vacancy, Location> locationJoin = root.join(Vacancy_.location, getLocationJoinType(searchRequest));
+        Expression<T> value = groupBy.apply(root, locationJoin);
+
+        List<Predicate> predicateList = getPredicates(searchRequest, root, locationJoin, criteriaBuilder);
+        predicateList.add(criteriaBuilder.isNotNull(value));
+
+        query.multiselect(value, criteriaBuilder.count(root));
+        query.where(criteriaBuilder.and(predicateList.toArray(new Predicate[0])));
+        query.groupBy(value);
+
+        Map<T, Long> counts = new HashMap<>();
+        entityManager.createQuery(query).getResultList().forEach(t -> counts.put(t.get(0, value.getJavaType()), t.get(1, Long.class)));
+        return counts;
+    }
+
+    /**
+     * A sort on distance needs the coordinates of the search, without them the vacancies are sorted newest first
+     */
+    private static boolean isDistanceSort(SearchRequest searchRequest, String[] sort) {
+        return sort[0].equals("distance") && searchRequest.getCoord() != null;
+    }
+
+    /**
+     * Queries the vacancies of the page sorted by distance, by walking the locations of the LocationIndex nearest first
+     * (farthest first when descending) within the search radius, or all of them if there is none. The matching
+     * vacancies per location are counted for a batch of locations at a time, until the locations that hold the page are
+     * found, and only the vacancies at those locations are queried, ordered by their place in the walk and then newest
+     * first. The database thus never orders the whole table by distance, and a first page usually takes a single batch.
+     * Vacancies without a location come last in either direction.
+     *
+     * @param searchRequest - request as entered by a user, with coordinates
+     * @param paging        - condition of which page that needs to be returned
+     * @param ascending     - whether the nearest vacancies come first
+     * @return The tuples of the vacancies of the page
+     */
+    private List<Tuple> getNearestTuples(SearchRequest searchRequest, Pageable paging, boolean ascending) {
+        double[] coord = searchRequest.getCoord();
+        boolean radiusSearch = getLocationJoinType(searchRequest) == JoinType.INNER;
+        List<UUID> walk = locationIndex.findNearestFirst(coord[0], coord[1],
+                radiusSearch ? searchRequest.getDistance() : Double.POSITIVE_INFINITY);
+        if (!ascending) {
+            Collections.reverse(walk);
+        }
+
+        int size = paging.getPageSize();
+        // Rows before the page at the locations passed so far, and the locations of the page with their rows
+        long skip = paging.getOffset();
+        List<UUID> pageLocations = new ArrayList<>();
+        long firstRow = 0;
+        long rows = 0;
+        int from = 0;
+        for (int batchSize = NEAREST_BATCH_SIZE; from < walk.size() && rows - firstRow < size;
+             batchSize = Math.min(2 * batchSize, MAX_NEAREST_BATCH_SIZE)) {
+            List<UUID> batch = walk.subList(from, Math.min(from + batchSize, walk.size()));
+            Map<UUID, Long> counts = countByLocation(searchRequest, batch);
+            for (UUID locationId : batch) {
+                long count = counts.getOrDefault(locationId, 0L);
+                if (rows - firstRow >= size) {
+                    break;
+                } else if (pageLocations.isEmpty() && skip >= count) {
+                    skip -= count;
+                } else if (count > 0) {
+                    if (pageLocations.isEmpty()) {
+                        firstRow = skip;
+                        skip = 0;
+                    }
+                    pageLocations.add(locationId);
+                    rows += count;
+                }
+            }
+            from += batch.size();
+        }
+
+        List<Tuple> tuples = new ArrayList<>();
+        if (!pageLocations.isEmpty()) {
+            tuples.addAll(getTuplesAt(searchRequest, pageLocations, firstRow, size));
         }
-        return vacancyDTOList;
+        if (tuples.size() < size && !radiusSearch) {
+            tuples.addAll(getTuplesAt(searchRequest, Collections.emptyList(), skip, size - tuples.size()));
+        }
+        return tuples;
+    }
+
+    /**
+     * Counts the vacancies that match the searchRequest at each of the locations, leaving out locations without any
+     */
+    private Map<UUID, Long> countByLocation(SearchRequest searchRequest, List<UUID> locationIds) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = criteriaBuilder.createTupleQuery();
+        Root<Vacancy> root = query.from(Vacancy.class);
+        Join<Vacancy, Location> locationJoin = root.join(Vacancy_.location);
+        Expression<UUID> locationId = locationJoin.get(Location_.id);
+
+        List<Predicate> predicateList = getPredicates(searchRequest, root, locationJoin, criteriaBuilder);
+        predicateList.add(locationId.in(locationIds));
+
+        query.multiselect(locationId, criteriaBuilder.count(root));
+        query.where(criteriaBuilder.and(predicateList.toArray(new Predicate[0])));
+        query.groupBy(locationId);
+
+        Map<UUID, Long> counts = new HashMap<>();
+        entityManager.createQuery(query).getResultList().forEach(t -> counts.put(t.get(0, UUID.class), t.get(1, Long.class)));
+        return counts;
+    }
+
+    /**
+     * Queries the vacancies that match the searchRequest at the locations, in the order of the locations and newest
+     * first per location. Without locations, the vacancies without a location are queried, newest first.
+     *
+     * @param searchRequest - request as entered by a user
+     * @param locationIds   - the locations in the order of the result, or none for the vacancies without a location
+     * @param first         - number of vacancies to skip
+     * @param max           - maximum amount of vacancies to return
+     * @return The tuples of the vacancies
+     */
+    private List<Tuple> getTuplesAt(SearchRequest searchRequest, List<UUID> locationIds, long first, int max) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = criteriaBuilder.createTupleQuery();
+        Root<Vacancy> root = query.from(Vacancy.class);
+        Join<Vacancy, Location> locationJoin = root.join(Vacancy_.location, locationIds.isEmpty() ? JoinType.LEFT : JoinType.INNER);
+        Expression<UUID> locationId = locationJoin.get(Location_.id);
+
+        List<Predicate> predicateList = getPredicates(searchRequest, root, locationJoin, criteriaBuilder);
+        List<Order> orders = new ArrayList<>();
+        if (locationIds.isEmpty()) {
+            predicateList.add(root.get(Vacancy_.location).isNull());
+        } else {
+            predicateList.add(locationId.in(locationIds));
+            // Every location of the page holds at least one of its vacancies, so there are at most as many as the page size
+            CriteriaBuilder.Case<Integer> rank = criteriaBuilder.selectCase();
+            for (int i = 0; i < locationIds.size(); i++) {
+                rank.when(criteriaBuilder.equal(locationId, locationIds.get(i)), i);
+            }
+            orders.add(criteriaBuilder.asc(rank.otherwise(locationIds.size())));
+        }
+        orders.add(criteriaBuilder.desc(root.get(Vacancy_.postingDate)));
+        orders.add(criteriaBuilder.asc(root.get(Vacancy_.id)));
+
+        query.multiselect(getListItemSelections(root, locationJoin));
+        query.where(criteriaBuilder.and(predicateList.toArray(new Predicate[0])));
+        query.orderBy(orders);
+        return entityManager.createQuery(query)
+                .setFirstResult((int) first)
+                .setMaxResults(max)
+                .getResultList();
+    }
+
+    /**
+     * Creates a call of a full-text search function of data.sql (fts_match or fts_rank) on the title, company and about
+     * of the vacancy
+     */
+    private <T> Expression<T> getFullTextFunction(String function, Class<T> type, String keywords, Root<Vacancy> root,
+                                                  CriteriaBuilder cb) {
+        return cb.function(function, type, root.get(Vacancy_.title), root.get(Vacancy_.company),
+                root.get(Vacancy_.about), cb.literal(keywords));
     }
 
     /**
@@ -141,26 +536,28 @@ public class VacancyCriteriaQuery {
                         .add(cb.like(cb.lower(locationJoin.get(Location_.name)), String
                                 .format(LIKE_QUERY_FORMAT, location.toLowerCase()))));
 
+        // The locations within the radius come from the in-memory index, the database only matches their ids
         optionalProperties.map(SearchRequest::getDistance).filter(dist -> (dist != 0))
                 .ifPresent(dist -> optionalProperties.map(SearchRequest::getCoord).ifPresent(coord -> allPredicates
-                        .add(cb.le(cb
-                                .function("getDistance", Double.class, cb.literal(searchRequest.getCoord()[0]), cb
-                                        .literal(searchRequest.getCoord()[1]), locationJoin
-                                        .get(Location_.lat), locationJoin
-                                        .get(Location_.lon)), dist))));
-
-        optionalProperties.map(SearchRequest::getKeywords).filter(t -> !t.isEmpty())
-                .ifPresent(keywords -> allPredicates.add(cb.or(cb.like(cb.lower(root.get(Vacancy_.about)), String
-                        .format(LIKE_QUERY_FORMAT, keywords.toLowerCase())), cb
-                        .like(cb.lower(root.get(Vacancy_.title)), String
-                                .format(LIKE_QUERY_FORMAT, keywords.toLowerCase())), cb
-                        .like(cb.lower(root.get(Vacancy_.company)), String
-                                .format(LIKE_QUERY_FORMAT, keywords.toLowerCase())))));
-
-        optionalProperties.map(SearchRequest::getSkills).filter(t -> !t.isEmpty()).ifPresent(skills -> allPredicates
-                .add(cb.and(skills.stream()
-                        .map(s -> cb.like(root.get(Vacancy_.about), String.format(LIKE_QUERY_FORMAT, s)))
-                        .toArray(Predicate[]::new))));
+                        .add(getLocationIdPredicate(locationIndex.findWithinRadius(coord[0], coord[1], dist).keySet(),
+                                locationJoin, cb))));
+
+        // Full-text search on the GIN index of data.sql, every word has to occur in the title, company or about
+        optionalProperties.map(SearchRequest::getKeywords).filter(t -> !t.isBlank())
+                .ifPresent(keywords -> allPredicates.add(cb.isTrue(getFullTextFunction("fts_match", Boolean.class,
+                        keywords, root, cb))));
+
+        // A skill of the Skill table is a join on the vacancy_skill tags, any other word is still looked up in the about
+        optionalProperties.map(SearchRequest::getSkills).filter(t -> !t.isEmpty()).ifPresent(skills -> {
+            Set<String> taggedSkills = skillRepository.findLowerCaseNamesIn(skills.stream()
+                    .map(String::toLowerCase).collect(Collectors.toSet()));
+            skills.forEach(s -> allPredicates.add(taggedSkills.contains(s.toLowerCase())
+                    ? cb.equal(cb.lower(root.join(Vacancy_.skills).get(Skill_.name)), s.toLowerCase())
+                    : cb.like(root.get(Vacancy_.about), String.format(LIKE_QUERY_FORMAT, s))));
+        });
+
+        optionalProperties.map(SearchRequest::getBrokers).filter(b -> !b.isEmpty()).ifPresent(brokers -> allPredicates
+                .add(cb.lower(root.get(Vacancy_.broker)).in(brokers.stream().map(String::toLowerCase).collect(Collectors.toSet()))));
 
         optionalProperties.map(SearchRequest::getFromDate).ifPresent(fromDate -> allPredicates
                 .add(cb.greaterThanOrEqualTo(root.get(Vacancy_.postingDate), cb.literal(fromDate))));
@@ -171,4 +568,24 @@ public class VacancyCriteriaQuery {
         return allPredicates;
     }
 
+    /**
+     * A radius search only matches vacancies with a location. The inner join lets the database start from the locations
+     * within the radius instead of from all vacancies.
+     *
+     * @param searchRequest - request as entered by a user
+     * @return The join type of vacancy to location
+     */
+    private JoinType getLocationJoinType(SearchRequest searchRequest) {
+        boolean radiusSearch = searchRequest.getDistance() != null && searchRequest.getDistance() != 0
+                && searchRequest.getCoord() != null;
+        return radiusSearch ? JoinType.INNER : JoinType.LEFT;
+    }
+
+    /**
+     * Creates the predicate that keeps the location within the specified ids, or matches nothing if there are none
+     */
+    private Predicate getLocationIdPredicate(Set<UUID> locationIds, Join<Vacancy, Location> locationJoin, CriteriaBuilder cb) {
+        return locationIds.isEmpty() ? cb.disjunction() : locationJoin.get(Location_.id).in(locationIds);
+    }
+
 }
@@ -1,11 +1,21 @@
 package nl.ordina.jobcrawler.repo;
 
+import nl.ordina.jobcrawler.model.Liveness;
 import nl.ordina.jobcrawler.model.Vacancy;
+import nl.ordina.jobcrawler.payload.VacancyListItemDTO;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 @Repository
@@ -15,4 +25,81 @@ public interface VacancyRepository extends JpaRepository<Vacancy, UUID> {
 
     List<Vacancy> findByLocation_Id(UUID id);
 
+    @Query("select v.vacancyURL from Vacancy v where v.vacancyURL in :urls")
+    Set<String> findVacancyURLsIn(@Param("urls") Collection<String> urls);
+
+    @Query("select v.id from Vacancy v")
+    List<UUID> findAllIds();
+
+    @Query("select distinct v.broker from Vacancy v where v.broker is not null")
+    List<String> findBrokers();
+
+    /**
+     * Returns the id, URL, broker and posting date of the vacancies of a broker that were neither checked nor seen in
+     * a listing since the specified time, oldest first, without reading their about.
+     */
+    @Query("select v.id, v.vacancyURL, v.broker, v.postingDate from Vacancy v where v.broker = :broker " +
+            "and (v.lastCheckedAt is null or v.lastCheckedAt < :before) and (v.lastSeen is null or v.lastSeen < :before) " +
+            "order by case when v.postingDate is null then 1 else 0 end, v.postingDate")
+    List<Object[]> findURLsUnconfirmedSince(@Param("broker") String broker, @Param("before") LocalDateTime before,
+                                            Pageable pageable);
+
+    /**
+     * Records the outcome of a liveness check of the vacancies with the specified ids.
+     */
+    @Modifying
+    @Transactional
+    @Query("update Vacancy v set v.lastCheckedAt = :checkedAt, v.lastCheckOutcome = :outcome where v.id in :ids")
+    int markChecked(@Param("ids") Collection<UUID> ids, @Param("checkedAt") LocalDateTime checkedAt,
+                    @Param("outcome") Liveness outcome);
+
+    /**
+     * Records that the vacancies with the specified URLs are in the listing of a crawl.
+     */
+    @Modifying
+    @Transactional
+    @Query("update Vacancy v set v.lastSeen = :seen, v.missedCrawls = 0 where v.vacancyURL in :urls")
+    int markSeen(@Param("urls") Collection<String> urls, @Param("seen") LocalDateTime seen);
+
+    /**
+     * Counts a missed crawl for the vacancies of the broker that were not seen since the start of its complete crawl.
+     */
+    @Modifying
+    @Transactional
+    @Query("update Vacancy v set v.missedCrawls = coalesce(v.missedCrawls, 0) + 1 " +
+            "where v.broker = :broker and (v.lastSeen is null or v.lastSeen < :crawlStart)")
+    int markMissed(@Param("broker") String broker, @Param("crawlStart") LocalDateTime crawlStart);
+
+    @Query("select v.id from Vacancy v where v.broker = :broker and v.missedCrawls >= :missedCrawls")
+    List<UUID> findIdsByBrokerMissedCrawls(@Param("broker") String broker, @Param("missedCrawls") int missedCrawls);
+
+    /**
+     * Removes the skill tags of the specified vacancies. Ids are passed as strings like they are stored.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "delete from vacancy_skill where vacancy_id in :vacancyIds", nativeQuery = true)
+    int untagVacancies(@Param("vacancyIds") Collection<String> vacancyIds);
+
+    /**
+     * Deletes the specified vacancies in one statement, after their tags were removed with untagVacancies.
+     */
+    @Modifying
+    @Transactional
+    @Query("delete from Vacancy v where v.id in :ids")
+    int deleteByIdIn(@Param("ids") Collection<UUID> ids);
+
+    /**
+     * @return Pairs of vacancy id and the name of a skill it is tagged with.
+     */
+    @Query("select v.id, s.name from Vacancy v join v.skills s where v.id in :ids")
+    List<Object[]> findSkillNamesByIdIn(@Param("ids") Collection<UUID> ids);
+
+    /**
+     * Returns the search results with the specified ids, in no particular order, without reading their about.
+     */
+    @Query("select new nl.ordina.jobcrawler.payload.VacancyListItemDTO(v.id, v.vacancyURL, v.title, v.broker, v.company, " +
+            "v.hours, v.salary, v.postingDate, l.id, l.name, l.lat, l.lon) from Vacancy v left join v.location l where v.id in :ids")
+    List<VacancyListItemDTO> findListItemsByIdIn(@Param("ids") Collection<UUID> ids);
+
 }
@@ -0,0 +1,546 @@
+package nl.ordina.jobcrawler.repo;
+
+import lombok.extern.slf4j.Slf4j;
+import nl.ordina.jobcrawler.model.Vacancy;
+import nl.ordina.jobcrawler.payload.SearchFacets;
+import nl.ordina.jobcrawler.payload.SearchRequest;
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * In-memory index of the vacancies, so searches are answered without a query per search. Vacancies are numbered in the
+ * order they are added, and every filter value has a compressed (Roaring) bitmap of the vacancy numbers:
+ * <ul>
+ * <li>every skill the vacancy is tagged with, every broker and every location;</li>
+ * <li>every week of posting dates, a date range is the union of the weeks within it and the matching part of the two
+ * weeks at its ends.</li>
+ * </ul>
+ * A search is the intersection of the bitmaps of its filters, so the matches and their count come from the same bitmap
+ * and the database is only queried to load the vacancies of the requested page. The facet counts of a search come from
+ * the skills, broker, location and posting date stored per vacancy number, in one pass over the matches.
+ * <p>
+ * The index is built from the database when the application is ready and kept up to date by VacancyService, which
+ * reports every saved and deleted vacancy; the changes are applied once their transaction commits. A deleted vacancy
+ * only leaves the bitmap of live vacancies, its other bits stay until the next {@link #rebuild}, as do those of the
+ * previous version of a saved vacancy. {@link #compact} rebuilds the index once these make up a quarter of it.
+ * <p>
+ * The index is switched on with vacancies.search-index.enabled. While it is off or still building, for sorts other
+ * than postingDate, for keywords and for skills that no vacancy is tagged with, {@link #search} returns empty and the
+ * database is used. Keywords and untagged skills are looked up in the text, which is left to the database so its
+ * stemming and search operators apply: a search has the same matches whether the index is ready or not.
+ */
+@Slf4j
+@Component
+public class VacancySearchIndex {
+
+    private static final int REBUILD_BATCH_SIZE = 500;
+    private static final String SUPPORTED_SORT = "postingDate";
+    // Mirrors PostgreSQL, where a vacancy without a posting date sorts as the newest
+    private static final long NO_POSTING_DATE = Long.MAX_VALUE;
+    private static final long DAY_SECONDS = 24 * 60 * 60;
+    private static final long WEEK_SECONDS = 7 * DAY_SECONDS;
+    // The epoch is on a Thursday, weeks start on Monday
+    private static final long WEEK_OFFSET_SECONDS = 3 * DAY_SECONDS;
+    // Fraction of the vacancy numbers of deleted or replaced vacancies above which compact rebuilds the index
+    private static final double MAX_DELETED_FRACTION = 0.25;
+
+    private final VacancyRepository vacancyRepository;
+    private final LocationIndex locationIndex;
+    private final boolean enabled;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Guarded by lock
+    private Postings postings = new Postings();
+    private boolean ready;
+    // Changes made while rebuilding, applied to the new postings once they are complete
+    private List<Consumer<Postings>> pendingChanges;
+
+    public VacancySearchIndex(VacancyRepository vacancyRepository, LocationIndex locationIndex,
+                              @Value("${vacancies.search-index.enabled:false}") boolean enabled) {
+        this.vacancyRepository = vacancyRepository;
+        this.locationIndex = locationIndex;
+        this.enabled = enabled;
+    }
+
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        try {
+            rebuild();
+        } catch (RuntimeException e) {
+            log.error("Could not build the vacancy search index, searching the database instead", e);
+        }
+    }
+
+    /**
+     * Replaces the index with one read from the database, in batches of vacancies. Does nothing if the index is off.
+     */
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        withWriteLock(() -> pendingChanges = new ArrayList<>());
+        try {
+            Postings rebuilt = new Postings();
+            List<UUID> ids = vacancyRepository.findAllIds();
+            for (int from = 0; from < ids.size(); from += REBUILD_BATCH_SIZE) {
+                List<UUID> batch = ids.subList(from, Math.min(from + REBUILD_BATCH_SIZE, ids.size()));
+                Map<UUID, List<String>> skillsById = new HashMap<>();
+                vacancyRepository.findSkillNamesByIdIn(batch).forEach(skill ->
+                        skillsById.computeIfAbsent((UUID) skill[0], id -> new ArrayList<>()).add((String) skill[1]));
+                vacancyRepository.findAllById(batch).forEach(vacancy -> rebuilt.add(
+                        new IndexedVacancy(vacancy, skillsById.getOrDefault(vacancy.getId(), Collections.emptyList()))));
+            }
+            withWriteLock(() -> {
+                pendingChanges.forEach(change -> change.accept(rebuilt));
+                postings = rebuilt;
+                ready = true;
+            });
+            log.info("Vacancy search index built with {} vacancies", ids.size());
+        } finally {
+            withWriteLock(() -> pendingChanges = null);
+        }
+    }
+
+    /**
+     * Rebuilds the index when more than a quarter of its vacancy numbers belong to deleted or replaced vacancies, whose
+     * bits would otherwise stay in the bitmaps and make every search and the attribute arrays larger. Runs every hour.
+     */
+    @Scheduled(cron = "0 15 * * * *")
+    public void compact() {
+        boolean due;
+        lock.readLock().lock();
+        try {
+            due = ready && pendingChanges == null && postings.deletedFraction() > MAX_DELETED_FRACTION;
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (due) {
+            try {
+                rebuild();
+            } catch (RuntimeException e) {
+                log.error("Could not compact the vacancy search index", e);
+            }
+        }
+    }
+
+    /**
+     * Adds saved vacancies to the index, replacing their previous version, when the current transaction commits.
+     *
+     * @param vacancies The saved vacancies, with their skills.
+     */
+    public void add(Iterable<Vacancy> vacancies) {
+        List<IndexedVacancy> indexed = new ArrayList<>();
+        if (enabled) {
+            vacancies.forEach(vacancy -> {
+                List<String> skills = new ArrayList<>();
+                vacancy.getSkills().forEach(skill -> skills.add(skill.getName()));
+                indexed.add(new IndexedVacancy(vacancy, skills));
+            });
+        }
+        change(current -> indexed.forEach(current::add));
+    }
+
+    /**
+     * Removes a deleted vacancy from the index when the current transaction commits.
+     *
+     * @param id ID of the deleted vacancy.
+     */
+    public void remove(UUID id) {
+        change(current -> current.remove(id));
+    }
+
+    /**
+     * Returns the page of vacancies matching the search request.
+     *
+     * @param searchRequest - request as entered by a user, with the coordinates of its location
+     * @param sort          - sorting by field and direction
+     * @param offset        - index of the first vacancy of the page
+     * @param limit         - size of the page
+     * @return The ids of the page in order and the total number of matches, or empty if the database has to answer the
+     * search.
+     */
+    public Optional<Hits> search(SearchRequest searchRequest, String[] sort, long offset, int limit) {
+        if (!enabled || !SUPPORTED_SORT.equals(sort[0]) || hasKeywords(searchRequest)) {
+            return Optional.empty();
+        }
+        Set<UUID> radiusLocations = getRadiusLocations(searchRequest);
+        lock.readLock().lock();
+        try {
+            if (!ready || !postings.hasTaggedSkills(searchRequest)) {
+                return Optional.empty();
+            }
+            RoaringBitmap matches = postings.match(searchRequest, radiusLocations);
+            return Optional.of(new Hits(postings.getPage(matches, sort[1].equals("asc"), offset, limit), matches.getCardinality()));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of vacancies matching the search request per skill, broker, location and posting week.
+     *
+     * @param searchRequest - request as entered by a user, with the coordinates of its location
+     * @return The facet counts, or empty if the database has to count them.
+     */
+    public Optional<SearchFacets> countFacets(SearchRequest searchRequest) {
+        if (!enabled || hasKeywords(searchRequest)) {
+            return Optional.empty();
+        }
+        Set<UUID> radiusLocations = getRadiusLocations(searchRequest);
+        lock.readLock().lock();
+        try {
+            return ready && postings.hasTaggedSkills(searchRequest)
+                    ? Optional.of(postings.countFacets(postings.match(searchRequest, radiusLocations))) : Optional.empty();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return The ids of the locations within the radius of the search, or null if it is not a radius search.
+     */
+    private Set<UUID> getRadiusLocations(SearchRequest searchRequest) {
+        double[] coord = searchRequest.getCoord();
+        Double distance = searchRequest.getDistance();
+        if (coord == null || distance == null || distance == 0) {
+            return null;
+        }
+        return locationIndex.findWithinRadius(coord[0], coord[1], distance).keySet();
+    }
+
+    private void change(Consumer<Postings> change) {
+        if (!enabled) {
+            return;
+        }
+        Runnable apply = () -> withWriteLock(() -> {
+            change.accept(postings);
+            if (pendingChanges != null) {
+                pendingChanges.add(change);
+            }
+        });
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply.run();
+                }
+            });
+        } else {
+            apply.run();
+        }
+    }
+
+    private void withWriteLock(Runnable runnable) {
+        lock.writeLock().lock();
+        try {
+            runnable.run();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static boolean hasKeywords(SearchRequest searchRequest) {
+        return searchRequest.getKeywords() != null && !searchRequest.getKeywords().isBlank();
+    }
+
+    private static long toPostingDate(LocalDateTime postingDate) {
+        return postingDate == null ? NO_POSTING_DATE : postingDate.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    private static long toWeek(long postingDate) {
+        return Math.floorDiv(postingDate + WEEK_OFFSET_SECONDS, WEEK_SECONDS);
+    }
+
+    private static String toKey(String value) {
+        return value.toLowerCase(Locale.ROOT);
+    }
+
+    public static final class Hits {
+        private final List<UUID> ids;
+        private final long total;
+
+        public Hits(List<UUID> ids, long total) {
+            this.ids = ids;
+            this.total = total;
+        }
+
+        /**
+         * @return The ids of the vacancies of the page, in order.
+         */
+        public List<UUID> getIds() {
+            return ids;
+        }
+
+        /**
+         * @return The number of vacancies matching the search.
+         */
+        public long getTotal() {
+            return total;
+        }
+    }
+
+    /**
+     * The indexed fields of a vacancy, taken from the entity when it is saved.
+     */
+    private static final class IndexedVacancy {
+        private final UUID id;
+        private final long postingDate;
+        private final Collection<String> skills;
+        private final String broker;
+        private final UUID locationId;
+        private final String locationName;
+
+        private IndexedVacancy(Vacancy vacancy, Collection<String> skillNames) {
+            id = vacancy.getId();
+            postingDate = toPostingDate(vacancy.getPostingDate());
+            skills = skillNames;
+            broker = vacancy.getBroker();
+            locationId = vacancy.hasLocation() ? vacancy.getLocation().getId() : null;
+            locationName = vacancy.hasLocation() ? vacancy.getLocation().getName() : null;
+        }
+    }
+
+    /**
+     * The values of one filter (skills, brokers or locations) with an ordinal each, a label for the facets and the
+     * bitmap of the vacancies with the value.
+     */
+    private static final class Values<K> {
+        private final Map<K, Integer> ordinals = new HashMap<>();
+        private final List<String> labels = new ArrayList<>();
+        private final List<RoaringBitmap> bitmaps = new ArrayList<>();
+
+        private int add(K key, String label, int doc) {
+            int ordinal = ordinals.computeIfAbsent(key, k -> {
+                labels.add(label);
+                bitmaps.add(new RoaringBitmap());
+                return labels.size() - 1;
+            });
+            bitmaps.get(ordinal).add(doc);
+            return ordinal;
+        }
+
+        private RoaringBitmap get(K key) {
+            Integer ordinal = ordinals.get(key);
+            return ordinal == null ? null : bitmaps.get(ordinal);
+        }
+
+        private RoaringBitmap union(Stream<K> keys) {
+            return RoaringBitmap.or(keys.map(this::get).filter(Objects::nonNull).iterator());
+        }
+
+        private RoaringBitmap withLabel(Predicate<String> predicate) {
+            RoaringBitmap union = new RoaringBitmap();
+            for (int ordinal = 0; ordinal < labels.size(); ordinal++) {
+                if (predicate.test(labels.get(ordinal))) {
+                    union.or(bitmaps.get(ordinal));
+                }
+            }
+            return union;
+        }
+
+        /**
+         * @return The counts per ordinal by label, values with the same label are added up.
+         */
+        private Map<String, Long> toCounts(long[] counts) {
+            Map<String, Long> labelled = new HashMap<>();
+            for (int ordinal = 0; ordinal < counts.length; ordinal++) {
+                if (counts[ordinal] > 0) {
+                    labelled.merge(labels.get(ordinal), counts[ordinal], Long::sum);
+                }
+            }
+            return labelled;
+        }
+    }
+
+    private static final class Postings {
+        private static final int[] NO_SKILLS = new int[0];
+
+        private final Map<UUID, Integer> docs = new HashMap<>();
+        private final List<UUID> ids = new ArrayList<>();
+        private final RoaringBitmap live = new RoaringBitmap();
+        private final Values<String> skills = new Values<>();
+        private final Values<String> brokers = new Values<>();
+        private final Values<UUID> locations = new Values<>();
+        private final TreeMap<Long, RoaringBitmap> weeks = new TreeMap<>();
+        // Attributes per vacancy number, for sorting and facet counts without a bitmap per value
+        private long[] postingDates = new long[1024];
+        private int[] brokerOf = new int[1024];
+        private int[] locationOf = new int[1024];
+        private int[][] skillsOf = new int[1024][];
+
+        private void add(IndexedVacancy vacancy) {
+            remove(vacancy.id);
+            int doc = ids.size();
+            ids.add(vacancy.id);
+            docs.put(vacancy.id, doc);
+            if (doc == postingDates.length) {
+                postingDates = Arrays.copyOf(postingDates, 2 * doc);
+                brokerOf = Arrays.copyOf(brokerOf, 2 * doc);
+                locationOf = Arrays.copyOf(locationOf, 2 * doc);
+                skillsOf = Arrays.copyOf(skillsOf, 2 * doc);
+            }
+            postingDates[doc] = vacancy.postingDate;
+            skillsOf[doc] = vacancy.skills.isEmpty() ? NO_SKILLS
+                    : vacancy.skills.stream().mapToInt(skill -> skills.add(toKey(skill), skill, doc)).distinct().toArray();
+            brokerOf[doc] = vacancy.broker == null ? -1 : brokers.add(toKey(vacancy.broker), vacancy.broker, doc);
+            locationOf[doc] = vacancy.locationId == null ? -1 : locations.add(vacancy.locationId, vacancy.locationName, doc);
+            if (vacancy.postingDate != NO_POSTING_DATE) {
+                weeks.computeIfAbsent(toWeek(vacancy.postingDate), w -> new RoaringBitmap()).add(doc);
+            }
+            live.add(doc);
+        }
+
+        private void remove(UUID id) {
+            Integer doc = docs.remove(id);
+            if (doc != null) {
+                live.remove(doc);
+            }
+        }
+
+        /**
+         * @return The fraction of the vacancy numbers that no longer belong to a live vacancy.
+         */
+        private double deletedFraction() {
+            return ids.isEmpty() ? 0 : 1 - (double) live.getCardinality() / ids.size();
+        }
+
+        /**
+         * @return Whether every skill of the search is tagged, the database looks up any other skill in the text.
+         */
+        private boolean hasTaggedSkills(SearchRequest searchRequest) {
+            return searchRequest.getSkills() == null
+                    || searchRequest.getSkills().stream().allMatch(skill -> skills.get(toKey(skill)) != null);
+        }
+
+        /**
+         * Intersects the bitmaps of the filters of the search, the same filters as the database query. The skills of
+         * the search are tagged ones, see {@link #hasTaggedSkills}.
+         */
+        private RoaringBitmap match(SearchRequest searchRequest, Set<UUID> radiusLocations) {
+            RoaringBitmap matches = live.clone();
+            // Every skill
+            Optional.ofNullable(searchRequest.getSkills()).ifPresent(skillNames ->
+                    skillNames.forEach(skill -> matches.and(skills.get(toKey(skill)))));
+            // Any of the brokers
+            Optional.ofNullable(searchRequest.getBrokers()).filter(b -> !b.isEmpty()).ifPresent(brokerNames ->
+                    matches.and(brokers.union(brokerNames.stream().map(VacancySearchIndex::toKey))));
+            // Any location within the radius, or any location with the search in its name
+            if (radiusLocations != null) {
+                matches.and(locations.union(radiusLocations.stream()));
+            } else if (searchRequest.getLocation() != null && !searchRequest.getLocation().isBlank()
+                    && searchRequest.getDistance() == null) {
+                String name = toKey(searchRequest.getLocation());
+                matches.and(locations.withLabel(label -> toKey(label).contains(name)));
+            }
+            if (searchRequest.getFromDate() != null || searchRequest.getToDate() != null) {
+                matches.and(postedBetween(searchRequest.getFromDate(), searchRequest.getToDate()));
+            }
+            return matches;
+        }
+
+        /**
+         * Counts the skills, brokers, locations and posting weeks of the matches in a single pass over them.
+         */
+        private SearchFacets countFacets(RoaringBitmap matches) {
+            long[] skillCounts = new long[skills.labels.size()];
+            long[] brokerCounts = new long[brokers.labels.size()];
+            long[] locationCounts = new long[locations.labels.size()];
+            Map<Long, Long> weekCounts = new TreeMap<>();
+            for (IntIterator docs = matches.getIntIterator(); docs.hasNext(); ) {
+                int doc = docs.next();
+                for (int skill : skillsOf[doc]) {
+                    skillCounts[skill]++;
+                }
+                if (brokerOf[doc] >= 0) {
+                    brokerCounts[brokerOf[doc]]++;
+                }
+                if (locationOf[doc] >= 0) {
+                    locationCounts[locationOf[doc]]++;
+                }
+                if (postingDates[doc] != NO_POSTING_DATE) {
+                    weekCounts.merge(toWeek(postingDates[doc]), 1L, Long::sum);
+                }
+            }
+            Map<String, Long> postingWeeks = new LinkedHashMap<>();
+            weekCounts.forEach((week, count) -> postingWeeks.put(LocalDate.ofEpochDay(7 * week - 3).toString(), count));
+            return new SearchFacets(SearchFacets.mostFrequent(skills.toCounts(skillCounts)),
+                    SearchFacets.mostFrequent(brokers.toCounts(brokerCounts)),
+                    SearchFacets.mostFrequent(locations.toCounts(locationCounts)), postingWeeks);
+        }
+
+        /**
+         * @return The union of the weeks within the range, with the vacancies of the first and last week that were
+         * posted within the range.
+         */
+        private RoaringBitmap postedBetween(LocalDateTime fromDate, LocalDateTime toDate) {
+            // Open ends far enough from the bounds of long that toWeek does not overflow
+            long from = fromDate == null ? Long.MIN_VALUE / 2 : toPostingDate(fromDate);
+            long to = toDate == null ? Long.MAX_VALUE / 2 : toPostingDate(toDate);
+            if (from > to) {
+                return new RoaringBitmap();
+            }
+            long fromWeek = toWeek(from);
+            long toWeek = toWeek(to);
+            RoaringBitmap posted = RoaringBitmap.or(weeks.subMap(fromWeek, false, toWeek, false).values().iterator());
+            for (long week : fromWeek == toWeek ? new long[]{fromWeek} : new long[]{fromWeek, toWeek}) {
+                RoaringBitmap edge = weeks.get(week);
+                if (edge != null) {
+                    for (IntIterator docs = edge.getIntIterator(); docs.hasNext(); ) {
+                        int doc = docs.next();
+                        if (postingDates[doc] >= from && postingDates[doc] <= to) {
+                            posted.add(doc);
+                        }
+                    }
+                }
+            }
+            return posted;
+        }
+
+        /**
+         * Keeps the first offset + limit matches in a heap, in the order of the database query: posting date, then id.
+         */
+        private List<UUID> getPage(RoaringBitmap matches, boolean ascending, long offset, int limit) {
+            if (offset >= matches.getCardinality() || limit <= 0) {
+                return Collections.emptyList();
+            }
+            Comparator<Integer> byPostingDate = Comparator.comparingLong(doc -> postingDates[doc]);
+            Comparator<Integer> order = (ascending ? byPostingDate : byPostingDate.reversed())
+                    .thenComparing(doc -> ids.get(doc).toString());
+            int size = (int) Math.min(offset + limit, matches.getCardinality());
+            PriorityQueue<Integer> first = new PriorityQueue<>(size, order.reversed());
+            for (IntIterator docs = matches.getIntIterator(); docs.hasNext(); ) {
+                int doc = docs.next();
+                if (first.size() < size) {
+                    first.add(doc);
+                } else if (order.compare(doc, first.peek()) < 0) {
+                    first.poll();
+                    first.add(doc);
+                }
+            }
+            List<Integer> page = new ArrayList<>(first);
+            page.sort(order);
+            List<UUID> pageIds = new ArrayList<>();
+            page.subList((int) offset, page.size()).forEach(doc -> pageIds.add(ids.get(doc)));
+            return pageIds;
+        }
+    }
+}
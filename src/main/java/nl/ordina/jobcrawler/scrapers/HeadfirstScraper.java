@@ -2,6 +2,8 @@ package nl.ordina.jobcrawler.scrapers;
 
 import lombok.extern.slf4j.Slf4j;
 import nl.ordina.jobcrawler.payload.VacancyDTO;
+import nl.ordina.jobcrawler.util.ScraperMetrics.Stage;
+import nl.ordina.jobcrawler.util.TextExtraction;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.http.converter.FormHttpMessageConverter;
@@ -10,8 +12,6 @@ import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 import org.springframework.web.client.RestTemplate;
 
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.time.format.FormatStyle;
 import java.util.*;
 import java.util.concurrent.CopyOnWriteArrayList;
@@ -21,7 +21,7 @@ import java.util.regex.Pattern;
 @Component
 public class HeadfirstScraper extends VacancyScraper {
 
-    RestTemplate restTemplate = new RestTemplate();
+    RestTemplate restTemplate = instrumentedRestTemplate();
     @Value("${spring.scrapers.headfirstpassword}")
     private String password;
 
@@ -98,7 +98,7 @@ public class HeadfirstScraper extends VacancyScraper {
         headers5.add("cookie","SELECT-JWT-TOKEN=" + jwtToken2);
         headers5.add("content-type","application/json;charset=UTF-8");
         HttpEntity<String> request5 = new HttpEntity<String>("{\"page_start\": 0}",headers5);
-        ResponseEntity<HeadfirstResponse> response5 = restTemplate.exchange("https://headfirst.select.hr/api/v2/jobrequest/search", HttpMethod.POST, request5, HeadfirstResponse.class);
+        ResponseEntity<HeadfirstResponse> response5 = timed(Stage.LISTING_FETCH, () -> restTemplate.exchange("https://headfirst.select.hr/api/v2/jobrequest/search", HttpMethod.POST, request5, HeadfirstResponse.class));
 
         List<VacancyDTO> vacancyDTOs = new CopyOnWriteArrayList<>();
         int nrVacancies = response5.getBody().getTotal_results();
@@ -108,10 +108,11 @@ public class HeadfirstScraper extends VacancyScraper {
 
         for(int i = 1;i<nrPages;i++) {
             HttpEntity<String> request = new HttpEntity<String>("{\"page_start\": " + (24*i) +"}",headers5);
-            ResponseEntity<HeadfirstResponse> response = restTemplate.exchange("https://headfirst.select.hr/api/v2/jobrequest/search", HttpMethod.POST, request, HeadfirstResponse.class);
+            ResponseEntity<HeadfirstResponse> response = timed(Stage.LISTING_FETCH, () -> restTemplate.exchange("https://headfirst.select.hr/api/v2/jobrequest/search", HttpMethod.POST, request, HeadfirstResponse.class));
             vacancyDTOs = getVacanciesFromPage(vacancyDTOs,response);
             System.out.println("Finished page " + (i+1));
         }
+        setListingComplete(vacancyDTOs.size() >= nrVacancies);
         log.info("{} -- Returning scraped vacancies", getBroker());
         return vacancyDTOs;
     }
@@ -119,31 +120,40 @@ public class HeadfirstScraper extends VacancyScraper {
     private List<VacancyDTO> getVacanciesFromPage(List<VacancyDTO> vacancyDTOs, ResponseEntity<HeadfirstResponse> response) {
         ArrayList<Map<String, Object>> vacanciesList = response.getBody().getResults();
         vacanciesList.forEach((Map<String, Object> vacancyData) -> {
-            String id = vacancyData.get("id").toString();
-            String vacancyURL = "https://headfirst.select.hr/assignment/" + id + "/description";
-            String description = (String) vacancyData.get("description");
-            String vacancyLocation = (String) vacancyData.get("region_name");
-            if (vacancyLocation.equals("Diverse locaties")) {
-                int si = description.toLowerCase().indexOf("naam hoofdstandplaats: ") + 23;
-                int ei = description.substring(si).indexOf("<br") + si;
-                vacancyLocation = description.substring(si, ei);
-            }
-            VacancyDTO vacancyDTO = VacancyDTO.builder()
-                    .vacancyURL(vacancyURL)
-                    .title((String) vacancyData.get("title"))
-                    .hours((Integer) vacancyData.get("hours_per_week"))
-                    .broker(getBroker())
-                    .vacancyNumber(id)
-                    .locationString(vacancyLocation)
-                    .postingDate(LocalDateTime.parse((String) vacancyData.get("published_at"), DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss'Z'")))
-                    .about(description)
-                    .company((String) vacancyData.get("safe_client_name"))
-                    .build();
-
+            VacancyDTO vacancyDTO = timed(Stage.PARSE, () -> parseVacancy(vacancyData));
             vacancyDTOs.add(vacancyDTO);
             log.info("{} - Vacancy found: {}", getBroker(), vacancyDTO.getTitle());
         });
         return vacancyDTOs;
     }
 
+    /**
+     * Extracts the vacancy from the search result.
+     *
+     * @param vacancyData The vacancy in the search result.
+     * @return The vacancy.
+     */
+    VacancyDTO parseVacancy(Map<String, Object> vacancyData) {
+        String id = vacancyData.get("id").toString();
+        String vacancyURL = "https://headfirst.select.hr/assignment/" + id + "/description";
+        String description = (String) vacancyData.get("description");
+        String vacancyLocation = (String) vacancyData.get("region_name");
+        if (vacancyLocation.equals("Diverse locaties")) {
+            int si = description.toLowerCase().indexOf("naam hoofdstandplaats: ") + 23;
+            int ei = description.substring(si).indexOf("<br") + si;
+            vacancyLocation = description.substring(si, ei);
+        }
+        return VacancyDTO.builder()
+                .vacancyURL(vacancyURL)
+                .title((String) vacancyData.get("title"))
+                .hours((Integer) vacancyData.get("hours_per_week"))
+                .broker(getBroker())
+                .vacancyNumber(id)
+                .locationString(vacancyLocation)
+                .postingDate(TextExtraction.isoDateTime((String) vacancyData.get("published_at")))
+                .about(description)
+                .company((String) vacancyData.get("safe_client_name"))
+                .build();
+    }
+
 }
@@ -2,6 +2,8 @@ package nl.ordina.jobcrawler.scrapers;
 
 import lombok.extern.slf4j.Slf4j;
 import nl.ordina.jobcrawler.payload.VacancyDTO;
+import nl.ordina.jobcrawler.util.ScraperMetrics.Stage;
+import nl.ordina.jobcrawler.util.TextExtraction;
 import org.jsoup.Jsoup;
 import org.jsoup.safety.Whitelist;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -12,10 +14,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.RestTemplate;
 
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.regex.Pattern;
 
 /*
  * Instead of scraping the page HTML for urls, this scraper gets the vacancy data directly from the HuxleyIT API.
@@ -29,15 +28,9 @@ import java.util.regex.Pattern;
 @Component
 public class HuxleyITVacancyScraper extends VacancyScraper {
 
-    @SuppressWarnings("java:S5843")
-    private final Pattern ymdPattern = Pattern
-            .compile("^[0-9]{4}-(1[0-2]|0[1-9])-(3[01]|[12][0-9]|0[1-9])T[0-9]{2}:[0-9]{2}:[0-9]{2}.[0-9]{6}[0-9]?Z$");
-    private final DateTimeFormatter ymdFormatter = DateTimeFormatter.ofPattern("[yyyy-MM-dd'T'HH:mm:ss.SSSSSSS'Z']" +
-                                                                               "[yyyy-MM-dd'T'HH:mm:ss.SSSSSS'Z']");
-
     private static final String VACANCY_URL_PREFIX = "https://www.huxley.com/nl-nl/job/kyc/";
 
-    RestTemplate restTemplate = new RestTemplate();
+    RestTemplate restTemplate = instrumentedRestTemplate();
 
     /**
      * Default constructor that calls the constructor from the abstract class.
@@ -71,16 +64,18 @@ public class HuxleyITVacancyScraper extends VacancyScraper {
 
         List<VacancyDTO> vacancyDTOs = new ArrayList<>();
         for (Map<String, Object> vacancyData : vacanciesData) {
-            VacancyDTO vacancyDTO = getVacancyDTO(vacancyData);
+            VacancyDTO vacancyDTO = timed(Stage.PARSE, () -> getVacancyDTO(vacancyData));
             vacancyDTOs.add(vacancyDTO);
             log.info("{} - Vacancy found: {}", getBroker(), vacancyDTO.getTitle());
         }
 
+        // Complete when the second call returned all vacancies the first one counted
+        setListingComplete(totalVacancies > 0 && vacancyDTOs.size() >= totalVacancies);
         log.info("{} -- Returning scraped vacancies", getBroker());
         return vacancyDTOs;
     }
 
-    private VacancyDTO getVacancyDTO(Map<String, Object> vacancyData) {
+    VacancyDTO getVacancyDTO(Map<String, Object> vacancyData) {
         return VacancyDTO.builder()
                 .vacancyURL(VACANCY_URL_PREFIX + vacancyData.get("jobReference"))
                 .title((String) vacancyData.get("title"))
@@ -89,7 +84,7 @@ public class HuxleyITVacancyScraper extends VacancyScraper {
                 .locationString((String) vacancyData.get("city"))
                 .hours(retrieveWorkHours((String) vacancyData.get("description")))
                 .salary((String) vacancyData.get("salaryText"))
-                .postingDate(getPostingDate((String) vacancyData.get("postDate")))
+                .postingDate(TextExtraction.isoDateTime((String) vacancyData.get("postDate")))
                 .about(Jsoup.clean((String) vacancyData.get("description"), Whitelist.basic()))
                 .company("")
                 .build();
@@ -113,14 +108,6 @@ public class HuxleyITVacancyScraper extends VacancyScraper {
         return totalVacancies;
     }
 
-    private LocalDateTime getPostingDate(final String date) {
-        return checkDatePattern(date) ? LocalDateTime.parse(date, ymdFormatter) : null;
-    }
-
-    private boolean checkDatePattern(String s) {
-        return s != null && ymdPattern.matcher(s).matches();
-    }
-
     /**
      * Retrieve the vacancies from the POST API endpoint.
      *
@@ -156,7 +143,7 @@ public class HuxleyITVacancyScraper extends VacancyScraper {
 
         // Build and trigger the request
         HttpEntity<Map<String, Object>> entity = new HttpEntity<>(body, headers);
-        ResponseEntity<HuxleyITResponse> response = restTemplate.postForEntity(getSearchUrl(), entity, HuxleyITResponse.class);
+        ResponseEntity<HuxleyITResponse> response = timed(Stage.LISTING_FETCH, () -> restTemplate.postForEntity(getSearchUrl(), entity, HuxleyITResponse.class));
 
         // Return the result
         return response.getBody();
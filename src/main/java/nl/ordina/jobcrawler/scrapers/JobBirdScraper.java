@@ -4,6 +4,8 @@ import lombok.extern.slf4j.Slf4j;
 import nl.ordina.jobcrawler.exception.HTMLStructureException;
 import nl.ordina.jobcrawler.payload.VacancyDTO;
 import nl.ordina.jobcrawler.service.DocumentService;
+import nl.ordina.jobcrawler.util.ScraperMetrics.Stage;
+import nl.ordina.jobcrawler.util.TextExtraction;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
@@ -13,11 +15,9 @@ import org.springframework.stereotype.Component;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.regex.Pattern;
 
 /*  Search is limited to URLs for ICT jobs with search term "java"
  *       Search URL will be completed later:a page number is added to the url
@@ -39,14 +39,15 @@ import java.util.regex.Pattern;
  *       In order to be able to check whether the program is still running, the vacancies are logged
  *       (log.info()). You may want to change this to log.debug().
  *
+ *       Because of the maximum number of pages the listing is never complete, so vacancies that JobBird no longer
+ *       lists are only expired by the liveness check.
+ *
  */
 
 @Slf4j
 @Component
 public class JobBirdScraper extends VacancyScraper {
 
-    private final Pattern ymdPattern = Pattern.compile("^[0-9]{4}-(1[0-2]|0[1-9])-(3[01]|[12][0-9]|0[1-9])$");
-    private final DateTimeFormatter ymdFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
 
     public void setDocumentService(DocumentService documentService) {
         this.documentService = documentService;
@@ -77,6 +78,8 @@ public class JobBirdScraper extends VacancyScraper {
     @Override
     public List<VacancyDTO> getVacancies() {
         List<String> vacancyURLs = retrieveURLs();
+        // At most MAX_NR_OF_PAGES of the listing are crawled, so it is never known to be complete
+        setListingComplete(false);
         return retrieveVacancies(vacancyURLs);
     }
 
@@ -89,18 +92,9 @@ public class JobBirdScraper extends VacancyScraper {
         List<VacancyDTO> vacancies = new CopyOnWriteArrayList<>();
 
         vacancyURLs.parallelStream().forEach(vacancyURL -> {
-            Document doc = documentService.getDocument(vacancyURL);
+            Document doc = timed(Stage.DETAIL_FETCH, () -> documentService.getDocument(vacancyURL));
             if (doc != null) {
-                VacancyDTO vacancyDTO = VacancyDTO.builder()
-                        .vacancyURL(vacancyURL)
-                        .title(getVacancyTitle(doc))
-                        .hours(retrieveWorkHours(doc.select("div.card-body").text()))
-                        .broker(getBroker())
-                        .locationString(getLocation(doc))
-                        .postingDate(getPublishDate(doc))
-                        .about(getVacancyAbout(doc))
-                        .company(getCompanyName(doc))
-                        .build();
+                VacancyDTO vacancyDTO = timed(Stage.PARSE, () -> parseVacancy(vacancyURL, doc));
 
                 vacancies.add(vacancyDTO);
 
@@ -113,6 +107,26 @@ public class JobBirdScraper extends VacancyScraper {
         return vacancies;
     }
 
+    /**
+     * Extracts the vacancy from its detail page.
+     *
+     * @param vacancyURL The url of the vacancy.
+     * @param doc        The detail page of the vacancy.
+     * @return The vacancy.
+     */
+    VacancyDTO parseVacancy(String vacancyURL, Document doc) {
+        return VacancyDTO.builder()
+                .vacancyURL(vacancyURL)
+                .title(getVacancyTitle(doc))
+                .hours(retrieveWorkHours(doc.select("div.card-body").text()))
+                .broker(getBroker())
+                .locationString(getLocation(doc))
+                .postingDate(getPublishDate(doc))
+                .about(getVacancyAbout(doc))
+                .company(getCompanyName(doc))
+                .build();
+    }
+
     /**
      * Create seach url based on pageNumber.
      *
@@ -134,13 +148,13 @@ public class JobBirdScraper extends VacancyScraper {
         ArrayList<String> vacancyURLs = new ArrayList<>();
 
         try {
-            Document doc = documentService.getDocument(createSearchURL(1));
+            Document doc;
             boolean continueSearching = true;
             int nrLastPage = getLastPageToScrape();
 
             for (int i = 1; continueSearching && i <= nrLastPage; i++) {
                 String searchURL = createSearchURL(i);
-                doc = documentService.getDocument(searchURL);
+                doc = timed(Stage.LISTING_FETCH, () -> documentService.getDocument(searchURL));
 
                 ArrayList<String> vacancyUrlsOnPage = retrieveVacancyURLsFromDoc(doc);
 
@@ -200,7 +214,7 @@ public class JobBirdScraper extends VacancyScraper {
      */
     private int getTotalNumberOfPages() {
         String searchURLlastPage = createSearchURL(1000);
-        Document docLastPage = documentService.getDocument(searchURLlastPage);
+        Document docLastPage = timed(Stage.LISTING_FETCH, () -> documentService.getDocument(searchURLlastPage));
         String newURL = docLastPage.location();
         int i_n1 = newURL.indexOf("page=") + 5;
         int i_n2 = newURL.indexOf("&",i_n1);
@@ -210,7 +224,7 @@ public class JobBirdScraper extends VacancyScraper {
     /*
      *    Retrieve the links to the individual pages for each assignment
      */
-    private ArrayList<String> retrieveVacancyURLsFromDoc(Document doc) {
+    ArrayList<String> retrieveVacancyURLsFromDoc(Document doc) {
         ArrayList<String> result = new ArrayList<>();
         Elements elements = doc.select("div.jobResults");
         Element element = elements.first();
@@ -274,12 +288,12 @@ public class JobBirdScraper extends VacancyScraper {
             Element parent = elements.get(0).parent().parent();
 
             Elements timeElements = parent.select("time");
-            log.debug(timeElements.toString());
+            log.debug("{}", timeElements);
 
             if (!timeElements.isEmpty()) {
                 Element timeElement = timeElements.get(0);
-                String date = timeElement.attr("datetime");
-                result = checkDatePattern(date) ? LocalDate.parse(date, ymdFormatter).atStartOfDay() : null;
+                LocalDate date = TextExtraction.isoDate(timeElement.attr("datetime"));
+                result = date != null ? date.atStartOfDay() : null;
             }
         }
 
@@ -290,10 +304,6 @@ public class JobBirdScraper extends VacancyScraper {
         return result;
     }
 
-    private boolean checkDatePattern(String s) {
-        return s != null && ymdPattern.matcher(s).matches();
-    }
-
     /**
      * Retrieve the vacancy body to store in postgres database
      *
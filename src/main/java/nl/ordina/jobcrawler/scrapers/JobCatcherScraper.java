@@ -4,6 +4,8 @@ import lombok.extern.slf4j.Slf4j;
 import nl.ordina.jobcrawler.exception.HTMLStructureException;
 import nl.ordina.jobcrawler.payload.VacancyDTO;
 import nl.ordina.jobcrawler.service.DocumentService;
+import nl.ordina.jobcrawler.util.ScraperMetrics.Stage;
+import nl.ordina.jobcrawler.util.TextExtraction;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
@@ -16,10 +18,8 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.client.RestTemplate;
 
 import java.time.LocalDate;
-import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.Period;
-import java.time.format.DateTimeFormatter;
 import java.time.format.FormatStyle;
 import java.util.*;
 import java.util.concurrent.CopyOnWriteArrayList;
@@ -29,7 +29,7 @@ import java.util.regex.Pattern;
 @Component
 public class JobCatcherScraper extends VacancyScraper {
 
-    RestTemplate restTemplate = new RestTemplate();
+    RestTemplate restTemplate = instrumentedRestTemplate();
     private DocumentService documentService = new DocumentService();
 
     public void setDocumentService(DocumentService documentService) {
@@ -54,42 +54,66 @@ public class JobCatcherScraper extends VacancyScraper {
         log.info("{} -- Start scraping", getBroker().toUpperCase());
         List<VacancyDTO> vacancyDTOs = new CopyOnWriteArrayList<>();
 
-        int nrVacancies = scrapeVacancies(0).getData().get(0).getAmount();
-        nrVacancies = 10;
+        int totalVacancies = scrapeVacancies(0).getData().get(0).getAmount();
+        int nrVacancies = 10;
         List<Map<String, Object>> vacanciesList = scrapeVacancies(nrVacancies).getData().get(0).getList();
 
             vacanciesList.forEach((Map<String, Object> vacancyData) -> {
-                String vacancyTitle = (String) vacancyData.get("jobrolename");
-                String vacancyCompany = (String) vacancyData.get("requesterpartyname");
-                String vacancyURL = "https://www.jobcatcher.nl/opdrachten/" + vacancyTitle.replace("/","-") + "/" + vacancyCompany.replace("/","-") + "/" + vacancyData.get("requestid");
-                vacancyURL = vacancyURL.toLowerCase();
-                vacancyURL = vacancyURL.replace(" ","-");
-                vacancyURL = vacancyURL.replace("(","%28");
-                vacancyURL = vacancyURL.replace(")","%29");
-                vacancyURL = vacancyURL.replace("\"","%22");
-                Document vacancyDoc = documentService.getDocument(vacancyURL);
-                String vacancySalary = !(vacancyData.get("maximumpurchaseprice")==null)?(vacancyData.get("maximumpurchaseprice")) + ",- p/u":"";
-
-                VacancyDTO vacancyDTO = VacancyDTO.builder()
-                        .vacancyURL(vacancyURL)
-                        .title(vacancyTitle)
-                        .hours((int) Double.parseDouble(((String) vacancyData.get("availability")).replace(',','.')))
-                        .broker(getBroker())
-                        .vacancyNumber(vacancyData.get("requestid").toString())
-                        .locationString((String) vacancyData.get("locationname"))
-                        .postingDate(LocalDateTime.parse((String) vacancyData.get("publishdate"), DateTimeFormatter.ofPattern("yyyy-MM-dd[ ]['T']HH:mm:ss['Z']")))
-                        .about(getVacancyAbout(vacancyDoc))
-                        .salary(vacancySalary)
-                        .company(vacancyCompany)
-                        .build();
+                String vacancyURL = createVacancyURL(vacancyData);
+                Document vacancyDoc = timed(Stage.DETAIL_FETCH, () -> documentService.getDocument(vacancyURL));
+                VacancyDTO vacancyDTO = timed(Stage.PARSE, () -> parseVacancy(vacancyData, vacancyURL, vacancyDoc));
 
                 vacancyDTOs.add(vacancyDTO);
                 log.info("{} - Vacancy found: {}", getBroker(), vacancyDTO.getTitle());
             });
+        // Only the first nrVacancies are requested, so the listing is complete only when the broker has no more
+        setListingComplete(vacancyDTOs.size() >= totalVacancies);
         log.info("{} -- Returning scraped vacancies", getBroker());
         return vacancyDTOs;
     }
 
+    /**
+     * Builds the url of the vacancy detail page from the search result.
+     *
+     * @param vacancyData The vacancy in the search result.
+     * @return The url of the vacancy.
+     */
+    String createVacancyURL(Map<String, Object> vacancyData) {
+        String vacancyTitle = (String) vacancyData.get("jobrolename");
+        String vacancyCompany = (String) vacancyData.get("requesterpartyname");
+        String vacancyURL = "https://www.jobcatcher.nl/opdrachten/" + vacancyTitle.replace("/","-") + "/" + vacancyCompany.replace("/","-") + "/" + vacancyData.get("requestid");
+        vacancyURL = vacancyURL.toLowerCase();
+        vacancyURL = vacancyURL.replace(" ","-");
+        vacancyURL = vacancyURL.replace("(","%28");
+        vacancyURL = vacancyURL.replace(")","%29");
+        vacancyURL = vacancyURL.replace("\"","%22");
+        return vacancyURL;
+    }
+
+    /**
+     * Extracts the vacancy from the search result and its detail page.
+     *
+     * @param vacancyData The vacancy in the search result.
+     * @param vacancyURL  The url of the vacancy.
+     * @param vacancyDoc  The detail page of the vacancy.
+     * @return The vacancy.
+     */
+    VacancyDTO parseVacancy(Map<String, Object> vacancyData, String vacancyURL, Document vacancyDoc) {
+        String vacancySalary = !(vacancyData.get("maximumpurchaseprice")==null)?(vacancyData.get("maximumpurchaseprice")) + ",- p/u":"";
+        return VacancyDTO.builder()
+                .vacancyURL(vacancyURL)
+                .title((String) vacancyData.get("jobrolename"))
+                .hours((int) Double.parseDouble(((String) vacancyData.get("availability")).replace(',','.')))
+                .broker(getBroker())
+                .vacancyNumber(vacancyData.get("requestid").toString())
+                .locationString((String) vacancyData.get("locationname"))
+                .postingDate(TextExtraction.isoDateTime((String) vacancyData.get("publishdate")))
+                .about(getVacancyAbout(vacancyDoc))
+                .salary(vacancySalary)
+                .company((String) vacancyData.get("requesterpartyname"))
+                .build();
+    }
+
     /**
      * This method does a get request to Yacht to retrieve the vacancies from a specific page.
      *
@@ -104,7 +128,7 @@ public class JobCatcherScraper extends VacancyScraper {
         String url = getSearchUrl() + "itemsperpage=" + nrOfVacancies;
 
         ResponseEntity<JobCatcherResponse> response
-                = restTemplate.getForEntity(url, JobCatcherResponse.class);
+                = timed(Stage.LISTING_FETCH, () -> restTemplate.getForEntity(url, JobCatcherResponse.class));
 
         return response.getBody();
     }
@@ -4,6 +4,8 @@ import lombok.extern.slf4j.Slf4j;
 import nl.ordina.jobcrawler.exception.HTMLStructureException;
 import nl.ordina.jobcrawler.payload.VacancyDTO;
 import nl.ordina.jobcrawler.service.DocumentService;
+import nl.ordina.jobcrawler.util.ScraperMetrics.Stage;
+import nl.ordina.jobcrawler.util.TextExtraction;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
@@ -12,7 +14,6 @@ import org.springframework.stereotype.Component;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
-import java.time.Period;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.concurrent.CopyOnWriteArrayList;
@@ -40,7 +41,10 @@ public class StaffingGroupScraper extends VacancyScraper {
     @Override
     public List<VacancyDTO> getVacancies() {
         Map<String, LocalDate> vacancyURLsAndPubDates = retrieveURLsAndPubDates();
-        return retrieveVacancies(vacancyURLsAndPubDates);
+        List<VacancyDTO> vacancies = retrieveVacancies(vacancyURLsAndPubDates);
+        // A listing that could not be parsed is empty, and a vacancy whose detail page could not be fetched is skipped
+        setListingComplete(!vacancies.isEmpty() && vacancies.size() == vacancyURLsAndPubDates.size());
+        return vacancies;
     }
 
     private Map<String, LocalDate> retrieveURLsAndPubDates() {
@@ -48,25 +52,8 @@ public class StaffingGroupScraper extends VacancyScraper {
         Map<String, LocalDate> vacancyURLsAndPubDates = new HashMap<>() {};
         try {
             String URL = getSearchUrl();
-            Document doc = documentService.getDocument(getSearchUrl());
-            Elements elements = doc.select("a.assignment-card:not(.is-rendered)");
-            Elements elements1 = doc.select("p.assignment-card__age-label");
-            for (int i = 0; i<elements.size(); i++) {
-                String sLink = elements.get(i).attr("abs:href");
-                sLink = sLink.substring(0,sLink.indexOf("opdracht/")+9) + sLink.substring(sLink.length()-6,sLink.length());
-                LocalDate date = null;
-                String dateString = elements1.get(i).children().text();
-                if(dateString.contains("Nieuw")) {
-                    date = LocalDate.now();
-                } else if(dateString.contains("dag")) {
-                    date = LocalDate.now().minus(Period.ofDays(Integer.parseInt(dateString.substring(0,dateString.indexOf(' ')))));
-                } else if(dateString.contains("we")) {
-                    date = LocalDate.now().minus(Period.ofWeeks(Integer.parseInt(dateString.substring(0,dateString.indexOf(' ')))));
-                } else if(dateString.contains("maand")) {
-                    date = LocalDate.now().minus(Period.ofMonths(Integer.parseInt(dateString.substring(0,dateString.indexOf(' ')))));
-                }
-                vacancyURLsAndPubDates.put(sLink,date); //424 .  span data-new-text
-            }
+            Document doc = timed(Stage.LISTING_FETCH, () -> documentService.getDocument(getSearchUrl()));
+            vacancyURLsAndPubDates = parseListing(doc);
 /*            Element element = elements.first();
             Element parent = element.parent();
             Elements lijst = parent.children();
@@ -81,22 +68,32 @@ public class StaffingGroupScraper extends VacancyScraper {
         }   return vacancyURLsAndPubDates;
     }
 
+    /**
+     * Extracts the vacancy urls and their publishing dates from the listing page.
+     *
+     * @param doc The listing page.
+     * @return The vacancy urls with their publishing date.
+     */
+    Map<String, LocalDate> parseListing(Document doc) {
+        Map<String, LocalDate> vacancyURLsAndPubDates = new HashMap<>();
+        Elements elements = doc.select("a.assignment-card:not(.is-rendered)");
+        Elements elements1 = doc.select("p.assignment-card__age-label");
+        LocalDate today = LocalDate.now();
+        for (int i = 0; i<elements.size(); i++) {
+            String sLink = elements.get(i).attr("abs:href");
+            sLink = sLink.substring(0,sLink.indexOf("opdracht/")+9) + sLink.substring(sLink.length()-6,sLink.length());
+            LocalDate date = TextExtraction.relativeAge(elements1.get(i).children().text(), today);
+            vacancyURLsAndPubDates.put(sLink,date); //424 .  span data-new-text
+        }
+        return vacancyURLsAndPubDates;
+    }
+
     private List<VacancyDTO> retrieveVacancies(Map<String, LocalDate> vacancyURLsAndPubDates) {
         List<VacancyDTO> vacancies = new CopyOnWriteArrayList<>();
         vacancyURLsAndPubDates.keySet().forEach(u -> {
-            System.out.println("retrieveVacancies-method: " + u);
-            Document doc = documentService.getDocument(u);
+            Document doc = timed(Stage.DETAIL_FETCH, () -> documentService.getDocument(u));
             if (doc != null) {
-                VacancyDTO vacancyDTO = VacancyDTO.builder()
-                        .vacancyURL(u)
-                        .title(getVacancyTitle(doc))
-                        .hours(getWorkHours(doc))
-                        .broker(getBroker())
-                        .locationString(getLocation(doc))
-                        .postingDate(LocalDateTime.of(vacancyURLsAndPubDates.get(u), LocalTime.of(00,00)))
-                        .about(getVacancyAbout(doc))
-                        .company(getCompanyName(doc))
-                        .build();
+                VacancyDTO vacancyDTO = timed(Stage.PARSE, () -> parseVacancy(u, vacancyURLsAndPubDates.get(u), doc));
                 vacancies.add(vacancyDTO);
                 log.info("{} - Vacancy found: {}", getBroker(), vacancyDTO.getTitle());
            }
@@ -105,6 +102,27 @@ public class StaffingGroupScraper extends VacancyScraper {
         return vacancies;
     }
 
+    /**
+     * Extracts the vacancy from its detail page.
+     *
+     * @param vacancyURL  The url of the vacancy.
+     * @param publishDate The publishing date from the listing page.
+     * @param doc         The detail page of the vacancy.
+     * @return The vacancy.
+     */
+    VacancyDTO parseVacancy(String vacancyURL, LocalDate publishDate, Document doc) {
+        return VacancyDTO.builder()
+                .vacancyURL(vacancyURL)
+                .title(getVacancyTitle(doc))
+                .hours(getWorkHours(doc))
+                .broker(getBroker())
+                .locationString(getLocation(doc))
+                .postingDate(LocalDateTime.of(publishDate, LocalTime.of(00,00)))
+                .about(getVacancyAbout(doc))
+                .company(getCompanyName(doc))
+                .build();
+    }
+
     private String getVacancyTitle(Document doc) {
         Elements elements = doc.select("h2");
         elements.removeIf(e -> !e.text().contains("Titel"));
@@ -154,10 +172,6 @@ public class StaffingGroupScraper extends VacancyScraper {
         String about = "Organisatie:\n";
         Elements elements = doc.select("h2");
         elements.removeIf(e -> !(e.tag().getName().equals("h2")&&e.text().contains("Organisatie")));
-        System.out.println("getVacancyAbout-method: " + doc.location());
-        if(elements.size()==0) {
-            System.out.println("test");
-        }
         Elements els1 = elements.get(0).nextElementSiblings();
         for (int i=0; i<els1.size(); i++) {
             Element el = els1.get(i);
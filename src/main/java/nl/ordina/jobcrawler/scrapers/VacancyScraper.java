@@ -1,18 +1,30 @@
 package nl.ordina.jobcrawler.scrapers;
 
 import nl.ordina.jobcrawler.payload.VacancyDTO;
+import nl.ordina.jobcrawler.util.ScraperMetrics;
+import nl.ordina.jobcrawler.util.ScraperMetricsInterceptor;
+import nl.ordina.jobcrawler.util.TextExtraction;
+import org.jsoup.Connection;
+import org.jsoup.HttpStatusException;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
+import org.springframework.web.client.RestTemplate;
 
 import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.function.Supplier;
 
 public abstract class VacancyScraper {
 
+    // A fetch that timed out or could not connect is tried once more before giving up on the page
+    private static final int MAX_FETCH_ATTEMPTS = 2;
+
     private final String searchUrl;
     private final String broker;
+    // Whether the last listing was crawled completely, false until a scraper verified it
+    private volatile boolean listingComplete;
 
     /**
      * Constructor for abstract class VacancyScraper
@@ -32,15 +44,58 @@ public abstract class VacancyScraper {
      * @return Jsoup Document
      */
     public static Document getDocument(final String url) {
-        try {
-            String userAgent = "Mozilla/5.0 (Windows NT 6.1) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/41.0.2228.0 Safari/537.36 ArabotScraper";
-            return Jsoup.connect(url).userAgent(userAgent).get();
-        } catch (IOException e) {
-            e.printStackTrace();
-            return null;
+        String userAgent = "Mozilla/5.0 (Windows NT 6.1) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/41.0.2228.0 Safari/537.36 ArabotScraper";
+        for (int attempt = 1; ; attempt++) {
+            ScraperMetrics.requestStarted();
+            try {
+                Connection.Response response = Jsoup.connect(url).userAgent(userAgent).execute();
+                ScraperMetrics.response(url, response.statusCode());
+                ScraperMetrics.bytes(url, response.bodyAsBytes().length);
+                return response.parse();
+            } catch (HttpStatusException e) {
+                ScraperMetrics.response(url, e.getStatusCode());
+                e.printStackTrace();
+                return null;
+            } catch (SocketTimeoutException | ConnectException e) {
+                ScraperMetrics.response(url, 0);
+                if (attempt < MAX_FETCH_ATTEMPTS) {
+                    ScraperMetrics.retry(url);
+                    continue;
+                }
+                e.printStackTrace();
+                return null;
+            } catch (IOException e) {
+                ScraperMetrics.response(url, 0);
+                e.printStackTrace();
+                return null;
+            } finally {
+                ScraperMetrics.requestFinished();
+            }
         }
     }
 
+    /**
+     * Creates a RestTemplate of which the requests are recorded in the scraper metrics
+     *
+     * @return RestTemplate with the ScraperMetricsInterceptor
+     */
+    protected static RestTemplate instrumentedRestTemplate() {
+        RestTemplate restTemplate = new RestTemplate();
+        restTemplate.getInterceptors().add(new ScraperMetricsInterceptor());
+        return restTemplate;
+    }
+
+    /**
+     * Times a stage of this broker in the scraper metrics
+     *
+     * @param stage    the stage that is executed
+     * @param supplier the work of the stage
+     * @return the result of the supplier
+     */
+    protected <T> T timed(ScraperMetrics.Stage stage, Supplier<T> supplier) {
+        return ScraperMetrics.time(broker, stage, supplier);
+    }
+
     /**
      * @return Returns SEARCH_URL
      */
@@ -56,61 +111,32 @@ public abstract class VacancyScraper {
     }
 
     /**
-     * The work hours might be hidden somewhere in the vacancy body. This method tries to split on certain words and looks for a number close to this split.
-     * @param description vacancy body
-     * @return Integer that can either contain the working hours per week or returns null
+     * Returns whether the last call to getVacancies returned every vacancy the broker lists: every page of the listing
+     * was fetched and no vacancy on it was skipped. Only then can a vacancy that is missing from the result be taken
+     * as no longer listed. A scraper that does not verify this, e.g. because it stops after a number of pages, reports
+     * false and its vacancies are only expired by the liveness check.
+     *
+     * @return true if the last listing was crawled completely
      */
-    public Integer retrieveWorkHours(String description) {
-
-        // Try to split on the word 'hours' and search for the first integer after a positive result of splitting
-        String[] splitDescription = description.toLowerCase().split("hours| uren| uur");
-
-        if (splitDescription.length > 1) {
-            int substringEnd = Math.min(splitDescription[1].length(), 18);
-            Matcher matcherBehind = matcher(splitDescription[1].substring(0, substringEnd));
-            Integer hours = findHours(matcherBehind, "behind");
-            if (hours != null && hours > 7) {
-                return hours;
-            } else {
-                Matcher matcherFront = matcher(splitDescription[0].substring(splitDescription[0].length() - 10));
-                Integer hoursFront = findHours(matcherFront, "front");
-                return (hoursFront != null && hoursFront > 7) ? hoursFront : null;
-            }
-        }
-
-        return null;
+    public boolean isListingComplete() {
+        return listingComplete;
     }
 
     /**
-     * @param input String to look for numbers
-     * @return Matcher that contains matches
+     * @param listingComplete Whether the listing that getVacancies is about to return was crawled completely
      */
-    private Matcher matcher(String input) {
-        return Pattern.compile("\\d+").matcher(input);
+    protected void setListingComplete(boolean listingComplete) {
+        this.listingComplete = listingComplete;
     }
 
     /**
-     *
-     * @param text Contains numbers that might be found
-     * @param direction search direction, in front (select latest, closest to split) or behind of the split.
-     * @return Integer with working hours or null
+     * The work hours might be hidden somewhere in the vacancy body. This method looks for a number close to the words
+     * 'hours', 'uren' or 'uur', see {@link TextExtraction#workHours(CharSequence)}.
+     * @param description vacancy body
+     * @return Integer that can either contain the working hours per week or returns null
      */
-    private Integer findHours(Matcher text, String direction) {
-        String result = null;
-        try {
-            if (direction.equals("front")) {
-                while (text.find()) {
-                    result = text.group();
-                }
-            } else {
-                text.find();
-                result = text.group();
-            }
-
-            return Integer.valueOf(result);
-        } catch (IllegalStateException | NumberFormatException e) {
-            return null;
-        }
+    public Integer retrieveWorkHours(String description) {
+        return TextExtraction.workHours(description);
     }
 
     /**
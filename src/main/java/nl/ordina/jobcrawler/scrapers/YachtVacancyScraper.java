@@ -2,6 +2,9 @@ package nl.ordina.jobcrawler.scrapers;
 
 import lombok.extern.slf4j.Slf4j;
 import nl.ordina.jobcrawler.payload.VacancyDTO;
+import nl.ordina.jobcrawler.service.DocumentService;
+import nl.ordina.jobcrawler.util.ScraperMetrics.Stage;
+import nl.ordina.jobcrawler.util.TextExtraction;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
@@ -14,14 +17,10 @@ import org.springframework.web.client.RestTemplate;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.time.format.FormatStyle;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.regex.Pattern;
 
 
 @Slf4j
@@ -30,11 +29,12 @@ public class YachtVacancyScraper extends VacancyScraper {
 
     private static final String VACANCY_URL_PREFIX = "https://www.yacht.nl";
 
-    private final Pattern dmyPattern = Pattern.compile("^(3[01]|[12][0-9]|0[1-9]) [a-z]+ [0-9]{4}$");
-    private final DateTimeFormatter dmyFormatter = DateTimeFormatter.ofLocalizedDate(FormatStyle.LONG)
-            .withLocale(new Locale("nl", "NL"));
+    RestTemplate restTemplate = instrumentedRestTemplate();
+    private DocumentService documentService = new DocumentService();
 
-    RestTemplate restTemplate = new RestTemplate();
+    public void setDocumentService(DocumentService documentService) {
+        this.documentService = documentService;
+    }
 
     public YachtVacancyScraper() {
         super(
@@ -53,6 +53,7 @@ public class YachtVacancyScraper extends VacancyScraper {
     public List<VacancyDTO> getVacancies() {
         log.info("{} -- Start scraping", getBroker().toUpperCase());
         List<VacancyDTO> vacancyDTOs = new CopyOnWriteArrayList<>();
+        boolean complete = true;
 
         int totalnumberOfPages = 1;
         for (int pageNumber = 1; pageNumber <= totalnumberOfPages; pageNumber++) {
@@ -67,33 +68,60 @@ public class YachtVacancyScraper extends VacancyScraper {
                 log.info("{} -- Retrieving vacancy urls from page: {} of {}", getBroker(), yachtVacancyResponse.getCurrentPage(), yachtVacancyResponse.getPages());
 
                 yachtVacancyResponse.getVacancies().parallelStream().forEach((Map<String, Object> vacancyData) -> {
-                    Map<String, Object> vacancyMetaData = (Map<String, Object>) vacancyData.get("meta");
-                    String vacancyURL = (String) vacancyData.get("detailUrl");
-                    vacancyURL = vacancyURL.contains("?") ? vacancyURL.split("\\?")[0] : vacancyURL;
-                    vacancyURL = vacancyURL.contains("http") ? vacancyURL : VACANCY_URL_PREFIX + vacancyURL;
-                    Document vacancyDoc = getDocument(vacancyURL);
-                    VacancyDTO vacancyDTO = VacancyDTO.builder()
-                            .vacancyURL(vacancyURL)
-                            .title((String) vacancyData.get("title"))
-                            .hours(getHours((String) vacancyMetaData.get("hours")))
-                            .broker(getBroker())
-                            .vacancyNumber((String) vacancyData.get("vacancyNumber"))
-                            .locationString((String) vacancyMetaData.get("location"))
-                            .postingDate(getPostingDate((String) vacancyData.get("date")))
-                            .about(getVacancyAbout(vacancyDoc))
-                            .salary((String) vacancyMetaData.get("salary"))
-                            .company((String) vacancyData.get("company"))
-                            .build();
+                    String vacancyURL = createVacancyURL(vacancyData);
+                    Document vacancyDoc = timed(Stage.DETAIL_FETCH, () -> documentService.getDocument(vacancyURL));
+                    VacancyDTO vacancyDTO = timed(Stage.PARSE, () -> parseVacancy(vacancyData, vacancyURL, vacancyDoc));
 
                     vacancyDTOs.add(vacancyDTO);
                     log.info("{} - Vacancy found: {}", getBroker(), vacancyDTO.getTitle());
                 });
+            } else {
+                log.warn("{} -- Page {} could not be retrieved, the listing is incomplete", getBroker(), pageNumber);
+                complete = false;
             }
         }
+        setListingComplete(complete);
         log.info("{} -- Returning scraped vacancies", getBroker());
         return vacancyDTOs;
     }
 
+    /**
+     * Builds the url of the vacancy detail page from the search result.
+     *
+     * @param vacancyData The vacancy in the search result.
+     * @return The url of the vacancy.
+     */
+    String createVacancyURL(Map<String, Object> vacancyData) {
+        String vacancyURL = (String) vacancyData.get("detailUrl");
+        vacancyURL = vacancyURL.contains("?") ? vacancyURL.split("\\?")[0] : vacancyURL;
+        return vacancyURL.contains("http") ? vacancyURL : VACANCY_URL_PREFIX + vacancyURL;
+    }
+
+    /**
+     * Extracts the vacancy from the search result and its detail page.
+     *
+     * @param vacancyData The vacancy in the search result.
+     * @param vacancyURL  The url of the vacancy.
+     * @param vacancyDoc  The detail page of the vacancy.
+     * @return The vacancy.
+     */
+    @SuppressWarnings("unchecked")
+    VacancyDTO parseVacancy(Map<String, Object> vacancyData, String vacancyURL, Document vacancyDoc) {
+        Map<String, Object> vacancyMetaData = (Map<String, Object>) vacancyData.get("meta");
+        return VacancyDTO.builder()
+                .vacancyURL(vacancyURL)
+                .title((String) vacancyData.get("title"))
+                .hours(getHours((String) vacancyMetaData.get("hours")))
+                .broker(getBroker())
+                .vacancyNumber((String) vacancyData.get("vacancyNumber"))
+                .locationString((String) vacancyMetaData.get("location"))
+                .postingDate(getPostingDate((String) vacancyData.get("date")))
+                .about(getVacancyAbout(vacancyDoc))
+                .salary((String) vacancyMetaData.get("salary"))
+                .company((String) vacancyData.get("company"))
+                .build();
+    }
+
     /**
      * This method does a get request to Yacht to retrieve the vacancies from a specific page.
      *
@@ -106,7 +134,7 @@ public class YachtVacancyScraper extends VacancyScraper {
         restTemplate.getMessageConverters().add(mappingJackson2HttpMessageConverter);
 
         ResponseEntity<YachtVacancyResponse> response
-                = restTemplate.getForEntity(getSearchUrl() + "&pagina=" + pageNumber, YachtVacancyResponse.class);
+                = timed(Stage.LISTING_FETCH, () -> restTemplate.getForEntity(getSearchUrl() + "&pagina=" + pageNumber, YachtVacancyResponse.class));
 
         return response.getBody();
     }
@@ -124,11 +152,8 @@ public class YachtVacancyScraper extends VacancyScraper {
     }
 
     private LocalDateTime getPostingDate(String date) {
-        return checkDatePattern(date) ? LocalDate.parse(date, dmyFormatter).atStartOfDay() : null;
-    }
-
-    private boolean checkDatePattern(String s) {
-        return s != null && dmyPattern.matcher(s).matches();
+        LocalDate postingDate = TextExtraction.dutchLongDate(date);
+        return postingDate != null ? postingDate.atStartOfDay() : null;
     }
 
     private Integer getHours(String input) {
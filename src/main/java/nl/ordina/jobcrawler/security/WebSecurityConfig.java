@@ -73,6 +73,8 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
                 .antMatchers(HttpMethod.GET, "/locations/**").permitAll()
                 .antMatchers(HttpMethod.GET, "/distance/**").permitAll()
                 .antMatchers(HttpMethod.GET, "/coordinates/**").permitAll()
+                .antMatchers(HttpMethod.GET, "/actuator/health").permitAll()
+                .antMatchers("/actuator/**").hasRole("ADMIN")
                 .anyRequest().authenticated()
                 .and()
                 .exceptionHandling().authenticationEntryPoint(unauthorizedHandler).and()
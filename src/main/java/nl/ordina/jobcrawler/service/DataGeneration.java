@@ -0,0 +1,43 @@
+package nl.ordina.jobcrawler.service;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generation of the data the public read endpoints return: the vacancies, their skills and the locations. Every change
+ * of them increments it, so a response made at a generation stays valid until the generation changes. The
+ * ResponseCacheFilter derives the ETags of the responses from it.
+ */
+@Component
+public class DataGeneration {
+
+    // Starts at the time of startup, so the ETags of an earlier run do not match
+    private final AtomicLong generation = new AtomicLong(System.currentTimeMillis());
+
+    /**
+     * @return The current generation.
+     */
+    public long current() {
+        return generation.get();
+    }
+
+    /**
+     * Starts a new generation after the data changed. Within a transaction the generation changes after the commit,
+     * so a response made from the data before the commit is not stored under the new generation.
+     */
+    public void next() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    generation.incrementAndGet();
+                }
+            });
+        } else {
+            generation.incrementAndGet();
+        }
+    }
+}
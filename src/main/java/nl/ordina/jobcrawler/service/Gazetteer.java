@@ -0,0 +1,96 @@
+package nl.ordina.jobcrawler.service;
+
+import nl.ordina.jobcrawler.util.KdTree;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Offline geocoder for Dutch places, loaded from gazetteer-nl.csv. Forward lookups (name to coordinates) are a hash
+ * lookup on the lowercase name. Reverse lookups (coordinates to the nearest place) search a k-d tree over the places.
+ * <p>
+ * The gazetteer can be switched off with locations.gazetteer.enabled, all lookups then miss.
+ */
+@Component
+public class Gazetteer {
+
+    private static final String PLACES = "gazetteer-nl.csv";
+    // A point further from every place than this is not considered to be in one of them. The gazetteer only lists the
+    // larger places, so a point between them is more likely in a village it does not know, which the remote geocoder does
+    static final double MAX_NEAREST_DISTANCE_KM = 3;
+
+    private final Map<String, double[]> coordinatesByName = new HashMap<>();
+    private String[] names = new String[0];
+    private KdTree places = new KdTree(new double[0], new double[0]);
+
+    public Gazetteer(@Value("${locations.gazetteer.enabled:true}") boolean enabled) {
+        this(enabled ? new ClassPathResource(PLACES) : null);
+    }
+
+    Gazetteer(Resource placesFile) {
+        if (placesFile != null) {
+            load(placesFile);
+        }
+    }
+
+    /**
+     * Returns the coordinates of a place or region.
+     *
+     * @param name Name of the place, not case sensitive.
+     * @return The latitude and longitude, or empty if the place is not in the gazetteer.
+     */
+    public Optional<double[]> findCoordinates(String name) {
+        double[] coordinates = coordinatesByName.get(name.trim().toLowerCase(Locale.ROOT));
+        return coordinates == null ? Optional.empty() : Optional.of(coordinates.clone());
+    }
+
+    /**
+     * Returns the name of the place nearest to the specified coordinates.
+     *
+     * @param lat Latitude.
+     * @param lon Longitude.
+     * @return The name of the nearest place, or empty if there is no place within 3 km.
+     */
+    public Optional<String> findNearestPlace(double lat, double lon) {
+        int nearest = places.nearest(lat, lon, MAX_NEAREST_DISTANCE_KM);
+        return nearest < 0 ? Optional.empty() : Optional.of(names[nearest]);
+    }
+
+    private void load(Resource placesFile) {
+        List<String> placeNames = new ArrayList<>();
+        List<double[]> placeCoordinates = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(placesFile.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split(";");
+                double[] coordinates = {Double.parseDouble(fields[1]), Double.parseDouble(fields[2])};
+                coordinatesByName.put(fields[0].toLowerCase(Locale.ROOT), coordinates);
+                if ("place".equals(fields[3])) {
+                    placeNames.add(fields[0]);
+                    placeCoordinates.add(coordinates);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            throw new IllegalStateException("Could not read gazetteer from " + placesFile, e);
+        }
+
+        names = placeNames.toArray(new String[0]);
+        double[] lats = new double[names.length];
+        double[] lons = new double[names.length];
+        for (int i = 0; i < names.length; i++) {
+            lats[i] = placeCoordinates.get(i)[0];
+            lons[i] = placeCoordinates.get(i)[1];
+        }
+        this.places = new KdTree(lats, lons);
+    }
+}
@@ -0,0 +1,284 @@
+package nl.ordina.jobcrawler.service;
+
+import lombok.extern.slf4j.Slf4j;
+import nl.ordina.jobcrawler.model.BrokerLifetime;
+import nl.ordina.jobcrawler.model.Liveness;
+import nl.ordina.jobcrawler.model.Vacancy;
+import nl.ordina.jobcrawler.repo.BrokerLifetimeRepository;
+import nl.ordina.jobcrawler.repo.VacancyRepository;
+import nl.ordina.jobcrawler.util.ScraperMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Checks whether the URLs of the stored vacancies still exist and deletes the vacancies whose URL does not. A pass
+ * requests at most {@code vacancies.liveness.budget} URLs, of the vacancies that were neither checked nor seen in a
+ * listing of their broker within {@code vacancies.liveness.recheck-after-hours}. The vacancies most likely to have
+ * expired go first: those oldest relative to the typical lifetime of a vacancy of their broker, which the checker
+ * learns from the vacancies it finds dead and stores, so a restart continues from the learned lifetimes.
+ * <p>
+ * The URLs of a pass are checked concurrently, at most {@code vacancies.liveness.per-host} at a time per host so a
+ * broker is not flooded, and the vacancies found dead are deleted together after each batch. The outcome of the check
+ * is stored with the other vacancies. Only a URL whose page is gone counts as dead. A URL that could not be checked,
+ * e.g. because its broker timed out or answered 429 or 503 to the concurrent requests, is counted as failed and kept.
+ */
+@Slf4j
+@Component
+public class LivenessChecker {
+
+    private static final int BATCH_SIZE = 500;
+    // Weight of a newly observed lifetime in the typical lifetime of a broker
+    private static final double LIFETIME_WEIGHT = 0.05;
+
+    private final VacancyRepository vacancyRepository;
+    private final VacancyService vacancyService;
+    private final BrokerLifetimeRepository brokerLifetimeRepository;
+    private final int maxPerHost;
+    private final int budget;
+    private final Duration recheckAfter;
+    private final double defaultLifetimeHours;
+    private final ExecutorService executor;
+    private final AtomicBoolean checking = new AtomicBoolean(false);
+    // Typical lifetime in hours per broker, from posting date until found dead
+    private final Map<String, Double> lifetimeHours = new ConcurrentHashMap<>();
+
+    public LivenessChecker(VacancyRepository vacancyRepository, VacancyService vacancyService,
+                           BrokerLifetimeRepository brokerLifetimeRepository,
+                           @Value("${vacancies.liveness.threads:16}") int threads,
+                           @Value("${vacancies.liveness.per-host:4}") int maxPerHost,
+                           @Value("${vacancies.liveness.budget:600}") int budget,
+                           @Value("${vacancies.liveness.recheck-after-hours:24}") int recheckAfterHours,
+                           @Value("${vacancies.liveness.lifetime-days:30}") int lifetimeDays) {
+        this.vacancyRepository = vacancyRepository;
+        this.vacancyService = vacancyService;
+        this.brokerLifetimeRepository = brokerLifetimeRepository;
+        this.maxPerHost = maxPerHost;
+        this.budget = budget;
+        this.recheckAfter = Duration.ofHours(recheckAfterHours);
+        this.defaultLifetimeHours = Duration.ofDays(lifetimeDays).toHours();
+        this.executor = Executors.newFixedThreadPool(threads, new CustomizableThreadFactory("liveness-"));
+        brokerLifetimeRepository.findAll().forEach(lifetime -> lifetimeHours.put(lifetime.getBroker(), lifetime.getHours()));
+    }
+
+    /**
+     * Checks the URLs of the vacancies most likely to have expired, within the budget, and deletes the vacancies whose
+     * URL no longer exists. A pass that is started while another one is running is skipped.
+     *
+     * @return The number of vacancies per outcome, all zero if the pass was skipped.
+     */
+    public Report checkDue() {
+        Report report = new Report();
+        if (!checking.compareAndSet(false, true)) {
+            log.warn("A liveness check is already in progress, skipping");
+            return report;
+        }
+
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            List<Vacancy> due = findDue(now);
+            ScraperMetrics.livenessStarted(due.size());
+            for (int from = 0; from < due.size(); from += BATCH_SIZE) {
+                List<Vacancy> batch = due.subList(from, Math.min(from + BATCH_SIZE, due.size()));
+                Map<Liveness, Collection<UUID>> outcomes = checkBatch(batch, report);
+                vacancyService.deleteAll(outcomes.get(Liveness.DEAD));
+                markChecked(outcomes.get(Liveness.ALIVE), now, Liveness.ALIVE);
+                markChecked(outcomes.get(Liveness.FAILED), now, Liveness.FAILED);
+                log.info("Checked {} vacancies: {}", report.getChecked(), report);
+            }
+            if (report.getDead() > 0) {
+                storeLifetimes();
+            }
+            return report;
+        } finally {
+            checking.set(false);
+        }
+    }
+
+    /**
+     * Returns the typical lifetime of a vacancy of the broker, learned from its vacancies found dead, or the configured
+     * lifetime until one was.
+     */
+    public Duration getLifetime(String broker) {
+        return Duration.ofMinutes(Math.round(lifetimeHours.getOrDefault(broker, defaultLifetimeHours) * 60));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Returns the vacancies to check, most likely expired first. Per broker at most the budget of its oldest
+     * unconfirmed vacancies is read, those being the most likely expired ones of that broker.
+     */
+    private List<Vacancy> findDue(LocalDateTime now) {
+        LocalDateTime before = now.minus(recheckAfter);
+        return vacancyRepository.findBrokers().stream()
+                .flatMap(broker -> vacancyRepository.findURLsUnconfirmedSince(broker, before, PageRequest.of(0, budget)).stream())
+                .map(LivenessChecker::toVacancy)
+                .sorted(Comparator.comparingDouble((Vacancy vacancy) -> expiry(vacancy, now)).reversed())
+                .limit(budget)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Returns the age of the vacancy in typical lifetimes of its broker, 1 if its age is unknown.
+     */
+    private double expiry(Vacancy vacancy, LocalDateTime now) {
+        if (vacancy.getPostingDate() == null) {
+            return 1;
+        }
+        double age = Duration.between(vacancy.getPostingDate(), now).toMinutes() / 60.0;
+        return age / lifetimeHours.getOrDefault(vacancy.getBroker(), defaultLifetimeHours);
+    }
+
+    private void storeLifetimes() {
+        LocalDateTime now = LocalDateTime.now();
+        brokerLifetimeRepository.saveAll(lifetimeHours.entrySet().stream()
+                .map(lifetime -> new BrokerLifetime(lifetime.getKey(), lifetime.getValue(), now))
+                .collect(Collectors.toList()));
+    }
+
+    private void markChecked(Collection<UUID> ids, LocalDateTime checkedAt, Liveness outcome) {
+        if (!ids.isEmpty()) {
+            vacancyRepository.markChecked(ids, checkedAt, outcome);
+        }
+    }
+
+    /**
+     * Checks a batch of vacancies, each host with at most maxPerHost lanes that take the next vacancy of that host
+     * until there is none left. The lanes of all hosts share the executor, so a slow host only holds its own lanes.
+     *
+     * @return The ids of the vacancies per outcome.
+     */
+    private Map<Liveness, Collection<UUID>> checkBatch(List<Vacancy> batch, Report report) {
+        Map<String, Queue<Vacancy>> byHost = batch.stream().collect(Collectors.groupingBy(
+                vacancy -> ScraperMetrics.host(toURL(vacancy.getVacancyURL())),
+                Collectors.toCollection(ConcurrentLinkedQueue::new)));
+        Map<Liveness, Collection<UUID>> outcomes = new EnumMap<>(Liveness.class);
+        for (Liveness outcome : Liveness.values()) {
+            outcomes.put(outcome, new ConcurrentLinkedQueue<>());
+        }
+        List<CompletableFuture<Void>> lanes = new ArrayList<>();
+        byHost.values().forEach(vacancies -> {
+            for (int lane = Math.min(maxPerHost, vacancies.size()); lane > 0; lane--) {
+                lanes.add(CompletableFuture.runAsync(() -> check(vacancies, outcomes, report), executor));
+            }
+        });
+        CompletableFuture.allOf(lanes.toArray(new CompletableFuture[0])).join();
+        return outcomes;
+    }
+
+    private void check(Queue<Vacancy> vacancies, Map<Liveness, Collection<UUID>> outcomes, Report report) {
+        for (Vacancy vacancy = vacancies.poll(); vacancy != null; vacancy = vacancies.poll()) {
+            String url = toURL(vacancy.getVacancyURL());
+            long start = System.nanoTime();
+            Liveness outcome;
+            try {
+                outcome = vacancyService.checkURL(vacancy);
+            } catch (RuntimeException e) {
+                log.warn("Could not check {}: {}", url, e.getMessage());
+                outcome = Liveness.FAILED;
+            }
+            if (outcome == Liveness.DEAD) {
+                learnLifetime(vacancy);
+            }
+            outcomes.get(outcome).add(vacancy.getId());
+            report.add(outcome);
+            ScraperMetrics.livenessChecked(url, outcome, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Moves the typical lifetime of the broker of a dead vacancy towards the age of that vacancy. The vacancy may have
+     * been dead for a while before it was checked, which the small weight evens out over many vacancies.
+     */
+    private void learnLifetime(Vacancy vacancy) {
+        if (vacancy.getPostingDate() == null || vacancy.getBroker() == null) {
+            return;
+        }
+        double age = Duration.between(vacancy.getPostingDate(), LocalDateTime.now()).toMinutes() / 60.0;
+        if (age > 0) {
+            lifetimeHours.merge(vacancy.getBroker(), defaultLifetimeHours + LIFETIME_WEIGHT * (age - defaultLifetimeHours),
+                    (lifetime, ignored) -> lifetime + LIFETIME_WEIGHT * (age - lifetime));
+        }
+    }
+
+    private static Vacancy toVacancy(Object[] row) {
+        return Vacancy.builder().id((UUID) row[0]).vacancyURL((String) row[1]).broker((String) row[2])
+                .postingDate((LocalDateTime) row[3]).build();
+    }
+
+    /**
+     * Returns the URL with a scheme, like checkURL checks it
+     */
+    private static String toURL(String vacancyURL) {
+        return vacancyURL.startsWith("http") ? vacancyURL : "https://" + vacancyURL;
+    }
+
+    /**
+     * The number of vacancies per outcome of a liveness pass
+     */
+    public static final class Report {
+        private final AtomicInteger alive = new AtomicInteger();
+        private final AtomicInteger dead = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+
+        private void add(Liveness outcome) {
+            switch (outcome) {
+                case ALIVE:
+                    alive.incrementAndGet();
+                    break;
+                case DEAD:
+                    dead.incrementAndGet();
+                    break;
+                default:
+                    failed.incrementAndGet();
+                    break;
+            }
+        }
+
+        public int getAlive() {
+            return alive.get();
+        }
+
+        public int getDead() {
+            return dead.get();
+        }
+
+        public int getFailed() {
+            return failed.get();
+        }
+
+        public int getChecked() {
+            return getAlive() + getDead() + getFailed();
+        }
+
+        @Override
+        public String toString() {
+            return alive + " alive, " + dead + " dead (deleted), " + failed + " failed";
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package nl.ordina.jobcrawler.service;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Turns the location strings of the brokers into the names of our Location rows. A country suffix (", Nederland",
+ * ", Netherlands", ...) is stripped, every word is capitalized and the result is looked up in the alias table
+ * (location-aliases.csv), all in one pass over the string.
+ */
+@Component
+public class LocationCanonicalizer {
+
+    private static final String ALIAS_TABLE = "location-aliases.csv";
+    private static final String[] COUNTRY_SUFFIXES = {", nederland", ", netherlands", ", the netherlands", ", nl"};
+
+    private final Map<String, String> aliases;
+
+    public LocationCanonicalizer() {
+        this(new ClassPathResource(ALIAS_TABLE));
+    }
+
+    LocationCanonicalizer(Resource aliasTable) {
+        this.aliases = readAliases(aliasTable);
+    }
+
+    /**
+     * Returns the canonical name of a location, e.g. "Den Bosch" for "'s-Hertogenbosch, Nederland".
+     *
+     * @param location The location as given by the broker, may be null.
+     * @return The canonical name, or an empty string if the vacancy has no single location.
+     */
+    public String canonicalize(String location) {
+        if (location == null) {
+            return "";
+        }
+        int start = 0;
+        while (start < location.length() && Character.isWhitespace(location.charAt(start))) {
+            start++;
+        }
+        int end = stripCountry(location, start);
+        if (start == end) {
+            return "";
+        }
+        String name = capitalize(location, start, end);
+        return aliases.getOrDefault(name, name);
+    }
+
+    /**
+     * @return The end of the location without trailing whitespace and country suffixes.
+     */
+    private static int stripCountry(String location, int start) {
+        int end = location.length();
+        boolean stripped = true;
+        while (stripped) {
+            while (end > start && Character.isWhitespace(location.charAt(end - 1))) {
+                end--;
+            }
+            stripped = false;
+            for (String suffix : COUNTRY_SUFFIXES) {
+                if (end - start >= suffix.length() && location.regionMatches(true, end - suffix.length(), suffix, 0, suffix.length())) {
+                    end -= suffix.length();
+                    stripped = true;
+                }
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Lowercases the location and capitalizes the first letter and every letter after a space or hyphen.
+     */
+    private static String capitalize(String location, int start, int end) {
+        StringBuilder name = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            char c = location.charAt(i);
+            boolean wordStart = i == start || location.charAt(i - 1) == ' ' || location.charAt(i - 1) == '-';
+            name.append(wordStart ? Character.toUpperCase(c) : Character.toLowerCase(c));
+        }
+        return name.toString();
+    }
+
+    private static Map<String, String> readAliases(Resource aliasTable) {
+        Map<String, String> aliases = new HashMap<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(aliasTable.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int separator = line.indexOf(';');
+                if (line.isBlank() || line.startsWith("#") || separator < 0) {
+                    continue;
+                }
+                String alias = line.substring(0, separator).trim();
+                String canonical = line.substring(separator + 1).trim();
+                aliases.put(capitalize(alias, 0, alias.length()),
+                        canonical.isEmpty() ? "" : capitalize(canonical, 0, canonical.length()));
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read location aliases from " + aliasTable, e);
+        }
+        return aliases;
+    }
+}
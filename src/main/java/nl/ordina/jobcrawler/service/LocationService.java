@@ -1,20 +1,33 @@
 package nl.ordina.jobcrawler.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import lombok.extern.slf4j.Slf4j;
 import nl.ordina.jobcrawler.exception.LocationNotFoundException;
+import nl.ordina.jobcrawler.model.GeocodeResult;
 import nl.ordina.jobcrawler.model.Location;
 import nl.ordina.jobcrawler.model.Vacancy;
 import nl.ordina.jobcrawler.payload.opensearch.Coordinates;
 import nl.ordina.jobcrawler.payload.opensearch.Place;
+import nl.ordina.jobcrawler.repo.GeocodeResultRepository;
+import nl.ordina.jobcrawler.repo.LocationIndex;
 import nl.ordina.jobcrawler.repo.LocationRepository;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.util.ObjectUtils;
 import org.springframework.util.StringUtils;
 import org.springframework.web.client.RestTemplate;
 
 import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -28,41 +41,81 @@ public class LocationService {
 
     private static final String GET_COORD_URL = "http://open.mapquestapi.com/nominatim/v1/search.php?format=json&key={key}&q={location}&addressdetails=0&limit=1&countrycodes=NL";
     private static final String GET_LOCNAME_URL = "http://open.mapquestapi.com/nominatim/v1/reverse.php?format=json&key={key}&lat={lat}&lon={lon}";
+    private static final int RESOLVED_LOCATIONS_CACHE_SIZE = 10_000;
+    private static final int GEOCODE_CACHE_SIZE = 1_000;
+    // Places rarely move, but a location the geocoder did not know may be known after its next data update
+    private static final Duration GEOCODE_FOUND_TTL = Duration.ofDays(30);
+    private static final Duration GEOCODE_NOT_FOUND_TTL = Duration.ofDays(1);
 
     private final RestTemplate restTemplate;
     private final ObjectMapper objectMapper;
     private final LocationRepository locationRepository;
+    private final GeocodeResultRepository geocodeResultRepository;
+    private final LocationIndex locationIndex;
+    private final LocationCanonicalizer locationCanonicalizer;
+    private final Gazetteer gazetteer;
+    private final DataGeneration dataGeneration;
+    // Raw broker location strings to their Location, or empty for strings without a single location
+    private final Cache<String, Optional<Location>> resolvedLocations = Caffeine.newBuilder()
+            .maximumSize(RESOLVED_LOCATIONS_CACHE_SIZE)
+            .recordStats()
+            .build();
+    // Lowercase location strings to their geocode result, in front of the Location and geocode_cache tables
+    private final Cache<String, GeocodeResult> geocodeResults = Caffeine.newBuilder()
+            .maximumSize(GEOCODE_CACHE_SIZE)
+            .expireAfter(new GeocodeResultExpiry())
+            .recordStats()
+            .build();
 
-    public static String normalizeName(String name) {
-        if (name.equals("Diverse locaties")) {
-            name = "";
-        }
-        else if (name.endsWith(", Nederland")) {
-            name = name.substring(0, name.length() - 11);
-        }
-        else if (name.endsWith(", Netherlands")) {
-            name = name.substring(0, name.length() - 13);
-        }
-        else if (name.endsWith(", the Netherlands")) {
-            name = name.substring(0, name.length() - 16);
-        }
-        if (name.equals("'s-Hertogenbosch")) {
-            name = "Den Bosch";
+    public LocationService(LocationRepository locationRepository, GeocodeResultRepository geocodeResultRepository,
+                           LocationIndex locationIndex, RestTemplate restTemplate, ObjectMapper objectMapper, LocationCanonicalizer locationCanonicalizer,
+                           Gazetteer gazetteer, DataGeneration dataGeneration) {
+        this.locationRepository = locationRepository;
+        this.geocodeResultRepository = geocodeResultRepository;
+        this.locationIndex = locationIndex;
+        this.restTemplate = restTemplate;
+        this.objectMapper = objectMapper;
+        this.locationCanonicalizer = locationCanonicalizer;
+        this.gazetteer = gazetteer;
+        this.dataGeneration = dataGeneration;
+        CaffeineCacheMetrics.monitor(Metrics.globalRegistry, resolvedLocations, "locations.resolved");
+        CaffeineCacheMetrics.monitor(Metrics.globalRegistry, geocodeResults, "locations.geocoded");
+    }
+
+    /**
+     * Returns the Location of a location string as given by a broker. The string is canonicalized, and the Location is
+     * looked up by its canonical name or created if it does not exist yet, with the coordinates of
+     * {@link #getCoordinates}. Results are cached per raw
+     * string, so a string that was seen before resolves without any database or geocoder call.
+     *
+     * @param rawLocation The location string of the broker, may be null.
+     * @return The Location, or empty if the string does not name a single location.
+     * @throws LocationNotFoundException if the location does not exist yet and cannot be geocoded.
+     */
+    public Optional<Location> resolve(String rawLocation) throws IOException {
+        if (rawLocation == null) {
+            return Optional.empty();
         }
-        name = name.toLowerCase();
-        name = name.substring(0,1).toUpperCase() + name.substring(1,name.length());
-        for(int i = 1; i<name.length(); i++) {
-            if(name.charAt(i-1)==' '||name.charAt(i-1)=='-') {
-                name = name.substring(0,i) + name.substring(i,i+1).toUpperCase() + name.substring(i+1,name.length());
-            }
+        Optional<Location> location = resolvedLocations.getIfPresent(rawLocation);
+        if (location == null) {
+            String name = locationCanonicalizer.canonicalize(rawLocation);
+            location = name.isEmpty() ? Optional.empty() : Optional.of(findOrCreate(name));
+            resolvedLocations.put(rawLocation, location);
         }
-        return name;
+        return location;
     }
 
-    public LocationService(LocationRepository locationRepository, RestTemplate restTemplate, ObjectMapper objectMapper) {
-        this.locationRepository = locationRepository;
-        this.restTemplate = restTemplate;
-        this.objectMapper = objectMapper;
+    private Location findOrCreate(String name) throws IOException {
+        Optional<Location> existing = locationRepository.findByName(name);
+        if (existing.isPresent()) {
+            return existing.get();
+        }
+        // Through the geocode caches, so a location string the geocoder does not know is not asked again every scrape
+        double[] coordinates = getCoordinates(name, true);
+        if (coordinates == null) {
+            throw new LocationNotFoundException(name);
+        }
+        return save(new Location(name, coordinates));
     }
 
     public List<Location> findByOrderByNameAsc() {
@@ -84,7 +137,18 @@ public class LocationService {
         return Optional.empty();
     }
 
+    /**
+     * Returns the name of the place at the specified coordinates, from the gazetteer or else the remote geocoder.
+     *
+     * @param lat Latitude.
+     * @param lon Longitude.
+     * @return The name of the town or city, or an empty string if there is none.
+     */
     public String getLocation(double lat, double lon) throws IOException {
+        Optional<String> nearestPlace = gazetteer.findNearestPlace(lat, lon);
+        if (nearestPlace.isPresent()) {
+            return nearestPlace.get();
+        }
         String jsonResponse = restTemplate.getForObject(GET_LOCNAME_URL, String.class, API_KEY, lat, lon);
         if (!ERROR_API_RESPONSE.equals(jsonResponse)) {
             Place place = objectMapper.readValue(jsonResponse, Place.class);
@@ -99,7 +163,64 @@ public class LocationService {
         return "";
     }
 
+    /**
+     * Returns the coordinates of a location. Known locations are answered from memory, the Location table, the
+     * gazetteer or the geocode_cache table, so only a location string that was not seen before (or whose cached answer expired) is sent
+     * to the remote geocoder. Locations the geocoder could not find are cached in memory as well, for a shorter time, but
+     * are not stored, as any searched string would otherwise end up in the geocode_cache table.
+     *
+     * @param location Name of the location.
+     * @return The latitude and longitude, or null if the location could not be found.
+     * @throws IOException if the response of the geocoder could not be read.
+     */
     public double[] getCoordinates(String location) throws IOException {
+        return getCoordinates(location, false);
+    }
+
+    /**
+     * @param scraped Whether the location string came from a broker, in which case a location the geocoder could not
+     *                find is stored too, so it is not asked again every scrape.
+     */
+    private double[] getCoordinates(String location, boolean scraped) throws IOException {
+        String query = location.trim().toLowerCase(Locale.ROOT);
+        GeocodeResult result = geocodeResults.getIfPresent(query);
+        if (result == null) {
+            result = findStoredCoordinates(location, query, scraped);
+            geocodeResults.put(query, result);
+        }
+        return result.getCoord();
+    }
+
+    private GeocodeResult findStoredCoordinates(String location, String query, boolean scraped) throws IOException {
+        LocalDateTime now = LocalDateTime.now();
+        String name = locationCanonicalizer.canonicalize(location);
+        Optional<Location> existing = name.isEmpty() ? Optional.empty() : locationRepository.findByName(name);
+        if (existing.isPresent()) {
+            return new GeocodeResult(query, existing.get().getCoord(), now);
+        }
+        Optional<double[]> known = gazetteer.findCoordinates(name.isEmpty() ? location : name);
+        if (known.isPresent()) {
+            return new GeocodeResult(query, known.get(), now);
+        }
+        Optional<GeocodeResult> stored = geocodeResultRepository.findByQuery(query);
+        if (stored.isPresent() && !stored.get().isExpired(now, GEOCODE_FOUND_TTL, GEOCODE_NOT_FOUND_TTL)) {
+            return stored.get();
+        }
+        GeocodeResult result = stored.orElseGet(GeocodeResult::new);
+        result.setQuery(query);
+        result.update(geocode(location), now);
+        if (!result.isFound() && stored.isEmpty() && !scraped) {
+            return result;
+        }
+        try {
+            return geocodeResultRepository.save(result);
+        } catch (DataIntegrityViolationException e) {
+            // Another request stored the same location string first
+            return result;
+        }
+    }
+
+    private double[] geocode(String location) throws IOException {
         double[] coord = new double[2];
         String jsonResponse = restTemplate.getForObject(GET_COORD_URL, String.class, API_KEY, location);
         if (!ObjectUtils.isEmpty(jsonResponse) && !EMPTY_API_RESPONSE.equals(jsonResponse) && StringUtils.hasText(jsonResponse)) {
@@ -114,16 +235,64 @@ public class LocationService {
         return coord;
     }
 
+    /**
+     * Deletes the stored locations the geocoder could not find whose answer expired, as they are asked again anyway
+     * when they are scraped again.
+     */
+    @Scheduled(cron = "0 45 * * * *") // Runs every hour at a quarter to.
+    public void purgeExpiredNotFound() {
+        int purged = geocodeResultRepository.deleteNotFoundFetchedBefore(LocalDateTime.now().minus(GEOCODE_NOT_FOUND_TTL));
+        log.info("Purged {} expired location strings the geocoder could not find", purged);
+    }
+
     public List<Location> findAll() {
         return locationRepository.findAll();
     }
 
     public Location save(Location location) {
-        return locationRepository.save(location);
+        Location saved = locationRepository.save(location);
+        locationIndex.put(saved);
+        dataGeneration.next();
+        evictResolved(saved.getId());
+        if (location.getName() != null) {
+            geocodeResults.invalidate(location.getName().toLowerCase(Locale.ROOT));
+        }
+        return saved;
     }
 
     public boolean delete(UUID id) {
         locationRepository.deleteById(id);
+        locationIndex.remove(id);
+        dataGeneration.next();
+        evictResolved(id);
+        geocodeResults.invalidateAll();
         return false;
     }
+
+    private void evictResolved(UUID id) {
+        resolvedLocations.asMap().values().removeIf(location -> location.isPresent() && id != null && id.equals(location.get().getId()));
+    }
+
+    /**
+     * Expires a found location after {@link #GEOCODE_FOUND_TTL} and a location that was not found after
+     * {@link #GEOCODE_NOT_FOUND_TTL}, counted from the moment it was asked to the geocoder.
+     */
+    private static class GeocodeResultExpiry implements Expiry<String, GeocodeResult> {
+        @Override
+        public long expireAfterCreate(String query, GeocodeResult result, long currentTime) {
+            Duration ttl = result.isFound() ? GEOCODE_FOUND_TTL : GEOCODE_NOT_FOUND_TTL;
+            Duration age = Duration.between(result.getFetchedAt(), LocalDateTime.now());
+            return Math.max(0, ttl.minus(age).toNanos());
+        }
+
+        @Override
+        public long expireAfterUpdate(String query, GeocodeResult result, long currentTime, long currentDuration) {
+            return expireAfterCreate(query, result, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String query, GeocodeResult result, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
 }
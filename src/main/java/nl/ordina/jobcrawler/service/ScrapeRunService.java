@@ -0,0 +1,143 @@
+package nl.ordina.jobcrawler.service;
+
+import lombok.extern.slf4j.Slf4j;
+import nl.ordina.jobcrawler.model.ScrapeCheckpoint;
+import nl.ordina.jobcrawler.model.ScrapeRun;
+import nl.ordina.jobcrawler.repo.ScrapeCheckpointRepository;
+import nl.ordina.jobcrawler.repo.ScrapeRunRepository;
+import nl.ordina.jobcrawler.util.ScrapeRunStatus;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/*
+    This service keeps the scrape run journal: one ScrapeRun per run and a ScrapeCheckpoint per broker.
+    Every method saves immediately, so the journal survives a restart in the middle of a scrape.
+ */
+
+@Slf4j
+@Service
+public class ScrapeRunService {
+
+    private final ScrapeRunRepository scrapeRunRepository;
+    private final ScrapeCheckpointRepository scrapeCheckpointRepository;
+
+    public ScrapeRunService(ScrapeRunRepository scrapeRunRepository, ScrapeCheckpointRepository scrapeCheckpointRepository) {
+        this.scrapeRunRepository = scrapeRunRepository;
+        this.scrapeCheckpointRepository = scrapeCheckpointRepository;
+    }
+
+    /**
+     * Returns the run that was still running when the application stopped, if any.
+     *
+     * @return An optional of the interrupted run, and an empty optional otherwise.
+     */
+    public Optional<ScrapeRun> findInterrupted() {
+        return scrapeRunRepository.findFirstByStatusOrderByStartedAtDesc(ScrapeRunStatus.RUNNING);
+    }
+
+    /**
+     * Resumes the interrupted run if there is one, otherwise a new run is started.
+     *
+     * @return The run to continue scraping in.
+     */
+    public ScrapeRun startOrResume() {
+        Optional<ScrapeRun> interrupted = findInterrupted();
+        if (interrupted.isPresent()) {
+            ScrapeRun run = interrupted.get();
+            run.setResumeCount(run.getResumeCount() + 1);
+            log.info("Resuming scrape run {} started at {}", run.getId(), run.getStartedAt());
+            return scrapeRunRepository.save(run);
+        }
+        return scrapeRunRepository.save(new ScrapeRun(LocalDateTime.now()));
+    }
+
+    /**
+     * Returns the checkpoint of the broker within the run, creating it when the broker has not been started yet. The
+     * listing of a broker that was interrupted is crawled again from the start, so the counters of its checkpoint are
+     * reset rather than counting the pages committed before the interruption twice.
+     *
+     * @param run    The current run.
+     * @param broker The broker being scraped.
+     * @return The checkpoint of the broker.
+     */
+    public ScrapeCheckpoint checkpoint(ScrapeRun run, String broker) {
+        Optional<ScrapeCheckpoint> existing = scrapeCheckpointRepository.findByRunAndBroker(run, broker);
+        if (existing.isEmpty()) {
+            return scrapeCheckpointRepository.save(new ScrapeCheckpoint(run, broker));
+        }
+        ScrapeCheckpoint checkpoint = existing.get();
+        if (checkpoint.isCompleted() || checkpoint.getPage() == 0) {
+            return checkpoint;
+        }
+        log.info("{} -- Crawling again from the start, discarding {} committed pages", broker, checkpoint.getPage());
+        checkpoint.setPage(0);
+        checkpoint.setNewVacancies(0);
+        checkpoint.setExistingVacancies(0);
+        checkpoint.setFailedVacancies(0);
+        checkpoint.setBytes(0);
+        checkpoint.setUpdatedAt(LocalDateTime.now());
+        return scrapeCheckpointRepository.save(checkpoint);
+    }
+
+    /**
+     * Records a committed page of vacancies on the checkpoint.
+     *
+     * @param checkpoint        The checkpoint of the broker.
+     * @param newVacancies      Number of vacancies added.
+     * @param existingVacancies Number of vacancies that were already known.
+     * @param failedVacancies   Number of vacancies that could not be saved.
+     * @param bytes             Size of the scraped vacancy bodies in this page.
+     * @return The updated checkpoint.
+     */
+    public ScrapeCheckpoint commitPage(ScrapeCheckpoint checkpoint, int newVacancies, int existingVacancies,
+                                       int failedVacancies, long bytes) {
+        checkpoint.setPage(checkpoint.getPage() + 1);
+        checkpoint.setNewVacancies(checkpoint.getNewVacancies() + newVacancies);
+        checkpoint.setExistingVacancies(checkpoint.getExistingVacancies() + existingVacancies);
+        checkpoint.setFailedVacancies(checkpoint.getFailedVacancies() + failedVacancies);
+        checkpoint.setBytes(checkpoint.getBytes() + bytes);
+        checkpoint.setUpdatedAt(LocalDateTime.now());
+        return scrapeCheckpointRepository.save(checkpoint);
+    }
+
+    /**
+     * Marks the broker as done, so it is skipped when the run is resumed.
+     *
+     * @param checkpoint The checkpoint of the broker.
+     * @return The updated checkpoint.
+     */
+    public ScrapeCheckpoint completeBroker(ScrapeCheckpoint checkpoint) {
+        checkpoint.setCompleted(true);
+        checkpoint.setUpdatedAt(LocalDateTime.now());
+        return scrapeCheckpointRepository.save(checkpoint);
+    }
+
+    /**
+     * Closes the run with the given status.
+     *
+     * @param run    The run to close.
+     * @param status COMPLETED when all brokers finished, FAILED otherwise.
+     * @return The closed run, including its checkpoints.
+     */
+    public ScrapeRun finish(ScrapeRun run, ScrapeRunStatus status) {
+        run.setStatus(status);
+        run.setFinishedAt(LocalDateTime.now());
+        scrapeRunRepository.save(run);
+        return scrapeRunRepository.findById(run.getId()).orElse(run);
+    }
+
+    /**
+     * Returns the most recent runs, newest first.
+     *
+     * @param limit Maximum number of runs to return.
+     * @return The run history.
+     */
+    public List<ScrapeRun> findRecent(int limit) {
+        return scrapeRunRepository.findByOrderByStartedAtDesc(PageRequest.of(0, limit));
+    }
+
+}
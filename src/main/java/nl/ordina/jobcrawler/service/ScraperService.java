@@ -1,31 +1,45 @@
 package nl.ordina.jobcrawler.service;
 
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
-import nl.ordina.jobcrawler.model.Location;
+import nl.ordina.jobcrawler.exception.VacancyURLMalformedException;
+import nl.ordina.jobcrawler.model.ScrapeCheckpoint;
+import nl.ordina.jobcrawler.model.ScrapeRun;
 import nl.ordina.jobcrawler.model.Vacancy;
+import nl.ordina.jobcrawler.model.mapper.VacancyMapper;
 import nl.ordina.jobcrawler.payload.VacancyDTO;
 import nl.ordina.jobcrawler.scrapers.*;
-import org.modelmapper.ModelMapper;
+import nl.ordina.jobcrawler.util.ScrapeRunStatus;
+import nl.ordina.jobcrawler.util.ScraperMetrics;
+import nl.ordina.jobcrawler.util.ScraperMetrics.Outcome;
+import nl.ordina.jobcrawler.util.ScraperMetrics.Stage;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import javax.annotation.PostConstruct;
+import javax.persistence.EntityManager;
 import java.io.IOException;
-import java.util.Arrays;
-import java.util.List;
-import java.util.Optional;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
 
 /*
 This 'starter' class uses the @Scheduled annotation. Every 15 minutes it executes the cronJobSch() function to retrieve all vacancies.
 Upon fetching the vacancies it runs a check to verify if the vacancy is already present in the database.
+Progress is journaled per broker in a ScrapeRun, so a run that is interrupted resumes from its last checkpoint.
 */
 
 @Slf4j
 @Service
 public class ScraperService {
 
+    private static final int CHUNK_SIZE = 50;
+
     private final VacancyService vacancyService;
     private final LocationService locationService;
     private final YachtVacancyScraper yachtVacancyScraper;
@@ -34,11 +48,25 @@ public class ScraperService {
     private final HeadfirstScraper headfirstScraper;
     private final StaffingGroupScraper staffingGroupScraper;
     private final JobCatcherScraper jobCatcherScraper;
-    private final ModelMapper modelMapper;
+    private final VacancyMapper vacancyMapper;
+    private final ScrapeRunService scrapeRunService;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManager entityManager;
+    private final LivenessChecker livenessChecker;
+    private final AtomicBoolean scraping = new AtomicBoolean(false);
+
+    // Expires the vacancies no longer in the listing of their broker, instead of requesting every vacancy URL
+    @Value("${vacancies.liveness.reconcile.enabled:true}")
+    private boolean reconcile;
+
+    @Value("${vacancies.liveness.reconcile.missed-crawls:2}")
+    private int missedCrawls;
 
     public ScraperService(VacancyService vacancyService, LocationService locationService,
                           YachtVacancyScraper yachtVacancyScraper, HuxleyITVacancyScraper huxleyITVacancyScraper,
-                          JobBirdScraper jobBirdScraper, HeadfirstScraper headfirstScraper, JobCatcherScraper jobCatcherScraper, StaffingGroupScraper staffingGroupScraper, ModelMapper modelMapper) {
+                          JobBirdScraper jobBirdScraper, HeadfirstScraper headfirstScraper, JobCatcherScraper jobCatcherScraper, StaffingGroupScraper staffingGroupScraper, VacancyMapper vacancyMapper,
+                          ScrapeRunService scrapeRunService, TransactionTemplate transactionTemplate, EntityManager entityManager,
+                          LivenessChecker livenessChecker) {
         this.vacancyService = vacancyService;
         this.locationService = locationService;
         this.yachtVacancyScraper = yachtVacancyScraper;
@@ -47,85 +75,191 @@ public class ScraperService {
         this.headfirstScraper = headfirstScraper;
         this.jobCatcherScraper = jobCatcherScraper;
         this.staffingGroupScraper = staffingGroupScraper;
-        this.modelMapper = modelMapper;
+        this.vacancyMapper = vacancyMapper;
+        this.scrapeRunService = scrapeRunService;
+        this.transactionTemplate = transactionTemplate;
+        this.entityManager = entityManager;
+        this.livenessChecker = livenessChecker;
     }
 
     //@PostConstruct
     @Scheduled(cron = "0 0 12,18 * * *")
     // Runs two times a day. At 12pm and 6pm
-    @Transactional
     public void scrape() {
         log.info("CRON Scheduled -- Scrape vacancies");
+        if (!scraping.compareAndSet(false, true)) {
+            log.warn("A scrape run is already in progress, skipping");
+            return;
+        }
+
+        try {
+            ScrapeRun run = scrapeRunService.startOrResume();
+            boolean allCompleted = getScrapers().parallelStream()
+                    .map(vacancyScraper -> scrapeBroker(run, vacancyScraper))
+                    .reduce(true, Boolean::logicalAnd);
+
+            ScrapeRun finishedRun = scrapeRunService.finish(run, allCompleted ? ScrapeRunStatus.COMPLETED : ScrapeRunStatus.FAILED);
+            log.info(finishedRun.getNewVacancies() + " new vacancies added.");
+            log.info(finishedRun.getExistingVacancies() + " existing vacancies found.");
+            log.info("Finished scraping");
+        } finally {
+            scraping.set(false);
+        }
+    }
 
-        List<VacancyDTO> allVacancyDTOs = startScraping();
-        Vacancy vacancy;
+    /**
+     * Picks up a scrape run that was interrupted by a crash or redeploy, instead of waiting for the next cron tick.
+     */
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterruptedScrape() {
+        if (scrapeRunService.findInterrupted().isPresent()) {
+            scrape();
+        }
+    }
+
+    /**
+     * Scrapes a single broker and commits its vacancies in pages of CHUNK_SIZE, updating the checkpoint after each page.
+     * A broker that was already completed in this run is skipped. When the scraper reports that it crawled the listing
+     * completely, see {@link VacancyScraper#isListingComplete()}, the vacancies of the broker that it no longer lists
+     * are reconciled, see {@link #reconcileBroker}.
+     *
+     * @param run           The current scrape run.
+     * @param vacancyScraper The scraper of the broker.
+     * @return true if the broker completed, false if scraping it failed.
+     */
+    private boolean scrapeBroker(ScrapeRun run, VacancyScraper vacancyScraper) {
+        ScrapeCheckpoint checkpoint = scrapeRunService.checkpoint(run, vacancyScraper.getBroker());
+        if (checkpoint.isCompleted()) {
+            log.info("{} -- Already completed in this run, skipping", vacancyScraper.getBroker());
+            return true;
+        }
+
+        int queued = 0;
+        try {
+            LocalDateTime crawlStart = LocalDateTime.now();
+            List<VacancyDTO> vacancyDTOs = vacancyScraper.getVacancies();
+            queued = vacancyDTOs.size();
+            ScraperMetrics.queued(queued);
+            for (int from = 0; from < vacancyDTOs.size(); from += CHUNK_SIZE) {
+                List<VacancyDTO> page = vacancyDTOs.subList(from, Math.min(from + CHUNK_SIZE, vacancyDTOs.size()));
+                checkpoint = ingestPage(checkpoint, page, crawlStart);
+                ScraperMetrics.dequeued(page.size());
+                queued -= page.size();
+            }
+            scrapeRunService.completeBroker(checkpoint);
+            // An empty listing is more likely a broken scraper than a broker without vacancies
+            if (reconcile && !vacancyDTOs.isEmpty() && vacancyScraper.isListingComplete()) {
+                reconcileBroker(vacancyScraper.getBroker(), crawlStart);
+            } else if (reconcile) {
+                log.info("{} -- Listing was not crawled completely, not reconciling", vacancyScraper.getBroker());
+            }
+            return true;
+        } catch (RuntimeException e) {
+            log.error("{} -- Scraping failed: {}", vacancyScraper.getBroker(), e.getMessage());
+            return false;
+        } finally {
+            ScraperMetrics.dequeued(queued);
+        }
+    }
+
+    /**
+     * Saves the new vacancies of one page and records the page on the checkpoint.
+     * All network work (URL checks and geocoding) is done before the transaction is opened. The page is then written in
+     * one short transaction together with its checkpoint, after which the persistence context is cleared, so neither the
+     * connection nor the managed entities are held for longer than a single page.
+     * Pages are ingested one at a time, so brokers that are scraped in parallel do not create the same location twice.
+     * The vacancies of the page, stored or new, are recorded as seen at the start of the crawl.
+     */
+    private synchronized ScrapeCheckpoint ingestPage(ScrapeCheckpoint checkpoint, List<VacancyDTO> page, LocalDateTime crawlStart) {
         int existVacancy = 0;
-        int newVacancy = 0;
+        int failedVacancy = 0;
+        long bytes = 0;
+
+        Set<String> existingURLs = vacancyService.findExistingURLs(
+                page.stream().map(VacancyDTO::getVacancyURL).collect(Collectors.toList()));
+        Set<String> knownURLs = new HashSet<>(existingURLs);
+        List<Vacancy> newVacancies = new ArrayList<>();
 
-        for (VacancyDTO vacancyDTO : allVacancyDTOs) {
+        for (VacancyDTO vacancyDTO : page) {
+            if (vacancyDTO.getAbout() != null) {
+                bytes += vacancyDTO.getAbout().length();
+            }
+            if (!knownURLs.add(vacancyDTO.getVacancyURL())) {
+                existVacancy++;
+                continue;
+            }
             try {
-                Optional<Vacancy> existCheck = vacancyService.findByURL(vacancyDTO.getVacancyURL());
-                if (existCheck.isPresent()) {
-                    existVacancy++;
-                } else {
-                    vacancy = modelMapper.map(vacancyDTO, Vacancy.class);
-                    processVacancyLocation(vacancy, vacancyDTO);
-                    newVacancy++;
+                Vacancy vacancy = vacancyMapper.toVacancy(vacancyDTO);
+                vacancy.setLastSeen(crawlStart);
+                vacancy.setMissedCrawls(0);
+                if (!vacancyService.hasExistingURL(vacancy)) {
+                    throw new VacancyURLMalformedException(vacancy.getVacancyURL());
                 }
-            } catch (IOException e) {
+                processVacancyLocation(vacancy, vacancyDTO, checkpoint.getBroker());
+                newVacancies.add(vacancy);
+            } catch (IOException | RuntimeException e) {
+                failedVacancy++;
                 log.error(e.getMessage());
             }
         }
-        log.info(newVacancy + " new vacancies added.");
-        log.info(existVacancy + " existing vacancies found.");
-        log.info("Finished scraping");
-        allVacancyDTOs.clear();
+
+        int newVacancy = newVacancies.size();
+        int existing = existVacancy;
+        int failed = failedVacancy;
+        long pageBytes = bytes;
+        ScrapeCheckpoint committed = ScraperMetrics.time(checkpoint.getBroker(), Stage.PERSIST, () -> transactionTemplate.execute(status -> {
+            vacancyService.markSeen(existingURLs, crawlStart);
+            vacancyService.saveAll(newVacancies);
+            ScrapeCheckpoint pageCheckpoint = scrapeRunService.commitPage(checkpoint, newVacancy, existing, failed, pageBytes);
+            entityManager.flush();
+            entityManager.clear();
+            return pageCheckpoint;
+        }));
+        ScraperMetrics.vacancies(checkpoint.getBroker(), Outcome.NEW, newVacancy);
+        ScraperMetrics.vacancies(checkpoint.getBroker(), Outcome.EXISTING, existing);
+        ScraperMetrics.vacancies(checkpoint.getBroker(), Outcome.FAILED, failed);
+        return committed;
     }
 
-    private void processVacancyLocation(Vacancy vacancy, VacancyDTO vacancyDTO) throws IOException {
-        String vacancyLocation = LocationService.normalizeName(vacancyDTO.getLocationString());
-        if (vacancyLocation.endsWith(", Nederland")) {
-            vacancyLocation = vacancyLocation.substring(0, vacancyLocation.length() - 11);
+    private void processVacancyLocation(Vacancy vacancy, VacancyDTO vacancyDTO, String broker) throws IOException {
+        Timer.Sample geocode = ScraperMetrics.start();
+        try {
+            locationService.resolve(vacancyDTO.getLocationString()).ifPresent(vacancy::setLocation);
+        } finally {
+            ScraperMetrics.stop(geocode, broker, Stage.GEOCODE);
         }
-        if (vacancyLocation.endsWith(", Netherlands")) {
-            vacancyLocation = vacancyLocation.substring(0, vacancyLocation.length() - 13);
-        }
-        if (vacancyLocation.endsWith(", the Netherlands")) {
-            vacancyLocation = vacancyLocation.substring(0, vacancyLocation.length() - 16);
-        }
-        if (vacancyLocation.equals("'s-Hertogenbosch")) {
-            vacancyLocation = "Den Bosch";
-        }
-        if (!vacancyLocation.equals("")) {
-            Optional<Location> existCheckLocation = locationService.findByLocationName(vacancyLocation);
-            Location location;
-            if (existCheckLocation.isEmpty()) {
-                location = new Location(vacancyLocation, locationService.getCoordinates(vacancyLocation));
-                locationService.save(location);
-            } else {
-                location = existCheckLocation.get();
-            }
-            vacancy.setLocation(location);
-        }
-        vacancyService.save(vacancy);
     }
 
-    @Scheduled(cron = "0 30 11,17 * * *") // Runs two times a day. At 11.30am and 5.30pm.
+    /**
+     * Counts a missed crawl for the vacancies of the broker that were not in its complete listing, and expires the ones
+     * that missed {@link #missedCrawls} crawls in a row. A vacancy that is briefly missing from a listing is kept.
+     *
+     * @param broker     The broker that was crawled completely.
+     * @param crawlStart Start of the crawl.
+     */
+    private void reconcileBroker(String broker, LocalDateTime crawlStart) {
+        List<UUID> expired = vacancyService.expireUnseen(broker, crawlStart, missedCrawls);
+        ScraperMetrics.vacancies(broker, Outcome.EXPIRED, expired.size());
+        log.info("{} -- {} vacancies no longer listed have expired", broker, expired.size());
+    }
+
+    /**
+     * Deletes the vacancies whose URL no longer exists. Every hour the vacancies most likely to have expired are
+     * requested, within the budget of the LivenessChecker, so the brokers get a steady trickle of requests instead of
+     * the whole table at once.
+     */
+    @Scheduled(cron = "0 30 * * * *") // Runs every hour at half past.
     public void deleteNoMoreExistingVacancies() {
         log.info("CRON Scheduled -- Started deleting non-existing jobs");
 
-        vacancyService.findAll().stream().filter(v -> !vacancyService.hasExistingURL(v))
-                .forEach(v -> vacancyService.delete(v.getId()));
+        LivenessChecker.Report report = livenessChecker.checkDue();
 
-        log.info("Finished deleting non-existing jobs");
+        log.info("Finished deleting non-existing jobs: {}", report);
     }
 
-    private List<VacancyDTO> startScraping() {
-        List<VacancyDTO> vacancyDTOsList = new CopyOnWriteArrayList<>();
-        Arrays.asList(yachtVacancyScraper, huxleyITVacancyScraper, jobBirdScraper, headfirstScraper, staffingGroupScraper, jobCatcherScraper)
-                .parallelStream().forEach(vacancyScraper -> vacancyDTOsList
-                .addAll(vacancyScraper.getVacancies()));
-        return vacancyDTOsList;
+    private List<VacancyScraper> getScrapers() {
+        return Arrays.asList(yachtVacancyScraper, huxleyITVacancyScraper, jobBirdScraper, headfirstScraper, staffingGroupScraper, jobCatcherScraper);
     }
 
 }
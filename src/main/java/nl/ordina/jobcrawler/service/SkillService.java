@@ -8,6 +8,7 @@ import org.springframework.stereotype.Service;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 /*
@@ -21,10 +22,14 @@ import java.util.UUID;
 public class SkillService {
 
     private final SkillRepository skillRepository;
+    private final SkillTagger skillTagger;
+    private final DataGeneration dataGeneration;
 
     @Autowired
-    public SkillService(SkillRepository skillRepository) {
+    public SkillService(SkillRepository skillRepository, SkillTagger skillTagger, DataGeneration dataGeneration) {
         this.skillRepository = skillRepository;
+        this.skillTagger = skillTagger;
+        this.dataGeneration = dataGeneration;
     }
 
     public List<Skill> findByOrderByNameAsc() {
@@ -51,38 +56,60 @@ public class SkillService {
     }
 
     /**
-     * Updates the a skill, identified by its id.
+     * Returns the skills the vacancy with the specified id is tagged with.
+     *
+     * @param vacancyId ID of the vacancy.
+     * @return The skills of the vacancy, or an empty set if the vacancy was not found.
+     */
+    public Set<Skill> findByVacancyId(UUID vacancyId) {
+        return skillRepository.findByVacancyId(vacancyId);
+    }
+
+    /**
+     * Updates the a skill, identified by its id. The vacancies are tagged with the new name in the background.
      *
      * @param newSkill The skill with the values to be updated.
      * @return True if the update succeeded, otherwise false.
      */
     public Skill update(UUID id, Skill newSkill) {
 
-        return skillRepository.findById(id)
+        Skill skill = skillRepository.findById(id)
                 .map(oldSkill -> {
                     oldSkill.setName(newSkill.getName());
                     return skillRepository.save(oldSkill);
                 }).orElseThrow(() -> new SkillNotFoundException(id));
+        skillTagger.reload();
+        dataGeneration.next();
+        skillTagger.retag(skill);
+        return skill;
     }
 
 
     /**
-     * Saves the specified skill to the database.
+     * Saves the specified skill to the database. The vacancies are tagged with the skill in the background.
      *
      * @param skill The skill to save to the database.
      * @return The saved skill.
      */
     public Skill save(Skill skill) {
-        return skillRepository.save(skill);
+        Skill savedSkill = skillRepository.save(skill);
+        skillTagger.reload();
+        dataGeneration.next();
+        skillTagger.retag(savedSkill);
+        return savedSkill;
     }
 
     /**
-     * Deletes the skill with the specified id.
+     * Deletes the skill with the specified id. The search index is rebuilt without its tags in the background.
      *
      * @param id The id of the skill to delete.
      */
     public void delete(UUID id) {
+        skillRepository.untagVacancies(id.toString());
         skillRepository.deleteById(id);
+        skillTagger.reload();
+        dataGeneration.next();
+        skillTagger.untagged(id);
     }
 
 }
@@ -0,0 +1,155 @@
+package nl.ordina.jobcrawler.service;
+
+import lombok.extern.slf4j.Slf4j;
+import nl.ordina.jobcrawler.model.Skill;
+import nl.ordina.jobcrawler.model.Vacancy;
+import nl.ordina.jobcrawler.repo.SkillRepository;
+import nl.ordina.jobcrawler.repo.VacancyRepository;
+import nl.ordina.jobcrawler.repo.VacancySearchIndex;
+import nl.ordina.jobcrawler.util.AhoCorasick;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Tags vacancies with the skills occurring in their about, stored in the vacancy_skill table for the skills endpoint and
+ * the skill filter of the search. The skills are matched with an Aho-Corasick automaton built from the Skill table, so
+ * a vacancy is tagged in one pass over its text however many skills there are.
+ * <p>
+ * SkillService calls {@link #reload} after every change of the skills, and {@link #retag} in the background for an
+ * added or renamed skill. Vacancies stored before there were tags are tagged when the application is ready.
+ */
+@Slf4j
+@Component
+public class SkillTagger {
+
+    private static final int RETAG_BATCH_SIZE = 500;
+
+    private final SkillRepository skillRepository;
+    private final VacancyRepository vacancyRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final VacancySearchIndex vacancySearchIndex;
+    private final DataGeneration dataGeneration;
+    private volatile Automaton automaton;
+
+    public SkillTagger(SkillRepository skillRepository, VacancyRepository vacancyRepository,
+                       TransactionTemplate transactionTemplate, VacancySearchIndex vacancySearchIndex,
+                       DataGeneration dataGeneration) {
+        this.skillRepository = skillRepository;
+        this.vacancyRepository = vacancyRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.vacancySearchIndex = vacancySearchIndex;
+        this.dataGeneration = dataGeneration;
+    }
+
+    /**
+     * Returns the skills occurring in the about of a vacancy, not case sensitive.
+     *
+     * @param vacancy The vacancy to tag.
+     * @return The skills found.
+     */
+    public Set<Skill> tag(Vacancy vacancy) {
+        return getAutomaton().find(vacancy.getAbout());
+    }
+
+    /**
+     * Rebuilds the automaton from the Skill table on its next use.
+     */
+    public synchronized void reload() {
+        automaton = null;
+    }
+
+    /**
+     * Replaces the tags of a skill, for every stored vacancy.
+     *
+     * @param skill The added or renamed skill.
+     */
+    @Async
+    public void retag(Skill skill) {
+        try {
+            skillRepository.untagVacancies(skill.getId().toString());
+            tagVacancies(new Automaton(Collections.singletonList(skill)));
+        } catch (RuntimeException e) {
+            log.error("Could not tag the vacancies with skill {}", skill.getName(), e);
+        }
+    }
+
+    /**
+     * Rebuilds the search index once a skill and its tags are deleted, as the index still holds the tags of the skill.
+     *
+     * @param id ID of the deleted skill.
+     */
+    @Async
+    public void untagged(UUID id) {
+        try {
+            vacancySearchIndex.rebuild();
+            dataGeneration.next();
+        } catch (RuntimeException e) {
+            log.error("Could not remove the tags of skill {} from the search index", id, e);
+        }
+    }
+
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void tagUntaggedVacancies() {
+        try {
+            if (skillRepository.countVacancySkills() == 0) {
+                tagVacancies(getAutomaton());
+            }
+        } catch (RuntimeException e) {
+            log.error("Could not tag the stored vacancies with skills", e);
+        }
+    }
+
+    /**
+     * Tags all stored vacancies with the skills of the automaton, in batches with a transaction each. The search index
+     * is rebuilt afterwards, as it holds the tags as well, and the responses with the old tags are no longer valid.
+     */
+    private void tagVacancies(Automaton skills) {
+        List<UUID> ids = vacancyRepository.findAllIds();
+        for (int from = 0; from < ids.size(); from += RETAG_BATCH_SIZE) {
+            List<UUID> batch = ids.subList(from, Math.min(from + RETAG_BATCH_SIZE, ids.size()));
+            transactionTemplate.executeWithoutResult(status -> {
+                Map<Skill, List<String>> vacancyIdsBySkill = new HashMap<>();
+                vacancyRepository.findAllById(batch).forEach(vacancy -> skills.find(vacancy.getAbout()).forEach(skill ->
+                        vacancyIdsBySkill.computeIfAbsent(skill, s -> new ArrayList<>()).add(vacancy.getId().toString())));
+                vacancyIdsBySkill.forEach((skill, vacancyIds) -> skillRepository.tagVacancies(skill.getId().toString(), vacancyIds));
+            });
+        }
+        log.info("Tagged {} vacancies with {} skills", ids.size(), skills.skills.size());
+        vacancySearchIndex.rebuild();
+        dataGeneration.next();
+    }
+
+    private Automaton getAutomaton() {
+        Automaton current = automaton;
+        if (current == null) {
+            synchronized (this) {
+                if (automaton == null) {
+                    automaton = new Automaton(skillRepository.findAll());
+                }
+                current = automaton;
+            }
+        }
+        return current;
+    }
+
+    private static final class Automaton {
+        private final List<Skill> skills;
+        private final AhoCorasick patterns;
+
+        private Automaton(List<Skill> skills) {
+            this.skills = skills;
+            this.patterns = new AhoCorasick(skills.stream().map(Skill::getName).collect(Collectors.toList()));
+        }
+
+        private Set<Skill> find(String text) {
+            return patterns.findPatterns(text).stream().mapToObj(skills::get).collect(Collectors.toSet());
+        }
+    }
+}
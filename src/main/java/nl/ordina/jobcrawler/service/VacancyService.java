@@ -1,46 +1,92 @@
 package nl.ordina.jobcrawler.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import lombok.extern.slf4j.Slf4j;
 import nl.ordina.jobcrawler.exception.LocationNotFoundException;
 import nl.ordina.jobcrawler.exception.VacancyURLMalformedException;
+import nl.ordina.jobcrawler.model.Liveness;
 import nl.ordina.jobcrawler.model.Skill;
 import nl.ordina.jobcrawler.model.Vacancy;
+import nl.ordina.jobcrawler.payload.SearchCursor;
+import nl.ordina.jobcrawler.payload.SearchFacets;
 import nl.ordina.jobcrawler.payload.SearchRequest;
-import nl.ordina.jobcrawler.payload.VacancyDTO;
+import nl.ordina.jobcrawler.payload.VacancyListItemDTO;
 import nl.ordina.jobcrawler.repo.VacancyCriteriaQuery;
 import nl.ordina.jobcrawler.repo.VacancyRepository;
+import nl.ordina.jobcrawler.repo.VacancySearchIndex;
+import nl.ordina.jobcrawler.util.ExportFormat;
+import nl.ordina.jobcrawler.util.GeoUtils;
+import nl.ordina.jobcrawler.util.VacancyExportWriter;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.util.ObjectUtils;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 
 @Slf4j
 @Service
 public class VacancyService {
 
+    private static final int MATCHING_COUNTS_CACHE_SIZE = 1_000;
+    // Changes of the data through this service clear the counts, a retagged skill only changes them after this time
+    private static final Duration MATCHING_COUNTS_TTL = Duration.ofMinutes(10);
+    // A broker that does not answer within this time makes the URL check fail instead of blocking it indefinitely
+    private static final int URL_CHECK_TIMEOUT_MILLIS = 10_000;
+
     private final VacancyRepository vacancyRepository;
     private final LocationService locationService;
     private final SkillService skillService;
     private final VacancyCriteriaQuery vacancyCriteriaQuery;
+    private final VacancySearchIndex vacancySearchIndex;
+    private final SkillTagger skillTagger;
+    private final DataGeneration dataGeneration;
+    private final ObjectMapper objectMapper;
+    // Normalized search requests to the number of vacancies they match, so paging through a search costs one query a page
+    private final Cache<SearchRequest, Long> matchingCounts = Caffeine.newBuilder()
+            .maximumSize(MATCHING_COUNTS_CACHE_SIZE)
+            .expireAfterWrite(MATCHING_COUNTS_TTL)
+            .recordStats()
+            .build();
 
     public VacancyService(VacancyRepository vacancyRepository, LocationService locationService,
-                          SkillService skillService, VacancyCriteriaQuery vacancyCriteriaQuery) {
+                          SkillService skillService, VacancyCriteriaQuery vacancyCriteriaQuery,
+                          VacancySearchIndex vacancySearchIndex, SkillTagger skillTagger, DataGeneration dataGeneration,
+                          ObjectMapper objectMapper) {
         this.vacancyRepository = vacancyRepository;
         this.locationService = locationService;
         this.skillService = skillService;
         this.vacancyCriteriaQuery = vacancyCriteriaQuery;
+        this.vacancySearchIndex = vacancySearchIndex;
+        this.skillTagger = skillTagger;
+        this.dataGeneration = dataGeneration;
+        this.objectMapper = objectMapper;
+        CaffeineCacheMetrics.monitor(Metrics.globalRegistry, matchingCounts, "vacancies.counts");
     }
 
     /**
@@ -57,14 +103,10 @@ public class VacancyService {
      * Returns a set of skills matched to the vacancy with the specified id.
      *
      * @param id ID of the vacancy to retrieve.
-     * @return An set skills matching the vacancy.
+     * @return An set skills matching the vacancy, as tagged when the vacancy was saved.
      */
     public Set<Skill> findSkillsByVacancyId(UUID id) {
-        Set<Skill> matchedSkills = new HashSet<>();
-        vacancyRepository.findById(id).map(v -> matchedSkills.addAll(skillService.findAll().stream()
-                .filter(s -> v.getAbout().toLowerCase().contains(s.getName().toLowerCase()))
-                .collect(Collectors.toSet())));
-        return matchedSkills;
+        return skillService.findByVacancyId(id);
     }
 
     public List<Vacancy> findAll() {
@@ -79,8 +121,111 @@ public class VacancyService {
      * @param sort          - string array for sorting by field and direction
      * @return All vacancies in the database filter by any value.
      */
-    public Page<VacancyDTO> findByAnyValue(SearchRequest searchRequest, Pageable paging, String[] sort) {
+    public Page<VacancyListItemDTO> findByAnyValue(SearchRequest searchRequest, Pageable paging, String[] sort) {
+
+        setCoordinates(searchRequest);
+
+        Optional<VacancySearchIndex.Hits> hits = vacancySearchIndex.search(searchRequest, sort, paging.getOffset(), paging.getPageSize());
+        if (hits.isPresent()) {
+            return new PageImpl<>(findListItemsByIds(hits.get().getIds(), searchRequest.getCoord()), paging, hits.get().getTotal());
+        }
+
+        // The count of a search does not change while paging, only the first page query has to count
+        SearchRequest countKey = toCountKey(searchRequest);
+        Long totalMatchingVacancies = matchingCounts.getIfPresent(countKey);
+        if (totalMatchingVacancies != null) {
+            return new PageImpl<>(vacancyCriteriaQuery.getMatchingVacancies(searchRequest, paging, sort), paging, totalMatchingVacancies);
+        }
+        Page<VacancyListItemDTO> vacancyDTOS = vacancyCriteriaQuery.getMatchingPage(searchRequest, paging, sort);
+        matchingCounts.put(countKey, vacancyDTOS.getTotalElements());
+        return vacancyDTOS;
+    }
+
+    /**
+     * Returns the vacancies that match the search after a cursor, the keyset alternative to findByAnyValue.
+     *
+     * @param searchRequest - values that need to be filtered
+     * @param sort          - string array for sorting by one of the {@link SearchCursor#SORTS} and direction
+     * @param after         - cursor after the last vacancy of the previous page, or null for the first page
+     * @param size          - size of the page
+     * @return The vacancies of the page, and whether there are more.
+     */
+    public Slice<VacancyListItemDTO> findByAnyValueAfter(SearchRequest searchRequest, String[] sort, SearchCursor after, int size) {
+        setCoordinates(searchRequest);
+        // One vacancy more than the page tells whether there is a next page
+        List<VacancyListItemDTO> vacancyDTOS = vacancyCriteriaQuery.getMatchingVacanciesAfter(searchRequest, sort, after, size + 1);
+        boolean hasNext = vacancyDTOS.size() > size;
+        return new SliceImpl<>(hasNext ? vacancyDTOS.subList(0, size) : vacancyDTOS, PageRequest.of(0, size), hasNext);
+    }
+
+    /**
+     * Returns the number of vacancies that match the search, cached like the counts of findByAnyValue.
+     *
+     * @param searchRequest - values that need to be filtered, with the coordinates of its location
+     * @return The number of matching vacancies.
+     */
+    public long countByAnyValue(SearchRequest searchRequest) {
+        return matchingCounts.get(toCountKey(searchRequest), countKey -> vacancyCriteriaQuery.totalMatchingVacancies(searchRequest));
+    }
+
+    /**
+     * Returns a copy of the search request without the values that do not change which vacancies match: the case of
+     * the keywords, brokers and location. The coordinates of a distance search are kept, as a search whose location
+     * could not be geocoded has no radius and matches far more vacancies than one that could.
+     */
+    private static SearchRequest toCountKey(SearchRequest searchRequest) {
+        SearchRequest countKey = new SearchRequest();
+        Optional.ofNullable(searchRequest.getKeywords()).map(k -> k.trim().toLowerCase()).ifPresent(countKey::setKeywords);
+        countKey.setSkills(searchRequest.getSkills());
+        Optional.ofNullable(searchRequest.getBrokers()).map(brokers -> brokers.stream().map(String::toLowerCase)
+                .collect(Collectors.toSet())).ifPresent(countKey::setBrokers);
+        countKey.setFromDate(searchRequest.getFromDate());
+        countKey.setToDate(searchRequest.getToDate());
+        countKey.setDistance(searchRequest.getDistance());
+        if (searchRequest.getDistance() != null) {
+            countKey.setCoord(searchRequest.getCoord());
+        }
+        Optional.ofNullable(searchRequest.getLocation()).map(l -> l.trim().toLowerCase()).ifPresent(countKey::setLocation);
+        return countKey;
+    }
+
+    /**
+     * Returns the number of vacancies matching the search per skill, broker, location and posting week, counted by the
+     * search index, or by the database while the index is not available.
+     *
+     * @param searchRequest - values that need to be filtered
+     * @return The facet counts of the search.
+     */
+    public SearchFacets findFacets(SearchRequest searchRequest) {
+        if (searchRequest.getCoord() == null) {
+            setCoordinates(searchRequest);
+        }
+        return vacancySearchIndex.countFacets(searchRequest)
+                .orElseGet(() -> vacancyCriteriaQuery.getFacets(searchRequest));
+    }
+
+    /**
+     * Writes all vacancies that match the search to an export, one by one as they are read from the database. The
+     * export starts right away and takes the same memory for any number of vacancies.
+     *
+     * @param searchRequest - values that need to be filtered, or an empty request for all vacancies
+     * @param format        - format of the export
+     * @param out           - stream to write the export to, which is left open
+     * @throws IOException if the export could not be written.
+     */
+    @Transactional(readOnly = true)
+    public void exportVacancies(SearchRequest searchRequest, ExportFormat format, OutputStream out) throws IOException {
+        setCoordinates(searchRequest);
+        VacancyExportWriter writer = new VacancyExportWriter(format, out, objectMapper);
+        try (Stream<Vacancy> vacancies = vacancyCriteriaQuery.streamMatchingVacancies(searchRequest)) {
+            for (Iterator<Vacancy> iterator = vacancies.iterator(); iterator.hasNext(); ) {
+                writer.write(iterator.next());
+            }
+        }
+        writer.flush();
+    }
 
+    private void setCoordinates(SearchRequest searchRequest) {
         if (!ObjectUtils.isEmpty(searchRequest.getLocation())) {
             try {
                 searchRequest.setCoord(locationService.getCoordinates(searchRequest.getLocation()));
@@ -88,15 +233,33 @@ public class VacancyService {
                 log.error(e.getMessage());
             }
         }
+    }
 
-        List<VacancyDTO> vacancyDTOS = vacancyCriteriaQuery.getMatchingVacancies(searchRequest, paging, sort);
-        Long totalMatchingVacancies = vacancyCriteriaQuery.totalMatchingVacancies(searchRequest);
-
-        return new PageImpl<>(vacancyDTOS, paging, totalMatchingVacancies);
+    /**
+     * Loads the vacancies of a page found by the search index, in one query.
+     *
+     * @param ids   IDs of the vacancies in page order.
+     * @param coord Coordinates of the searched location to calculate the distance to, or null.
+     * @return The vacancies in the same order, without the ones deleted in the meantime.
+     */
+    private List<VacancyListItemDTO> findListItemsByIds(List<UUID> ids, double[] coord) {
+        Map<UUID, VacancyListItemDTO> vacancies = vacancyRepository.findListItemsByIdIn(ids).stream()
+                .collect(Collectors.toMap(VacancyListItemDTO::getId, Function.identity()));
+        return ids.stream()
+                .map(vacancies::get)
+                .filter(Objects::nonNull)
+                .map(vacancy -> {
+                    if (coord != null && vacancy.getLocation() != null) {
+                        vacancy.setDistance(GeoUtils.distance(coord[0], coord[1],
+                                vacancy.getLocation().getLat(), vacancy.getLocation().getLon()));
+                    }
+                    return vacancy;
+                })
+                .collect(Collectors.toList());
     }
 
     /**
-     * Saves the specified vacancy to the database.
+     * Saves the specified vacancy to the database, tagged with the skills in its about.
      *
      * @param vacancy The vacancy to save to the database.
      * @return The saved vacancy.
@@ -105,14 +268,22 @@ public class VacancyService {
     public Vacancy save(Vacancy vacancy) {
 
         if (hasExistingURL(vacancy)) {    //checking the url, if it is malformed it will throw a VacancyURLMalformedException
-            return vacancyRepository.save(vacancy);
+            vacancy.setSkills(skillTagger.tag(vacancy));
+            Vacancy saved = vacancyRepository.save(vacancy);
+            vacancySearchIndex.add(List.of(saved));
+            invalidateMatchingCounts();
+            dataGeneration.next();
+            return saved;
         } else {
             throw new VacancyURLMalformedException(vacancy.getVacancyURL());
         }
     }
 
     public void saveAll(List<Vacancy> vacancies) {
-        vacancyRepository.saveAll(vacancies);
+        vacancies.forEach(vacancy -> vacancy.setSkills(skillTagger.tag(vacancy)));
+        vacancySearchIndex.add(vacancyRepository.saveAll(vacancies));
+        invalidateMatchingCounts();
+        dataGeneration.next();
     }
 
 
@@ -123,6 +294,75 @@ public class VacancyService {
      */
     public void delete(UUID id) {
         vacancyRepository.deleteById(id);
+        vacancySearchIndex.remove(id);
+        invalidateMatchingCounts();
+        dataGeneration.next();
+    }
+
+    /**
+     * Deletes the vacancies with the specified ids in one transaction, with a statement for all their tags and one for
+     * the vacancies instead of one per vacancy. Only a call through the Spring proxy starts that transaction, a call
+     * from within this service runs in the transaction of its caller.
+     *
+     * @param ids The ids of the vacancies to delete.
+     */
+    @Transactional
+    public void deleteAll(Collection<UUID> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        vacancyRepository.untagVacancies(ids.stream().map(UUID::toString).collect(Collectors.toList()));
+        vacancyRepository.deleteByIdIn(ids);
+        ids.forEach(vacancySearchIndex::remove);
+        invalidateMatchingCounts();
+        dataGeneration.next();
+    }
+
+    /**
+     * Clears the cached counts after the data changed. Within a transaction the counts are cleared after the commit, as
+     * a search running in the meantime would cache its count of the data before the commit.
+     */
+    private void invalidateMatchingCounts() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    matchingCounts.invalidateAll();
+                }
+            });
+        } else {
+            matchingCounts.invalidateAll();
+        }
+    }
+
+    /**
+     * Records that the vacancies with the specified urls are in the listing of their broker.
+     *
+     * @param urls urls of the stored vacancies in the listing.
+     * @param seen start of the crawl of the listing.
+     */
+    public void markSeen(Collection<String> urls, LocalDateTime seen) {
+        if (!urls.isEmpty()) {
+            vacancyRepository.markSeen(urls, seen);
+        }
+    }
+
+    /**
+     * Counts a missed crawl for every vacancy of the broker that was not in the listing of its complete crawl, and
+     * deletes the vacancies that have now missed the specified number of crawls in a row. Counting and deleting are one
+     * transaction, which is that of this method as it calls deleteAll on itself rather than through the proxy.
+     *
+     * @param broker       the broker that was crawled.
+     * @param crawlStart   start of the crawl, the vacancies seen by it have this lastSeen.
+     * @param missedCrawls number of missed crawls after which a vacancy has expired.
+     * @return The ids of the expired vacancies.
+     */
+    @Transactional
+    public List<UUID> expireUnseen(String broker, LocalDateTime crawlStart, int missedCrawls) {
+        vacancyRepository.markMissed(broker, crawlStart);
+        List<UUID> expired = vacancyRepository.findIdsByBrokerMissedCrawls(broker, missedCrawls);
+        deleteAll(expired);
+        return expired;
     }
 
     /**
@@ -135,18 +375,49 @@ public class VacancyService {
         return vacancyRepository.findByVacancyURLEquals(url);
     }
 
+    /**
+     * Returns which of the specified urls are already stored, using a single query.
+     *
+     * @param urls urls of the vacancies to look up.
+     * @return The subset of urls that belong to a stored vacancy.
+     */
+    public Set<String> findExistingURLs(Collection<String> urls) {
+        if (urls.isEmpty()) {
+            return Collections.emptySet();
+        }
+        return vacancyRepository.findVacancyURLsIn(urls);
+    }
+
     public boolean hasExistingURL(final Vacancy vacancy) {
+        return checkURL(vacancy) == Liveness.ALIVE;
+    }
+
+    /**
+     * Requests the URL of the vacancy. Only an answer that the page is gone (404 or 410, or the "niet langer actief"
+     * page of Jobbird) means the vacancy no longer exists. Any other answer, like 429 Too Many Requests or a 5xx of a
+     * busy broker, says nothing about the vacancy and counts as failed.
+     *
+     * @param vacancy The vacancy to check.
+     * @return ALIVE for 200 OK, DEAD if the page is gone and FAILED otherwise.
+     * @throws VacancyURLMalformedException if the URL could not be reached.
+     */
+    public Liveness checkURL(final Vacancy vacancy) {
         if (!vacancy.getVacancyURL().startsWith("http")) {
             vacancy.setVacancyURL("https://" + vacancy.getVacancyURL());
         }
 
         try {
             HttpURLConnection huc = getHttpURLConnection(vacancy);
+            int responseCode = huc.getResponseCode();
 
-            if (vacancy.getBroker().equals("Jobbird")) {
-                return existsJobbirdURL(vacancy, huc);
+            if (responseCode == HttpURLConnection.HTTP_NOT_FOUND || responseCode == HttpURLConnection.HTTP_GONE) {
+                return Liveness.DEAD;
+            } else if (responseCode != HttpURLConnection.HTTP_OK) {
+                return Liveness.FAILED;
+            } else if (vacancy.getBroker().equals("Jobbird")) {
+                return existsJobbirdURL(vacancy) ? Liveness.ALIVE : Liveness.DEAD;
             } else {
-                return huc.getResponseCode() == 200; //returns true if the website has a 200 OK response
+                return Liveness.ALIVE;
             }
         } catch (IOException e) {
             throw new VacancyURLMalformedException(vacancy.getVacancyURL());
@@ -158,14 +429,12 @@ public class VacancyService {
         HttpURLConnection huc = openConnection(url);
         huc.setRequestProperty("User-Agent", "Mozilla/5.0 (Macintosh; U; Intel Mac OS X 10.4; en-US; rv:1.9.2.2) Gecko/20100316 Firefox/3.6.2");
         huc.setRequestMethod("HEAD");   // faster because it doesn't download the response body
+        huc.setConnectTimeout(URL_CHECK_TIMEOUT_MILLIS);
+        huc.setReadTimeout(URL_CHECK_TIMEOUT_MILLIS);
         return huc;
     }
 
-    private boolean existsJobbirdURL(Vacancy vacancy, HttpURLConnection huc) throws IOException {
-        if (huc.getResponseCode() != 200) {
-            return false;
-        }
-
+    private boolean existsJobbirdURL(Vacancy vacancy) throws IOException {
         /*
          * Added a user agent as huxley gives a 403 forbidden error
          * This user agent will make it as if we are making the request from a modern browser
@@ -182,7 +451,7 @@ public class VacancyService {
     }
 
     protected Document getDocument(Vacancy vacancy, String userAgent) throws IOException {
-        return Jsoup.connect(vacancy.getVacancyURL()).userAgent(userAgent).get();
+        return Jsoup.connect(vacancy.getVacancyURL()).userAgent(userAgent).timeout(URL_CHECK_TIMEOUT_MILLIS).get();
     }
 
     protected HttpURLConnection openConnection(URL url) throws IOException {
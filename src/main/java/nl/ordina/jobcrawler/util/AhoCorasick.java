@@ -0,0 +1,114 @@
+package nl.ordina.jobcrawler.util;
+
+import java.util.*;
+
+/**
+ * Immutable Aho-Corasick automaton that finds which of a set of patterns occur in a text in a single pass over the text,
+ * however many patterns there are. Matching is not case sensitive and a pattern may occur anywhere in the text, also
+ * inside a word, like String.contains on the lowercase text. Patterns are identified by their index in the list the
+ * automaton was built from.
+ */
+public final class AhoCorasick {
+
+    private static final int ROOT = 0;
+
+    // Children of node i, keyed by the lowercase character
+    private final Map<Character, Integer>[] children;
+    // Node of the longest proper suffix of node i that is also a prefix of a pattern
+    private final int[] failures;
+    // Patterns ending at node i, including those ending at its failure nodes
+    private final int[][] matches;
+
+    /**
+     * @param patterns The patterns to find, blank patterns never match.
+     */
+    @SuppressWarnings("unchecked")
+    public AhoCorasick(List<String> patterns) {
+        List<Map<Character, Integer>> trie = new ArrayList<>();
+        List<List<Integer>> patternsAt = new ArrayList<>();
+        trie.add(new HashMap<>());
+        patternsAt.add(new ArrayList<>());
+        for (int pattern = 0; pattern < patterns.size(); pattern++) {
+            String text = patterns.get(pattern);
+            if (text == null || text.isBlank()) {
+                continue;
+            }
+            int node = ROOT;
+            for (int i = 0; i < text.length(); i++) {
+                char c = Character.toLowerCase(text.charAt(i));
+                Integer child = trie.get(node).get(c);
+                if (child == null) {
+                    child = trie.size();
+                    trie.get(node).put(c, child);
+                    trie.add(new HashMap<>());
+                    patternsAt.add(new ArrayList<>());
+                }
+                node = child;
+            }
+            patternsAt.get(node).add(pattern);
+        }
+
+        children = trie.toArray(new Map[0]);
+        failures = new int[children.length];
+        matches = new int[children.length][];
+        matches[ROOT] = new int[0];
+        // Breadth first, so the failure node of every node is complete before its children are visited
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int child : children[ROOT].values()) {
+            failures[child] = ROOT;
+            matches[child] = toArray(patternsAt.get(child), matches[ROOT]);
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            for (Map.Entry<Character, Integer> child : children[node].entrySet()) {
+                int failure = next(failures[node], child.getKey());
+                failures[child.getValue()] = failure;
+                matches[child.getValue()] = toArray(patternsAt.get(child.getValue()), matches[failure]);
+                queue.add(child.getValue());
+            }
+        }
+    }
+
+    /**
+     * Returns the patterns that occur in the text.
+     *
+     * @param text The text to search, may be null.
+     * @return The indexes of the patterns found.
+     */
+    public BitSet findPatterns(CharSequence text) {
+        BitSet found = new BitSet();
+        if (text == null) {
+            return found;
+        }
+        int node = ROOT;
+        for (int i = 0; i < text.length(); i++) {
+            node = next(node, Character.toLowerCase(text.charAt(i)));
+            for (int pattern : matches[node]) {
+                found.set(pattern);
+            }
+        }
+        return found;
+    }
+
+    private int next(int node, char c) {
+        while (true) {
+            Integer child = children[node].get(c);
+            if (child != null) {
+                return child;
+            }
+            if (node == ROOT) {
+                return ROOT;
+            }
+            node = failures[node];
+        }
+    }
+
+    private static int[] toArray(List<Integer> own, int[] inherited) {
+        int[] all = Arrays.copyOf(inherited, inherited.length + own.size());
+        for (int i = 0; i < own.size(); i++) {
+            all[inherited.length + i] = own.get(i);
+        }
+        return all;
+    }
+}
@@ -0,0 +1,37 @@
+package nl.ordina.jobcrawler.util;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Formats of the vacancy export, a JSON object per line or comma separated values with a header line
+ */
+public enum ExportFormat {
+    NDJSON("application/x-ndjson", "ndjson"),
+    CSV("text/csv", "csv");
+
+    private final String contentType;
+    private final String extension;
+
+    ExportFormat(String contentType, String extension) {
+        this.contentType = contentType;
+        this.extension = extension;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * @param name Name of the format, not case sensitive.
+     * @return The format, or empty if there is no format with the name.
+     */
+    public static Optional<ExportFormat> of(String name) {
+        return Arrays.stream(values()).filter(format -> format.name().equals(name.toUpperCase(Locale.ROOT))).findFirst();
+    }
+}
@@ -0,0 +1,26 @@
+package nl.ordina.jobcrawler.util;
+
+/**
+ * Distance calculations on latitude/longitude pairs. {@link #distance} gives the same result as the getDistance
+ * function of data.sql.
+ */
+public final class GeoUtils {
+
+    public static final double EARTH_RADIUS_KM = 6371;
+
+    private GeoUtils() {
+    }
+
+    /**
+     * Returns the great-circle distance between two points (haversine formula).
+     *
+     * @return The distance in kilometers.
+     */
+    public static double distance(double lat1, double lon1, double lat2, double lon2) {
+        double dlat = Math.toRadians(lat2 - lat1);
+        double dlon = Math.toRadians(lon2 - lon1);
+        double a = Math.pow(Math.sin(dlat / 2), 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.pow(Math.sin(dlon / 2), 2);
+        return 2 * Math.asin(Math.sqrt(a)) * EARTH_RADIUS_KM;
+    }
+}
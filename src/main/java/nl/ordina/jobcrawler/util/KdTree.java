@@ -0,0 +1,148 @@
+package nl.ordina.jobcrawler.util;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.function.IntConsumer;
+
+/**
+ * Immutable k-d tree over latitude/longitude points for nearest and radius lookups. The points are stored as
+ * coordinates on the unit sphere, so the straight (chord) distance between two points grows with their distance along
+ * the earth and the tree needs no special cases for longitudes or poles. Points are identified by their index in the
+ * arrays the tree was built from.
+ */
+public final class KdTree {
+
+    // Unit sphere coordinates of point i at [3i, 3i + 1, 3i + 2]
+    private final double[] points;
+    // The median of each subrange of tree is the node of that subrange, split on axis depth % 3
+    private final int[] tree;
+
+    /**
+     * @param lats Latitudes of the points.
+     * @param lons Longitudes of the points, same length as lats.
+     */
+    public KdTree(double[] lats, double[] lons) {
+        points = new double[3 * lats.length];
+        tree = new int[lats.length];
+        for (int i = 0; i < lats.length; i++) {
+            toPoint(lats[i], lons[i], points, 3 * i);
+            tree[i] = i;
+        }
+        build(0, tree.length, 0);
+    }
+
+    public int size() {
+        return tree.length;
+    }
+
+    /**
+     * Returns the point nearest to the specified coordinates.
+     *
+     * @param lat           Latitude.
+     * @param lon           Longitude.
+     * @param maxDistanceKm Maximum distance of the point.
+     * @return The index of the nearest point, or -1 if there is no point within the maximum distance.
+     */
+    public int nearest(double lat, double lon, double maxDistanceKm) {
+        double[] target = toPoint(lat, lon, new double[3], 0);
+        double[] nearest = {-1, squaredChord(maxDistanceKm)};
+        nearest(0, tree.length, 0, target, nearest);
+        return (int) nearest[0];
+    }
+
+    /**
+     * Passes every point within the radius of the specified coordinates to the consumer, in no particular order.
+     *
+     * @param lat      Latitude.
+     * @param lon      Longitude.
+     * @param radiusKm Radius in kilometers.
+     * @param consumer Receives the index of each point.
+     */
+    public void withinRadius(double lat, double lon, double radiusKm, IntConsumer consumer) {
+        double[] target = toPoint(lat, lon, new double[3], 0);
+        withinRadius(0, tree.length, 0, target, squaredChord(radiusKm), consumer);
+    }
+
+    private void nearest(int from, int to, int depth, double[] target, double[] nearest) {
+        if (from >= to) {
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        int point = tree[mid];
+        double squaredChord = squaredDistance(point, target);
+        if (squaredChord <= nearest[1]) {
+            nearest[0] = point;
+            nearest[1] = squaredChord;
+        }
+        double delta = target[depth % 3] - points[3 * point + depth % 3];
+        boolean left = delta < 0;
+        nearest(left ? from : mid + 1, left ? mid : to, depth + 1, target, nearest);
+        if (delta * delta <= nearest[1]) {
+            nearest(left ? mid + 1 : from, left ? to : mid, depth + 1, target, nearest);
+        }
+    }
+
+    private void withinRadius(int from, int to, int depth, double[] target, double maxSquaredChord, IntConsumer consumer) {
+        if (from >= to) {
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        int point = tree[mid];
+        if (squaredDistance(point, target) <= maxSquaredChord) {
+            consumer.accept(point);
+        }
+        double delta = target[depth % 3] - points[3 * point + depth % 3];
+        if (delta < 0 || delta * delta <= maxSquaredChord) {
+            withinRadius(from, mid, depth + 1, target, maxSquaredChord, consumer);
+        }
+        if (delta >= 0 || delta * delta <= maxSquaredChord) {
+            withinRadius(mid + 1, to, depth + 1, target, maxSquaredChord, consumer);
+        }
+    }
+
+    private double squaredDistance(int point, double[] target) {
+        double dx = points[3 * point] - target[0];
+        double dy = points[3 * point + 1] - target[1];
+        double dz = points[3 * point + 2] - target[2];
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    /**
+     * The chord between two points on the unit sphere at an angle a is 2 sin(a / 2)
+     */
+    private static double squaredChord(double distanceKm) {
+        double angle = Math.min(Math.PI, distanceKm / GeoUtils.EARTH_RADIUS_KM);
+        double chord = 2 * Math.sin(angle / 2);
+        return chord * chord;
+    }
+
+    private static double[] toPoint(double lat, double lon, double[] target, int offset) {
+        double phi = Math.toRadians(lat);
+        double lambda = Math.toRadians(lon);
+        target[offset] = Math.cos(phi) * Math.cos(lambda);
+        target[offset + 1] = Math.cos(phi) * Math.sin(lambda);
+        target[offset + 2] = Math.sin(phi);
+        return target;
+    }
+
+    /**
+     * Orders tree[from, to) so that its median is the node of this subrange and both halves are subtrees.
+     */
+    private void build(int from, int to, int depth) {
+        if (to - from <= 1) {
+            return;
+        }
+        int axis = depth % 3;
+        Integer[] range = new Integer[to - from];
+        for (int i = from; i < to; i++) {
+            range[i - from] = tree[i];
+        }
+        Arrays.sort(range, Comparator.comparingDouble(point -> points[3 * point + axis]));
+        for (int i = from; i < to; i++) {
+            tree[i] = range[i - from];
+        }
+        int mid = (from + to) >>> 1;
+        build(from, mid, depth + 1);
+        build(mid + 1, to, depth + 1);
+    }
+}
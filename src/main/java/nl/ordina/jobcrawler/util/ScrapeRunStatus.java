@@ -0,0 +1,10 @@
+package nl.ordina.jobcrawler.util;
+
+/**
+ * Lifecycle of a scrape run in the run journal
+ */
+public enum ScrapeRunStatus {
+    RUNNING,
+    COMPLETED,
+    FAILED
+}
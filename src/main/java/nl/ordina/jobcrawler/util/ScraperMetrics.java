@@ -0,0 +1,139 @@
+package nl.ordina.jobcrawler.util;
+
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import nl.ordina.jobcrawler.model.Liveness;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Instrumentation of the scraper subsystem. The meters are registered on the global Micrometer registry, to which
+ * Spring Boot adds its own (Prometheus) registry, so the static scraper helpers can record without being Spring beans.
+ * Without a registry (e.g. in unit tests) every call is a no-op.
+ * <p>
+ * Exposed meters:
+ * scraper.stage (timer, tags broker and stage),
+ * scraper.vacancies (counter, tags broker and outcome),
+ * scraper.http.bytes, scraper.http.responses and scraper.http.retries (counters, tag host),
+ * scraper.http.inflight and scraper.ingest.queue (gauges),
+ * scraper.liveness.check (timer, tags host and outcome) and scraper.liveness.progress (gauge, the fraction of the
+ * vacancies due checked by the running liveness pass).
+ */
+public final class ScraperMetrics {
+
+    public enum Stage {
+        LISTING_FETCH, DETAIL_FETCH, PARSE, GEOCODE, PERSIST
+    }
+
+    public enum Outcome {
+        NEW, EXISTING, FAILED, EXPIRED
+    }
+
+    private static final AtomicInteger IN_FLIGHT = Metrics.gauge("scraper.http.inflight", new AtomicInteger());
+    private static final AtomicInteger INGEST_QUEUE = Metrics.gauge("scraper.ingest.queue", new AtomicInteger());
+    private static final AtomicLong LIVENESS_TOTAL = new AtomicLong();
+    private static final AtomicLong LIVENESS_CHECKED = new AtomicLong();
+
+    static {
+        Metrics.gauge("scraper.liveness.progress", LIVENESS_CHECKED,
+                checked -> LIVENESS_TOTAL.get() == 0 ? 0 : Math.min(1, (double) checked.get() / LIVENESS_TOTAL.get()));
+    }
+
+    private ScraperMetrics() {
+    }
+
+    public static Timer timer(String broker, Stage stage) {
+        return Metrics.timer("scraper.stage", "broker", broker, "stage", stage.name().toLowerCase());
+    }
+
+    /**
+     * Times the supplier as the given stage of the broker.
+     */
+    public static <T> T time(String broker, Stage stage, Supplier<T> supplier) {
+        return timer(broker, stage).record(supplier);
+    }
+
+    /**
+     * Starts a sample for code that throws checked exceptions, stop it with {@link #stop(Timer.Sample, String, Stage)}.
+     */
+    public static Timer.Sample start() {
+        return Timer.start(Metrics.globalRegistry);
+    }
+
+    public static void stop(Timer.Sample sample, String broker, Stage stage) {
+        sample.stop(timer(broker, stage));
+    }
+
+    public static void vacancies(String broker, Outcome outcome, int amount) {
+        if (amount > 0) {
+            Metrics.counter("scraper.vacancies", "broker", broker, "outcome", outcome.name().toLowerCase()).increment(amount);
+        }
+    }
+
+    public static void requestStarted() {
+        IN_FLIGHT.incrementAndGet();
+    }
+
+    public static void requestFinished() {
+        IN_FLIGHT.decrementAndGet();
+    }
+
+    /**
+     * Records the status class (2xx, 4xx, ...) of a response, or "io_error" when no response was received.
+     */
+    public static void response(String url, int statusCode) {
+        String statusClass = statusCode > 0 ? (statusCode / 100) + "xx" : "io_error";
+        Metrics.counter("scraper.http.responses", "host", host(url), "status", statusClass).increment();
+    }
+
+    public static void bytes(String url, long bytes) {
+        if (bytes > 0) {
+            Metrics.counter("scraper.http.bytes", "host", host(url)).increment(bytes);
+        }
+    }
+
+    public static void retry(String url) {
+        Metrics.counter("scraper.http.retries", "host", host(url)).increment();
+    }
+
+    public static void queued(int vacancies) {
+        INGEST_QUEUE.addAndGet(vacancies);
+    }
+
+    public static void dequeued(int vacancies) {
+        INGEST_QUEUE.addAndGet(-vacancies);
+    }
+
+    /**
+     * Starts the progress of a liveness pass over the specified number of vacancies.
+     */
+    public static void livenessStarted(long vacancies) {
+        LIVENESS_CHECKED.set(0);
+        LIVENESS_TOTAL.set(vacancies);
+    }
+
+    /**
+     * Records the check of a vacancy URL by the liveness pass. The rate of checks is its throughput.
+     */
+    public static void livenessChecked(String url, Liveness outcome, long nanos) {
+        LIVENESS_CHECKED.incrementAndGet();
+        Metrics.timer("scraper.liveness.check", "host", host(url), "outcome", outcome.name().toLowerCase())
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the host of a URL, or "unknown" if it has none.
+     */
+    public static String host(String url) {
+        try {
+            String host = URI.create(url).getHost();
+            return host != null ? host : "unknown";
+        } catch (IllegalArgumentException e) {
+            return "unknown";
+        }
+    }
+}
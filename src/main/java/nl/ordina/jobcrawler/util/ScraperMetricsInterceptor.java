@@ -0,0 +1,92 @@
+package nl.ordina.jobcrawler.util;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Records in-flight requests, status classes and downloaded bytes of the RestTemplate calls done by the scrapers.
+ * The bytes are counted while the body is being read, so chunked responses without a Content-Length are included.
+ */
+public class ScraperMetricsInterceptor implements ClientHttpRequestInterceptor {
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+        String url = request.getURI().toString();
+        ScraperMetrics.requestStarted();
+        try {
+            ClientHttpResponse response = execution.execute(request, body);
+            ScraperMetrics.response(url, response.getRawStatusCode());
+            return new CountingResponse(response, url);
+        } catch (IOException e) {
+            ScraperMetrics.response(url, 0);
+            throw e;
+        } finally {
+            ScraperMetrics.requestFinished();
+        }
+    }
+
+    private static class CountingResponse implements ClientHttpResponse {
+
+        private final ClientHttpResponse delegate;
+        private final String url;
+
+        CountingResponse(ClientHttpResponse delegate, String url) {
+            this.delegate = delegate;
+            this.url = url;
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            return new FilterInputStream(delegate.getBody()) {
+                @Override
+                public int read() throws IOException {
+                    int b = super.read();
+                    if (b >= 0) {
+                        ScraperMetrics.bytes(url, 1);
+                    }
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) throws IOException {
+                    int read = super.read(buffer, offset, length);
+                    ScraperMetrics.bytes(url, read);
+                    return read;
+                }
+            };
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return delegate.getHeaders();
+        }
+
+        @Override
+        public HttpStatus getStatusCode() throws IOException {
+            return delegate.getStatusCode();
+        }
+
+        @Override
+        public int getRawStatusCode() throws IOException {
+            return delegate.getRawStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return delegate.getStatusText();
+        }
+
+        @Override
+        public void close() {
+            delegate.close();
+        }
+    }
+}
@@ -0,0 +1,472 @@
+package nl.ordina.jobcrawler.util;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Extraction of work hours, dates, relative ages and salaries from scraped text, shared by the scrapers.
+ * All methods read the {@link CharSequence} in a single pass with charAt, without lowercasing, splitting, substrings or
+ * regular expressions, so the only allocation is the returned value. Input that cannot be parsed gives null instead of
+ * an exception.
+ */
+public final class TextExtraction {
+
+    private static final String[] HOURS_DELIMITERS = {"hours", " uren", " uur"};
+    private static final int HOURS_WINDOW_BEHIND = 18;
+    private static final int HOURS_WINDOW_FRONT = 10;
+    private static final int MIN_WORK_HOURS = 7;
+    private static final long NO_INTEGER = Long.MIN_VALUE;
+
+    private static final String[] DUTCH_MONTHS = {"januari", "februari", "maart", "april", "mei", "juni", "juli",
+            "augustus", "september", "oktober", "november", "december"};
+
+    private TextExtraction() {
+    }
+
+    /**
+     * Finds the work hours in a vacancy body. The first number within 18 characters after the first "hours", " uren" or
+     * " uur" (case insensitive) is taken, or else the last number within the 10 characters in front of it. Numbers of 7
+     * or less are not considered to be work hours.
+     *
+     * @param description vacancy body
+     * @return The work hours per week or null
+     */
+    public static Integer workHours(CharSequence description) {
+        int length = description.length();
+        int start = findHoursDelimiter(description, 0);
+        if (start < 0) {
+            return null;
+        }
+        int end = start + hoursDelimiterAt(description, start);
+        int next = findHoursDelimiter(description, end);
+        if (next < 0) {
+            next = length;
+        }
+        if (next == end && onlyHoursDelimitersFrom(description, end)) {
+            // Nothing but delimiters after the first one, there is no text to search in
+            return null;
+        }
+
+        int hours = firstNumber(description, end, Math.min(end + HOURS_WINDOW_BEHIND, next));
+        if (hours > MIN_WORK_HOURS) {
+            return hours;
+        }
+        hours = lastNumber(description, Math.max(0, start - HOURS_WINDOW_FRONT), start);
+        return hours > MIN_WORK_HOURS ? hours : null;
+    }
+
+    /**
+     * Parses a date in the form yyyy-MM-dd, e.g. "2020-12-01". A day past the end of the month is moved to its last day.
+     *
+     * @param text date text
+     * @return The date or null
+     */
+    public static LocalDate isoDate(CharSequence text) {
+        return text != null && text.length() == 10 ? isoDate(text, 0) : null;
+    }
+
+    /**
+     * Parses a date time in the form yyyy-MM-dd[ ][T]HH:mm:ss[.fraction][Z], e.g. "2020-12-01T10:15:00Z" or
+     * "2020-12-01 10:15:00". The time is taken as is, a trailing Z is not converted. 24:00:00 is midnight of the next day.
+     *
+     * @param text date time text
+     * @return The date time or null
+     */
+    public static LocalDateTime isoDateTime(CharSequence text) {
+        if (text == null || text.length() < 18) {
+            return null;
+        }
+        LocalDate date = isoDate(text, 0);
+        if (date == null) {
+            return null;
+        }
+        int length = text.length();
+        int pos = 10;
+        if (text.charAt(pos) == ' ') {
+            pos++;
+        }
+        if (pos < length && text.charAt(pos) == 'T') {
+            pos++;
+        }
+        if (pos + 8 > length || text.charAt(pos + 2) != ':' || text.charAt(pos + 5) != ':') {
+            return null;
+        }
+        int hour = digits(text, pos, 2);
+        int minute = digits(text, pos + 3, 2);
+        int second = digits(text, pos + 6, 2);
+        pos += 8;
+
+        int nanos = 0;
+        if (pos < length && text.charAt(pos) == '.') {
+            int fractionStart = ++pos;
+            while (pos < length && pos - fractionStart < 9 && isDigit(text.charAt(pos))) {
+                nanos = nanos * 10 + (text.charAt(pos++) - '0');
+            }
+            if (pos == fractionStart) {
+                return null;
+            }
+            for (int i = pos - fractionStart; i < 9; i++) {
+                nanos *= 10;
+            }
+        }
+        if (pos < length && text.charAt(pos) == 'Z') {
+            pos++;
+        }
+        if (pos != length || hour < 0 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return null;
+        }
+        if (hour == 24 && minute == 0 && second == 0 && nanos == 0) {
+            return date.plusDays(1).atStartOfDay();
+        }
+        return hour < 24 ? date.atTime(hour, minute, second, nanos) : null;
+    }
+
+    /**
+     * Parses a Dutch long date in the form dd maand yyyy, e.g. "01 december 2020". A day past the end of the month is
+     * moved to its last day.
+     *
+     * @param text date text
+     * @return The date or null
+     */
+    public static LocalDate dutchLongDate(CharSequence text) {
+        if (text == null || text.length() < 11 || text.charAt(2) != ' ') {
+            return null;
+        }
+        int length = text.length();
+        int day = digits(text, 0, 2);
+        int month = 0;
+        for (int i = 0; i < DUTCH_MONTHS.length && month == 0; i++) {
+            if (regionMatches(text, 3, DUTCH_MONTHS[i]) && 3 + DUTCH_MONTHS[i].length() == length - 5) {
+                month = i + 1;
+            }
+        }
+        if (month == 0 || text.charAt(length - 5) != ' ') {
+            return null;
+        }
+        return date(digits(text, length - 4, 4), month, day);
+    }
+
+    /**
+     * Converts a relative Dutch age as shown on listing pages ("Nieuw", "3 dagen", "1 week", "2 maanden") to a date.
+     * The unit is recognized anywhere in the text, the amount is the text up to the first space.
+     *
+     * @param text  age text
+     * @param today The date the age is relative to
+     * @return The date or null
+     */
+    public static LocalDate relativeAge(CharSequence text, LocalDate today) {
+        if (text == null) {
+            return null;
+        }
+        ChronoUnit unit;
+        if (contains(text, "Nieuw")) {
+            return today;
+        } else if (contains(text, "dag")) {
+            unit = ChronoUnit.DAYS;
+        } else if (contains(text, "we")) {
+            unit = ChronoUnit.WEEKS;
+        } else if (contains(text, "maand")) {
+            unit = ChronoUnit.MONTHS;
+        } else {
+            return null;
+        }
+        int space = indexOf(text, ' ');
+        long amount = space < 0 ? NO_INTEGER : signedInteger(text, 0, space);
+        if (amount == NO_INTEGER) {
+            return null;
+        }
+        try {
+            return today.minus(amount, unit);
+        } catch (DateTimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Finds the salary amounts in a salary text, e.g. "€55000 - €70000 per annum" or "€ 3.500,- tot € 4.250,- per maand".
+     * A '.' or ',' followed by three digits is a thousands separator, any other decimals are dropped. The second amount is
+     * the maximum of a range.
+     *
+     * @param text salary text
+     * @return The salary range, with min equal to max for a single amount, or null when there is no amount
+     */
+    public static SalaryRange salary(CharSequence text) {
+        if (text == null) {
+            return null;
+        }
+        int length = text.length();
+        long first = 0;
+        long second = 0;
+        int found = 0;
+        int pos = 0;
+        while (pos < length && found < 2) {
+            if (!isDigit(text.charAt(pos))) {
+                pos++;
+                continue;
+            }
+            long amount = 0;
+            while (pos < length) {
+                char c = text.charAt(pos);
+                if (isDigit(c)) {
+                    amount = Math.min(amount * 10 + (c - '0'), Integer.MAX_VALUE);
+                    pos++;
+                } else if ((c == '.' || c == ',') && isThousandsGroup(text, pos + 1)) {
+                    pos++;
+                } else {
+                    break;
+                }
+            }
+            if (pos < length && (text.charAt(pos) == '.' || text.charAt(pos) == ',')) {
+                // Skip the decimals so they are not taken as the next amount
+                pos++;
+                while (pos < length && isDigit(text.charAt(pos))) {
+                    pos++;
+                }
+            }
+            if (found++ == 0) {
+                first = amount;
+            } else {
+                second = amount;
+            }
+        }
+        if (found == 0) {
+            return null;
+        }
+        int min = (int) first;
+        int max = found == 2 ? (int) second : min;
+        return new SalaryRange(Math.min(min, max), Math.max(min, max));
+    }
+
+    /**
+     * A salary range in whole currency units.
+     */
+    public static final class SalaryRange {
+        private final int min;
+        private final int max;
+
+        public SalaryRange(int min, int max) {
+            this.min = min;
+            this.max = max;
+        }
+
+        public int getMin() {
+            return min;
+        }
+
+        public int getMax() {
+            return max;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof SalaryRange)) {
+                return false;
+            }
+            SalaryRange that = (SalaryRange) o;
+            return min == that.min && max == that.max;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * min + max;
+        }
+
+        @Override
+        public String toString() {
+            return min == max ? String.valueOf(min) : min + " - " + max;
+        }
+    }
+
+    private static int findHoursDelimiter(CharSequence text, int from) {
+        for (int i = from; i < text.length(); i++) {
+            // Every delimiter starts with 'h' or ' ', which rules out most positions with a single comparison
+            char c = text.charAt(i);
+            if ((c == ' ' || c == 'h' || c == 'H') && hoursDelimiterAt(text, i) > 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return The length of the hours delimiter at the position, or 0 if there is none.
+     */
+    private static int hoursDelimiterAt(CharSequence text, int pos) {
+        for (String delimiter : HOURS_DELIMITERS) {
+            if (regionMatchesIgnoreCase(text, pos, delimiter)) {
+                return delimiter.length();
+            }
+        }
+        return 0;
+    }
+
+    private static boolean onlyHoursDelimitersFrom(CharSequence text, int pos) {
+        while (pos < text.length()) {
+            int delimiterLength = hoursDelimiterAt(text, pos);
+            if (delimiterLength == 0) {
+                return false;
+            }
+            pos += delimiterLength;
+        }
+        return true;
+    }
+
+    /**
+     * @return The first number in [from, to), or -1 if there is none or it does not fit an int.
+     */
+    private static int firstNumber(CharSequence text, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (isDigit(text.charAt(i))) {
+                int end = i;
+                while (end < to && isDigit(text.charAt(end))) {
+                    end++;
+                }
+                return number(text, i, end);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return The last number in [from, to), or -1 if there is none or it does not fit an int.
+     */
+    private static int lastNumber(CharSequence text, int from, int to) {
+        for (int i = to - 1; i >= from; i--) {
+            if (isDigit(text.charAt(i))) {
+                int start = i;
+                while (start > from && isDigit(text.charAt(start - 1))) {
+                    start--;
+                }
+                return number(text, start, i + 1);
+            }
+        }
+        return -1;
+    }
+
+    private static int number(CharSequence text, int from, int to) {
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            value = value * 10 + (text.charAt(i) - '0');
+            if (value > Integer.MAX_VALUE) {
+                return -1;
+            }
+        }
+        return (int) value;
+    }
+
+    /**
+     * Parses [from, to) the way Integer.parseInt does: an optional sign followed by decimal digits.
+     *
+     * @return The value, or NO_INTEGER if it is not an int.
+     */
+    private static long signedInteger(CharSequence text, int from, int to) {
+        if (from >= to) {
+            return NO_INTEGER;
+        }
+        boolean negative = text.charAt(from) == '-';
+        int pos = negative || text.charAt(from) == '+' ? from + 1 : from;
+        if (pos == to) {
+            return NO_INTEGER;
+        }
+        long value = 0;
+        for (; pos < to; pos++) {
+            int digit = Character.digit(text.charAt(pos), 10);
+            if (digit < 0) {
+                return NO_INTEGER;
+            }
+            value = value * 10 + digit;
+            if (value > (long) Integer.MAX_VALUE + 1) {
+                return NO_INTEGER;
+            }
+        }
+        value = negative ? -value : value;
+        return value < Integer.MIN_VALUE || value > Integer.MAX_VALUE ? NO_INTEGER : value;
+    }
+
+    private static LocalDate isoDate(CharSequence text, int pos) {
+        if (text.charAt(pos + 4) != '-' || text.charAt(pos + 7) != '-') {
+            return null;
+        }
+        return date(digits(text, pos, 4), digits(text, pos + 5, 2), digits(text, pos + 8, 2));
+    }
+
+    private static LocalDate date(int year, int month, int day) {
+        if (year < 1 || month < 1 || month > 12 || day < 1 || day > 31) {
+            return null;
+        }
+        return LocalDate.of(year, month, Math.min(day, YearMonth.of(year, Month.of(month)).lengthOfMonth()));
+    }
+
+    /**
+     * @return The value of count ASCII digits at the position, or -1 if they are not all digits.
+     */
+    private static int digits(CharSequence text, int pos, int count) {
+        int value = 0;
+        for (int i = pos; i < pos + count; i++) {
+            char c = text.charAt(i);
+            if (!isDigit(c)) {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static boolean isThousandsGroup(CharSequence text, int pos) {
+        return pos + 3 <= text.length() && isDigit(text.charAt(pos)) && isDigit(text.charAt(pos + 1))
+                && isDigit(text.charAt(pos + 2)) && (pos + 3 == text.length() || !isDigit(text.charAt(pos + 3)));
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean regionMatches(CharSequence text, int pos, String expected) {
+        if (pos + expected.length() > text.length()) {
+            return false;
+        }
+        for (int i = 0; i < expected.length(); i++) {
+            if (text.charAt(pos + i) != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean regionMatchesIgnoreCase(CharSequence text, int pos, String lowerCaseExpected) {
+        if (pos + lowerCaseExpected.length() > text.length()) {
+            return false;
+        }
+        for (int i = 0; i < lowerCaseExpected.length(); i++) {
+            if (Character.toLowerCase(text.charAt(pos + i)) != lowerCaseExpected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean contains(CharSequence text, String expected) {
+        for (int i = 0; i + expected.length() <= text.length(); i++) {
+            if (regionMatches(text, i, expected)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int indexOf(CharSequence text, char c) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
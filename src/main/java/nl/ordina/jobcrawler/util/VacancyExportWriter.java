@@ -0,0 +1,102 @@
+package nl.ordina.jobcrawler.util;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import nl.ordina.jobcrawler.model.Vacancy;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * Writes vacancies one by one to an export, so an export of any size is written without holding it in memory. A
+ * vacancy in NDJSON has the fields of GET /vacancies/{id}, a vacancy in CSV has the {@link #CSV_HEADER} columns.
+ */
+public class VacancyExportWriter {
+
+    public static final List<String> CSV_HEADER = List.of("id", "vacancyURL", "title", "broker", "vacancyNumber",
+            "company", "hours", "salary", "postingDate", "location", "lat", "lon", "about");
+
+    private static final DateTimeFormatter POSTING_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final ExportFormat format;
+    private final Writer writer;
+    private final ObjectWriter jsonWriter;
+
+    public VacancyExportWriter(ExportFormat format, OutputStream out, ObjectMapper objectMapper) throws IOException {
+        this.format = format;
+        this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        // The writer stays open for the next vacancy
+        this.jsonWriter = objectMapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        if (format == ExportFormat.CSV) {
+            writeCsvLine(CSV_HEADER);
+        }
+    }
+
+    /**
+     * Writes a vacancy as the next line of the export.
+     *
+     * @param vacancy The vacancy to write, with its location loaded.
+     * @throws IOException if the export could not be written.
+     */
+    public void write(Vacancy vacancy) throws IOException {
+        if (format == ExportFormat.NDJSON) {
+            jsonWriter.writeValue(writer, vacancy);
+            writer.write('\n');
+            return;
+        }
+        boolean hasLocation = vacancy.hasLocation();
+        writeCsvLine(List.of(
+                toString(vacancy.getId()),
+                toString(vacancy.getVacancyURL()),
+                toString(vacancy.getTitle()),
+                toString(vacancy.getBroker()),
+                toString(vacancy.getVacancyNumber()),
+                toString(vacancy.getCompany()),
+                toString(vacancy.getHours()),
+                toString(vacancy.getSalary()),
+                vacancy.getPostingDate() == null ? "" : POSTING_DATE_FORMAT.format(vacancy.getPostingDate()),
+                hasLocation ? toString(vacancy.getLocation().getName()) : "",
+                hasLocation ? Double.toString(vacancy.getLocation().getLat()) : "",
+                hasLocation ? Double.toString(vacancy.getLocation().getLon()) : "",
+                toString(vacancy.getAbout())));
+    }
+
+    /**
+     * Writes the buffered lines, which the writer otherwise does whenever its buffer is full. The output stream is
+     * left open.
+     */
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    private void writeCsvLine(List<String> fields) throws IOException {
+        for (int i = 0; i < fields.size(); i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writer.write(quote(fields.get(i)));
+        }
+        writer.write("\r\n");
+    }
+
+    /**
+     * Quotes a CSV field containing a separator, quote or line break (RFC 4180), with its quotes doubled
+     */
+    static String quote(String field) {
+        if (field.indexOf(',') < 0 && field.indexOf('"') < 0 && field.indexOf('\n') < 0 && field.indexOf('\r') < 0) {
+            return field;
+        }
+        return '"' + field.replace("\"", "\"\"") + '"';
+    }
+
+    private static String toString(Object value) {
+        return value == null ? "" : value.toString();
+    }
+}
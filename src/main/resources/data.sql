@@ -32,3 +32,40 @@ AS '
         RETURN c * r;
     END;
 ';
+-- Full-text search over title, company and about with Dutch and English stemming, see VacancyCriteriaQuery.
+-- The functions are simple SQL functions, so PostgreSQL inlines them and the GIN expression index is used.
+CREATE OR REPLACE FUNCTION vacancy_search_vector(title varchar, company varchar, about text)
+    RETURNS tsvector
+    LANGUAGE sql
+    IMMUTABLE
+AS '
+    SELECT setweight(to_tsvector(''dutch'', coalesce(title, '''')), ''A'')
+        || setweight(to_tsvector(''english'', coalesce(title, '''')), ''A'')
+        || setweight(to_tsvector(''simple'', coalesce(company, '''')), ''B'')
+        || setweight(to_tsvector(''dutch'', coalesce(about, '''')), ''C'')
+        || setweight(to_tsvector(''english'', coalesce(about, '''')), ''C'')
+';
+CREATE OR REPLACE FUNCTION vacancy_search_query(query text)
+    RETURNS tsquery
+    LANGUAGE sql
+    IMMUTABLE
+AS '
+    SELECT websearch_to_tsquery(''dutch'', query) || websearch_to_tsquery(''english'', query)
+';
+CREATE OR REPLACE FUNCTION fts_match(title varchar, company varchar, about text, query text)
+    RETURNS boolean
+    LANGUAGE sql
+    IMMUTABLE
+AS '
+    SELECT vacancy_search_vector(title, company, about) @@ vacancy_search_query(query)
+';
+CREATE OR REPLACE FUNCTION fts_rank(title varchar, company varchar, about text, query text)
+    RETURNS real
+    LANGUAGE sql
+    IMMUTABLE
+AS '
+    SELECT ts_rank_cd(vacancy_search_vector(title, company, about), vacancy_search_query(query))
+';
+CREATE INDEX IF NOT EXISTS vacancy_search_idx ON vacancy USING GIN (vacancy_search_vector(title, company, about));
+-- Radius searches use the LocationIndex in memory, the lat/lon index of the bounding box query is no longer used
+DROP INDEX IF EXISTS location_lat_lon_idx;
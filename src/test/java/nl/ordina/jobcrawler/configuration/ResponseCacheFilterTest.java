@@ -0,0 +1,128 @@
+package nl.ordina.jobcrawler.configuration;
+
+import nl.ordina.jobcrawler.service.DataGeneration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.FilterChain;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResponseCacheFilterTest {
+
+    private static final String BODY = "{\"vacancies\":[" + "{\"title\":\"Java developer\"},".repeat(100) + "{}]}";
+
+    private DataGeneration dataGeneration;
+    private ResponseCacheFilter filter;
+    private int handled;
+
+    @BeforeEach
+    void setUp() {
+        dataGeneration = new DataGeneration();
+        filter = new ResponseCacheFilter(dataGeneration);
+        handled = 0;
+    }
+
+    @Test
+    void testCachedResponse() throws Exception {
+        MockHttpServletResponse first = perform(get("/vacancies"));
+        MockHttpServletResponse second = perform(get("/vacancies"));
+
+        assertEquals(1, handled);
+        assertEquals(BODY, first.getContentAsString());
+        assertEquals(BODY, second.getContentAsString());
+        assertEquals("application/json", second.getContentType());
+        assertNotNull(first.getHeader(HttpHeaders.ETAG));
+        assertEquals(first.getHeader(HttpHeaders.ETAG), second.getHeader(HttpHeaders.ETAG));
+        assertEquals("no-cache", second.getHeader(HttpHeaders.CACHE_CONTROL));
+
+        perform(get("/vacancies", "size=5"));
+        assertEquals(2, handled);
+    }
+
+    @Test
+    void testGzippedResponse() throws Exception {
+        perform(get("/vacancies"));
+        MockHttpServletRequest request = get("/vacancies");
+        request.addHeader(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate");
+        MockHttpServletResponse response = perform(request);
+
+        assertEquals(1, handled);
+        assertEquals("gzip", response.getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(BODY, gunzip(response.getContentAsByteArray()));
+    }
+
+    @Test
+    void testNotModified() throws Exception {
+        String etag = perform(get("/skills")).getHeader(HttpHeaders.ETAG);
+        MockHttpServletRequest request = get("/skills");
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, etag);
+        MockHttpServletResponse response = perform(request);
+
+        assertEquals(304, response.getStatus());
+        assertEquals(0, response.getContentLength());
+        assertEquals(1, handled);
+    }
+
+    @Test
+    void testNewGeneration() throws Exception {
+        String etag = perform(get("/locations")).getHeader(HttpHeaders.ETAG);
+        dataGeneration.next();
+        MockHttpServletRequest request = get("/locations");
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, etag);
+        MockHttpServletResponse response = perform(request);
+
+        assertEquals(200, response.getStatus());
+        assertNotEquals(etag, response.getHeader(HttpHeaders.ETAG));
+        assertEquals(BODY, response.getContentAsString());
+        assertEquals(2, handled);
+    }
+
+    @Test
+    void testNotCached() throws Exception {
+        MockHttpServletRequest post = new MockHttpServletRequest("POST", "/vacancies");
+        post.setServletPath("/vacancies");
+        perform(post);
+        perform(post);
+        perform(get("/scraper/runs"));
+        perform(get("/scraper/runs"));
+
+        assertEquals(4, handled);
+        assertNull(perform(get("/scraper/runs")).getHeader(HttpHeaders.ETAG));
+    }
+
+    private MockHttpServletRequest get(String path) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+        request.setServletPath(path);
+        return request;
+    }
+
+    private MockHttpServletRequest get(String path, String query) {
+        MockHttpServletRequest request = get(path);
+        request.setQueryString(query);
+        return request;
+    }
+
+    private MockHttpServletResponse perform(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        FilterChain chain = (req, res) -> {
+            handled++;
+            res.setContentType("application/json");
+            res.getOutputStream().write(BODY.getBytes());
+        };
+        filter.doFilter(request, response, chain);
+        return response;
+    }
+
+    private static String gunzip(byte[] bytes) throws IOException {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            return new String(in.readAllBytes());
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package nl.ordina.jobcrawler.controller;
 
+import nl.ordina.jobcrawler.model.ScrapeRun;
+import nl.ordina.jobcrawler.service.ScrapeRunService;
 import nl.ordina.jobcrawler.service.ScraperService;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -9,8 +11,13 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.time.LocalDateTime;
+import java.util.Collections;
+
 import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @AutoConfigureMockMvc
@@ -24,6 +31,9 @@ class ScraperControllerTest {
     @MockBean
     private ScraperService scraperService;
 
+    @MockBean
+    private ScrapeRunService scrapeRunService;
+
     /**
      * Tests the /scrape end point, if it calls the VacancyStarter scrape method
      */
@@ -36,4 +46,15 @@ class ScraperControllerTest {
 
         verify(scraperService, times(1)).scrape();
     }
+
+    @Test
+    void getRuns() throws Exception {
+        when(scrapeRunService.findRecent(5)).thenReturn(Collections.singletonList(new ScrapeRun(LocalDateTime.now())));
+
+        mockMvc.perform(get("/scraper/runs").param("limit", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].status").value("RUNNING"));
+
+        verify(scrapeRunService, times(1)).findRecent(5);
+    }
 }
@@ -0,0 +1,38 @@
+package nl.ordina.jobcrawler.model.mapper;
+
+import nl.ordina.jobcrawler.model.Skill;
+import nl.ordina.jobcrawler.payload.SkillDTO;
+import org.junit.jupiter.api.Test;
+import org.modelmapper.ModelMapper;
+
+import java.util.UUID;
+
+import static nl.ordina.jobcrawler.model.mapper.VacancyMapperTest.assertFieldsEqual;
+
+/**
+ * Compares SkillMapper with the ModelMapper mapping it replaced, field for field.
+ */
+class SkillMapperTest {
+
+    private final ModelMapper modelMapper = new ModelMapper();
+    private final SkillMapper skillMapper = new SkillMapper();
+
+    @Test
+    void testToSkill() {
+        SkillDTO skillDTO = new SkillDTO();
+        skillDTO.setId(UUID.randomUUID());
+        skillDTO.setName("Java");
+        assertFieldsEqual(modelMapper.map(skillDTO, Skill.class), skillMapper.toSkill(skillDTO));
+
+        // The create endpoint gets skills without id
+        skillDTO.setId(null);
+        assertFieldsEqual(modelMapper.map(skillDTO, Skill.class), skillMapper.toSkill(skillDTO));
+    }
+
+    @Test
+    void testToSkillDTO() {
+        Skill skill = new Skill(UUID.randomUUID(), "Angular");
+
+        assertFieldsEqual(modelMapper.map(skill, SkillDTO.class), skillMapper.toSkillDTO(skill));
+    }
+}
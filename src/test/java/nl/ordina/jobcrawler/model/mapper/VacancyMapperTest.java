@@ -0,0 +1,99 @@
+package nl.ordina.jobcrawler.model.mapper;
+
+import nl.ordina.jobcrawler.model.Location;
+import nl.ordina.jobcrawler.model.Skill;
+import nl.ordina.jobcrawler.model.Vacancy;
+import nl.ordina.jobcrawler.payload.VacancyDTO;
+import org.junit.jupiter.api.Test;
+import org.modelmapper.ModelMapper;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compares VacancyMapper with the ModelMapper mapping it replaced, field for field.
+ */
+class VacancyMapperTest {
+
+    private final ModelMapper modelMapper = new ModelMapper();
+    private final VacancyMapper vacancyMapper = new VacancyMapper();
+
+    @Test
+    void testToVacancy() {
+        VacancyDTO vacancyDTO = vacancyDTO();
+
+        Vacancy vacancy = vacancyMapper.toVacancy(vacancyDTO);
+
+        assertFieldsEqual(modelMapper.map(vacancyDTO, Vacancy.class), vacancy);
+        assertEquals("https://example.com/1", vacancy.getVacancyURL());
+        assertNotSame(vacancyDTO.getLocation(), vacancy.getLocation());
+        assertTrue(vacancy.getSkills().isEmpty());
+    }
+
+    @Test
+    void testToVacancyWithoutValues() {
+        VacancyDTO vacancyDTO = new VacancyDTO();
+        vacancyDTO.setVacancyURL("https://example.com/2");
+
+        assertFieldsEqual(modelMapper.map(vacancyDTO, Vacancy.class), vacancyMapper.toVacancy(vacancyDTO));
+    }
+
+    @Test
+    void testToVacancyDTO() {
+        Vacancy vacancy = vacancyMapper.toVacancy(vacancyDTO());
+        vacancy.setSkills(Set.of(new Skill("Java")));
+
+        assertFieldsEqual(modelMapper.map(vacancy, VacancyDTO.class), vacancyMapper.toVacancyDTO(vacancy));
+        vacancy.setLocation(null);
+        assertFieldsEqual(modelMapper.map(vacancy, VacancyDTO.class), vacancyMapper.toVacancyDTO(vacancy));
+    }
+
+    static VacancyDTO vacancyDTO() {
+        Location location = new Location("Utrecht", 52.09, 5.12);
+        location.setId(UUID.randomUUID());
+        return VacancyDTO.builder()
+                .id(UUID.randomUUID())
+                .vacancyURL("https://example.com/1")
+                .title("Java Developer")
+                .broker("Yacht")
+                .vacancyNumber("V-1")
+                .locationString("Utrecht, Nederland")
+                .hours(40)
+                .salary("4000")
+                .postingDate(LocalDateTime.of(2021, 1, 10, 12, 30))
+                .about("Spring Boot en Angular")
+                .company("Ordina")
+                .location(location)
+                .distance(12.5)
+                .build();
+    }
+
+    /**
+     * Asserts that every field has the same value, comparing the fields of a Location as well.
+     */
+    static void assertFieldsEqual(Object expected, Object actual) {
+        assertEquals(expected.getClass(), actual.getClass());
+        for (Field field : expected.getClass().getDeclaredFields()) {
+            if (Modifier.isStatic(field.getModifiers())) {
+                continue;
+            }
+            field.setAccessible(true);
+            try {
+                Object expectedValue = field.get(expected);
+                Object actualValue = field.get(actual);
+                if (expectedValue instanceof Location && actualValue != null) {
+                    assertFieldsEqual(expectedValue, actualValue);
+                } else {
+                    assertEquals(expectedValue, actualValue, field.getName());
+                }
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
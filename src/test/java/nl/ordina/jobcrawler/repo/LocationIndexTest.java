@@ -0,0 +1,91 @@
+package nl.ordina.jobcrawler.repo;
+
+import nl.ordina.jobcrawler.model.Location;
+import nl.ordina.jobcrawler.util.GeoUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LocationIndexTest {
+    @Mock
+    LocationRepository mockLocationRepository;
+
+    @InjectMocks
+    LocationIndex locationIndex;
+
+    private final Random random = new Random(20210131L);
+    private List<Location> locations;
+
+    @BeforeEach
+    void setUp() {
+        locations = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            locations.add(location(50.8 + random.nextDouble() * 2.6, 3.4 + random.nextDouble() * 3.8));
+        }
+        when(mockLocationRepository.findAll()).thenReturn(locations);
+    }
+
+    @Test
+    void testFindWithinRadiusMatchesLinearSearch() {
+        for (int i = 0; i < 1_000; i++) {
+            double lat = 50.8 + random.nextDouble() * 2.6;
+            double lon = 3.4 + random.nextDouble() * 3.8;
+            double radius = random.nextDouble() * 50;
+            assertEquals(linearWithinRadius(lat, lon, radius), locationIndex.findWithinRadius(lat, lon, radius));
+        }
+        verify(mockLocationRepository, times(1)).findAll();
+    }
+
+    @Test
+    void testPutAndRemove() {
+        Location utrecht = location(52.08, 5.13);
+        assertFalse(locationIndex.findWithinRadius(52.08, 5.13, 0.1).containsKey(utrecht.getId()));
+
+        locationIndex.put(utrecht);
+        assertEquals(0.0, locationIndex.findWithinRadius(52.08, 5.13, 0.1).get(utrecht.getId()));
+
+        utrecht.setLat(51.0);
+        locationIndex.put(utrecht);
+        assertFalse(locationIndex.findWithinRadius(52.08, 5.13, 0.1).containsKey(utrecht.getId()));
+
+        locationIndex.remove(utrecht.getId());
+        assertFalse(locationIndex.findWithinRadius(51.0, 5.13, 0.1).containsKey(utrecht.getId()));
+    }
+
+    @Test
+    void testFindNearestFirst() {
+        List<UUID> nearestFirst = locationIndex.findNearestFirst(52.08, 5.13, Double.POSITIVE_INFINITY);
+        assertEquals(locations.size(), nearestFirst.size());
+        Map<UUID, Double> distances = linearWithinRadius(52.08, 5.13, Double.POSITIVE_INFINITY);
+        for (int i = 1; i < nearestFirst.size(); i++) {
+            assertTrue(distances.get(nearestFirst.get(i - 1)) <= distances.get(nearestFirst.get(i)));
+        }
+        assertEquals(linearWithinRadius(52.08, 5.13, 20).keySet(), new HashSet<>(locationIndex.findNearestFirst(52.08, 5.13, 20)));
+    }
+
+    private Map<UUID, Double> linearWithinRadius(double lat, double lon, double radius) {
+        Map<UUID, Double> distances = new HashMap<>();
+        for (Location location : locations) {
+            double distance = GeoUtils.distance(lat, lon, location.getLat(), location.getLon());
+            if (distance <= radius) {
+                distances.put(location.getId(), distance);
+            }
+        }
+        return distances;
+    }
+
+    private static Location location(double lat, double lon) {
+        Location location = new Location("location", lat, lon);
+        location.setId(UUID.randomUUID());
+        return location;
+    }
+}
@@ -1,20 +1,42 @@
 package nl.ordina.jobcrawler.repo;
 
+import nl.ordina.jobcrawler.model.GeocodeResult;
+import nl.ordina.jobcrawler.model.Liveness;
 import nl.ordina.jobcrawler.model.Skill;
 import nl.ordina.jobcrawler.model.Vacancy;
+import nl.ordina.jobcrawler.payload.SearchCursor;
+import nl.ordina.jobcrawler.payload.SearchFacets;
 import nl.ordina.jobcrawler.payload.SearchRequest;
+import nl.ordina.jobcrawler.payload.VacancyListItemDTO;
+import nl.ordina.jobcrawler.service.DataGeneration;
+import nl.ordina.jobcrawler.service.SkillTagger;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.internal.util.collections.Sets;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.util.AopTestUtils;
 
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  *
@@ -27,7 +49,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
  *
  */
 @ExtendWith(SpringExtension.class)
-@Import(VacancyCriteriaQuery.class)
+@Import({VacancyCriteriaQuery.class, LocationIndex.class, VacancySearchIndex.class, SkillTagger.class, DataGeneration.class})
 @DataJpaTest
 class PersistenceTests {
 
@@ -37,26 +59,265 @@ class PersistenceTests {
     @Autowired
     private SkillRepository skillRepository;
 
+    @Autowired
+    private GeocodeResultRepository geocodeResultRepository;
+
     @Autowired
     private VacancyCriteriaQuery vacancyCriteriaQuery;
 
+    @Autowired
+    private SkillTagger skillTagger;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+
     @Test
     void testRepoFindById() {
         String sUuid = "30324ab8-29fd-4f23-a4da-bc445396e79a";
         assertEquals(sUuid, vacancyRepository.findById(UUID.fromString(sUuid)).orElse(new Vacancy()).getId().toString());
     }
 
+    @Test
+    void testRepoFindVacancyURLsIn() {
+        String existingURL = "https://www.huxley.com/nl-nl/job/kyc/HA-33589498";
+        Set<String> urls = vacancyRepository.findVacancyURLsIn(List.of(existingURL, "https://example.com/unknown"));
+        assertEquals(Set.of(existingURL), urls);
+    }
+
     @Test
     void findBySkills() {
+        tagVacancies();
         SearchRequest searchRequest = new SearchRequest();
+        // Tagged skills match regardless of case
         searchRequest.setSkills(Sets.newSet("JAVA"));
-        assertEquals(10, vacancyCriteriaQuery.totalMatchingVacancies(searchRequest));
+        assertEquals(141, vacancyCriteriaQuery.totalMatchingVacancies(searchRequest));
+        // Not a skill, so looked up in the about
         searchRequest.setSkills(Sets.newSet("Maven"));
         assertEquals(29, vacancyCriteriaQuery.totalMatchingVacancies(searchRequest));
         searchRequest.setSkills(Sets.newSet("Angular"));
-        assertEquals(31, vacancyCriteriaQuery.totalMatchingVacancies(searchRequest));
+        assertEquals(32, vacancyCriteriaQuery.totalMatchingVacancies(searchRequest));
         searchRequest.setSkills(Sets.newSet("Maven", "Angular"));
-        assertEquals(6, vacancyCriteriaQuery.totalMatchingVacancies(searchRequest));
+        assertEquals(7, vacancyCriteriaQuery.totalMatchingVacancies(searchRequest));
+        searchRequest.setSkills(Sets.newSet("Java", "Angular"));
+        assertEquals(vacancyCriteriaQuery.totalMatchingVacancies(searchRequest),
+                vacancyCriteriaQuery.getMatchingVacancies(searchRequest, PageRequest.of(0, 100), new String[]{"postingDate", "desc"}).size());
+    }
+
+    @Test
+    void testFindByBrokers() {
+        SearchRequest searchRequest = new SearchRequest();
+        searchRequest.setBrokers(Sets.newSet("huxleyit"));
+        assertEquals(102, vacancyCriteriaQuery.totalMatchingVacancies(searchRequest));
+        searchRequest.setBrokers(Sets.newSet("HuxleyIT", "Jobbird"));
+        assertEquals(222, vacancyCriteriaQuery.totalMatchingVacancies(searchRequest));
+    }
+
+    @Test
+    void testGetMatchingPage() {
+        SearchRequest searchRequest = new SearchRequest();
+        searchRequest.setBrokers(Sets.newSet("huxleyit"));
+        String[] sort = new String[]{"postingDate", "desc"};
+
+        Page<VacancyListItemDTO> page = vacancyCriteriaQuery.getMatchingPage(searchRequest, PageRequest.of(1, 15), sort);
+        assertEquals(102, page.getTotalElements());
+        assertEquals(ids(vacancyCriteriaQuery.getMatchingVacancies(searchRequest, PageRequest.of(1, 15), sort)), ids(page.getContent()));
+
+        // Past the last page there are no rows to count, so it is counted separately
+        page = vacancyCriteriaQuery.getMatchingPage(searchRequest, PageRequest.of(10, 15), sort);
+        assertTrue(page.getContent().isEmpty());
+        assertEquals(102, page.getTotalElements());
+    }
+
+    @Test
+    void testStreamMatchingVacancies() {
+        SearchRequest searchRequest = new SearchRequest();
+        searchRequest.setBrokers(Sets.newSet("huxleyit"));
+
+        List<Vacancy> vacancies;
+        try (Stream<Vacancy> stream = vacancyCriteriaQuery.streamMatchingVacancies(searchRequest)) {
+            vacancies = stream.collect(Collectors.toList());
+        }
+        assertEquals(102, vacancies.size());
+        assertEquals(102, vacancies.stream().map(Vacancy::getId).distinct().count());
+        assertEquals(79, vacancies.stream().filter(Vacancy::hasLocation).count());
+        assertTrue(vacancies.stream().noneMatch(entityManager.getEntityManager()::contains));
+    }
+
+    @Test
+    void testDeleteByIdIn() {
+        tagVacancies();
+        List<UUID> ids = vacancyRepository.findAllIds().subList(0, 100);
+        vacancyRepository.untagVacancies(ids.stream().map(UUID::toString).collect(Collectors.toList()));
+        assertEquals(100, vacancyRepository.deleteByIdIn(ids));
+        assertEquals(180, vacancyRepository.count());
+    }
+
+    @Test
+    void testReconcileListing() {
+        List<String> listed = vacancyRepository.findAll().stream()
+                .filter(vacancy -> vacancy.getBroker().equals("HuxleyIT"))
+                .map(Vacancy::getVacancyURL)
+                .limit(10)
+                .collect(Collectors.toList());
+        LocalDateTime crawlStart = LocalDateTime.now();
+        assertEquals(10, vacancyRepository.markSeen(listed, crawlStart));
+        assertEquals(92, vacancyRepository.markMissed("HuxleyIT", crawlStart));
+        assertEquals(92, vacancyRepository.findIdsByBrokerMissedCrawls("HuxleyIT", 1).size());
+        assertEquals(92, vacancyRepository.findURLsUnconfirmedSince("HuxleyIT", crawlStart, PageRequest.of(0, 500)).size());
+
+        // The next crawl lists none of them
+        assertEquals(102, vacancyRepository.markMissed("HuxleyIT", crawlStart.plusHours(6)));
+        assertEquals(92, vacancyRepository.findIdsByBrokerMissedCrawls("HuxleyIT", 2).size());
+        assertEquals(102, vacancyRepository.findIdsByBrokerMissedCrawls("HuxleyIT", 1).size());
+    }
+
+    @Test
+    void testFindURLsUnconfirmedSince() {
+        assertEquals(280, vacancyRepository.findBrokers().stream()
+                .mapToInt(broker -> vacancyRepository.findURLsUnconfirmedSince(broker, LocalDateTime.now(), PageRequest.of(0, 500)).size())
+                .sum());
+
+        LocalDateTime checkedAt = LocalDateTime.now();
+        List<Object[]> unconfirmed = vacancyRepository.findURLsUnconfirmedSince("HuxleyIT", checkedAt, PageRequest.of(0, 500));
+        assertEquals(102, unconfirmed.size());
+        List<LocalDateTime> postingDates = unconfirmed.stream().map(row -> (LocalDateTime) row[3]).collect(Collectors.toList());
+        // Oldest first, the ones without posting date last
+        for (int i = 1; i < postingDates.size(); i++) {
+            assertTrue(postingDates.get(i) == null
+                    || (postingDates.get(i - 1) != null && !postingDates.get(i).isBefore(postingDates.get(i - 1))));
+        }
+
+        List<UUID> checked = unconfirmed.stream().limit(5).map(row -> (UUID) row[0]).collect(Collectors.toList());
+        assertEquals(5, vacancyRepository.markChecked(checked, checkedAt, Liveness.ALIVE));
+        entityManager.clear();
+        assertEquals(Liveness.ALIVE, vacancyRepository.findById(checked.get(0)).orElseThrow().getLastCheckOutcome());
+        assertEquals(97, vacancyRepository.findURLsUnconfirmedSince("HuxleyIT", checkedAt, PageRequest.of(0, 500)).size());
+        assertEquals(102, vacancyRepository.findURLsUnconfirmedSince("HuxleyIT", checkedAt.plusHours(1), PageRequest.of(0, 500)).size());
+    }
+
+    @Test
+    void testListItems() {
+        SearchRequest searchRequest = new SearchRequest();
+        searchRequest.setBrokers(Sets.newSet("huxleyit"));
+        List<VacancyListItemDTO> page = vacancyCriteriaQuery.getMatchingVacancies(searchRequest, PageRequest.of(0, 50),
+                new String[]{"postingDate", "desc"});
+        Map<UUID, VacancyListItemDTO> byId = new HashMap<>();
+        vacancyRepository.findListItemsByIdIn(ids(page)).forEach(vacancy -> byId.put(vacancy.getId(), vacancy));
+
+        assertEquals(50, byId.size());
+        for (VacancyListItemDTO listItem : page) {
+            Vacancy vacancy = vacancyRepository.findById(listItem.getId()).orElseThrow();
+            for (VacancyListItemDTO item : List.of(listItem, byId.get(listItem.getId()))) {
+                assertEquals(vacancy.getTitle(), item.getTitle());
+                assertEquals(vacancy.getVacancyURL(), item.getVacancyURL());
+                assertEquals(vacancy.getPostingDate(), item.getPostingDate());
+                assertEquals(vacancy.hasLocation() ? vacancy.getLocation().getId() : null,
+                        item.getLocation() == null ? null : item.getLocation().getId());
+                assertEquals(vacancy.hasLocation() ? vacancy.getLocation().getName() : null,
+                        item.getLocation() == null ? null : item.getLocation().getName());
+            }
+        }
+    }
+
+    @Test
+    void testGetMatchingVacanciesAfter() {
+        SearchRequest searchRequest = new SearchRequest();
+        searchRequest.setBrokers(Sets.newSet("huxleyit"));
+        Set<UUID> expected = new HashSet<>(ids(vacancyCriteriaQuery.getMatchingVacancies(searchRequest, PageRequest.of(0, 200),
+                new String[]{"postingDate", "desc"})));
+
+        for (String sort : SearchCursor.SORTS) {
+            for (String dir : new String[]{"asc", "desc"}) {
+                String[] sorting = {sort, dir};
+                // Every vacancy once, in order, whatever the page size
+                List<UUID> all = ids(vacancyCriteriaQuery.getMatchingVacanciesAfter(searchRequest, sorting, null, 200));
+                List<UUID> paged = new ArrayList<>();
+                SearchCursor after = null;
+                List<VacancyListItemDTO> page;
+                do {
+                    page = vacancyCriteriaQuery.getMatchingVacanciesAfter(searchRequest, sorting, after, 15);
+                    paged.addAll(ids(page));
+                    if (!page.isEmpty()) {
+                        after = SearchCursor.decode(SearchCursor.after(page.get(page.size() - 1), sorting).encode(), sorting);
+                    }
+                } while (page.size() == 15);
+                assertEquals(all, paged, String.join(" ", sorting));
+                assertEquals(expected, new HashSet<>(paged));
+            }
+        }
+    }
+
+    @Test
+    void testGetFacets() {
+        tagVacancies();
+        SearchRequest searchRequest = new SearchRequest();
+        searchRequest.setBrokers(Sets.newSet("HuxleyIT", "Jobbird"));
+
+        SearchFacets facets = vacancyCriteriaQuery.getFacets(searchRequest);
+        assertEquals(Sets.newSet("HuxleyIT", "Jobbird"), facets.getBrokers().keySet());
+        assertEquals(222, facets.getBrokers().values().stream().mapToLong(Long::longValue).sum());
+        // Vacancies without a posting date are in no week
+        SearchRequest withPostingDate = new SearchRequest();
+        withPostingDate.setBrokers(searchRequest.getBrokers());
+        withPostingDate.setFromDate(LocalDateTime.of(1970, 1, 1, 0, 0));
+        assertEquals(vacancyCriteriaQuery.totalMatchingVacancies(withPostingDate),
+                facets.getPostingWeeks().values().stream().mapToLong(Long::longValue).sum());
+        facets.getPostingWeeks().keySet().forEach(week ->
+                assertEquals(DayOfWeek.MONDAY, LocalDate.parse(week).getDayOfWeek()));
+
+        // Every count is the total of the search narrowed down to that value
+        String skill = facets.getSkills().keySet().iterator().next();
+        searchRequest.setSkills(Sets.newSet(skill));
+        assertEquals(facets.getSkills().get(skill), vacancyCriteriaQuery.totalMatchingVacancies(searchRequest));
+        searchRequest.setSkills(null);
+        String location = facets.getLocations().keySet().iterator().next();
+        searchRequest.setLocation(location);
+        assertTrue(facets.getLocations().get(location) <= vacancyCriteriaQuery.totalMatchingVacancies(searchRequest));
+    }
+
+    @Test
+    void testFindSkillsByVacancyId() {
+        UUID vacancyId = UUID.fromString("30324ab8-29fd-4f23-a4da-bc445396e79a");
+        assertTrue(skillRepository.findByVacancyId(vacancyId).isEmpty());
+
+        tagVacancies();
+
+        Vacancy vacancy = vacancyRepository.findById(vacancyId).orElseThrow();
+        Set<String> expected = new HashSet<>();
+        skillRepository.findAll().stream().map(Skill::getName)
+                .filter(name -> vacancy.getAbout().toLowerCase().contains(name.toLowerCase()))
+                .forEach(expected::add);
+        Set<String> tagged = new HashSet<>();
+        skillRepository.findByVacancyId(vacancyId).forEach(skill -> tagged.add(skill.getName()));
+        assertEquals(expected, tagged);
+        assertTrue(skillRepository.countVacancySkills() > 0);
+    }
+
+    /**
+     * Tags the vacancies of testdata.sql, without the @Async proxy so the tags are rolled back with the test.
+     */
+    private void tagVacancies() {
+        AopTestUtils.<SkillTagger>getUltimateTargetObject(skillTagger).tagUntaggedVacancies();
+    }
+
+    private static List<UUID> ids(List<VacancyListItemDTO> vacancies) {
+        List<UUID> ids = new ArrayList<>();
+        vacancies.forEach(vacancy -> ids.add(vacancy.getId()));
+        return ids;
+    }
+
+    @Test
+    void testDeleteNotFoundFetchedBefore() {
+        LocalDateTime now = LocalDateTime.now();
+        geocodeResultRepository.save(new GeocodeResult("utrecht", new double[]{ 52.09, 5.12 }, now.minusDays(2)));
+        geocodeResultRepository.save(new GeocodeResult("nergenshuizen", null, now.minusDays(2)));
+        geocodeResultRepository.save(new GeocodeResult("ergenshuizen", null, now));
+
+        assertEquals(1, geocodeResultRepository.deleteNotFoundFetchedBefore(now.minusDays(1)));
+        assertTrue(geocodeResultRepository.findByQuery("nergenshuizen").isEmpty());
+        assertTrue(geocodeResultRepository.findByQuery("utrecht").isPresent());
+        assertTrue(geocodeResultRepository.findByQuery("ergenshuizen").isPresent());
     }
 
     @Test
@@ -72,6 +333,21 @@ class PersistenceTests {
         assertEquals(112, vacancyCriteriaQuery.totalMatchingVacancies(searchRequest));
    }
 
+    @Test
+    void testFindMatchingVacanciesByKeywords() {
+        SearchRequest searchRequest = new SearchRequest();
+        searchRequest.setKeywords("java");
+        long java = vacancyCriteriaQuery.totalMatchingVacancies(searchRequest);
+        searchRequest.setKeywords("JAVA  developer");
+        long javaDeveloper = vacancyCriteriaQuery.totalMatchingVacancies(searchRequest);
+        assertTrue(javaDeveloper > 0 && javaDeveloper < java);
+
+        List<VacancyListItemDTO> vacancies = vacancyCriteriaQuery.getMatchingVacancies(searchRequest, PageRequest.of(0, 5),
+                new String[]{ "relevance", "desc" });
+        assertEquals(5, vacancies.size());
+        assertTrue(vacancies.get(0).getTitle().toLowerCase().contains("java"));
+    }
+
     @Test
     void testFindTotalMatchingVacanciesByDistance() {
         SearchRequest searchRequest = new SearchRequest();
@@ -82,4 +358,54 @@ class PersistenceTests {
         assertEquals(21, vacancyCriteriaQuery.totalMatchingVacancies(searchRequest));
     }
 
+    @Test
+    void testGetMatchingVacanciesNearestFirst() {
+        SearchRequest searchRequest = new SearchRequest();
+        searchRequest.setCoord(new double[]{ 52.08653175, 5.24900804050379 });
+        searchRequest.setDistance(50.0);
+        String[] sort = { "distance", "asc" };
+
+        List<VacancyListItemDTO> vacancies = new ArrayList<>();
+        for (int page = 0; page < 4; page++) {
+            vacancies.addAll(vacancyCriteriaQuery.getMatchingVacancies(searchRequest, PageRequest.of(page, 10), sort));
+        }
+
+        assertEquals(40, vacancies.size());
+        assertEquals(40, vacancies.stream().map(VacancyListItemDTO::getId).distinct().count());
+        for (int i = 1; i < vacancies.size(); i++) {
+            assertTrue(vacancies.get(i - 1).getDistance() <= vacancies.get(i).getDistance());
+        }
+        assertTrue(vacancies.get(0).getDistance() < vacancies.get(39).getDistance());
+    }
+
+    @Test
+    void testGetMatchingVacanciesNearestFirstWithoutRadius() {
+        SearchRequest searchRequest = new SearchRequest();
+        searchRequest.setCoord(new double[]{ 52.08653175, 5.24900804050379 });
+        String[] sort = { "distance", "asc" };
+        long total = vacancyCriteriaQuery.totalMatchingVacancies(searchRequest);
+
+        List<VacancyListItemDTO> vacancies = new ArrayList<>();
+        for (int page = 0; page * 7 < total; page++) {
+            Page<VacancyListItemDTO> result = vacancyCriteriaQuery.getMatchingPage(searchRequest, PageRequest.of(page, 7), sort);
+            assertEquals(total, result.getTotalElements());
+            vacancies.addAll(result.getContent());
+        }
+
+        // Every vacancy once, nearest first and the ones without a location last
+        assertEquals(total, vacancies.size());
+        assertEquals(total, vacancies.stream().map(VacancyListItemDTO::getId).distinct().count());
+        for (int i = 1; i < vacancies.size(); i++) {
+            VacancyListItemDTO previous = vacancies.get(i - 1);
+            VacancyListItemDTO vacancy = vacancies.get(i);
+            assertTrue(vacancy.getLocation() == null
+                    || previous.getLocation() != null && previous.getDistance() <= vacancy.getDistance());
+        }
+
+        List<VacancyListItemDTO> farthestFirst = vacancyCriteriaQuery.getMatchingVacancies(searchRequest,
+                PageRequest.of(0, 10), new String[]{ "distance", "desc" });
+        assertEquals(vacancies.stream().filter(v -> v.getLocation() != null).mapToDouble(VacancyListItemDTO::getDistance).max().orElseThrow(),
+                farthestFirst.get(0).getDistance());
+    }
+
 }
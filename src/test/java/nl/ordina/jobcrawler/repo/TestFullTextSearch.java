@@ -0,0 +1,48 @@
+package nl.ordina.jobcrawler.repo;
+
+import java.util.Locale;
+
+/**
+ * H2 stand-ins for the fts_match and fts_rank functions of data.sql, registered in testdata.sql. Instead of stemming,
+ * every word of the query has to occur in the title, company or about (case insensitive).
+ */
+public class TestFullTextSearch {
+
+    public static boolean match(String title, String company, String about, String query) {
+        String document = document(title, company, about);
+        for (String word : words(query)) {
+            if (!document.contains(word)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static double rank(String title, String company, String about, String query) {
+        double rank = 0;
+        for (String word : words(query)) {
+            rank += occurrences(title, word) + 0.4 * occurrences(company, word) + 0.1 * occurrences(about, word);
+        }
+        return rank;
+    }
+
+    private static String[] words(String query) {
+        return query.toLowerCase(Locale.ROOT).replace("\"", " ").trim().split("\\s+");
+    }
+
+    private static String document(String title, String company, String about) {
+        return (title + " " + company + " " + about).toLowerCase(Locale.ROOT);
+    }
+
+    private static int occurrences(String field, String word) {
+        if (field == null) {
+            return 0;
+        }
+        String text = field.toLowerCase(Locale.ROOT);
+        int count = 0;
+        for (int i = text.indexOf(word); i >= 0; i = text.indexOf(word, i + word.length())) {
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,298 @@
+package nl.ordina.jobcrawler.repo;
+
+import nl.ordina.jobcrawler.model.Location;
+import nl.ordina.jobcrawler.model.Skill;
+import nl.ordina.jobcrawler.model.Vacancy;
+import nl.ordina.jobcrawler.payload.SearchFacets;
+import nl.ordina.jobcrawler.payload.SearchRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class VacancySearchIndexTest {
+    private static final String[] NEWEST_FIRST = {"postingDate", "desc"};
+
+    @Mock
+    VacancyRepository mockVacancyRepository;
+
+    @Mock
+    LocationIndex mockLocationIndex;
+
+    private VacancySearchIndex vacancySearchIndex;
+    private Vacancy javaDeveloper;
+    private Vacancy javaTester;
+    private Vacancy cSharpDeveloper;
+    private List<Vacancy> vacancies;
+    private Location utrecht;
+    private Location amersfoort;
+
+    @BeforeEach
+    void setUp() {
+        javaDeveloper = vacancy("Java Developer", "Ordina", "Spring Boot en Angular", "Yacht", LocalDateTime.of(2021, 1, 10, 0, 0));
+        javaTester = vacancy("Tester", "Ordina", "Testautomatisering in Java", "Jobbird", LocalDateTime.of(2021, 1, 20, 0, 0));
+        cSharpDeveloper = vacancy("C# Developer", "Bank", "Ontwikkelaar met ervaring in .NET", "Yacht", LocalDateTime.of(2021, 1, 5, 0, 0));
+        utrecht = new Location("Utrecht", 52.09, 5.12);
+        utrecht.setId(UUID.randomUUID());
+        amersfoort = new Location("Amersfoort", 52.16, 5.39);
+        amersfoort.setId(UUID.randomUUID());
+        javaDeveloper.setLocation(utrecht);
+        javaTester.setLocation(amersfoort);
+        vacancies = Arrays.asList(javaDeveloper, javaTester, cSharpDeveloper);
+        vacancySearchIndex = new VacancySearchIndex(mockVacancyRepository, mockLocationIndex, true);
+    }
+
+    @Test
+    void testSearchBeforeRebuild() {
+        assertFalse(vacancySearchIndex.search(new SearchRequest(), NEWEST_FIRST, 0, 10).isPresent());
+        verifyNoInteractions(mockVacancyRepository);
+    }
+
+    @Test
+    void testSearchWithoutFilters() {
+        rebuild();
+
+        assertEquals(ids(javaTester, javaDeveloper, cSharpDeveloper), search(new SearchRequest(), NEWEST_FIRST));
+        assertEquals(ids(javaTester, javaDeveloper, cSharpDeveloper), search(keywords(" "), NEWEST_FIRST));
+    }
+
+    @Test
+    void testSearchSkillsAndDates() {
+        rebuild(Map.of(javaDeveloper.getId(), "Java", javaTester.getId(), "Java"));
+        SearchRequest searchRequest = new SearchRequest();
+        searchRequest.setSkills(Set.of("Java"));
+
+        assertEquals(ids(javaTester, javaDeveloper), search(searchRequest, NEWEST_FIRST));
+
+        searchRequest.setFromDate(LocalDateTime.of(2021, 1, 15, 0, 0));
+        assertEquals(ids(javaTester), search(searchRequest, NEWEST_FIRST));
+
+        searchRequest.setFromDate(null);
+        searchRequest.setToDate(LocalDateTime.of(2021, 1, 15, 0, 0));
+        assertEquals(ids(javaDeveloper), search(searchRequest, NEWEST_FIRST));
+    }
+
+    @Test
+    void testSearchTaggedSkills() {
+        javaTester.setAbout("Testautomatisering");
+        rebuild(Map.of(javaTester.getId(), "Java", cSharpDeveloper.getId(), "C#"));
+        SearchRequest searchRequest = new SearchRequest();
+
+        // Tagged skills come from the tags, not from the text
+        searchRequest.setSkills(Set.of("JAVA"));
+        assertEquals(ids(javaTester), search(searchRequest, NEWEST_FIRST));
+        searchRequest.setSkills(Set.of("c#"));
+        assertEquals(ids(cSharpDeveloper), search(searchRequest, NEWEST_FIRST));
+        // Not a tag, so left to the database to look up in the text
+        searchRequest.setSkills(Set.of("Java", "Angular"));
+        assertFalse(vacancySearchIndex.search(searchRequest, NEWEST_FIRST, 0, 10).isPresent());
+        assertFalse(vacancySearchIndex.countFacets(searchRequest).isPresent());
+    }
+
+    @Test
+    void testRebuildAfterSkillDeleted() {
+        javaTester.setAbout("Testautomatisering");
+        rebuild(Map.of(javaTester.getId(), "Java"));
+        SearchRequest searchRequest = new SearchRequest();
+        searchRequest.setSkills(Set.of("Java"));
+        assertEquals(ids(javaTester), search(searchRequest, NEWEST_FIRST));
+
+        // The skill and its tags are deleted, so the database looks the skill up in the text like any other word
+        rebuild();
+        assertFalse(vacancySearchIndex.search(searchRequest, NEWEST_FIRST, 0, 10).isPresent());
+        assertEquals(Collections.emptyMap(), vacancySearchIndex.countFacets(new SearchRequest()).orElseThrow().getSkills());
+    }
+
+    @Test
+    void testSearchBrokersAndLocations() {
+        rebuild();
+        SearchRequest searchRequest = new SearchRequest();
+        searchRequest.setBrokers(Set.of("yacht"));
+        assertEquals(ids(javaDeveloper, cSharpDeveloper), search(searchRequest, NEWEST_FIRST));
+        searchRequest.setBrokers(Set.of("Yacht", "Jobbird"));
+        assertEquals(ids(javaTester, javaDeveloper, cSharpDeveloper), search(searchRequest, NEWEST_FIRST));
+        searchRequest.setBrokers(Set.of("Unknown"));
+        assertEquals(ids(), search(searchRequest, NEWEST_FIRST));
+
+        searchRequest = new SearchRequest();
+        searchRequest.setLocation("amers");
+        assertEquals(ids(javaTester), search(searchRequest, NEWEST_FIRST));
+
+        searchRequest.setLocation("Utrecht");
+        searchRequest.setDistance(20.0);
+        searchRequest.setCoord(new double[]{52.09, 5.12});
+        when(mockLocationIndex.findWithinRadius(52.09, 5.12, 20.0)).thenReturn(Map.of(utrecht.getId(), 0.0, amersfoort.getId(), 19.0));
+        assertEquals(ids(javaTester, javaDeveloper), search(searchRequest, NEWEST_FIRST));
+    }
+
+    @Test
+    void testSearchPostingDateWeeks() {
+        // Monday to Sunday of the same week, and the Monday after
+        Vacancy monday = vacancy("Monday", "Ordina", "", "Yacht", LocalDateTime.of(2021, 1, 11, 0, 0));
+        Vacancy sunday = vacancy("Sunday", "Ordina", "", "Yacht", LocalDateTime.of(2021, 1, 17, 23, 59));
+        Vacancy nextMonday = vacancy("Next Monday", "Ordina", "", "Yacht", LocalDateTime.of(2021, 1, 18, 0, 0));
+        vacancies = Arrays.asList(javaDeveloper, javaTester, cSharpDeveloper, monday, sunday, nextMonday);
+        rebuild();
+        SearchRequest searchRequest = new SearchRequest();
+
+        searchRequest.setFromDate(LocalDateTime.of(2021, 1, 11, 0, 0));
+        searchRequest.setToDate(LocalDateTime.of(2021, 1, 17, 23, 59));
+        assertEquals(ids(sunday, monday), search(searchRequest, NEWEST_FIRST));
+
+        searchRequest.setFromDate(LocalDateTime.of(2021, 1, 11, 0, 1));
+        searchRequest.setToDate(LocalDateTime.of(2021, 1, 18, 0, 0));
+        assertEquals(ids(nextMonday, sunday), search(searchRequest, NEWEST_FIRST));
+
+        searchRequest.setFromDate(LocalDateTime.of(2021, 1, 6, 0, 0));
+        searchRequest.setToDate(LocalDateTime.of(2021, 1, 25, 0, 0));
+        assertEquals(ids(javaTester, nextMonday, sunday, monday, javaDeveloper), search(searchRequest, NEWEST_FIRST));
+
+        searchRequest.setFromDate(LocalDateTime.of(2021, 1, 18, 0, 0));
+        searchRequest.setToDate(LocalDateTime.of(2021, 1, 11, 0, 0));
+        assertEquals(ids(), search(searchRequest, NEWEST_FIRST));
+    }
+
+    @Test
+    void testCountFacets() {
+        rebuild(Map.of(javaDeveloper.getId(), "Java", javaTester.getId(), "Java"));
+
+        SearchFacets facets = vacancySearchIndex.countFacets(new SearchRequest()).orElseThrow();
+        assertEquals(Map.of("Java", 2L), facets.getSkills());
+        assertEquals(Arrays.asList("Yacht", "Jobbird"), new ArrayList<>(facets.getBrokers().keySet()));
+        assertEquals(Map.of("Yacht", 2L, "Jobbird", 1L), facets.getBrokers());
+        assertEquals(Map.of("Amersfoort", 1L, "Utrecht", 1L), facets.getLocations());
+        // Weeks start on Monday, so Sunday the 10th and Tuesday the 5th are in the same week
+        assertEquals(Arrays.asList("2021-01-04", "2021-01-18"), new ArrayList<>(facets.getPostingWeeks().keySet()));
+        assertEquals(Map.of("2021-01-04", 2L, "2021-01-18", 1L), facets.getPostingWeeks());
+
+        vacancySearchIndex.remove(cSharpDeveloper.getId());
+        facets = vacancySearchIndex.countFacets(brokers("Yacht")).orElseThrow();
+        assertEquals(Map.of("Java", 1L), facets.getSkills());
+        assertEquals(Map.of("Yacht", 1L), facets.getBrokers());
+        assertEquals(Map.of("Utrecht", 1L), facets.getLocations());
+        assertEquals(Map.of("2021-01-04", 1L), facets.getPostingWeeks());
+    }
+
+    @Test
+    void testSearchPaging() {
+        rebuild();
+
+        VacancySearchIndex.Hits hits = vacancySearchIndex.search(new SearchRequest(), new String[]{"postingDate", "asc"}, 1, 1).orElseThrow();
+
+        assertEquals(ids(javaDeveloper), hits.getIds());
+        assertEquals(3, hits.getTotal());
+        assertEquals(ids(), vacancySearchIndex.search(new SearchRequest(), NEWEST_FIRST, 3, 10).orElseThrow().getIds());
+    }
+
+    @Test
+    void testSearchNotAnsweredByIndex() {
+        rebuild();
+
+        assertFalse(vacancySearchIndex.search(keywords("java"), new String[]{"title", "asc"}, 0, 10).isPresent());
+        assertFalse(new VacancySearchIndex(mockVacancyRepository, mockLocationIndex, false)
+                .search(keywords("java"), NEWEST_FIRST, 0, 10).isPresent());
+        assertFalse(new VacancySearchIndex(mockVacancyRepository, mockLocationIndex, false)
+                .countFacets(keywords("java")).isPresent());
+        // Keywords are left to the full-text search of the database, with its stemming and search operators
+        for (String keywords : List.of("java", "developers", "java -tester", "java or kotlin", "\"java developer\"")) {
+            assertFalse(vacancySearchIndex.search(keywords(keywords), NEWEST_FIRST, 0, 10).isPresent());
+            assertFalse(vacancySearchIndex.countFacets(keywords(keywords)).isPresent());
+        }
+    }
+
+    @Test
+    void testCompact() {
+        rebuild();
+        vacancySearchIndex.compact();
+        verify(mockVacancyRepository, times(1)).findAllIds();
+
+        // A quarter of the vacancy numbers belongs to the replaced version
+        javaDeveloper.setBroker("Huxley");
+        vacancySearchIndex.add(Collections.singletonList(javaDeveloper));
+        vacancySearchIndex.compact();
+        verify(mockVacancyRepository, times(1)).findAllIds();
+
+        // Two of four is more than a quarter
+        vacancySearchIndex.remove(javaTester.getId());
+        vacancySearchIndex.compact();
+        verify(mockVacancyRepository, times(2)).findAllIds();
+        assertEquals(ids(javaDeveloper), search(brokers("Huxley"), NEWEST_FIRST));
+    }
+
+    @Test
+    void testAddAndRemove() {
+        rebuild();
+        Vacancy pythonDeveloper = vacancy("Python Developer", "Ordina", "Django", "Yacht", LocalDateTime.of(2021, 1, 30, 0, 0));
+
+        pythonDeveloper.setSkills(Set.of(new Skill("Python")));
+        vacancySearchIndex.add(Collections.singletonList(pythonDeveloper));
+        assertEquals(ids(pythonDeveloper, javaDeveloper, cSharpDeveloper), search(brokers("Yacht"), NEWEST_FIRST));
+        SearchRequest skillSearch = new SearchRequest();
+        skillSearch.setSkills(Set.of("python"));
+        assertEquals(ids(pythonDeveloper), search(skillSearch, NEWEST_FIRST));
+
+        javaDeveloper.setBroker("Jobbird");
+        vacancySearchIndex.add(Collections.singletonList(javaDeveloper));
+        assertEquals(ids(pythonDeveloper, cSharpDeveloper), search(brokers("Yacht"), NEWEST_FIRST));
+        assertEquals(ids(javaTester, javaDeveloper), search(brokers("Jobbird"), NEWEST_FIRST));
+
+        vacancySearchIndex.remove(pythonDeveloper.getId());
+        assertEquals(ids(cSharpDeveloper), search(brokers("Yacht"), NEWEST_FIRST));
+    }
+
+    private void rebuild() {
+        rebuild(Collections.emptyMap());
+    }
+
+    private void rebuild(Map<UUID, String> skillTags) {
+        List<Object[]> tags = new ArrayList<>();
+        skillTags.forEach((id, skill) -> tags.add(new Object[]{id, skill}));
+        when(mockVacancyRepository.findAllIds()).thenReturn(ids(vacancies.toArray(new Vacancy[0])));
+        when(mockVacancyRepository.findSkillNamesByIdIn(anyCollection())).thenReturn(tags);
+        when(mockVacancyRepository.findAllById(anyIterable())).thenReturn(vacancies);
+        vacancySearchIndex.rebuild();
+    }
+
+    private List<UUID> search(SearchRequest searchRequest, String[] sort) {
+        return vacancySearchIndex.search(searchRequest, sort, 0, 10).orElseThrow().getIds();
+    }
+
+    private static SearchRequest keywords(String keywords) {
+        SearchRequest searchRequest = new SearchRequest();
+        searchRequest.setKeywords(keywords);
+        return searchRequest;
+    }
+
+    private static SearchRequest brokers(String... brokers) {
+        SearchRequest searchRequest = new SearchRequest();
+        searchRequest.setBrokers(Set.of(brokers));
+        return searchRequest;
+    }
+
+    private static List<UUID> ids(Vacancy... vacancies) {
+        return Arrays.stream(vacancies).map(Vacancy::getId).collect(Collectors.toList());
+    }
+
+    private static Vacancy vacancy(String title, String company, String about, String broker, LocalDateTime postingDate) {
+        return Vacancy.builder()
+                .id(UUID.randomUUID())
+                .vacancyURL("https://example.com/" + title)
+                .title(title)
+                .company(company)
+                .about(about)
+                .broker(broker)
+                .postingDate(postingDate)
+                .build();
+    }
+}
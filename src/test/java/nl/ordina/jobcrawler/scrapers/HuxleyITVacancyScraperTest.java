@@ -17,6 +17,7 @@ import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.when;
@@ -55,6 +56,7 @@ class HuxleyITVacancyScraperTest extends UseLocalSavedFiles {
         assertEquals(4, vacancyDTOList.size());
         assertEquals("Security Architect", vacancyDTOList.get(0).getTitle());
         vacancyDTOList.forEach(v -> assertNotNull(v.getPostingDate()));
+        assertTrue(huxleyITVacancyScraper.isListingComplete());
     }
 
 }
@@ -16,6 +16,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.List;
 
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.ArgumentMatchers.anyString;
@@ -54,6 +55,8 @@ class JobBirdScraperTest extends UseLocalSavedFiles {
         List<VacancyDTO> vacancyDTOList = jobBirdScraper.getVacancies();
         assert(vacancyDTOList.get(0).getVacancyURL()).contains("www.jobbird.com");
         assertNotNull(vacancyDTOList);
+        // Only the first pages of the listing are crawled
+        assertFalse(jobBirdScraper.isListingComplete());
     }
 
     @Test
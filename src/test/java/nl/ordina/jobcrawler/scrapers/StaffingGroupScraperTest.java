@@ -59,6 +59,7 @@ class StaffingGroupScraperTest extends UseLocalSavedFiles {
         vacancyDTOList.forEach(v -> assertNotNull(v.getPostingDate()));
         vacancyDTOList.forEach(v -> assertTrue(v.getAbout().contains("We are looking")));
         vacancyDTOList.forEach(v -> assertTrue(v.getVacancyURL().contains("www.destaffinggroep.nl")));
+        assertTrue(staffingGroupScraper.isListingComplete());
     }
 
 }
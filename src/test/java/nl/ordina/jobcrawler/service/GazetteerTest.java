@@ -0,0 +1,91 @@
+package nl.ordina.jobcrawler.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GazetteerTest {
+
+    private static final List<String[]> PLACES = readPlaces();
+
+    private final Gazetteer gazetteer = new Gazetteer(true);
+
+    @Test
+    void testFindCoordinates() {
+        assertArrayEquals(new double[]{52.3727598, 4.8936041}, gazetteer.findCoordinates("Amsterdam").get());
+        assertTrue(gazetteer.findCoordinates("ALPHEN AAN DEN RIJN ").isPresent());
+        assertTrue(gazetteer.findCoordinates("Noord-Brabant").isPresent());
+        assertTrue(gazetteer.findCoordinates("Nergenshuizen").isEmpty());
+    }
+
+    @Test
+    void testFindNearestPlace() {
+        assertEquals(Optional.of("Amsterdam"), gazetteer.findNearestPlace(52.37, 4.90));
+        assertEquals(Optional.of("Den Bosch"), gazetteer.findNearestPlace(51.70, 5.30));
+        // Broek in Waterland, 8 km from Purmerend
+        assertEquals(Optional.empty(), gazetteer.findNearestPlace(52.4347, 4.9958));
+        // Paris
+        assertEquals(Optional.empty(), gazetteer.findNearestPlace(48.86, 2.35));
+    }
+
+    @Test
+    void testFindNearestPlaceMatchesLinearSearch() {
+        Random random = new Random(20210131L);
+        for (int i = 0; i < 10_000; i++) {
+            double lat = 50.8 + random.nextDouble() * 2.6;
+            double lon = 3.4 + random.nextDouble() * 3.8;
+            Optional<String> nearest = gazetteer.findNearestPlace(lat, lon);
+            assertEquals(nearest, linearNearestPlace(lat, lon), lat + "," + lon);
+        }
+    }
+
+    @Test
+    void testDisabled() {
+        Gazetteer disabled = new Gazetteer(false);
+        assertTrue(disabled.findCoordinates("Amsterdam").isEmpty());
+        assertTrue(disabled.findNearestPlace(52.37, 4.90).isEmpty());
+    }
+
+    private static Optional<String> linearNearestPlace(double lat, double lon) {
+        String nearest = null;
+        double nearestDistance = Double.MAX_VALUE;
+        for (String[] place : PLACES) {
+            double distance = haversine(lat, lon, Double.parseDouble(place[1]), Double.parseDouble(place[2]));
+            if (distance < nearestDistance) {
+                nearestDistance = distance;
+                nearest = place[0];
+            }
+        }
+        return nearestDistance <= Gazetteer.MAX_NEAREST_DISTANCE_KM ? Optional.of(nearest) : Optional.empty();
+    }
+
+    private static List<String[]> readPlaces() {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new ClassPathResource("gazetteer-nl.csv").getInputStream(), StandardCharsets.UTF_8))) {
+            return reader.lines()
+                    .map(line -> line.split(";"))
+                    .filter(fields -> fields.length == 4 && "place".equals(fields[3]))
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static double haversine(double lat1, double lon1, double lat2, double lon2) {
+        double dlat = Math.toRadians(lat2 - lat1);
+        double dlon = Math.toRadians(lon2 - lon1);
+        double a = Math.pow(Math.sin(dlat / 2), 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.pow(Math.sin(dlon / 2), 2);
+        return 2 * Math.asin(Math.sqrt(a)) * 6371;
+    }
+}
@@ -0,0 +1,188 @@
+package nl.ordina.jobcrawler.service;
+
+import nl.ordina.jobcrawler.exception.VacancyURLMalformedException;
+import nl.ordina.jobcrawler.model.BrokerLifetime;
+import nl.ordina.jobcrawler.model.Liveness;
+import nl.ordina.jobcrawler.model.Vacancy;
+import nl.ordina.jobcrawler.repo.BrokerLifetimeRepository;
+import nl.ordina.jobcrawler.repo.VacancyRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LivenessCheckerTest {
+
+    private static final int MAX_PER_HOST = 2;
+    private static final int BUDGET = 30;
+
+    @Mock
+    VacancyRepository mockVacancyRepository;
+
+    @Mock
+    VacancyService mockVacancyService;
+
+    @Mock
+    BrokerLifetimeRepository mockBrokerLifetimeRepository;
+
+    LivenessChecker livenessChecker;
+
+    @BeforeEach
+    void setUp() {
+        livenessChecker = new LivenessChecker(mockVacancyRepository, mockVacancyService, mockBrokerLifetimeRepository, 8, MAX_PER_HOST, BUDGET, 24, 30);
+    }
+
+    @AfterEach
+    void tearDown() {
+        livenessChecker.shutdown();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testCheckDue() {
+        List<Object[]> huxley = new ArrayList<>();
+        List<Object[]> jobbird = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            huxley.add(new Object[]{new UUID(0, i + 1), "https://www.huxley.com/job/" + i, "HuxleyIT", null});
+            jobbird.add(new Object[]{new UUID(1, i + 1), "www.jobbird.com/job/" + i, "Jobbird", null});
+        }
+        stubUnconfirmed(huxley, jobbird);
+
+        Map<String, AtomicInteger> running = new ConcurrentHashMap<>();
+        AtomicInteger maxRunning = new AtomicInteger();
+        when(mockVacancyService.checkURL(any(Vacancy.class))).thenAnswer(invocation -> {
+            Vacancy vacancy = invocation.getArgument(0);
+            AtomicInteger host = running.computeIfAbsent(vacancy.getBroker(), broker -> new AtomicInteger());
+            maxRunning.accumulateAndGet(host.incrementAndGet(), Math::max);
+            Thread.sleep(5);
+            host.decrementAndGet();
+            if (vacancy.getVacancyURL().endsWith("/3")) {
+                throw new VacancyURLMalformedException(vacancy.getVacancyURL());
+            }
+            return vacancy.getVacancyURL().endsWith("/5") ? Liveness.DEAD : Liveness.ALIVE;
+        });
+
+        LivenessChecker.Report report = livenessChecker.checkDue();
+
+        assertEquals(24, report.getChecked());
+        assertEquals(2, report.getDead());
+        assertEquals(2, report.getFailed());
+        assertTrue(maxRunning.get() <= MAX_PER_HOST);
+        ArgumentCaptor<Collection<UUID>> deleted = ArgumentCaptor.forClass(Collection.class);
+        verify(mockVacancyService, times(1)).deleteAll(deleted.capture());
+        assertEquals(Set.of(new UUID(0, 6), new UUID(1, 6)), new HashSet<>(deleted.getValue()));
+        ArgumentCaptor<Collection<UUID>> failed = ArgumentCaptor.forClass(Collection.class);
+        verify(mockVacancyRepository, times(1)).markChecked(failed.capture(), any(LocalDateTime.class), eq(Liveness.FAILED));
+        assertEquals(Set.of(new UUID(0, 4), new UUID(1, 4)), new HashSet<>(failed.getValue()));
+        verify(mockVacancyRepository, times(1)).markChecked(argThat(ids -> ids.size() == 20), any(LocalDateTime.class), eq(Liveness.ALIVE));
+    }
+
+    @Test
+    void testCheckDuePrioritizesLikelyExpired() {
+        LocalDateTime now = LocalDateTime.now();
+        List<Object[]> huxley = new ArrayList<>();
+        List<Object[]> jobbird = new ArrayList<>();
+        for (int days = 1; days <= 20; days++) {
+            huxley.add(new Object[]{new UUID(0, days), "https://www.huxley.com/job/" + days, "HuxleyIT", now.minusDays(days)});
+            jobbird.add(new Object[]{new UUID(1, days), "https://www.jobbird.com/job/" + days, "Jobbird", now.minusDays(days)});
+        }
+        stubUnconfirmed(huxley, jobbird);
+        Queue<Vacancy> checked = new ConcurrentLinkedQueue<>();
+        when(mockVacancyService.checkURL(any(Vacancy.class))).thenAnswer(invocation -> {
+            Vacancy vacancy = invocation.getArgument(0);
+            checked.add(vacancy);
+            return vacancy.getBroker().equals("Jobbird") ? Liveness.DEAD : Liveness.ALIVE;
+        });
+
+        livenessChecker.checkDue();
+
+        // Within the budget, the oldest ones of both brokers as they have the same lifetime
+        assertEquals(BUDGET, checked.size());
+        assertTrue(checked.stream().allMatch(vacancy -> vacancy.getPostingDate().isBefore(now.minusDays(5))));
+        assertEquals(Duration.ofDays(30), livenessChecker.getLifetime("HuxleyIT"));
+        assertTrue(livenessChecker.getLifetime("Jobbird").compareTo(Duration.ofDays(30)) < 0);
+        verify(mockBrokerLifetimeRepository, times(1)).saveAll(argThat(lifetimes -> lifetimes.iterator().next().getBroker().equals("Jobbird")));
+
+        checked.clear();
+        livenessChecker.checkDue();
+
+        // Vacancies of Jobbird turned out to expire sooner, so more of them are due
+        long jobbirdChecked = checked.stream().filter(vacancy -> vacancy.getBroker().equals("Jobbird")).count();
+        assertEquals(BUDGET, checked.size());
+        assertTrue(jobbirdChecked > BUDGET - jobbirdChecked);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testCheckDueKeepsVacanciesOfBusyBroker() throws Exception {
+        int[] responseCodes = {200, 404, 410, 429, 503, 403};
+        List<Object[]> huxley = new ArrayList<>();
+        Map<String, HttpURLConnection> connections = new HashMap<>();
+        for (int i = 0; i < responseCodes.length; i++) {
+            String url = "https://www.huxley.com/job/" + responseCodes[i];
+            huxley.add(new Object[]{new UUID(0, responseCodes[i]), url, "HuxleyIT", null});
+            HttpURLConnection connection = mock(HttpURLConnection.class);
+            when(connection.getResponseCode()).thenReturn(responseCodes[i]);
+            connections.put(url, connection);
+        }
+        stubUnconfirmed(huxley, Collections.emptyList());
+        VacancyService urlChecker = spy(new VacancyService(mockVacancyRepository, null, null, null, null, null, null, null));
+        doAnswer(invocation -> connections.get(invocation.getArgument(0).toString())).when(urlChecker).openConnection(any(URL.class));
+        doNothing().when(urlChecker).deleteAll(any());
+        LivenessChecker checker = new LivenessChecker(mockVacancyRepository, urlChecker, mockBrokerLifetimeRepository, 8, MAX_PER_HOST, BUDGET, 24, 30);
+
+        LivenessChecker.Report report;
+        try {
+            report = checker.checkDue();
+        } finally {
+            checker.shutdown();
+        }
+
+        // Only a page that is gone is deleted, a broker that is too busy to answer keeps its vacancies
+        assertEquals(1, report.getAlive());
+        assertEquals(2, report.getDead());
+        assertEquals(3, report.getFailed());
+        ArgumentCaptor<Collection<UUID>> deleted = ArgumentCaptor.forClass(Collection.class);
+        verify(urlChecker, times(1)).deleteAll(deleted.capture());
+        assertEquals(Set.of(new UUID(0, 404), new UUID(0, 410)), new HashSet<>(deleted.getValue()));
+        ArgumentCaptor<Collection<UUID>> failed = ArgumentCaptor.forClass(Collection.class);
+        verify(mockVacancyRepository, times(1)).markChecked(failed.capture(), any(LocalDateTime.class), eq(Liveness.FAILED));
+        assertEquals(Set.of(new UUID(0, 429), new UUID(0, 503), new UUID(0, 403)), new HashSet<>(failed.getValue()));
+    }
+
+    private void stubUnconfirmed(List<Object[]> huxley, List<Object[]> jobbird) {
+        when(mockVacancyRepository.findBrokers()).thenReturn(List.of("HuxleyIT", "Jobbird"));
+        when(mockVacancyRepository.findURLsUnconfirmedSince(eq("HuxleyIT"), any(LocalDateTime.class), any(Pageable.class))).thenReturn(huxley);
+        when(mockVacancyRepository.findURLsUnconfirmedSince(eq("Jobbird"), any(LocalDateTime.class), any(Pageable.class))).thenReturn(jobbird);
+    }
+
+    @Test
+    void testStoredLifetimes() {
+        when(mockBrokerLifetimeRepository.findAll()).thenReturn(List.of(new BrokerLifetime("Jobbird", 240, LocalDateTime.now())));
+        LivenessChecker restarted = new LivenessChecker(mockVacancyRepository, mockVacancyService, mockBrokerLifetimeRepository, 8, MAX_PER_HOST, BUDGET, 24, 30);
+        try {
+            assertEquals(Duration.ofDays(10), restarted.getLifetime("Jobbird"));
+            assertEquals(Duration.ofDays(30), restarted.getLifetime("HuxleyIT"));
+        } finally {
+            restarted.shutdown();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package nl.ordina.jobcrawler.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LocationCanonicalizerTest {
+
+    private final LocationCanonicalizer canonicalizer = new LocationCanonicalizer();
+
+    @Test
+    void testCountrySuffixIsStripped() {
+        assertEquals("Utrecht", canonicalizer.canonicalize("Utrecht, Nederland"));
+        assertEquals("Utrecht", canonicalizer.canonicalize("Utrecht, Netherlands "));
+        assertEquals("Utrecht", canonicalizer.canonicalize("  utrecht, The Netherlands"));
+        assertEquals("Utrecht", canonicalizer.canonicalize("Utrecht, NL, Nederland"));
+    }
+
+    @Test
+    void testNameIsCapitalized() {
+        assertEquals("Alphen Aan Den Rijn", canonicalizer.canonicalize("ALPHEN AAN DEN RIJN"));
+        assertEquals("Leidschendam-Voorburg", canonicalizer.canonicalize("leidschendam-voorburg"));
+    }
+
+    @Test
+    void testAliasesAreApplied() {
+        assertEquals("Den Bosch", canonicalizer.canonicalize("'s-Hertogenbosch, Nederland"));
+        assertEquals("Den Haag", canonicalizer.canonicalize("The Hague"));
+        assertEquals("Amsterdam", canonicalizer.canonicalize("Amsterdam-Zuidoost"));
+        assertEquals("Alphen Aan Den Rijn", canonicalizer.canonicalize("Alphen a/d Rijn"));
+        assertEquals("Noord-Holland", canonicalizer.canonicalize("North Holland, Netherlands"));
+    }
+
+    @Test
+    void testNoSingleLocation() {
+        assertEquals("", canonicalizer.canonicalize(null));
+        assertEquals("", canonicalizer.canonicalize(" "));
+        assertEquals("", canonicalizer.canonicalize("Diverse locaties"));
+        assertEquals("", canonicalizer.canonicalize("Nederland"));
+        assertEquals("", canonicalizer.canonicalize("Remote, Nederland"));
+    }
+}
@@ -0,0 +1,222 @@
+package nl.ordina.jobcrawler.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import nl.ordina.jobcrawler.exception.LocationNotFoundException;
+import nl.ordina.jobcrawler.model.GeocodeResult;
+import nl.ordina.jobcrawler.model.Location;
+import nl.ordina.jobcrawler.repo.GeocodeResultRepository;
+import nl.ordina.jobcrawler.repo.LocationIndex;
+import nl.ordina.jobcrawler.repo.LocationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LocationServiceTest {
+    @Mock
+    LocationRepository mockLocationRepository;
+    @Mock
+    GeocodeResultRepository mockGeocodeResultRepository;
+    @Mock
+    LocationIndex mockLocationIndex;
+    @Mock
+    RestTemplate mockRestTemplate;
+    @Mock
+    Gazetteer mockGazetteer;
+
+    LocationService locationService;
+
+    @BeforeEach
+    void setUp() {
+        locationService = new LocationService(mockLocationRepository, mockGeocodeResultRepository, mockLocationIndex, mockRestTemplate, new ObjectMapper(), new LocationCanonicalizer(),
+                mockGazetteer, new DataGeneration());
+    }
+
+    @Test
+    void testResolveExistingLocationIsCached() throws Exception {
+        Location denBosch = location("Den Bosch");
+        when(mockLocationRepository.findByName("Den Bosch")).thenReturn(Optional.of(denBosch));
+
+        assertSame(denBosch, locationService.resolve("'s-Hertogenbosch, Nederland").get());
+        assertSame(denBosch, locationService.resolve("'s-Hertogenbosch, Nederland").get());
+
+        verify(mockLocationRepository, times(1)).findByName("Den Bosch");
+        verifyNoInteractions(mockRestTemplate);
+    }
+
+    @Test
+    void testResolveNewLocationIsGeocoded() throws Exception {
+        when(mockLocationRepository.findByName("Utrecht")).thenReturn(Optional.empty());
+        when(mockRestTemplate.getForObject(anyString(), eq(String.class), any(), eq("Utrecht")))
+                .thenReturn("[{\"lat\":\"52.0907\",\"lon\":\"5.1214\"}]");
+        when(mockGeocodeResultRepository.save(any(GeocodeResult.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(mockLocationRepository.save(any(Location.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        Location utrecht = locationService.resolve("UTRECHT, the Netherlands").get();
+
+        assertEquals("Utrecht", utrecht.getName());
+        assertEquals(52.0907, utrecht.getLat());
+        assertEquals(5.1214, utrecht.getLon());
+    }
+
+    @Test
+    void testResolveUnknownLocationIsNotGeocodedAgain() {
+        when(mockLocationRepository.findByName("Nergenshuizen")).thenReturn(Optional.empty());
+        when(mockRestTemplate.getForObject(anyString(), eq(String.class), any(), eq("Nergenshuizen"))).thenReturn("[]");
+        when(mockGeocodeResultRepository.save(any(GeocodeResult.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        assertThrows(LocationNotFoundException.class, () -> locationService.resolve("Nergenshuizen"));
+        assertThrows(LocationNotFoundException.class, () -> locationService.resolve("Nergenshuizen"));
+
+        // The Location is looked up again, the not found answer of the geocoder is cached
+        verify(mockRestTemplate, times(1)).getForObject(anyString(), eq(String.class), any(), eq("Nergenshuizen"));
+        verify(mockGeocodeResultRepository, times(1)).save(any(GeocodeResult.class));
+    }
+
+    @Test
+    void testResolveWithoutSingleLocation() throws Exception {
+        assertTrue(locationService.resolve(null).isEmpty());
+        assertTrue(locationService.resolve("").isEmpty());
+        assertTrue(locationService.resolve("Diverse locaties").isEmpty());
+        assertTrue(locationService.resolve("Nederland").isEmpty());
+
+        verifyNoInteractions(mockLocationRepository, mockGeocodeResultRepository, mockRestTemplate);
+    }
+
+    @Test
+    void testDeleteEvictsResolvedLocation() throws Exception {
+        Location amsterdam = location("Amsterdam");
+        when(mockLocationRepository.findByName("Amsterdam")).thenReturn(Optional.of(amsterdam));
+
+        locationService.resolve("Amsterdam-Zuidoost");
+        locationService.delete(amsterdam.getId());
+        locationService.resolve("Amsterdam-Zuidoost");
+
+        verify(mockLocationRepository, times(2)).findByName("Amsterdam");
+        verify(mockLocationIndex).remove(amsterdam.getId());
+    }
+
+    @Test
+    void testGetCoordinatesOfExistingLocation() throws Exception {
+        when(mockLocationRepository.findByName("Den Bosch")).thenReturn(Optional.of(location("Den Bosch")));
+
+        assertArrayEquals(new double[]{52.0, 5.0}, locationService.getCoordinates("'s-Hertogenbosch"));
+        assertArrayEquals(new double[]{52.0, 5.0}, locationService.getCoordinates("'S-HERTOGENBOSCH "));
+
+        verify(mockLocationRepository, times(1)).findByName("Den Bosch");
+        verifyNoInteractions(mockGeocodeResultRepository, mockRestTemplate);
+    }
+
+    @Test
+    void testGetCoordinatesIsGeocodedOnce() throws Exception {
+        when(mockLocationRepository.findByName("Utrecht")).thenReturn(Optional.empty());
+        when(mockGeocodeResultRepository.findByQuery("utrecht")).thenReturn(Optional.empty());
+        when(mockRestTemplate.getForObject(anyString(), eq(String.class), any(), eq("Utrecht")))
+                .thenReturn("[{\"lat\":\"52.0907\",\"lon\":\"5.1214\"}]");
+        when(mockGeocodeResultRepository.save(any(GeocodeResult.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        assertArrayEquals(new double[]{52.0907, 5.1214}, locationService.getCoordinates("Utrecht"));
+        assertArrayEquals(new double[]{52.0907, 5.1214}, locationService.getCoordinates("utrecht"));
+
+        verify(mockRestTemplate, times(1)).getForObject(anyString(), eq(String.class), any(), any());
+        verify(mockGeocodeResultRepository, times(1)).save(argThat(result -> "utrecht".equals(result.getQuery()) && result.isFound()));
+    }
+
+    @Test
+    void testGetCoordinatesCachesNotFound() throws Exception {
+        when(mockLocationRepository.findByName("Nergenshuizen")).thenReturn(Optional.empty());
+        when(mockGeocodeResultRepository.findByQuery("nergenshuizen")).thenReturn(Optional.empty());
+        when(mockRestTemplate.getForObject(anyString(), eq(String.class), any(), eq("Nergenshuizen"))).thenReturn("[]");
+
+        assertNull(locationService.getCoordinates("Nergenshuizen"));
+        assertNull(locationService.getCoordinates("Nergenshuizen"));
+
+        // Only in memory, a searched string the geocoder does not know is not stored
+        verify(mockRestTemplate, times(1)).getForObject(anyString(), eq(String.class), any(), any());
+        verify(mockGeocodeResultRepository, never()).save(any(GeocodeResult.class));
+    }
+
+    @Test
+    void testPurgeExpiredNotFound() {
+        when(mockGeocodeResultRepository.deleteNotFoundFetchedBefore(any(LocalDateTime.class))).thenReturn(3);
+
+        locationService.purgeExpiredNotFound();
+
+        verify(mockGeocodeResultRepository).deleteNotFoundFetchedBefore(
+                argThat(before -> before.isBefore(LocalDateTime.now().minusHours(23))));
+    }
+
+    @Test
+    void testGetCoordinatesFromStoredResult() throws Exception {
+        when(mockLocationRepository.findByName("Zwolle")).thenReturn(Optional.empty());
+        when(mockGeocodeResultRepository.findByQuery("zwolle"))
+                .thenReturn(Optional.of(new GeocodeResult("zwolle", new double[]{52.5, 6.1}, LocalDateTime.now().minusDays(29))));
+
+        assertArrayEquals(new double[]{52.5, 6.1}, locationService.getCoordinates("Zwolle"));
+
+        verifyNoInteractions(mockRestTemplate);
+    }
+
+    @Test
+    void testGetCoordinatesRefreshesExpiredResult() throws Exception {
+        GeocodeResult expired = new GeocodeResult("zwolle", null, LocalDateTime.now().minusDays(2));
+        when(mockLocationRepository.findByName("Zwolle")).thenReturn(Optional.empty());
+        when(mockGeocodeResultRepository.findByQuery("zwolle")).thenReturn(Optional.of(expired));
+        when(mockRestTemplate.getForObject(anyString(), eq(String.class), any(), eq("Zwolle")))
+                .thenReturn("[{\"lat\":\"52.5\",\"lon\":\"6.1\"}]");
+        when(mockGeocodeResultRepository.save(expired)).thenReturn(expired);
+
+        assertArrayEquals(new double[]{52.5, 6.1}, locationService.getCoordinates("Zwolle"));
+        assertTrue(expired.isFound());
+    }
+
+    @Test
+    void testGetCoordinatesFromGazetteer() throws Exception {
+        when(mockLocationRepository.findByName("Zwolle")).thenReturn(Optional.empty());
+        when(mockGazetteer.findCoordinates("Zwolle")).thenReturn(Optional.of(new double[]{52.5, 6.1}));
+
+        assertArrayEquals(new double[]{52.5, 6.1}, locationService.getCoordinates("zwolle"));
+
+        verifyNoInteractions(mockGeocodeResultRepository, mockRestTemplate);
+    }
+
+    @Test
+    void testResolveNewLocationFromGazetteer() throws Exception {
+        when(mockLocationRepository.findByName("Zwolle")).thenReturn(Optional.empty());
+        when(mockGazetteer.findCoordinates("Zwolle")).thenReturn(Optional.of(new double[]{52.5, 6.1}));
+        when(mockLocationRepository.save(any(Location.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        Location zwolle = locationService.resolve("Zwolle, Nederland").get();
+
+        assertEquals(52.5, zwolle.getLat());
+        verify(mockLocationIndex).put(zwolle);
+
+        verifyNoInteractions(mockRestTemplate);
+    }
+
+    @Test
+    void testGetLocationFromGazetteer() throws Exception {
+        when(mockGazetteer.findNearestPlace(52.5, 6.1)).thenReturn(Optional.of("Zwolle"));
+
+        assertEquals("Zwolle", locationService.getLocation(52.5, 6.1));
+
+        verifyNoInteractions(mockRestTemplate);
+    }
+
+    private static Location location(String name) {
+        Location location = new Location(name, 52.0, 5.0);
+        location.setId(UUID.randomUUID());
+        return location;
+    }
+}
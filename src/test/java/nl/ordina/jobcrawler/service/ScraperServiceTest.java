@@ -1,23 +1,36 @@
 package nl.ordina.jobcrawler.service;
 
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import nl.ordina.jobcrawler.model.Location;
+import nl.ordina.jobcrawler.model.ScrapeCheckpoint;
+import nl.ordina.jobcrawler.model.ScrapeRun;
 import nl.ordina.jobcrawler.model.Vacancy;
+import nl.ordina.jobcrawler.model.mapper.VacancyMapper;
 import nl.ordina.jobcrawler.payload.VacancyDTO;
+import nl.ordina.jobcrawler.repo.ScrapeCheckpointRepository;
+import nl.ordina.jobcrawler.repo.ScrapeRunRepository;
 import nl.ordina.jobcrawler.scrapers.*;
+import nl.ordina.jobcrawler.util.ScrapeRunStatus;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.modelmapper.ModelMapper;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.util.Collections;
-import java.util.List;
-import java.util.Optional;
-import java.util.UUID;
+import javax.persistence.EntityManager;
+import java.time.LocalDateTime;
+import java.util.*;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.AdditionalAnswers.returnsFirstArg;
+import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -42,7 +55,19 @@ class ScraperServiceTest {
     @Mock
     StaffingGroupScraper mockStaffingGroupScraper;
     @Mock
-    ModelMapper mockModelMapper;
+    VacancyMapper mockVacancyMapper;
+    @Mock
+    ScrapeRunService mockScrapeRunService;
+    @Mock
+    TransactionTemplate mockTransactionTemplate;
+    @Mock
+    EntityManager mockEntityManager;
+    @Mock
+    LivenessChecker mockLivenessChecker;
+    @Mock
+    ScrapeRunRepository mockScrapeRunRepository;
+    @Mock
+    ScrapeCheckpointRepository mockScrapeCheckpointRepository;
 
     @InjectMocks
     ScraperService scraperService;
@@ -51,6 +76,8 @@ class ScraperServiceTest {
     VacancyDTO vacancyDTO;
     List<Vacancy> vacancyList;
     List<VacancyDTO> vacancyDTOList;
+    ScrapeRun scrapeRun;
+    ScrapeCheckpoint checkpoint;
 
     @BeforeEach
     void setUp() {
@@ -67,69 +94,184 @@ class ScraperServiceTest {
         lenient().when(mockHeadfirstScraper.getVacancies()).thenReturn(vacancyDTOList);
         lenient().when(mockJobCatcherScraper.getVacancies()).thenReturn(vacancyDTOList);
         lenient().when(mockStaffingGroupScraper.getVacancies()).thenReturn(vacancyDTOList);
-        lenient().when(mockModelMapper.map(vacancyDTO, Vacancy.class)).thenReturn(vacancy);
-        lenient().when(mockVacancyService.save(vacancy)).thenReturn(vacancy);
+        lenient().when(mockVacancyMapper.toVacancy(vacancyDTO)).thenReturn(vacancy);
+        lenient().when(mockVacancyService.hasExistingURL(vacancy)).thenReturn(true);
+        lenient().when(mockTransactionTemplate.execute(any()))
+                .thenAnswer(invocation -> ((TransactionCallback<?>) invocation.getArgument(0)).doInTransaction(null));
+
+        scrapeRun = new ScrapeRun(LocalDateTime.now());
+        checkpoint = new ScrapeCheckpoint(scrapeRun, "broker");
+        lenient().when(mockScrapeRunService.startOrResume()).thenReturn(scrapeRun);
+        lenient().when(mockScrapeRunService.checkpoint(eq(scrapeRun), any())).thenReturn(checkpoint);
+        lenient().when(mockScrapeRunService.commitPage(eq(checkpoint), anyInt(), anyInt(), anyInt(), anyLong())).thenReturn(checkpoint);
+        lenient().when(mockScrapeRunService.finish(eq(scrapeRun), any(ScrapeRunStatus.class))).thenReturn(scrapeRun);
     }
 
     @Test
     void testScrapeOnlyExisting() {
-        when(mockVacancyService.findByURL(URL)).thenReturn(Optional.of(vacancy));
+        when(mockVacancyService.findExistingURLs(List.of(URL))).thenReturn(Set.of(URL));
 
         scraperService.scrape();
 
-        verify(mockVacancyService, times(6)).findByURL(URL);
+        verify(mockVacancyService, times(6)).findExistingURLs(List.of(URL));
+        verify(mockVacancyService, never()).hasExistingURL(any(Vacancy.class));
+        verify(mockVacancyService, times(6)).saveAll(Collections.emptyList());
         verifyScrapers();
     }
 
     @Test
-    void testScrapeNewVacancyExistingLocation() {
-        when(mockVacancyService.findByURL(URL)).thenReturn(Optional.empty());
-        when(mockLocationService.findByLocationName("Den Bosch")).thenReturn(Optional.of(new Location("Den Bosch")));
+    void testScrapeRecordsMetrics() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        Metrics.addRegistry(registry);
+        try {
+            when(mockVacancyService.findExistingURLs(List.of(URL))).thenReturn(Set.of(URL));
+
+            scraperService.scrape();
+
+            assertEquals(6, registry.get("scraper.vacancies").tags("broker", "broker", "outcome", "existing").counter().count());
+            assertEquals(6, registry.get("scraper.stage").tags("broker", "broker", "stage", "persist").timer().count());
+            assertEquals(0, registry.get("scraper.ingest.queue").gauge().value());
+        } finally {
+            Metrics.removeRegistry(registry);
+        }
+    }
+
+    @Test
+    void testScrapeNewVacancyWithLocation() throws Exception {
+        when(mockVacancyService.findExistingURLs(List.of(URL))).thenReturn(Collections.emptySet());
+        when(mockLocationService.resolve(LOCATION_STRING)).thenReturn(Optional.of(new Location("Den Bosch")));
 
         scraperService.scrape();
 
-        verify(mockVacancyService, times(6)).findByURL(URL);
+        verify(mockVacancyService, times(6)).findExistingURLs(List.of(URL));
         verifyScrapers();
-        verify(mockModelMapper, times(6)).map(vacancyDTO, Vacancy.class);
-        verify(mockLocationService, times(6)).findByLocationName("Den Bosch");
-        verify(mockVacancyService, times(6)).save(vacancy);
+        verify(mockVacancyMapper, times(6)).toVacancy(vacancyDTO);
+        verify(mockLocationService, times(6)).resolve(LOCATION_STRING);
+        verify(mockVacancyService, times(6)).saveAll(List.of(vacancy));
+        verify(mockEntityManager, times(6)).clear();
 
         assertEquals("Den Bosch", vacancy.getLocation().getName());
     }
 
     @Test
-    void testScrapeNewVacancyNewLocation() throws Exception {
-        when(mockVacancyService.findByURL(URL)).thenReturn(Optional.empty());
-        when(mockLocationService.findByLocationName("Den Bosch")).thenReturn(Optional.empty());
-        when(mockLocationService.getCoordinates("Den Bosch")).thenReturn(new double[]{52.3727598, 4.8936041});
-        when(mockLocationService.save(any(Location.class))).thenReturn(mock(Location.class));
+    void testScrapeNewVacancyWithoutLocation() throws Exception {
+        when(mockVacancyService.findExistingURLs(List.of(URL))).thenReturn(Collections.emptySet());
+        when(mockLocationService.resolve(LOCATION_STRING)).thenReturn(Optional.empty());
 
         scraperService.scrape();
 
-        verify(mockVacancyService, times(6)).findByURL(URL);
-        verifyScrapers();
-        verify(mockModelMapper, times(6)).map(vacancyDTO, Vacancy.class);
-        verify(mockLocationService, times(6)).findByLocationName("Den Bosch");
-        verify(mockLocationService, times(6)).getCoordinates("Den Bosch");
-        verify(mockLocationService, times(6)).save(any(Location.class));
-        verify(mockVacancyService, times(6)).save(vacancy);
+        verify(mockLocationService, times(6)).resolve(LOCATION_STRING);
+        verify(mockVacancyService, times(6)).saveAll(List.of(vacancy));
 
-        assertEquals("Den Bosch", vacancy.getLocation().getName());
+        assertNull(vacancy.getLocation());
     }
 
     @Test
-    void testDeleteNoMoreExistingVacancies() {
-        UUID uuid = UUID.randomUUID();
-        vacancy.setId(uuid);
-        when(mockVacancyService.findAll()).thenReturn(vacancyList);
+    void testScrapeUnreachableVacancyIsNotSaved() throws Exception {
+        when(mockVacancyService.findExistingURLs(List.of(URL))).thenReturn(Collections.emptySet());
         when(mockVacancyService.hasExistingURL(vacancy)).thenReturn(false);
-        doNothing().when(mockVacancyService).delete(uuid);
+
+        scraperService.scrape();
+
+        verify(mockVacancyService, times(6)).saveAll(Collections.emptyList());
+        verify(mockScrapeRunService, times(6)).commitPage(checkpoint, 0, 0, 1, 0L);
+        verify(mockLocationService, never()).resolve(anyString());
+    }
+
+    @Test
+    void testScrapeJournalsEveryBroker() {
+        when(mockVacancyService.findExistingURLs(List.of(URL))).thenReturn(Set.of(URL));
+
+        scraperService.scrape();
+
+        verify(mockScrapeRunService, times(1)).startOrResume();
+        verify(mockScrapeRunService, times(6)).commitPage(checkpoint, 0, 1, 0, 0L);
+        verify(mockScrapeRunService, times(6)).completeBroker(checkpoint);
+        verify(mockScrapeRunService, times(1)).finish(scrapeRun, ScrapeRunStatus.COMPLETED);
+    }
+
+    @Test
+    void testScrapeSkipsCompletedBrokersWhenResuming() {
+        checkpoint.setCompleted(true);
+
+        scraperService.scrape();
+
+        verify(mockYachtVacancyScraper, never()).getVacancies();
+        verify(mockVacancyService, never()).findExistingURLs(anyCollection());
+        verify(mockScrapeRunService, times(1)).finish(scrapeRun, ScrapeRunStatus.COMPLETED);
+    }
+
+    @Test
+    void testScrapeRecountsInterruptedBrokerWhenResuming() {
+        // Journal the run for real, so the totals of the checkpoints are those that would be saved
+        ReflectionTestUtils.setField(scraperService, "scrapeRunService",
+                new ScrapeRunService(mockScrapeRunRepository, mockScrapeCheckpointRepository));
+        ScrapeCheckpoint halfDone = new ScrapeCheckpoint(scrapeRun, "Yacht");
+        halfDone.setPage(3);
+        halfDone.setNewVacancies(40);
+        halfDone.setExistingVacancies(100);
+        halfDone.setFailedVacancies(2);
+        halfDone.setBytes(1000);
+        when(mockYachtVacancyScraper.getBroker()).thenReturn("Yacht");
+        when(mockScrapeRunRepository.findFirstByStatusOrderByStartedAtDesc(ScrapeRunStatus.RUNNING))
+                .thenReturn(Optional.of(scrapeRun));
+        when(mockScrapeRunRepository.save(scrapeRun)).thenReturn(scrapeRun);
+        when(mockScrapeCheckpointRepository.findByRunAndBroker(eq(scrapeRun), isNull())).thenReturn(Optional.empty());
+        when(mockScrapeCheckpointRepository.findByRunAndBroker(scrapeRun, "Yacht")).thenReturn(Optional.of(halfDone));
+        when(mockScrapeCheckpointRepository.save(any(ScrapeCheckpoint.class))).then(returnsFirstArg());
+        when(mockVacancyService.findExistingURLs(List.of(URL))).thenReturn(Set.of(URL));
+
+        scraperService.scrape();
+
+        // The listing is crawled again from the start, so its single page is counted once
+        assertTrue(halfDone.isCompleted());
+        assertEquals(1, halfDone.getPage());
+        assertEquals(0, halfDone.getNewVacancies());
+        assertEquals(1, halfDone.getExistingVacancies());
+        assertEquals(0, halfDone.getFailedVacancies());
+        assertEquals(0, halfDone.getBytes());
+        assertEquals(1, scrapeRun.getResumeCount());
+    }
+
+    @Test
+    void testScrapeFailingBrokerFailsRun() {
+        when(mockVacancyService.findExistingURLs(List.of(URL))).thenReturn(Set.of(URL));
+        when(mockJobBirdScraper.getVacancies()).thenThrow(new IllegalStateException("unreachable"));
+
+        scraperService.scrape();
+
+        verify(mockScrapeRunService, times(5)).completeBroker(checkpoint);
+        verify(mockScrapeRunService, times(1)).finish(scrapeRun, ScrapeRunStatus.FAILED);
+    }
+
+    @Test
+    void testScrapeReconcilesCompleteListings() {
+        ReflectionTestUtils.setField(scraperService, "reconcile", true);
+        ReflectionTestUtils.setField(scraperService, "missedCrawls", 2);
+        when(mockVacancyService.findExistingURLs(List.of(URL))).thenReturn(Set.of(URL));
+        when(mockHuxleyITVacancyScraper.getVacancies()).thenReturn(Collections.emptyList());
+        when(mockJobBirdScraper.getVacancies()).thenThrow(new IllegalStateException("unreachable"));
+        when(mockYachtVacancyScraper.isListingComplete()).thenReturn(true);
+        when(mockHeadfirstScraper.isListingComplete()).thenReturn(true);
+        when(mockJobCatcherScraper.isListingComplete()).thenReturn(true);
+        when(mockStaffingGroupScraper.isListingComplete()).thenReturn(false);
+        when(mockVacancyService.expireUnseen(any(), any(LocalDateTime.class), eq(2))).thenReturn(Collections.emptyList());
+
+        scraperService.scrape();
+
+        verify(mockVacancyService, times(4)).markSeen(eq(Set.of(URL)), any(LocalDateTime.class));
+        // Neither the failed, the empty nor the partially crawled listing is complete
+        verify(mockVacancyService, times(3)).expireUnseen(any(), any(LocalDateTime.class), eq(2));
+    }
+
+    @Test
+    void testDeleteNoMoreExistingVacancies() {
+        when(mockLivenessChecker.checkDue()).thenReturn(new LivenessChecker.Report());
 
         scraperService.deleteNoMoreExistingVacancies();
 
-        verify(mockVacancyService, times(1)).findAll();
-        verify(mockVacancyService, times(1)).hasExistingURL(vacancy);
-        verify(mockVacancyService, times(1)).delete(uuid);
+        verify(mockLivenessChecker, times(1)).checkDue();
+        verify(mockVacancyService, never()).findAll();
     }
 
     private void verifyScrapers() {
@@ -12,6 +12,7 @@ import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
@@ -24,6 +25,12 @@ class SkillServiceTest {
     @Mock
     SkillRepository mockSkillRepository;
 
+    @Mock
+    SkillTagger mockSkillTagger;
+
+    @Mock
+    DataGeneration mockDataGeneration;
+
     @InjectMocks
     SkillService skillService;
 
@@ -87,6 +94,8 @@ class SkillServiceTest {
         assertEquals("new name", savedSkill.getName());
         verify(mockSkillRepository, times(1)).findById(uuid);
         verify(mockSkillRepository, times(1)).save(skill);
+        verify(mockSkillTagger, times(1)).reload();
+        verify(mockSkillTagger, times(1)).retag(newSkill);
     }
 
     @Test
@@ -98,6 +107,7 @@ class SkillServiceTest {
         assertThrows(SkillNotFoundException.class, () -> skillService.update(uuid, skill));
         verify(mockSkillRepository, times(1)).findById(uuid);
         verify(mockSkillRepository, times(0)).save(any(Skill.class));
+        verifyNoInteractions(mockSkillTagger);
     }
 
     @Test
@@ -110,6 +120,8 @@ class SkillServiceTest {
 
         assertEquals(newSkill, savedSkill);
         verify(mockSkillRepository, times(1)).save(newSkill);
+        verify(mockSkillTagger, times(1)).reload();
+        verify(mockSkillTagger, times(1)).retag(newSkill);
     }
 
     @Test
@@ -118,7 +130,18 @@ class SkillServiceTest {
         doNothing().when(mockSkillRepository).deleteById(skill.getId());
 
         skillService.delete(skill.getId());
+        verify(mockSkillRepository, times(1)).untagVacancies(skill.getId().toString());
         verify(mockSkillRepository, times(1)).deleteById(skill.getId());
+        verify(mockSkillTagger, times(1)).reload();
+        verify(mockSkillTagger, times(1)).untagged(skill.getId());
+    }
+
+    @Test
+    void testFindByVacancyId() {
+        UUID vacancyId = UUID.randomUUID();
+        when(mockSkillRepository.findByVacancyId(vacancyId)).thenReturn(Set.of(skillList.get(0)));
+
+        assertEquals(Set.of(skillList.get(0)), skillService.findByVacancyId(vacancyId));
     }
 
     private List<Skill> createMockSkillList() {
@@ -2,12 +2,16 @@ package nl.ordina.jobcrawler.service;
 
 import nl.ordina.jobcrawler.exception.LocationNotFoundException;
 import nl.ordina.jobcrawler.exception.VacancyURLMalformedException;
+import nl.ordina.jobcrawler.model.Liveness;
 import nl.ordina.jobcrawler.model.Skill;
 import nl.ordina.jobcrawler.model.Vacancy;
+import nl.ordina.jobcrawler.payload.SearchCursor;
+import nl.ordina.jobcrawler.payload.SearchFacets;
 import nl.ordina.jobcrawler.payload.SearchRequest;
-import nl.ordina.jobcrawler.payload.VacancyDTO;
+import nl.ordina.jobcrawler.payload.VacancyListItemDTO;
 import nl.ordina.jobcrawler.repo.VacancyCriteriaQuery;
 import nl.ordina.jobcrawler.repo.VacancyRepository;
+import nl.ordina.jobcrawler.repo.VacancySearchIndex;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
@@ -17,6 +21,8 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.*;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.io.IOException;
 import java.net.HttpURLConnection;
@@ -42,6 +48,16 @@ class VacancyServiceTest {
     @Mock
     VacancyCriteriaQuery mockVacancyCriteriaQuery;
 
+    @Mock
+    VacancySearchIndex mockVacancySearchIndex;
+
+
+    @Mock
+    SkillTagger mockSkillTagger;
+
+    @Mock
+    DataGeneration mockDataGeneration;
+
     @InjectMocks
     VacancyService vacancyService;
 
@@ -69,26 +85,12 @@ class VacancyServiceTest {
 
     @Test
     void testFindSkillsByVacancyId() {
-        Vacancy vacancy = mockVacancy("title");
-        UUID uuid = vacancy.getId();
-        List<Skill> skills = Arrays.asList(createSkill("Java"), createSkill("Python"));
-        when(mockSkillService.findAll()).thenReturn(skills);
-        // Multiple thenReturns for different testcases
-        when(mockVacancyRepository.findById(uuid))
-                .thenReturn(Optional.of(vacancy))
-                .thenReturn(Optional.empty());
-
-        // 1. test with returned Skill
-        Set<Skill> foundSkills = vacancyService.findSkillsByVacancyId(uuid);
-
-        assertEquals(1, foundSkills.size());
-
-        // 2. test with no returned Skill
-        foundSkills = vacancyService.findSkillsByVacancyId(uuid);
-
-        assertTrue(foundSkills.isEmpty());
+        UUID uuid = UUID.randomUUID();
+        Set<Skill> skills = Set.of(createSkill("Java"));
+        when(mockSkillService.findByVacancyId(uuid)).thenReturn(skills);
 
-        verify(mockVacancyRepository, times(2)).findById(uuid);
+        assertEquals(skills, vacancyService.findSkillsByVacancyId(uuid));
+        verifyNoInteractions(mockVacancyRepository);
     }
 
     @Test
@@ -114,8 +116,8 @@ class VacancyServiceTest {
 
     @Test
     void testFindByAnyValue() throws Exception {
-        VacancyDTO vacancy = new VacancyDTO();
-        List<VacancyDTO> vacancies = Collections.singletonList(vacancy);
+        VacancyListItemDTO vacancy = new VacancyListItemDTO();
+        List<VacancyListItemDTO> vacancies = Collections.singletonList(vacancy);
         Pageable paging = PageRequest.of(1, 15, Sort.Direction.ASC, "postingDate");
         SearchRequest searchRequest = new SearchRequest();
         searchRequest.setLocation("Amsterdam");
@@ -127,11 +129,12 @@ class VacancyServiceTest {
                 .thenReturn(coordinates)
                 .thenThrow(IOException.class)
                 .thenThrow(LocationNotFoundException.class);
+        when(mockVacancyCriteriaQuery.getMatchingPage(any(SearchRequest.class), eq(paging), eq(sort)))
+                .thenReturn(new PageImpl<>(vacancies, paging, 16));
         when(mockVacancyCriteriaQuery.getMatchingVacancies(any(SearchRequest.class),eq(paging), eq(sort))).thenReturn(vacancies);
-        when(mockVacancyCriteriaQuery.totalMatchingVacancies(any(SearchRequest.class))).thenReturn(1L);
 
         // 1. test without location set in search request (LocationService mock not used here)
-        Page<VacancyDTO> result = vacancyService.findByAnyValue(new SearchRequest(), paging, sort);
+        Page<VacancyListItemDTO> result = vacancyService.findByAnyValue(new SearchRequest(), paging, sort);
 
         assertSame(vacancy, result.getContent().get(0));
 
@@ -154,8 +157,137 @@ class VacancyServiceTest {
 
         // verify mock calls
         verify(mockLocationService, times(3)).getCoordinates(anyString());
-        verify(mockVacancyCriteriaQuery, times(4)).getMatchingVacancies(any(SearchRequest.class),eq(paging), eq(sort));
-        verify(mockVacancyCriteriaQuery, times(4)).totalMatchingVacancies(any(SearchRequest.class));
+        // The count of the search with a location is cached after its first page
+        assertEquals(16, result.getTotalElements());
+        verify(mockVacancyCriteriaQuery, times(2)).getMatchingPage(any(SearchRequest.class), eq(paging), eq(sort));
+        verify(mockVacancyCriteriaQuery, times(2)).getMatchingVacancies(any(SearchRequest.class),eq(paging), eq(sort));
+        verify(mockVacancyCriteriaQuery, never()).totalMatchingVacancies(any(SearchRequest.class));
+    }
+
+    @Test
+    void testFindByAnyValueCountWithoutCoordinates() throws Exception {
+        Pageable paging = PageRequest.of(0, 10);
+        String[] sort = new String[]{"postingDate", "desc"};
+        SearchRequest failedSearch = new SearchRequest();
+        failedSearch.setLocation("Utrecht");
+        failedSearch.setDistance(10.0);
+        SearchRequest sameSearch = new SearchRequest();
+        sameSearch.setLocation("Utrecht");
+        sameSearch.setDistance(10.0);
+        when(mockLocationService.getCoordinates("Utrecht"))
+                .thenThrow(IOException.class)
+                .thenReturn(new double[]{52.0907374, 5.1214201});
+        when(mockVacancyCriteriaQuery.getMatchingPage(any(SearchRequest.class), eq(paging), eq(sort)))
+                .thenReturn(new PageImpl<>(Collections.emptyList(), paging, 250))
+                .thenReturn(new PageImpl<>(Collections.emptyList(), paging, 12));
+
+        vacancyService.findByAnyValue(failedSearch, paging, sort);
+        // The count of the search without a radius is not served to the one that was geocoded
+        Page<VacancyListItemDTO> result = vacancyService.findByAnyValue(sameSearch, paging, sort);
+
+        assertEquals(12, result.getTotalElements());
+        verify(mockVacancyCriteriaQuery, times(2)).getMatchingPage(any(SearchRequest.class), eq(paging), eq(sort));
+    }
+
+    @Test
+    void testFindByAnyValueCountInvalidated() {
+        Pageable paging = PageRequest.of(0, 10);
+        String[] sort = new String[]{"postingDate", "desc"};
+        SearchRequest searchRequest = new SearchRequest();
+        searchRequest.setKeywords("Java ");
+        searchRequest.setBrokers(Set.of("Yacht"));
+        SearchRequest sameSearch = new SearchRequest();
+        sameSearch.setKeywords("java");
+        sameSearch.setBrokers(Set.of("yacht"));
+        when(mockVacancyCriteriaQuery.getMatchingPage(any(SearchRequest.class), eq(paging), eq(sort)))
+                .thenReturn(new PageImpl<>(Collections.emptyList(), paging, 0));
+        when(mockVacancyCriteriaQuery.getMatchingVacancies(sameSearch, paging, sort)).thenReturn(Collections.emptyList());
+
+        vacancyService.findByAnyValue(searchRequest, paging, sort);
+        vacancyService.findByAnyValue(sameSearch, paging, sort);
+        vacancyService.delete(UUID.randomUUID());
+        vacancyService.findByAnyValue(sameSearch, paging, sort);
+
+        verify(mockVacancyCriteriaQuery, times(2)).getMatchingPage(any(SearchRequest.class), eq(paging), eq(sort));
+        verify(mockVacancyCriteriaQuery).getMatchingVacancies(sameSearch, paging, sort);
+    }
+
+    @Test
+    void testFindByAnyValueCountInvalidatedAfterCommit() {
+        Pageable paging = PageRequest.of(0, 10);
+        String[] sort = new String[]{"postingDate", "desc"};
+        SearchRequest searchRequest = new SearchRequest();
+        searchRequest.setKeywords("java");
+        when(mockVacancyCriteriaQuery.getMatchingPage(searchRequest, paging, sort))
+                .thenReturn(new PageImpl<>(Collections.emptyList(), paging, 0));
+        when(mockVacancyCriteriaQuery.getMatchingVacancies(searchRequest, paging, sort)).thenReturn(Collections.emptyList());
+
+        vacancyService.findByAnyValue(searchRequest, paging, sort);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            vacancyService.deleteAll(List.of(UUID.randomUUID()));
+            // Not committed yet, so the count is still that of the committed data
+            vacancyService.findByAnyValue(searchRequest, paging, sort);
+            verify(mockVacancyCriteriaQuery, times(1)).getMatchingPage(searchRequest, paging, sort);
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        vacancyService.findByAnyValue(searchRequest, paging, sort);
+
+        verify(mockVacancyCriteriaQuery, times(2)).getMatchingPage(searchRequest, paging, sort);
+    }
+
+    @Test
+    void testFindByAnyValueFromSearchIndex() {
+        VacancyListItemDTO firstDTO = listItem();
+        VacancyListItemDTO secondDTO = listItem();
+        Pageable paging = PageRequest.of(1, 2);
+        SearchRequest searchRequest = new SearchRequest();
+        searchRequest.setKeywords("java");
+        String[] sort = new String[]{"postingDate", "desc"};
+        when(mockVacancySearchIndex.search(searchRequest, sort, 2, 2))
+                .thenReturn(Optional.of(new VacancySearchIndex.Hits(Arrays.asList(secondDTO.getId(), firstDTO.getId()), 5)));
+        // The database returns the page in its own order
+        when(mockVacancyRepository.findListItemsByIdIn(Arrays.asList(secondDTO.getId(), firstDTO.getId())))
+                .thenReturn(Arrays.asList(firstDTO, secondDTO));
+
+        Page<VacancyListItemDTO> result = vacancyService.findByAnyValue(searchRequest, paging, sort);
+
+        assertEquals(Arrays.asList(secondDTO, firstDTO), result.getContent());
+        assertEquals(5, result.getTotalElements());
+        verifyNoInteractions(mockVacancyCriteriaQuery);
+    }
+
+    @Test
+    void testFindByAnyValueAfter() {
+        SearchRequest searchRequest = new SearchRequest();
+        String[] sort = new String[]{"title", "asc"};
+        SearchCursor after = new SearchCursor("title", "asc", UUID.randomUUID(), "Developer");
+        List<VacancyListItemDTO> vacancies = Arrays.asList(new VacancyListItemDTO(), new VacancyListItemDTO(), new VacancyListItemDTO());
+        when(mockVacancyCriteriaQuery.getMatchingVacanciesAfter(searchRequest, sort, after, 3)).thenReturn(vacancies);
+        when(mockVacancyCriteriaQuery.getMatchingVacanciesAfter(searchRequest, sort, after, 4)).thenReturn(vacancies);
+
+        Slice<VacancyListItemDTO> result = vacancyService.findByAnyValueAfter(searchRequest, sort, after, 2);
+        assertEquals(vacancies.subList(0, 2), result.getContent());
+        assertTrue(result.hasNext());
+
+        result = vacancyService.findByAnyValueAfter(searchRequest, sort, after, 3);
+        assertEquals(vacancies, result.getContent());
+        assertFalse(result.hasNext());
+    }
+
+    @Test
+    void testFindFacets() {
+        SearchRequest searchRequest = new SearchRequest();
+        searchRequest.setKeywords("java");
+        SearchFacets indexFacets = new SearchFacets();
+        SearchFacets databaseFacets = new SearchFacets();
+        when(mockVacancySearchIndex.countFacets(searchRequest)).thenReturn(Optional.of(indexFacets), Optional.empty());
+        when(mockVacancyCriteriaQuery.getFacets(searchRequest)).thenReturn(databaseFacets);
+
+        assertSame(indexFacets, vacancyService.findFacets(searchRequest));
+        assertSame(databaseFacets, vacancyService.findFacets(searchRequest));
     }
 
     @Test
@@ -163,11 +295,14 @@ class VacancyServiceTest {
         final Vacancy vacancy = mockVacancy("title");
         VacancyService spyVacancyService = spy(vacancyService);
         doReturn(true).when(spyVacancyService).hasExistingURL(vacancy);
+        Set<Skill> skills = Set.of(createSkill("Java"));
+        when(mockSkillTagger.tag(vacancy)).thenReturn(skills);
         when(mockVacancyRepository.save(vacancy)).thenReturn(vacancy);
 
         Vacancy savedVacancy = spyVacancyService.save(vacancy);
 
         assertEquals(vacancy, savedVacancy);
+        assertEquals(skills, savedVacancy.getSkills());
         verify(mockVacancyRepository, times(1)).save(vacancy);
     }
 
@@ -187,7 +322,9 @@ class VacancyServiceTest {
 
         vacancyService.saveAll(vacancies);
 
+        verify(mockSkillTagger, times(2)).tag(any(Vacancy.class));
         verify(mockVacancyRepository, times(1)).saveAll(vacancies);
+        verify(mockVacancySearchIndex, times(1)).add(vacancies);
     }
 
     @Test
@@ -198,6 +335,7 @@ class VacancyServiceTest {
         vacancyService.delete(uuid);
 
         verify(mockVacancyRepository, times(1)).deleteById(uuid);
+        verify(mockVacancySearchIndex, times(1)).remove(uuid);
     }
 
     @Test
@@ -236,6 +374,21 @@ class VacancyServiceTest {
 
     }
 
+    @Test
+    void testCheckURL() throws Exception {
+        Vacancy vacancy = mockVacancy("title");
+        VacancyService spyVacancyService = spy(vacancyService);
+        HttpURLConnection connection = mock(HttpURLConnection.class);
+        doReturn(connection).when(spyVacancyService).openConnection(any());
+        when(connection.getResponseCode()).thenReturn(200, 404, 410, 429, 503);
+
+        assertEquals(Liveness.ALIVE, spyVacancyService.checkURL(vacancy));
+        assertEquals(Liveness.DEAD, spyVacancyService.checkURL(vacancy));
+        assertEquals(Liveness.DEAD, spyVacancyService.checkURL(vacancy));
+        assertEquals(Liveness.FAILED, spyVacancyService.checkURL(vacancy));
+        assertEquals(Liveness.FAILED, spyVacancyService.checkURL(vacancy));
+    }
+
     @Test
     void testHasJobbirdExistingURL() throws Exception {
         Vacancy vacancy = mockVacancy("title");
@@ -256,4 +409,10 @@ class VacancyServiceTest {
     private Skill createSkill(String name) {
         return new Skill(UUID.randomUUID(), name);
     }
+
+    private static VacancyListItemDTO listItem() {
+        VacancyListItemDTO vacancy = new VacancyListItemDTO();
+        vacancy.setId(UUID.randomUUID());
+        return vacancy;
+    }
 }
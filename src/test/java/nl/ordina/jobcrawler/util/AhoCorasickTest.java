@@ -0,0 +1,54 @@
+package nl.ordina.jobcrawler.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AhoCorasickTest {
+
+    @Test
+    void testFindPatterns() {
+        AhoCorasick automaton = new AhoCorasick(Arrays.asList("Java", "JavaScript", "C#", "Scrum", "script"));
+
+        assertEquals(bits(0, 1, 4), automaton.findPatterns("Ervaring met JAVASCRIPT"));
+        assertEquals(bits(2, 3), automaton.findPatterns("C# in een scrum team"));
+        assertEquals(bits(), automaton.findPatterns("Python"));
+        assertEquals(bits(), automaton.findPatterns(null));
+    }
+
+    @Test
+    void testOverlappingPatterns() {
+        AhoCorasick automaton = new AhoCorasick(Arrays.asList("he", "she", "his", "hers", ""));
+
+        assertEquals(bits(0, 1, 3), automaton.findPatterns("ushers"));
+        assertEquals(bits(2), automaton.findPatterns("this"));
+    }
+
+    @Test
+    void testMatchesContains() {
+        List<String> patterns = Arrays.asList("aab", "ab", "ba", "bab", "aaa", "b", "abba");
+        AhoCorasick automaton = new AhoCorasick(patterns);
+        Random random = new Random(20210201L);
+        for (int i = 0; i < 1_000; i++) {
+            StringBuilder text = new StringBuilder();
+            for (int c = random.nextInt(12); c > 0; c--) {
+                text.append(random.nextBoolean() ? 'a' : 'B');
+            }
+            BitSet expected = new BitSet();
+            for (int p = 0; p < patterns.size(); p++) {
+                if (text.toString().toLowerCase().contains(patterns.get(p))) {
+                    expected.set(p);
+                }
+            }
+            assertEquals(expected, automaton.findPatterns(text), text.toString());
+        }
+    }
+
+    private static BitSet bits(int... indexes) {
+        BitSet bits = new BitSet();
+        Arrays.stream(indexes).forEach(bits::set);
+        return bits;
+    }
+}
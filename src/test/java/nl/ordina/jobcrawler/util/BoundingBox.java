@@ -0,0 +1,69 @@
+package nl.ordina.jobcrawler.util;
+
+/**
+ * Latitude/longitude box around a circle, for the bounding box query of the RadiusSearchBenchmark.
+ */
+public final class BoundingBox {
+    private final double minLat;
+    private final double maxLat;
+    private final double minLon;
+    private final double maxLon;
+
+    public BoundingBox(double minLat, double maxLat, double minLon, double maxLon) {
+        this.minLat = minLat;
+        this.maxLat = maxLat;
+        this.minLon = minLon;
+        this.maxLon = maxLon;
+    }
+
+    /**
+     * Returns the smallest latitude/longitude box that contains every point within the radius of the center. A point
+     * outside the box is certainly further away than the radius, a point inside may still be.
+     *
+     * @param lat      Latitude of the center.
+     * @param lon      Longitude of the center.
+     * @param radiusKm Radius in kilometers.
+     * @return The bounding box.
+     */
+    public static BoundingBox around(double lat, double lon, double radiusKm) {
+        double latDelta = Math.toDegrees(radiusKm / GeoUtils.EARTH_RADIUS_KM);
+        double minLat = lat - latDelta;
+        double maxLat = lat + latDelta;
+        if (minLat <= -90 || maxLat >= 90) {
+            // The circle contains a pole, so every longitude
+            return new BoundingBox(Math.max(minLat, -90), Math.min(maxLat, 90), -180, 180);
+        }
+        // Widest longitude span of the circle, which is not at the center latitude but where the circle touches a meridian
+        double lonDelta = Math.toDegrees(Math.asin(Math.min(1, Math.sin(radiusKm / GeoUtils.EARTH_RADIUS_KM) / Math.cos(Math.toRadians(lat)))));
+        if (lon - lonDelta < -180 || lon + lonDelta > 180) {
+            // Crossing the antimeridian, not worth two boxes for the Dutch vacancies
+            return new BoundingBox(minLat, maxLat, -180, 180);
+        }
+        return new BoundingBox(minLat, maxLat, lon - lonDelta, lon + lonDelta);
+    }
+
+    public double getMinLat() {
+        return minLat;
+    }
+
+    public double getMaxLat() {
+        return maxLat;
+    }
+
+    public double getMinLon() {
+        return minLon;
+    }
+
+    public double getMaxLon() {
+        return maxLon;
+    }
+
+    public boolean contains(double lat, double lon) {
+        return lat >= minLat && lat <= maxLat && lon >= minLon && lon <= maxLon;
+    }
+
+    @Override
+    public String toString() {
+        return "BoundingBox[" + minLat + ", " + minLon + " - " + maxLat + ", " + maxLon + "]";
+    }
+}
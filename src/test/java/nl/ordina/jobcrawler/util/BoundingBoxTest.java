@@ -0,0 +1,39 @@
+package nl.ordina.jobcrawler.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundingBoxTest {
+
+    private final Random random = new Random(20210131L);
+
+    @Test
+    void testBoundingBoxContainsCircle() {
+        for (int i = 0; i < 10_000; i++) {
+            double lat = -85 + random.nextDouble() * 170;
+            double lon = -180 + random.nextDouble() * 360;
+            double radius = random.nextDouble() * 500;
+            BoundingBox box = BoundingBox.around(lat, lon, radius);
+            // A point at the radius in a random direction, just inside the circle
+            double bearing = random.nextDouble() * 2 * Math.PI;
+            double angle = radius * 0.999 / GeoUtils.EARTH_RADIUS_KM;
+            double pointLat = Math.asin(Math.sin(Math.toRadians(lat)) * Math.cos(angle)
+                    + Math.cos(Math.toRadians(lat)) * Math.sin(angle) * Math.cos(bearing));
+            double pointLon = Math.toRadians(lon) + Math.atan2(Math.sin(bearing) * Math.sin(angle) * Math.cos(Math.toRadians(lat)),
+                    Math.cos(angle) - Math.sin(Math.toRadians(lat)) * Math.sin(pointLat));
+            double normalizedLon = (Math.toDegrees(pointLon) + 540) % 360 - 180;
+            assertTrue(box.contains(Math.toDegrees(pointLat), normalizedLon), () -> box + " " + pointLat + "," + pointLon);
+        }
+    }
+
+    @Test
+    void testBoundingBoxAroundPole() {
+        BoundingBox box = BoundingBox.around(89.9, 0, 100);
+        assertEquals(90, box.getMaxLat());
+        assertEquals(-180, box.getMinLon());
+        assertEquals(180, box.getMaxLon());
+    }
+}
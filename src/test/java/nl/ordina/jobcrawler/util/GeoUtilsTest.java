@@ -0,0 +1,26 @@
+package nl.ordina.jobcrawler.util;
+
+import nl.ordina.jobcrawler.repo.TestLocationService;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GeoUtilsTest {
+
+    private final Random random = new Random(20210131L);
+
+    @Test
+    void testDistanceMatchesGetDistance() {
+        for (int i = 0; i < 10_000; i++) {
+            double lat1 = -89 + random.nextDouble() * 178;
+            double lon1 = -180 + random.nextDouble() * 360;
+            double lat2 = -89 + random.nextDouble() * 178;
+            double lon2 = -180 + random.nextDouble() * 360;
+            assertEquals(TestLocationService.getDistance(lat1, lon1, lat2, lon2), GeoUtils.distance(lat1, lon1, lat2, lon2), 1e-6);
+        }
+        // Amsterdam - Utrecht
+        assertEquals(36.15, GeoUtils.distance(52.3727598, 4.8936041, 52.08095165, 5.12768031549829), 0.01);
+    }
+}
@@ -0,0 +1,126 @@
+package nl.ordina.jobcrawler.util;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.Period;
+import java.time.format.DateTimeFormatter;
+import java.time.format.FormatStyle;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The extraction code as it was in the scrapers before {@link TextExtraction}, kept as the reference it is tested and
+ * benchmarked against.
+ */
+public final class LegacyTextExtraction {
+
+    private static final Pattern YMD_PATTERN = Pattern.compile("^[0-9]{4}-(1[0-2]|0[1-9])-(3[01]|[12][0-9]|0[1-9])$");
+    private static final DateTimeFormatter YMD_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final Pattern HUXLEY_PATTERN = Pattern
+            .compile("^[0-9]{4}-(1[0-2]|0[1-9])-(3[01]|[12][0-9]|0[1-9])T[0-9]{2}:[0-9]{2}:[0-9]{2}.[0-9]{6}[0-9]?Z$");
+    private static final DateTimeFormatter HUXLEY_FORMATTER = DateTimeFormatter.ofPattern("[yyyy-MM-dd'T'HH:mm:ss.SSSSSSS'Z']" +
+                                                                                          "[yyyy-MM-dd'T'HH:mm:ss.SSSSSS'Z']");
+    private static final Pattern DMY_PATTERN = Pattern.compile("^(3[01]|[12][0-9]|0[1-9]) [a-z]+ [0-9]{4}$");
+    private static final DateTimeFormatter DMY_FORMATTER = DateTimeFormatter.ofLocalizedDate(FormatStyle.LONG)
+            .withLocale(new Locale("nl", "NL"));
+
+    private LegacyTextExtraction() {
+    }
+
+    /**
+     * VacancyScraper.retrieveWorkHours
+     */
+    public static Integer workHours(String description) {
+        String[] splitDescription = description.toLowerCase().split("hours| uren| uur");
+
+        if (splitDescription.length > 1) {
+            int substringEnd = Math.min(splitDescription[1].length(), 18);
+            Matcher matcherBehind = matcher(splitDescription[1].substring(0, substringEnd));
+            Integer hours = findHours(matcherBehind, "behind");
+            if (hours != null && hours > 7) {
+                return hours;
+            } else {
+                Matcher matcherFront = matcher(splitDescription[0].substring(splitDescription[0].length() - 10));
+                Integer hoursFront = findHours(matcherFront, "front");
+                return (hoursFront != null && hoursFront > 7) ? hoursFront : null;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * JobBirdScraper.getPublishDate
+     */
+    public static LocalDate isoDate(String date) {
+        return date != null && YMD_PATTERN.matcher(date).matches() ? LocalDate.parse(date, YMD_FORMATTER) : null;
+    }
+
+    /**
+     * HuxleyITVacancyScraper.getPostingDate
+     */
+    public static LocalDateTime huxleyDateTime(String date) {
+        return date != null && HUXLEY_PATTERN.matcher(date).matches() ? LocalDateTime.parse(date, HUXLEY_FORMATTER) : null;
+    }
+
+    /**
+     * JobCatcherScraper, publishdate
+     */
+    public static LocalDateTime jobCatcherDateTime(String date) {
+        return LocalDateTime.parse(date, DateTimeFormatter.ofPattern("yyyy-MM-dd[ ]['T']HH:mm:ss['Z']"));
+    }
+
+    /**
+     * HeadfirstScraper, published_at
+     */
+    public static LocalDateTime headfirstDateTime(String date) {
+        return LocalDateTime.parse(date, DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss'Z'"));
+    }
+
+    /**
+     * YachtVacancyScraper.getPostingDate
+     */
+    public static LocalDate dutchLongDate(String date) {
+        return date != null && DMY_PATTERN.matcher(date).matches() ? LocalDate.parse(date, DMY_FORMATTER) : null;
+    }
+
+    /**
+     * StaffingGroupScraper, age label on the listing page
+     */
+    public static LocalDate relativeAge(String dateString, LocalDate today) {
+        LocalDate date = null;
+        if (dateString.contains("Nieuw")) {
+            date = today;
+        } else if (dateString.contains("dag")) {
+            date = today.minus(Period.ofDays(Integer.parseInt(dateString.substring(0, dateString.indexOf(' ')))));
+        } else if (dateString.contains("we")) {
+            date = today.minus(Period.ofWeeks(Integer.parseInt(dateString.substring(0, dateString.indexOf(' ')))));
+        } else if (dateString.contains("maand")) {
+            date = today.minus(Period.ofMonths(Integer.parseInt(dateString.substring(0, dateString.indexOf(' ')))));
+        }
+        return date;
+    }
+
+    private static Matcher matcher(String input) {
+        return Pattern.compile("\\d+").matcher(input);
+    }
+
+    private static Integer findHours(Matcher text, String direction) {
+        String result = null;
+        try {
+            if (direction.equals("front")) {
+                while (text.find()) {
+                    result = text.group();
+                }
+            } else {
+                text.find();
+                result = text.group();
+            }
+
+            return Integer.valueOf(result);
+        } catch (IllegalStateException | NumberFormatException e) {
+            return null;
+        }
+    }
+}
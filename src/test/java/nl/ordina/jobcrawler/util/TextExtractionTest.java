@@ -0,0 +1,246 @@
+package nl.ordina.jobcrawler.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks {@link TextExtraction} against the extraction code it replaced ({@link LegacyTextExtraction}), both on the saved
+ * broker pages and on generated input. Where the legacy code threw an exception, the toolkit must not.
+ */
+class TextExtractionTest {
+
+    private static final int SAMPLES = 20_000;
+    private static final LocalDate TODAY = LocalDate.of(2021, 1, 31);
+    private static final String[] HOURS_TOKENS = {"hours", "Hours", " uren", " UREN", " uur", " Uur", "uur", " u", "40",
+            "36", "8", "7", "0", "32-40", "2147483648", "007", " ", " ", "per week", "a", "ho", "\n", "€", "Ĳ", "١٢"};
+    private static final String[] MONTHS = {"januari", "februari", "maart", "april", "mei", "juni", "juli", "augustus",
+            "september", "oktober", "november", "december", "mrt", "Mei", "foo"};
+    private static final String[] AGE_TOKENS = {"Nieuw", "dag", "dagen", "week", "weken", "maand", "maanden", "jaar",
+            "1", "3", "12", "-2", "+4", "x", "2147483648", " ", " ", "geleden"};
+
+    private final Random random = new Random(20210131L);
+
+    @Test
+    void workHoursMatchesLegacyOnFixtures() throws IOException {
+        List<String> descriptions = new ArrayList<>();
+        for (String page : List.of("JobBird/jobbird03_vacancy.htm", "JobBird/jobbird03_vacancy_notitle.htm",
+                "JobBird/jobbird04_vacancyspecifics.htm", "JobBird/jobbird04_vacancyspecifics_missing.htm")) {
+            descriptions.add(html(page).select("div.card-body").text());
+        }
+        descriptions.addAll(json("HuxleyIT/postRequestResponse.json").findValuesAsText("description"));
+        descriptions.addAll(json("Headfirst/vacanciesResponse.json").findValuesAsText("description"));
+        descriptions.add(html("yacht/yachtvacancy.html").text());
+        descriptions.add(html("JobCatcher/vacancyDoc.htm").text());
+
+        int withHours = 0;
+        for (String description : descriptions) {
+            assertMatchesLegacy(description, LegacyTextExtraction::workHours, TextExtraction::workHours);
+            if (TextExtraction.workHours(description) != null) {
+                withHours++;
+            }
+        }
+        assertTrue(withHours > 0);
+    }
+
+    @Test
+    void workHoursMatchesLegacyOnGeneratedText() {
+        for (int i = 0; i < SAMPLES; i++) {
+            String description = generate(HOURS_TOKENS, 30);
+            assertMatchesLegacy(description, LegacyTextExtraction::workHours, TextExtraction::workHours);
+        }
+    }
+
+    @Test
+    void workHours() {
+        assertEquals(40, TextExtraction.workHours("Werktijden: 40 uur per week"));
+        assertEquals(36, TextExtraction.workHours("Hours per week: 36"));
+        assertNull(TextExtraction.workHours("Max 4 uur"));
+        assertNull(TextExtraction.workHours("No hours mentioned"));
+        // The legacy code threw a StringIndexOutOfBoundsException for a number less than 10 characters from the start
+        assertEquals(40, TextExtraction.workHours("40 hours per week"));
+    }
+
+    @Test
+    void datesMatchLegacyOnFixtures() throws IOException {
+        for (String date : json("HuxleyIT/postRequestResponse.json").findValuesAsText("postDate")) {
+            assertNotNull(TextExtraction.isoDateTime(date));
+            assertMatchesLegacy(date, LegacyTextExtraction::huxleyDateTime, TextExtraction::isoDateTime);
+        }
+        for (String date : json("JobCatcher/vacanciesResponse.json").findValuesAsText("publishdate")) {
+            assertNotNull(TextExtraction.isoDateTime(date));
+            assertMatchesLegacy(date, LegacyTextExtraction::jobCatcherDateTime, TextExtraction::isoDateTime);
+        }
+        for (String date : json("Headfirst/vacanciesResponse.json").findValuesAsText("published_at")) {
+            assertNotNull(TextExtraction.isoDateTime(date));
+            assertMatchesLegacy(date, LegacyTextExtraction::headfirstDateTime, TextExtraction::isoDateTime);
+        }
+        for (String date : json("yacht/getRequestResponse.json").findValuesAsText("date")) {
+            assertMatchesLegacy(date, LegacyTextExtraction::dutchLongDate, TextExtraction::dutchLongDate);
+        }
+        for (String date : html("JobBird/jobbird03_vacancy.htm").select("time").eachAttr("datetime")) {
+            assertMatchesLegacy(date, LegacyTextExtraction::isoDate, TextExtraction::isoDate);
+        }
+        for (String age : html("StaffingGroup/vacanciesPage.htm").select("p.assignment-card__age-label").eachText()) {
+            assertNotNull(TextExtraction.relativeAge(age, TODAY));
+            assertMatchesLegacy(age, a -> LegacyTextExtraction.relativeAge(a, TODAY), a -> TextExtraction.relativeAge(a, TODAY));
+        }
+    }
+
+    @Test
+    void isoDateMatchesLegacyOnGeneratedText() {
+        for (int i = 0; i < SAMPLES; i++) {
+            String date = String.format("%s-%s-%s", number(4), number(2), number(2));
+            assertMatchesLegacy(mutate(date), LegacyTextExtraction::isoDate, TextExtraction::isoDate);
+        }
+    }
+
+    @Test
+    void isoDateTimeMatchesLegacyOnGeneratedText() {
+        for (int i = 0; i < SAMPLES; i++) {
+            String dateTime = String.format("%s-%s-%s%s%s:%s:%s", number(4), number(2), number(2),
+                    pick(" ", "T", " T", "", "t"), hour(), number(2), number(2));
+            String fraction = pick("", "", "." + number(6), "." + number(7), ".", "." + number(3));
+            String text = mutate(dateTime + fraction + pick("", "Z", "z"));
+
+            LocalDateTime jobCatcher = assertMatchesLegacy(text, LegacyTextExtraction::jobCatcherDateTime, TextExtraction::isoDateTime);
+            assertMatchesLegacy(text, LegacyTextExtraction::headfirstDateTime, TextExtraction::isoDateTime);
+            // HuxleyIT's format is a subset that requires T, fraction and Z, everything else it did not parse
+            LocalDateTime huxley = parsedOrNull(() -> LegacyTextExtraction.huxleyDateTime(text));
+            if (huxley != null) {
+                assertEquals(huxley, TextExtraction.isoDateTime(text), text);
+            }
+            if (jobCatcher == null && !text.contains(".")) {
+                // Without a fraction the toolkit accepts exactly what JobCatcher's format accepted
+                assertNull(TextExtraction.isoDateTime(text), text);
+            }
+        }
+    }
+
+    @Test
+    void dutchLongDateMatchesLegacyOnGeneratedText() {
+        for (int i = 0; i < SAMPLES; i++) {
+            String date = String.format("%s %s %s", number(1 + random.nextInt(2)), pick(MONTHS), number(4));
+            assertMatchesLegacy(mutate(date), LegacyTextExtraction::dutchLongDate, TextExtraction::dutchLongDate);
+        }
+    }
+
+    @Test
+    void relativeAgeMatchesLegacyOnGeneratedText() {
+        for (int i = 0; i < SAMPLES; i++) {
+            String age = generate(AGE_TOKENS, 4);
+            assertMatchesLegacy(age, a -> LegacyTextExtraction.relativeAge(a, TODAY), a -> TextExtraction.relativeAge(a, TODAY));
+        }
+    }
+
+    @Test
+    void salary() {
+        assertEquals(new TextExtraction.SalaryRange(55000, 70000), TextExtraction.salary("€55000 - €70000 per annum + bonus"));
+        assertEquals(new TextExtraction.SalaryRange(3500, 4250), TextExtraction.salary("€ 3.500,- tot € 4.250,- per maand"));
+        assertEquals(new TextExtraction.SalaryRange(75, 75), TextExtraction.salary("75,50 p/u"));
+        assertEquals(new TextExtraction.SalaryRange(2800, 3100), TextExtraction.salary("3,100 - 2,800"));
+        assertNull(TextExtraction.salary("competitive"));
+        assertNull(TextExtraction.salary(null));
+    }
+
+    /**
+     * Asserts that the toolkit gives the legacy result, or that it gives a result without throwing where the legacy code
+     * threw.
+     *
+     * @return The legacy result, null if it threw.
+     */
+    private static <T> T assertMatchesLegacy(String input, Function<String, T> legacy, Function<String, T> toolkit) {
+        T expected;
+        try {
+            expected = legacy.apply(input);
+        } catch (RuntimeException e) {
+            assertDoesNotThrow(() -> toolkit.apply(input), input);
+            return null;
+        }
+        assertEquals(expected, toolkit.apply(input), () -> "input: " + input);
+        return expected;
+    }
+
+    private static <T> T parsedOrNull(Supplier<T> legacy) {
+        try {
+            return legacy.get();
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private String generate(String[] tokens, int maxTokens) {
+        StringBuilder text = new StringBuilder();
+        int count = random.nextInt(maxTokens + 1);
+        for (int i = 0; i < count; i++) {
+            text.append(pick(tokens));
+        }
+        return text.toString();
+    }
+
+    /**
+     * Leaves most input intact and otherwise replaces, drops or inserts a single character.
+     */
+    private String mutate(String text) {
+        if (random.nextInt(4) > 0 || text.isEmpty()) {
+            return text;
+        }
+        int pos = random.nextInt(text.length());
+        String character = pick("0", "9", "-", ":", " ", "x", "T", "Z", ".");
+        switch (random.nextInt(3)) {
+            case 0:
+                return text.substring(0, pos) + character + text.substring(pos + 1);
+            case 1:
+                return text.substring(0, pos) + text.substring(pos + 1);
+            default:
+                return text.substring(0, pos) + character + text.substring(pos);
+        }
+    }
+
+    private String hour() {
+        return random.nextInt(10) == 0 ? pick("24", "25", "99") : String.format("%02d", random.nextInt(24));
+    }
+
+    private String number(int digits) {
+        Supplier<String> anyDigits = () -> {
+            StringBuilder number = new StringBuilder();
+            for (int i = 0; i < digits; i++) {
+                number.append(random.nextInt(10));
+            }
+            return number.toString();
+        };
+        if (digits == 4 && random.nextBoolean()) {
+            return String.valueOf(1990 + random.nextInt(40));
+        }
+        if (digits == 2 && random.nextBoolean()) {
+            return String.format("%02d", 1 + random.nextInt(random.nextBoolean() ? 12 : 31));
+        }
+        return anyDigits.get();
+    }
+
+    private String pick(String... options) {
+        return options[random.nextInt(options.length)];
+    }
+
+    private static Document html(String fixture) throws IOException {
+        return Jsoup.parse(new ClassPathResource(fixture).getInputStream(), "UTF-8", "");
+    }
+
+    private static JsonNode json(String fixture) throws IOException {
+        return new ObjectMapper().readTree(new ClassPathResource(fixture).getInputStream());
+    }
+}
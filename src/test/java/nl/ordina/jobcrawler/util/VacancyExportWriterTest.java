@@ -0,0 +1,87 @@
+package nl.ordina.jobcrawler.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import nl.ordina.jobcrawler.model.Location;
+import nl.ordina.jobcrawler.model.Vacancy;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VacancyExportWriterTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    @Test
+    void testNdjson() throws IOException {
+        String export = export(ExportFormat.NDJSON, vacancy("Java developer", "Utrecht"), vacancy("Tester", null));
+
+        String[] lines = export.split("\n");
+        assertEquals(2, lines.length);
+        JsonNode first = objectMapper.readTree(lines[0]);
+        assertEquals("Java developer", first.get("title").asText());
+        assertEquals("Utrecht", first.get("location").get("name").asText());
+        assertEquals("2021-02-01 09:30:00", first.get("postingDate").asText());
+        assertEquals("Ervaring met \"Java\",\nen Spring", first.get("about").asText());
+        assertTrue(objectMapper.readTree(lines[1]).get("location").isNull());
+    }
+
+    @Test
+    void testCsv() throws IOException {
+        Vacancy vacancy = vacancy("Java developer", "Utrecht");
+        String export = export(ExportFormat.CSV, vacancy, vacancy("Tester", null));
+
+        String[] lines = export.split("\r\n");
+        assertEquals(3, lines.length);
+        assertEquals(String.join(",", VacancyExportWriter.CSV_HEADER), lines[0]);
+        assertEquals(vacancy.getId() + ",https://example.com/1,Java developer,HuxleyIT,,Ordina,40,,2021-02-01 09:30:00," +
+                "Utrecht,52.09,5.12,\"Ervaring met \"\"Java\"\",\nen Spring\"", lines[1]);
+        assertTrue(lines[2].contains(",Tester,HuxleyIT,,Ordina,40,,2021-02-01 09:30:00,,,,\""));
+    }
+
+    @Test
+    void testQuote() {
+        assertEquals("Utrecht", VacancyExportWriter.quote("Utrecht"));
+        assertEquals("\"Den Haag, Rotterdam\"", VacancyExportWriter.quote("Den Haag, Rotterdam"));
+        assertEquals("\"5\"\" scherm\"", VacancyExportWriter.quote("5\" scherm"));
+        assertEquals("\"a\r\nb\"", VacancyExportWriter.quote("a\r\nb"));
+    }
+
+    @Test
+    void testFormatOf() {
+        assertEquals(ExportFormat.CSV, ExportFormat.of("csv").orElseThrow());
+        assertEquals(ExportFormat.NDJSON, ExportFormat.of("NDJSON").orElseThrow());
+        assertTrue(ExportFormat.of("xml").isEmpty());
+    }
+
+    private String export(ExportFormat format, Vacancy... vacancies) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        VacancyExportWriter writer = new VacancyExportWriter(format, out, objectMapper);
+        for (Vacancy vacancy : vacancies) {
+            writer.write(vacancy);
+        }
+        writer.flush();
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private static Vacancy vacancy(String title, String location) {
+        return Vacancy.builder()
+                .id(UUID.randomUUID())
+                .vacancyURL("https://example.com/1")
+                .title(title)
+                .broker("HuxleyIT")
+                .company("Ordina")
+                .hours(40)
+                .postingDate(LocalDateTime.of(2021, 2, 1, 9, 30))
+                .about("Ervaring met \"Java\",\nen Spring")
+                .location(location == null ? null : new Location(location, 52.09, 5.12))
+                .build();
+    }
+}
@@ -3,6 +3,8 @@
 --
 
 CREATE ALIAS GETDISTANCE FOR "nl.ordina.jobcrawler.repo.TestLocationService.getDistance";
+CREATE ALIAS FTS_MATCH FOR "nl.ordina.jobcrawler.repo.TestFullTextSearch.match";
+CREATE ALIAS FTS_RANK FOR "nl.ordina.jobcrawler.repo.TestFullTextSearch.rank";
 
 insert into public.location (id, lat, lon, name) values ('3ec612b0-e020-42e0-b5af-db83b68a67f3', 51.8421872, 4.97460046726009, 'Gorinchem');
 insert into public.location (id, lat, lon, name) values ('a8ab5fdf-7768-4f52-9177-37e9a2644924', 52.44175125, 5.20929431043276, 'Almere');